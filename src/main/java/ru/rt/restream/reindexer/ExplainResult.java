@@ -0,0 +1,402 @@
+/*
+ * Copyright 2020-present Restream
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ru.rt.restream.reindexer;
+
+import com.google.gson.Gson;
+import com.google.gson.annotations.SerializedName;
+import lombok.Getter;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Contains the execution plan of a query, requested by {@link Query#explain()}. The timings are in microseconds.
+ */
+@Getter
+public class ExplainResult {
+
+    private static final Gson GSON = new Gson();
+
+    /**
+     * Total query execution time.
+     */
+    @SerializedName("total_us")
+    private long totalUs;
+
+    /**
+     * Query preparation time.
+     */
+    @SerializedName("prepare_us")
+    private long prepareUs;
+
+    /**
+     * Index selection time.
+     */
+    @SerializedName("indexes_us")
+    private long indexesUs;
+
+    /**
+     * Query post-processing time.
+     */
+    @SerializedName("postprocess_us")
+    private long postprocessUs;
+
+    /**
+     * Items loop time.
+     */
+    @SerializedName("loop_us")
+    private long loopUs;
+
+    /**
+     * General sort time.
+     */
+    @SerializedName("general_sort_us")
+    private long generalSortUs;
+
+    /**
+     * Joined queries preselect time.
+     */
+    @SerializedName("preselect_us")
+    private long preselectUs;
+
+    /**
+     * The index used for sorting, or "-" if no index is used.
+     */
+    @SerializedName("sort_index")
+    private String sortIndex;
+
+    /**
+     * An indication that the sort index is not committed yet.
+     */
+    @SerializedName("sort_by_uncommitted_index")
+    private boolean sortByUncommittedIndex;
+
+    /**
+     * The condition selectors in the order of their execution.
+     */
+    private List<Selector> selectors;
+
+    /**
+     * The conditions of the joined queries, injected into the main query.
+     */
+    @SerializedName("on_conditions_injections")
+    private List<JoinOnInjection> onConditionsInjections;
+
+    /**
+     * The plans of the subqueries.
+     */
+    @SerializedName("subqueries")
+    private List<SubQuery> subQueries;
+
+    /**
+     * Parses an execution plan.
+     *
+     * @param data the JSON representation of the plan
+     * @return the parsed plan
+     */
+    static ExplainResult of(byte[] data) {
+        return GSON.fromJson(new String(data, StandardCharsets.UTF_8), ExplainResult.class);
+    }
+
+    /**
+     * Get the condition selectors in the order of their execution.
+     *
+     * @return the condition selectors, or an empty list
+     */
+    public List<Selector> getSelectors() {
+        return selectors != null ? selectors : Collections.emptyList();
+    }
+
+    /**
+     * Get the conditions of the joined queries, injected into the main query.
+     *
+     * @return the injected join conditions, or an empty list
+     */
+    public List<JoinOnInjection> getOnConditionsInjections() {
+        return onConditionsInjections != null ? onConditionsInjections : Collections.emptyList();
+    }
+
+    /**
+     * Get the plans of the subqueries.
+     *
+     * @return the subquery plans, or an empty list
+     */
+    public List<SubQuery> getSubQueries() {
+        return subQueries != null ? subQueries : Collections.emptyList();
+    }
+
+    /**
+     * Returns an indication that the query iterates over the items without an index, for at least one of its
+     * conditions.
+     *
+     * @return true, if a selector of the query is a scan
+     */
+    public boolean isScan() {
+        for (Selector selector : getSelectors()) {
+            if (selector.isScan()) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * A condition selector: an index lookup, a scan with the comparators, or a joined query.
+     */
+    @Getter
+    public static class Selector {
+
+        /**
+         * The field or the index of the condition, "-scan" for the full scan.
+         */
+        private String field;
+
+        /**
+         * The field type of the condition, "indexed" or "non-indexed".
+         */
+        @SerializedName("field_type")
+        private String fieldType;
+
+        /**
+         * The selection method, "index" or "scan".
+         */
+        private String method;
+
+        /**
+         * The number of the index keys, selected by the condition.
+         */
+        private int keys;
+
+        /**
+         * The number of the comparators, the items are checked with.
+         */
+        private int comparators;
+
+        /**
+         * The estimated cost of the selector.
+         */
+        private double cost;
+
+        /**
+         * The number of the matched items.
+         */
+        private long matched;
+
+        /**
+         * The number of the items, selected by the index.
+         */
+        private long items;
+
+        /**
+         * The description of the selector.
+         */
+        private String description;
+
+        /**
+         * The type of a joined query selector, "inner_join", "left_join" or "or_inner_join".
+         */
+        private String type;
+
+        /**
+         * The plan of the joined query preselect.
+         */
+        @SerializedName("explain_preselect")
+        private ExplainResult explainPreselect;
+
+        /**
+         * The plan of the joined query select.
+         */
+        @SerializedName("explain_select")
+        private ExplainResult explainSelect;
+
+        /**
+         * The nested selectors of a bracket.
+         */
+        private List<Selector> selectors;
+
+        /**
+         * Get the nested selectors of a bracket.
+         *
+         * @return the nested selectors, or an empty list
+         */
+        public List<Selector> getSelectors() {
+            return selectors != null ? selectors : Collections.emptyList();
+        }
+
+        /**
+         * Returns an indication that the selector, or one of its nested selectors, iterates over the items without
+         * an index.
+         *
+         * @return true, if the selector is a scan
+         */
+        public boolean isScan() {
+            if ("scan".equals(method) || "-scan".equals(field)) {
+                return true;
+            }
+            for (Selector selector : getSelectors()) {
+                if (selector.isScan()) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+    }
+
+    /**
+     * An injection of the joined query ON conditions into the main query.
+     */
+    @Getter
+    public static class JoinOnInjection {
+
+        /**
+         * The namespace of the joined query.
+         */
+        private String namespace;
+
+        /**
+         * The ON condition of the joined query.
+         */
+        @SerializedName("on_condition")
+        private String onCondition;
+
+        /**
+         * An indication that the condition is injected.
+         */
+        private boolean success;
+
+        /**
+         * The reason, the condition is not injected.
+         */
+        private String reason;
+
+        /**
+         * The injection time.
+         */
+        @SerializedName("total_time_us")
+        private long totalTimeUs;
+
+        /**
+         * An indication that the joined query result is taken from the cache.
+         */
+        @SerializedName("was_cached")
+        private boolean wasCached;
+
+        /**
+         * The injected condition.
+         */
+        @SerializedName("injected_condition")
+        private String injectedCondition;
+
+        /**
+         * The injections of the single conditions.
+         */
+        private List<ConditionInjection> conditions;
+
+        /**
+         * Get the injections of the single conditions.
+         *
+         * @return the condition injections, or an empty list
+         */
+        public List<ConditionInjection> getConditions() {
+            return conditions != null ? conditions : Collections.emptyList();
+        }
+
+    }
+
+    /**
+     * An injection of a single ON condition into the main query.
+     */
+    @Getter
+    public static class ConditionInjection {
+
+        /**
+         * The initial condition.
+         */
+        private String condition;
+
+        /**
+         * The aggregation type, used to convert the condition.
+         */
+        @SerializedName("agg_type")
+        private String aggType;
+
+        /**
+         * An indication that the condition is injected.
+         */
+        private boolean success;
+
+        /**
+         * The reason, the condition is not injected.
+         */
+        private String reason;
+
+        /**
+         * The injected condition.
+         */
+        @SerializedName("new_condition")
+        private String newCondition;
+
+        /**
+         * The number of the values of the injected condition.
+         */
+        @SerializedName("values_count")
+        private int valuesCount;
+
+        /**
+         * The plan of the select, used to get the values of the condition.
+         */
+        @SerializedName("explain_select")
+        private ExplainResult explainSelect;
+
+        /**
+         * The injection time.
+         */
+        @SerializedName("total_time_us")
+        private long totalTimeUs;
+
+    }
+
+    /**
+     * The plan of a subquery.
+     */
+    @Getter
+    public static class SubQuery {
+
+        /**
+         * The namespace of the subquery.
+         */
+        private String namespace;
+
+        /**
+         * The plan of the subquery.
+         */
+        private ExplainResult explain;
+
+        /**
+         * The number of the subquery result keys.
+         */
+        private int keys;
+
+        /**
+         * The field of the subquery condition.
+         */
+        private String field;
+
+    }
+
+}
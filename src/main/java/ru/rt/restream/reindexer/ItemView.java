@@ -0,0 +1,414 @@
+/*
+ * Copyright 2020-present Restream
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ru.rt.restream.reindexer;
+
+import ru.rt.restream.reindexer.binding.cproto.ByteBuffer;
+import ru.rt.restream.reindexer.binding.cproto.cjson.CjsonElement;
+import ru.rt.restream.reindexer.binding.cproto.cjson.CtagMatcher;
+import ru.rt.restream.reindexer.binding.cproto.cjson.PayloadType;
+import ru.rt.restream.reindexer.binding.cproto.cjson.encdec.CjsonReader;
+import ru.rt.restream.reindexer.column.Column;
+import ru.rt.restream.reindexer.column.ColumnSet;
+import ru.rt.restream.reindexer.column.DoubleColumn;
+import ru.rt.restream.reindexer.column.LongColumn;
+import ru.rt.restream.reindexer.column.StringColumn;
+
+import java.util.Arrays;
+import java.util.UUID;
+import java.util.function.Consumer;
+import java.util.function.DoubleConsumer;
+import java.util.function.LongConsumer;
+
+/**
+ * A read-only view of a result item, that decodes the root fields of the item on demand from the cjson data
+ * of the result buffer.
+ * <p>
+ * The view is a flyweight: the same instance is positioned over each item of a result, see
+ * {@link Query#executeViews()}, so it is valid only until the next item is read. The positions of the root fields
+ * are indexed on the first access to a field of an item, the field values are decoded only by the accessors,
+ * so reading a couple of fields of an item does not allocate anything but the returned strings and uuids.
+ * <p>
+ * The absent fields and the fields with null values are read as 0, false or null. The values of other scalar
+ * types are converted to the requested type. The view is not thread-safe.
+ */
+public final class ItemView {
+
+    private final CtagMatcher ctagMatcher;
+
+    /**
+     * The positions of the root field values by the ctag name indexes.
+     */
+    private final int[] positions;
+
+    /**
+     * The types of the root field values by the ctag name indexes.
+     */
+    private final int[] types;
+
+    /**
+     * The index generations by the ctag name indexes, a field is present in the current item if its generation
+     * equals the current one, so the index does not need to be cleared for each item.
+     */
+    private final int[] generations;
+
+    private int generation;
+
+    private boolean indexed;
+
+    private ByteBuffer buffer;
+
+    private CjsonReader reader;
+
+    private int offset;
+
+    private int length;
+
+    ItemView(PayloadType payloadType) {
+        ctagMatcher = new CtagMatcher(payloadType);
+        int size = ctagMatcher.getTagsCount() + 1;
+        positions = new int[size];
+        types = new int[size];
+        generations = new int[size];
+    }
+
+    void reset(ByteBuffer buffer, int offset, int length) {
+        if (this.buffer != buffer) {
+            this.buffer = buffer;
+            reader = new CjsonReader(buffer);
+        }
+        this.offset = offset;
+        this.length = length;
+        indexed = false;
+    }
+
+    /**
+     * Returns the length of the item cjson data.
+     *
+     * @return the length of the item data
+     */
+    public int getLength() {
+        return length;
+    }
+
+    /**
+     * Returns true, if the item has a non-null value of the root field.
+     *
+     * @param name the field name
+     * @return true, if the field has a value
+     */
+    public boolean contains(String name) {
+        int saved = buffer.getPosition();
+        try {
+            return seek(name) != CjsonReader.NULL;
+        } finally {
+            buffer.setPosition(saved);
+        }
+    }
+
+    /**
+     * Returns the value of the root field as a long.
+     *
+     * @param name the field name
+     * @return the field value, 0 if the field is absent
+     */
+    public long getLong(String name) {
+        int saved = buffer.getPosition();
+        try {
+            return readLong(name, seek(name));
+        } finally {
+            buffer.setPosition(saved);
+        }
+    }
+
+    /**
+     * Returns the value of the root field as an int.
+     *
+     * @param name the field name
+     * @return the field value, 0 if the field is absent
+     */
+    public int getInt(String name) {
+        return (int) getLong(name);
+    }
+
+    /**
+     * Returns the value of the root field as a double.
+     *
+     * @param name the field name
+     * @return the field value, 0 if the field is absent
+     */
+    public double getDouble(String name) {
+        int saved = buffer.getPosition();
+        try {
+            return readDouble(name, seek(name));
+        } finally {
+            buffer.setPosition(saved);
+        }
+    }
+
+    /**
+     * Returns the value of the root field as a boolean.
+     *
+     * @param name the field name
+     * @return the field value, false if the field is absent
+     */
+    public boolean getBoolean(String name) {
+        int saved = buffer.getPosition();
+        try {
+            int type = seek(name);
+            if (type == CjsonReader.BOOL) {
+                return reader.readBool();
+            }
+            return type != CjsonReader.NULL && readScalar(name, type).getAsBoolean();
+        } finally {
+            buffer.setPosition(saved);
+        }
+    }
+
+    /**
+     * Returns the value of the root field as a string.
+     *
+     * @param name the field name
+     * @return the field value, null if the field is absent
+     */
+    public String getString(String name) {
+        int saved = buffer.getPosition();
+        try {
+            return readString(name, seek(name));
+        } finally {
+            buffer.setPosition(saved);
+        }
+    }
+
+    /**
+     * Returns the value of the root field as a uuid.
+     *
+     * @param name the field name
+     * @return the field value, null if the field is absent
+     */
+    public UUID getUuid(String name) {
+        int saved = buffer.getPosition();
+        try {
+            int type = seek(name);
+            if (type == CjsonReader.UUID) {
+                return reader.readUuid();
+            }
+            return type == CjsonReader.NULL ? null : readScalar(name, type).getAsUuid();
+        } finally {
+            buffer.setPosition(saved);
+        }
+    }
+
+    /**
+     * Returns the number of the elements of the root array field. A scalar value is counted as a single element.
+     *
+     * @param name the field name
+     * @return the number of the elements, 0 if the field is absent
+     */
+    public int getArraySize(String name) {
+        int saved = buffer.getPosition();
+        try {
+            int type = seek(name);
+            if (type == CjsonReader.ARRAY) {
+                return reader.readArrayHeader();
+            }
+            return type == CjsonReader.NULL ? 0 : 1;
+        } finally {
+            buffer.setPosition(saved);
+        }
+    }
+
+    /**
+     * Performs the action for each element of the root array field, the elements are read as longs.
+     *
+     * @param name   the field name
+     * @param action the action to perform
+     */
+    public void forEachLong(String name, LongConsumer action) {
+        int saved = buffer.getPosition();
+        try {
+            int type = seek(name);
+            if (type != CjsonReader.ARRAY) {
+                if (type != CjsonReader.NULL) {
+                    action.accept(readLong(name, type));
+                }
+                return;
+            }
+            int count = reader.readArrayHeader();
+            int elementType = reader.getArrayType();
+            for (int i = 0; i < count; i++) {
+                action.accept(readLong(name, elementType == CjsonReader.OBJECT ? reader.readTag() : elementType));
+            }
+        } finally {
+            buffer.setPosition(saved);
+        }
+    }
+
+    /**
+     * Performs the action for each element of the root array field, the elements are read as doubles.
+     *
+     * @param name   the field name
+     * @param action the action to perform
+     */
+    public void forEachDouble(String name, DoubleConsumer action) {
+        int saved = buffer.getPosition();
+        try {
+            int type = seek(name);
+            if (type != CjsonReader.ARRAY) {
+                if (type != CjsonReader.NULL) {
+                    action.accept(readDouble(name, type));
+                }
+                return;
+            }
+            int count = reader.readArrayHeader();
+            int elementType = reader.getArrayType();
+            for (int i = 0; i < count; i++) {
+                action.accept(readDouble(name, elementType == CjsonReader.OBJECT ? reader.readTag() : elementType));
+            }
+        } finally {
+            buffer.setPosition(saved);
+        }
+    }
+
+    /**
+     * Performs the action for each element of the root array field, the elements are read as strings.
+     *
+     * @param name   the field name
+     * @param action the action to perform
+     */
+    public void forEachString(String name, Consumer<String> action) {
+        int saved = buffer.getPosition();
+        try {
+            int type = seek(name);
+            if (type != CjsonReader.ARRAY) {
+                if (type != CjsonReader.NULL) {
+                    action.accept(readString(name, type));
+                }
+                return;
+            }
+            int count = reader.readArrayHeader();
+            int elementType = reader.getArrayType();
+            for (int i = 0; i < count; i++) {
+                action.accept(readString(name, elementType == CjsonReader.OBJECT ? reader.readTag() : elementType));
+            }
+        } finally {
+            buffer.setPosition(saved);
+        }
+    }
+
+    /**
+     * Appends the values of the root fields to the columns.
+     */
+    void appendTo(ColumnSet columns) {
+        int saved = buffer.getPosition();
+        try {
+            for (int i = 0; i < columns.getColumnCount(); i++) {
+                appendTo(columns.getColumn(i));
+            }
+        } finally {
+            buffer.setPosition(saved);
+        }
+    }
+
+    private void appendTo(Column column) {
+        String name = column.getName();
+        int type = seek(name);
+        if (type == CjsonReader.NULL) {
+            column.appendNull();
+        } else if (column instanceof LongColumn) {
+            ((LongColumn) column).append(readLong(name, type));
+        } else if (column instanceof DoubleColumn) {
+            ((DoubleColumn) column).append(readDouble(name, type));
+        } else if (type == CjsonReader.STRING) {
+            ((StringColumn) column).append(buffer);
+        } else {
+            ((StringColumn) column).append(readString(name, type));
+        }
+    }
+
+    /**
+     * Moves the buffer position to the value of the root field.
+     *
+     * @return the type of the field value, {@link CjsonReader#NULL} if the field is absent
+     */
+    private int seek(String name) {
+        if (buffer == null) {
+            throw new IllegalStateException("No item to read");
+        }
+        if (!indexed) {
+            index();
+        }
+        int tagName = ctagMatcher.findIndex(name);
+        if (tagName == 0 || tagName >= generations.length || generations[tagName] != generation) {
+            return CjsonReader.NULL;
+        }
+        buffer.setPosition(positions[tagName]);
+        return types[tagName];
+    }
+
+    private void index() {
+        if (++generation == 0) {
+            Arrays.fill(generations, 0);
+            generation = 1;
+        }
+        buffer.setPosition(offset);
+        if (reader.readTag() != CjsonReader.OBJECT) {
+            throw new IllegalArgumentException("Read object is not an item");
+        }
+        for (int type = reader.readTag(); type != CjsonReader.END; type = reader.readTag()) {
+            int tagName = reader.getTagName();
+            if (tagName < generations.length) {
+                positions[tagName] = buffer.getPosition();
+                types[tagName] = type;
+                generations[tagName] = generation;
+            }
+            reader.skipValue(type);
+        }
+        indexed = true;
+    }
+
+    private long readLong(String name, int type) {
+        if (type == CjsonReader.VARINT) {
+            return reader.readVarInt();
+        } else if (type == CjsonReader.BOOL) {
+            return reader.readBool() ? 1L : 0L;
+        }
+        return type == CjsonReader.NULL ? 0L : readScalar(name, type).getAsLong();
+    }
+
+    private double readDouble(String name, int type) {
+        if (type == CjsonReader.DOUBLE) {
+            return reader.readDouble();
+        } else if (type == CjsonReader.FLOAT) {
+            return reader.readFloat();
+        }
+        return type == CjsonReader.NULL ? 0.0D : readScalar(name, type).getAsDouble();
+    }
+
+    private String readString(String name, int type) {
+        if (type == CjsonReader.STRING) {
+            return reader.readString();
+        }
+        return type == CjsonReader.NULL ? null : readScalar(name, type).getAsString();
+    }
+
+    private CjsonElement readScalar(String name, int type) {
+        if (type == CjsonReader.OBJECT || type == CjsonReader.ARRAY) {
+            throw new IllegalStateException(String.format("Field %s is not a scalar", name));
+        }
+        return reader.readElement(type);
+    }
+
+}
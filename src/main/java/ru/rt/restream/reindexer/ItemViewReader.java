@@ -0,0 +1,46 @@
+/*
+ * Copyright 2020-present Restream
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ru.rt.restream.reindexer;
+
+import ru.rt.restream.reindexer.binding.cproto.ByteBuffer;
+import ru.rt.restream.reindexer.binding.cproto.ItemReader;
+import ru.rt.restream.reindexer.binding.cproto.cjson.PayloadType;
+
+/**
+ * Positions the single {@link ItemView} over the item data of a result buffer, without copying the data.
+ */
+final class ItemViewReader implements ItemReader<ItemView> {
+
+    private final ItemView view;
+
+    ItemViewReader(PayloadType payloadType) {
+        view = new ItemView(payloadType);
+    }
+
+    @Override
+    public ItemView readItem(ByteBuffer buffer) {
+        view.reset(buffer, buffer.getPosition(), buffer.length() - buffer.getPosition());
+        return view;
+    }
+
+    @Override
+    public ItemView readItem(ByteBuffer buffer, int length) {
+        view.reset(buffer, buffer.getPosition(), length);
+        buffer.skip(length);
+        return view;
+    }
+
+}
@@ -0,0 +1,323 @@
+/*
+ * Copyright 2020-present Restream
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ru.rt.restream.reindexer;
+
+import ru.rt.restream.reindexer.binding.cproto.ByteBuffer;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A query, that is serialized once and executed many times with the different values of its parameters.
+ * <p>
+ * The query is built as usual, with {@link Query#param(String)} placeholders instead of the values, and is prepared
+ * by {@link Query#prepare()}. The serialized query bytes are kept with the positions of the parameters, so an
+ * execution only writes the bound values between the precomputed bytes.
+ * <pre>{@code
+ * PreparedQuery<Item> byName = db.query("items", Item.class)
+ *         .where("name", Query.Condition.EQ, Query.param("name"))
+ *         .prepare();
+ * List<Item> items = byName.bind("name", "first").toList();
+ * }</pre>
+ * A prepared query is thread-safe, the values are bound to a new {@link BoundQuery}, that is created for each
+ * execution. Preparing and executing it never changes the state of the prepared {@link Query}.
+ *
+ * @param <T> the item type
+ */
+public class PreparedQuery<T> {
+
+    private static final Object UNBOUND = new Object();
+
+    private final Query<T> query;
+
+    /**
+     * The indexes of the parameters in the bound values, by the parameter names.
+     */
+    private final Map<String, Integer> parameterIndexes;
+
+    private volatile Layout selectLayout;
+
+    private volatile Layout executableLayout;
+
+    PreparedQuery(Query<T> query) {
+        this.query = query;
+        int formatVersion = query.queryFormatVersion();
+        List<Slot> slots = new ArrayList<>();
+        List<ReindexerNamespace<?>> namespaces = new ArrayList<>();
+        byte[] bytes = query.buildSelectQueryBytes(formatVersion, slots, namespaces);
+        Map<String, Integer> indexes = new LinkedHashMap<>();
+        for (Slot slot : slots) {
+            indexes.putIfAbsent(slot.parameter.getName(), indexes.size());
+        }
+        parameterIndexes = Collections.unmodifiableMap(indexes);
+        selectLayout = new Layout(formatVersion, bytes, slots, parameterIndexes, namespaces);
+        executableLayout = createExecutableLayout(formatVersion);
+    }
+
+    /**
+     * Returns the names of the query parameters.
+     *
+     * @return the parameter names, in the order of their first appearance in the query
+     */
+    public List<String> getParameterNames() {
+        return new ArrayList<>(parameterIndexes.keySet());
+    }
+
+    /**
+     * Starts binding of the parameter values for an execution.
+     *
+     * @return the {@link BoundQuery} to bind the values to
+     */
+    public BoundQuery bind() {
+        return new BoundQuery();
+    }
+
+    /**
+     * Starts binding of the parameter values for an execution with the value of the parameter.
+     *
+     * @param name  the parameter name
+     * @param value the parameter value
+     * @return the {@link BoundQuery} for binding of another values
+     */
+    public BoundQuery bind(String name, Object value) {
+        return new BoundQuery().bind(name, value);
+    }
+
+    private Layout getSelectLayout() {
+        Layout layout = selectLayout;
+        int formatVersion = query.queryFormatVersion();
+        if (layout.formatVersion != formatVersion) {
+            synchronized (this) {
+                layout = selectLayout;
+                if (layout.formatVersion != formatVersion) {
+                    layout = createSelectLayout(formatVersion);
+                    selectLayout = layout;
+                }
+            }
+        }
+        return layout;
+    }
+
+    private Layout getExecutableLayout() {
+        Layout layout = executableLayout;
+        int formatVersion = query.queryFormatVersion();
+        if (layout.formatVersion != formatVersion) {
+            synchronized (this) {
+                layout = executableLayout;
+                if (layout.formatVersion != formatVersion) {
+                    layout = createExecutableLayout(formatVersion);
+                    executableLayout = layout;
+                }
+            }
+        }
+        return layout;
+    }
+
+    private Layout createSelectLayout(int formatVersion) {
+        List<Slot> slots = new ArrayList<>();
+        List<ReindexerNamespace<?>> namespaces = new ArrayList<>();
+        byte[] bytes = query.buildSelectQueryBytes(formatVersion, slots, namespaces);
+        return new Layout(formatVersion, bytes, slots, parameterIndexes, namespaces);
+    }
+
+    private Layout createExecutableLayout(int formatVersion) {
+        List<Slot> slots = new ArrayList<>();
+        byte[] bytes = query.toExecutableBytes(formatVersion, slots);
+        return new Layout(formatVersion, bytes, slots, parameterIndexes, Collections.emptyList());
+    }
+
+    private int getParameterIndex(String name) {
+        Integer index = parameterIndexes.get(name);
+        if (index == null) {
+            throw new IllegalArgumentException(String.format("Unknown query parameter '%s'", name));
+        }
+        return index;
+    }
+
+    /**
+     * The values of the parameters for an execution of the prepared query. Not thread-safe.
+     */
+    public class BoundQuery {
+
+        private final Object[] values = new Object[parameterIndexes.size()];
+
+        private BoundQuery() {
+            Arrays.fill(values, UNBOUND);
+        }
+
+        /**
+         * Binds the value of the parameter. The value of a condition parameter can be a single value,
+         * an array or a collection of values.
+         *
+         * @param name  the parameter name
+         * @param value the parameter value
+         * @return the {@link BoundQuery} for binding of another values
+         * @throws IllegalArgumentException if the query has no such parameter
+         */
+        public BoundQuery bind(String name, Object value) {
+            values[getParameterIndex(name)] = value;
+            return this;
+        }
+
+        /**
+         * Will execute query, and return slice of items.
+         *
+         * @return an iterator over a query result
+         */
+        public ResultIterator<T> execute() {
+            return execute(query.getNamespace().getItemClass());
+        }
+
+        /**
+         * Will execute query, and return slice of items.
+         *
+         * @param <S>       the item type
+         * @param itemClass the item class
+         * @return an iterator over a query result
+         */
+        public <S> ResultIterator<S> execute(Class<S> itemClass) {
+            Layout layout = getSelectLayout();
+            return query.execute(itemClass, layout.bind(values), layout.namespaces);
+        }
+
+        /**
+         * Will execute query, and return list of items.
+         *
+         * @return list of items
+         */
+        public List<T> toList() {
+            try (ResultIterator<T> iterator = execute()) {
+                List<T> result = new ArrayList<>();
+                while (iterator.hasNext()) {
+                    result.add(iterator.next());
+                }
+                return result;
+            }
+        }
+
+        /**
+         * Will execute query, and update fields in items, which matches query.
+         */
+        public void update() {
+            query.update(getExecutableLayout().bind(values));
+        }
+
+        /**
+         * Will execute query, and delete items, matches query.
+         */
+        public void delete() {
+            query.delete(getExecutableLayout().bind(values));
+        }
+
+    }
+
+    /**
+     * The serialized query bytes with the places of the parameter values.
+     */
+    private static final class Layout {
+
+        private final int formatVersion;
+
+        private final byte[] bytes;
+
+        private final Slot[] slots;
+
+        private final int[] indexes;
+
+        /**
+         * The namespaces of the select query in the order of their ids, empty for an update or a delete query.
+         */
+        private final List<ReindexerNamespace<?>> namespaces;
+
+        private Layout(int formatVersion, byte[] bytes, List<Slot> slots, Map<String, Integer> parameterIndexes,
+                       List<ReindexerNamespace<?>> namespaces) {
+            this.formatVersion = formatVersion;
+            this.bytes = bytes;
+            this.namespaces = namespaces;
+            this.slots = slots.toArray(new Slot[0]);
+            indexes = new int[this.slots.length];
+            for (int i = 0; i < indexes.length; i++) {
+                indexes[i] = parameterIndexes.get(this.slots[i].parameter.getName());
+            }
+        }
+
+        private byte[] bind(Object[] values) {
+            ByteBuffer buffer = new ByteBuffer(bytes.length + slots.length * 16);
+            int position = 0;
+            for (int i = 0; i < slots.length; i++) {
+                Slot slot = slots[i];
+                Object value = values[indexes[i]];
+                if (value == UNBOUND) {
+                    throw new IllegalStateException(String.format("Query parameter '%s' is not bound",
+                            slot.parameter.getName()));
+                }
+                buffer.writeBytes(bytes, position, slot.position - position);
+                position = slot.position;
+                if (slot.updateField != null) {
+                    Query.putUpdate(buffer, slot.updateField, value);
+                } else {
+                    Query.putValues(buffer, value);
+                }
+            }
+            buffer.writeBytes(bytes, position, bytes.length - position);
+            return buffer.bytes();
+        }
+
+    }
+
+    /**
+     * The place of a parameter value in the serialized query.
+     */
+    static final class Slot {
+
+        private final int position;
+
+        private final QueryParameter parameter;
+
+        /**
+         * The updated field name for a {@link Query#set(String, Object)} parameter, null for a condition parameter.
+         */
+        private final String updateField;
+
+        Slot(int position, QueryParameter parameter, String updateField) {
+            this.position = position;
+            this.parameter = parameter;
+            this.updateField = updateField;
+        }
+
+        int getPosition() {
+            return position;
+        }
+
+        QueryParameter getParameter() {
+            return parameter;
+        }
+
+        String getUpdateField() {
+            return updateField;
+        }
+
+        Slot moveBy(int offset) {
+            return new Slot(position + offset, parameter, updateField);
+        }
+
+    }
+
+}
@@ -25,6 +25,7 @@ import ru.rt.restream.reindexer.binding.RequestContext;
 import ru.rt.restream.reindexer.binding.TransactionContext;
 import ru.rt.restream.reindexer.binding.cproto.ByteBuffer;
 import ru.rt.restream.reindexer.binding.cproto.cjson.PayloadType;
+import ru.rt.restream.reindexer.column.ColumnSet;
 import ru.rt.restream.reindexer.expression.WhereExpression;
 import ru.rt.restream.reindexer.expression.Expression;
 import ru.rt.restream.reindexer.expression.SetExpression;
@@ -43,14 +44,10 @@ import java.util.Objects;
 import java.util.Optional;
 import java.util.Spliterator;
 import java.util.Spliterators;
+import java.util.function.Consumer;
 import java.util.stream.Stream;
 import java.util.stream.StreamSupport;
 
-import static ru.rt.restream.reindexer.QueryLogBuilder.AggregateType.AVG;
-import static ru.rt.restream.reindexer.QueryLogBuilder.AggregateType.DISTINCT;
-import static ru.rt.restream.reindexer.QueryLogBuilder.AggregateType.MAX;
-import static ru.rt.restream.reindexer.QueryLogBuilder.AggregateType.MIN;
-import static ru.rt.restream.reindexer.QueryLogBuilder.AggregateType.SUM;
 import static ru.rt.restream.reindexer.QueryLogBuilder.QueryType.DELETE;
 import static ru.rt.restream.reindexer.QueryLogBuilder.QueryType.SELECT;
 import static ru.rt.restream.reindexer.QueryLogBuilder.QueryType.UPDATE;
@@ -70,6 +67,7 @@ public class Query<T> {
 
     private static final Logger LOGGER = LoggerFactory.getLogger(Query.class);
     private static final int DEFAULT_FETCH_COUNT = 100;
+    private static final float DEFAULT_READ_AHEAD_THRESHOLD = 0.5f;
 
     private static final int OP_OR = 1;
     private static final int OP_AND = 2;
@@ -82,40 +80,41 @@ public class Query<T> {
     private static final int AGG_MAX = 4;
     private static final int AGG_DISTINCT = 5;
 
-    private static final int QUERY_CONDITION = 0;
-    private static final int QUERY_DISTINCT = 1;
-    private static final int QUERY_SORT_INDEX = 2;
-    private static final int QUERY_JOIN_ON = 3;
-    private static final int QUERY_LIMIT = 4;
-    private static final int QUERY_OFFSET = 5;
-    private static final int QUERY_REQ_TOTAL = 6;
-    private static final int QUERY_DEBUG_LEVEL = 7;
-    private static final int QUERY_AGGREGATION = 8;
-    private static final int QUERY_SELECT_FILTER = 9;
-    private static final int QUERY_SELECT_FUNCTION = 10;
-    private static final int QUERY_END = 11;
-    private static final int QUERY_EXPLAIN = 12;
-    private static final int QUERY_EQUAL_POSITION = 13;
-    private static final int QUERY_UPDATE_FIELD = 14;
-    private static final int QUERY_AGGREGATION_LIMIT = 15;
-    private static final int QUERY_AGGREGATION_OFFSET = 16;
-    private static final int QUERY_AGGREGATION_SORT = 17;
-    private static final int QUERY_OPEN_BRACKET = 18;
-    private static final int QUERY_CLOSE_BRACKET = 19;
-    private static final int QUERY_JOIN_CONDITION = 20;
-    private static final int QUERY_DROP_FIELD = 21;
-    private static final int QUERY_UPDATE_OBJECT = 22;
-    private static final int QUERY_WITH_RANK = 23;
-    private static final int QUERY_STRICT_MODE = 24;
-    private static final int QUERY_UPDATE_FIELD_V2 = 25;
-    private static final int QUERY_BETWEEN_FIELDS_CONDITION = 26;
-    private static final int QUERY_ALWAYS_FALSE_CONDITION = 27;
-    private static final int QUERY_ALWAYS_TRUE_CONDITION = 28;
-    private static final int QUERY_SUB_QUERY_CONDITION = 29;
-    private static final int QUERY_FIELD_SUB_QUERY_CONDITION = 30;
-    private static final int QUERY_LOCAL = 31;
-    private static final int QUERY_KNN_CONDITION = 32;
-    private static final int QUERY_EXPRESSION_CONDITION = 36;
+    // the tags of the serialized query entries, also read by QueryLogBuilder
+    static final int QUERY_CONDITION = 0;
+    static final int QUERY_DISTINCT = 1;
+    static final int QUERY_SORT_INDEX = 2;
+    static final int QUERY_JOIN_ON = 3;
+    static final int QUERY_LIMIT = 4;
+    static final int QUERY_OFFSET = 5;
+    static final int QUERY_REQ_TOTAL = 6;
+    static final int QUERY_DEBUG_LEVEL = 7;
+    static final int QUERY_AGGREGATION = 8;
+    static final int QUERY_SELECT_FILTER = 9;
+    static final int QUERY_SELECT_FUNCTION = 10;
+    static final int QUERY_END = 11;
+    static final int QUERY_EXPLAIN = 12;
+    static final int QUERY_EQUAL_POSITION = 13;
+    static final int QUERY_UPDATE_FIELD = 14;
+    static final int QUERY_AGGREGATION_LIMIT = 15;
+    static final int QUERY_AGGREGATION_OFFSET = 16;
+    static final int QUERY_AGGREGATION_SORT = 17;
+    static final int QUERY_OPEN_BRACKET = 18;
+    static final int QUERY_CLOSE_BRACKET = 19;
+    static final int QUERY_JOIN_CONDITION = 20;
+    static final int QUERY_DROP_FIELD = 21;
+    static final int QUERY_UPDATE_OBJECT = 22;
+    static final int QUERY_WITH_RANK = 23;
+    static final int QUERY_STRICT_MODE = 24;
+    static final int QUERY_UPDATE_FIELD_V2 = 25;
+    static final int QUERY_BETWEEN_FIELDS_CONDITION = 26;
+    static final int QUERY_ALWAYS_FALSE_CONDITION = 27;
+    static final int QUERY_ALWAYS_TRUE_CONDITION = 28;
+    static final int QUERY_SUB_QUERY_CONDITION = 29;
+    static final int QUERY_FIELD_SUB_QUERY_CONDITION = 30;
+    static final int QUERY_LOCAL = 31;
+    static final int QUERY_KNN_CONDITION = 32;
+    static final int QUERY_EXPRESSION_CONDITION = 36;
 
     /**
      * Condition types.
@@ -195,26 +194,59 @@ public class Query<T> {
 
     private int fetchCount = DEFAULT_FETCH_COUNT;
 
+    private int readAheadDepth;
+
+    private float readAheadThreshold = DEFAULT_READ_AHEAD_THRESHOLD;
+
+    private final List<String> selectFields = new ArrayList<>();
+
     private final List<Query<?>> joinQueries = new ArrayList<>();
 
     private final List<String> joinFields = new ArrayList<>();
 
     private final List<Query<?>> mergeQueries = new ArrayList<>();
 
-    private final List<ReindexerNamespace<?>> namespaces = new ArrayList<>();
+    /**
+     * The namespaces of the last executed query, replaced as a whole on each execution.
+     */
+    private volatile List<ReindexerNamespace<?>> namespaces = new ArrayList<>();
 
     private final Deque<Integer> openedBrackets = new ArrayDeque<>();
 
-    private final QueryLogBuilder logBuilder = new QueryLogBuilder();
+    /**
+     * The type of the last executed query, that is used by {@link #toString()}.
+     */
+    private QueryLogBuilder.QueryType logType = SELECT;
+
+    /**
+     * The places of {@link QueryParameter}s in the query buffer, in the order of their positions.
+     */
+    private final List<PreparedQuery.Slot> parameterSlots = new ArrayList<>();
 
     private int queryCount = 0;
 
+    /**
+     * The limit of the query items, -1 if it is not set.
+     */
+    private int limit = -1;
+
+    private int offset;
+
+    /**
+     * An indication that the query has a sort order.
+     */
+    private boolean sorted;
+
+    /**
+     * An indication that the query has a distinct aggregation, that also filters the query items.
+     */
+    private boolean distinct;
+
     private int joinType;
 
     private Query<?> root;
 
     Query(Reindexer reindexer, ReindexerNamespace<T> namespace, TransactionContext transactionContext) {
-        logBuilder.namespace(namespace.getName());
         this.reindexer = reindexer;
         this.namespace = namespace;
         this.transactionContext = transactionContext;
@@ -230,7 +262,7 @@ public class Query<T> {
      */
     public Query<T> select(String... fields) {
         for (String field : fields) {
-            logBuilder.select(field);
+            selectFields.add(field);
             buffer.putVarUInt32(QUERY_SELECT_FILTER).putVString(field);
         }
         return this;
@@ -311,7 +343,6 @@ public class Query<T> {
     }
 
     private <J> Query<T> join(Query<J> joinQuery, String field, int joinType) {
-        logBuilder.join(joinQuery.logBuilder, joinType);
         if (joinQuery.root != null) {
             throw new IllegalStateException("query.join call on already joined query. You should create new Query");
         }
@@ -341,7 +372,6 @@ public class Query<T> {
      * @return the {@link Query} for further customizations
      */
     public Query<T> on(String joinField, Condition condition, String joinIndex) {
-        logBuilder.on(nextOperation, joinField, condition.code, joinIndex);
         buffer.putVarUInt32(QUERY_JOIN_ON);
         buffer.putVarUInt32(nextOperation);
         buffer.putVarUInt32(condition.code);
@@ -358,7 +388,6 @@ public class Query<T> {
      * @return the {@link Query} for further customizations
      */
     public Query<T> merge(Query<T> mergeQuery) {
-        logBuilder.merge(mergeQuery.logBuilder);
         mergeQueries.add(mergeQuery);
         return this;
     }
@@ -418,7 +447,6 @@ public class Query<T> {
      * @return the {@link Query} for further customizations
      */
     public Query<T> where(String indexName, Condition condition, Object... values) {
-        logBuilder.where(nextOperation, indexName, condition.code, values);
         buffer.putVarUInt32(QUERY_CONDITION)
                 .putVString(indexName)
                 .putVarUInt32(nextOperation)
@@ -427,14 +455,62 @@ public class Query<T> {
         this.nextOperation = OP_AND;
         this.queryCount++;
 
-        buffer.putVarUInt32(values.length);
-        for (Object key : values) {
-            buffer.putValue(key);
+        if (!addParameterSlot(values)) {
+            putValues(buffer, values);
         }
 
         return this;
     }
 
+    /**
+     * Creates a placeholder of a value, that is bound to the {@link PreparedQuery} of this query.
+     * A parameter can be the only value of a {@code where} condition, then the bound value can be a single value,
+     * an array or a collection of values, or the value of {@link #set(String, Object)}.
+     *
+     * @param name the parameter name
+     * @return the parameter
+     * @see #prepare()
+     */
+    public static QueryParameter param(String name) {
+        return new QueryParameter(name);
+    }
+
+    private boolean addParameterSlot(Object[] values) {
+        for (Object value : values) {
+            if (value instanceof QueryParameter) {
+                if (values.length != 1) {
+                    throw new IllegalArgumentException("A query parameter must be the only value of a condition");
+                }
+                parameterSlots.add(new PreparedQuery.Slot(buffer.getPosition(), (QueryParameter) value, null));
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Writes the number of the values and the values of a condition.
+     * An array or a collection is written as the values it contains.
+     */
+    static void putValues(ByteBuffer buffer, Object value) {
+        if (value instanceof Collection<?>) {
+            Collection<?> values = (Collection<?>) value;
+            buffer.putVarUInt32(values.size());
+            for (Object key : values) {
+                buffer.putValue(key);
+            }
+        } else if (value instanceof Object[]) {
+            Object[] values = (Object[]) value;
+            buffer.putVarUInt32(values.length);
+            for (Object key : values) {
+                buffer.putValue(key);
+            }
+        } else {
+            buffer.putVarUInt32(1);
+            buffer.putValue(value);
+        }
+    }
+
     /**
      * Queries are possible only on the indexed fields, marked with reindex annotation.
      *
@@ -459,7 +535,6 @@ public class Query<T> {
      * @return the {@link Query} for further customizations
      */
     public Query<T> where(Query<?> subquery, Condition condition, Object... values) {
-        logBuilder.where(nextOperation, subquery, condition.code, values);
         buffer.putVarUInt32(QUERY_SUB_QUERY_CONDITION)
                 .putVarUInt32(nextOperation)
                 .putVBytes(subquery.bytes())
@@ -468,9 +543,8 @@ public class Query<T> {
         this.nextOperation = OP_AND;
         this.queryCount++;
 
-        buffer.putVarUInt32(values.length);
-        for (Object key : values) {
-            buffer.putValue(key);
+        if (!addParameterSlot(values)) {
+            putValues(buffer, values);
         }
 
         return this;
@@ -485,7 +559,6 @@ public class Query<T> {
      * @return the {@link Query} for further customizations
      */
     public Query<T> where(String indexName, Condition condition, Query<?> subquery) {
-        logBuilder.where(nextOperation, indexName, condition.code, subquery);
         buffer.putVarUInt32(QUERY_FIELD_SUB_QUERY_CONDITION)
                 .putVarUInt32(nextOperation)
                 .putVString(indexName)
@@ -526,8 +599,6 @@ public class Query<T> {
         Objects.requireNonNull(left, "left expression cannot be null");
         Objects.requireNonNull(right, "right expression cannot be null");
 
-        logBuilder.where(nextOperation, left, condition.code, right);
-
         buffer.putVarUInt32(QUERY_EXPRESSION_CONDITION);
 
         left.serializeWhere(buffer);
@@ -555,7 +626,6 @@ public class Query<T> {
      * @return the {@link Query} for further customizations
      */
     public Query<T> whereKnn(String indexName, float[] vector, KnnSearchParam params) {
-        logBuilder.whereKnn(nextOperation, indexName, vector, params);
         buffer.putVarUInt32(QUERY_KNN_CONDITION)
                 .putVString(indexName)
                 .putVarUInt32(nextOperation)
@@ -578,7 +648,6 @@ public class Query<T> {
      * @return the {@link Query} for further customizations
      */
     public Query<T> whereBetweenFields(String firstField, Condition condition, String secondField) {
-        logBuilder.whereBetweenFields(nextOperation, firstField, condition.code, secondField);
         buffer.putVarUInt32(QUERY_BETWEEN_FIELDS_CONDITION)
                 .putVarUInt32(nextOperation)
                 .putVString(firstField)
@@ -589,11 +658,20 @@ public class Query<T> {
         return this;
     }
 
+    /**
+     * Request the query execution plan, see {@link ResultIterator#getExplainResults()}.
+     *
+     * @return the {@link Query} for further customizations
+     */
+    public Query<T> explain() {
+        buffer.putVarUInt32(QUERY_EXPLAIN);
+        return this;
+    }
+
     /**
      * Request to return the rank value of each document in the query result.
      */
     public Query<T> withRank() {
-        logBuilder.withRank();
         buffer.putVarUInt32(QUERY_WITH_RANK);
         return this;
     }
@@ -604,7 +682,6 @@ public class Query<T> {
      * @return the {@link Query} for further customizations
      */
     public Query<T> openBracket() {
-        logBuilder.openBracket(nextOperation);
         buffer.putVarUInt32(QUERY_OPEN_BRACKET);
         buffer.putVarUInt32(nextOperation);
         nextOperation = OP_AND;
@@ -618,7 +695,6 @@ public class Query<T> {
      * @return the {@link Query} for further customizations
      */
     public Query<T> closeBracket() {
-        logBuilder.closeBracket();
         if (nextOperation != OP_AND) {
             throw new RuntimeException("Operation before close bracket");
         }
@@ -670,8 +746,8 @@ public class Query<T> {
      * @return the {@link Query} for further customizations
      */
     public Query<T> aggregateDistinct(String field) {
-        logBuilder.aggregate(DISTINCT, field);
         buffer.putVarUInt32(QUERY_AGGREGATION).putVarUInt32(AGG_DISTINCT).putVarUInt32(1).putVString(field);
+        distinct = true;
         return this;
     }
 
@@ -682,7 +758,6 @@ public class Query<T> {
      * @return the {@link Query} for further customizations
      */
     public Query<T> aggregateSum(String field) {
-        logBuilder.aggregate(SUM, field);
         buffer.putVarUInt32(QUERY_AGGREGATION).putVarUInt32(AGG_SUM).putVarUInt32(1).putVString(field);
         return this;
     }
@@ -694,7 +769,6 @@ public class Query<T> {
      * @return the {@link Query} for further customizations
      */
     public Query<T> aggregateAvg(String field) {
-        logBuilder.aggregate(AVG, field);
         buffer.putVarUInt32(QUERY_AGGREGATION).putVarUInt32(AGG_AVG).putVarUInt32(1).putVString(field);
         return this;
     }
@@ -706,7 +780,6 @@ public class Query<T> {
      * @return the {@link Query} for further customizations
      */
     public Query<T> aggregateMin(String field) {
-        logBuilder.aggregate(MIN, field);
         buffer.putVarUInt32(QUERY_AGGREGATION).putVarUInt32(AGG_MIN).putVarUInt32(1).putVString(field);
         return this;
     }
@@ -718,7 +791,6 @@ public class Query<T> {
      * @return the {@link Query} for further customizations
      */
     public Query<T> aggregateMax(String field) {
-        logBuilder.aggregate(MAX, field);
         buffer.putVarUInt32(QUERY_AGGREGATION).putVarUInt32(AGG_MAX).putVarUInt32(1).putVString(field);
         return this;
     }
@@ -733,7 +805,6 @@ public class Query<T> {
      */
     public AggregationFacetRequest aggregateFacet(String... fields) {
         AggregationFacetRequest facet = new AggregationFacetRequest();
-        logBuilder.aggregate(facet, fields);
         buffer.putVarUInt32(QUERY_AGGREGATION).putVarUInt32(AGG_FACET).putVarUInt32(fields.length);
         for (String field : fields) {
             buffer.putVString(field);
@@ -753,7 +824,6 @@ public class Query<T> {
          * @return the {@link AggregationFacetRequest} for further customizations
          */
         public AggregationFacetRequest limit(int limit) {
-            logBuilder.facetLimit(this, limit);
             buffer.putVarUInt32(QUERY_AGGREGATION_LIMIT).putVarUInt32(limit);
             return this;
         }
@@ -765,7 +835,6 @@ public class Query<T> {
          * @return the {@link AggregationFacetRequest} for further customizations
          */
         public AggregationFacetRequest offset(int offset) {
-            logBuilder.facetOffset(this, offset);
             buffer.putVarUInt32(QUERY_AGGREGATION_OFFSET).putVarUInt32(offset);
             return this;
         }
@@ -778,7 +847,6 @@ public class Query<T> {
          * @return the {@link AggregationFacetRequest} for further customizations
          */
         public AggregationFacetRequest sort(String field, boolean desc) {
-            logBuilder.facetSort(this, field, desc);
             buffer.putVarUInt32(QUERY_AGGREGATION_SORT).putVString(field);
             if (desc) {
                 buffer.putVarUInt32(1);
@@ -797,7 +865,6 @@ public class Query<T> {
      * @return the {@link Query} for further customizations
      */
     public Query<T> reqTotal() {
-        logBuilder.reqTotal();
         buffer.putVarUInt32(QUERY_REQ_TOTAL)
                 .putVarUInt32(MODE_ACCURATE_TOTAL);
         return this;
@@ -812,9 +879,9 @@ public class Query<T> {
      */
     public Query<T> limit(int limit) {
         if (limit >= 0) {
-            logBuilder.limit(limit);
             buffer.putVarUInt32(QUERY_LIMIT)
                     .putVarUInt32(limit);
+            this.limit = limit;
         }
         return this;
     }
@@ -827,9 +894,9 @@ public class Query<T> {
      */
     public Query<T> offset(int offset) {
         if (offset > 0) {
-            logBuilder.offset(offset);
             buffer.putVarUInt32(QUERY_OFFSET)
                     .putVarUInt32(offset);
+            this.offset = offset;
         }
         return this;
     }
@@ -845,7 +912,6 @@ public class Query<T> {
      * @return the {@link Query} for further customizations
      */
     public Query<T> sort(String index, boolean desc, Object... values) {
-        logBuilder.sort(index, desc, values);
         buffer.putVarUInt32(QUERY_SORT_INDEX)
                 .putVString(index);
         if (desc) {
@@ -858,6 +924,7 @@ public class Query<T> {
         for (Object value : values) {
             buffer.putValue(value);
         }
+        sorted = true;
 
         return this;
     }
@@ -874,6 +941,40 @@ public class Query<T> {
         return this;
     }
 
+    /**
+     * Enables read-ahead of the results fetched by {@link #fetchCount(int)} items. Once half of a page is read,
+     * the next pages are requested asynchronously, up to depth pages in advance.
+     *
+     * @param depth the number of pages to request in advance, 0 disables read-ahead
+     * @return the {@link Query} for further customizations
+     * @see #readAhead(int, float)
+     */
+    public Query<T> readAhead(int depth) {
+        return readAhead(depth, DEFAULT_READ_AHEAD_THRESHOLD);
+    }
+
+    /**
+     * Enables read-ahead of the results fetched by {@link #fetchCount(int)} items. Once the given fraction of a page
+     * is read, the next pages are requested asynchronously, up to depth pages in advance, so that reading the results
+     * does not wait for a round trip per page. The pages that are not read are released when the iterator is closed.
+     * Has effect for the cproto binding only.
+     *
+     * @param depth     the number of pages to request in advance, 0 disables read-ahead
+     * @param threshold the fraction of a page in range [0, 1] to read before requesting the next pages
+     * @return the {@link Query} for further customizations
+     */
+    public Query<T> readAhead(int depth, float threshold) {
+        if (depth < 0) {
+            throw new IllegalArgumentException("Read-ahead depth cannot be negative");
+        }
+        if (!(threshold >= 0 && threshold <= 1)) {
+            throw new IllegalArgumentException("Read-ahead threshold must be in range [0, 1]");
+        }
+        readAheadDepth = depth;
+        readAheadThreshold = threshold;
+        return this;
+    }
+
     /**
      * Will execute query, and return stream of items.
      * The returned stream must be closed using the {@link Stream#close()} method or
@@ -945,14 +1046,24 @@ public class Query<T> {
     }
 
     /**
-     * Will execute query, and return count of items.
+     * Will execute query, and return count of items. The items are not transferred, the count is calculated by
+     * the server, unless the query has merged queries or a distinct aggregation.
      *
      * @return count of items
      */
     public long count() {
-        try (ResultIterator<T> iterator = execute()) {
-            return iterator.size();
+        if (!mergeQueries.isEmpty() || distinct) {
+            try (ResultIterator<T> iterator = execute()) {
+                return iterator.size();
+            }
         }
+        ByteBuffer tags = new ByteBuffer(8)
+                .putVarUInt32(QUERY_REQ_TOTAL)
+                .putVarUInt32(MODE_ACCURATE_TOTAL)
+                .putVarUInt32(QUERY_LIMIT)
+                .putVarUInt32(0);
+        long count = Math.max(executeWithoutItems(tags.bytes()).getTotalCount() - offset, 0);
+        return limit >= 0 ? Math.min(count, limit) : count;
     }
 
     /**
@@ -970,11 +1081,101 @@ public class Query<T> {
      * @return true if the item exists
      */
     public boolean exists() {
-        try (ResultIterator<T> iterator = execute()) {
-            return iterator.hasNext();
+        ByteBuffer tags = new ByteBuffer(4)
+                .putVarUInt32(QUERY_LIMIT)
+                .putVarUInt32(limit >= 0 ? Math.min(limit, 1) : 1);
+        return executeWithoutItems(tags.bytes()).getQCount() > 0;
+    }
+
+    /**
+     * Executes the select query with the tags appended to it and closes the result. The result is requested as JSON,
+     * so the payload types of the namespaces are not transferred.
+     */
+    private QueryResult executeWithoutItems(byte[] tags) {
+        ensureNoParameters();
+        List<ReindexerNamespace<?>> queryNamespaces = new ArrayList<>();
+        byte[] queryData = buildSelectQueryBytes(reindexer.getBinding().queryFormatVersion(), null, queryNamespaces,
+                tags);
+        long[] payloadTypeVersions = getPayloadTypeVersions(queryNamespaces);
+
+        SlowQueryLog slowQueryLog = reindexer.getSlowQueryLog();
+        long start = slowQueryLog.start();
+        RequestContext requestContext = transactionContext != null
+                ? transactionContext.selectQuery(queryData, fetchCount, payloadTypeVersions, true)
+                : reindexer.getBinding().selectQuery(queryData, fetchCount, payloadTypeVersions, true);
+        try {
+            QueryResult queryResult = requestContext.getQueryResult();
+            slowQueryLog.record(this, SELECT, start, queryResult);
+            return queryResult;
+        } finally {
+            requestContext.closeResults();
         }
     }
 
+    /**
+     * Will scroll the query items by pages, ordered by the field, with the keyset pagination, see {@link Scroll}.
+     * The field must be a unique non-null scalar field of the item, like the primary key, otherwise the items with
+     * the same field value on the border of two pages are skipped. The query itself must not have a sort order,
+     * a limit or an offset, and it is not modified by the scroll.
+     *
+     * @param field    the json name of the field to order the items by
+     * @param pageSize the number of the items of a page
+     * @return the scroll over the query pages
+     */
+    public Scroll<T> scroll(String field, int pageSize) {
+        return scroll(field, pageSize, null);
+    }
+
+    /**
+     * Will resume scrolling the query items from the cursor of a previous scroll, see {@link #scroll(String, int)}.
+     *
+     * @param field    the json name of the field to order the items by
+     * @param pageSize the number of the items of a page
+     * @param cursor   the cursor, returned by {@link Scroll#getCursor()}, null to scroll from the first item
+     * @return the scroll over the query pages
+     * @throws IllegalArgumentException if the cursor is not a cursor of the field
+     */
+    public Scroll<T> scroll(String field, int pageSize, String cursor) {
+        if (pageSize <= 0) {
+            throw new IllegalArgumentException("Page size must be positive");
+        }
+        if (sorted || limit >= 0 || offset > 0) {
+            throw new IllegalStateException("A scrolled query cannot have a sort order, a limit or an offset");
+        }
+        ensureNoParameters();
+        return new Scroll<>(this, namespace.getItemClass(), field, pageSize, cursor);
+    }
+
+    /**
+     * Executes the page of a scroll, the items with the field value greater than the key, ordered by the field.
+     */
+    List<T> executePage(String field, Object key, int pageSize) {
+        ByteBuffer tags = new ByteBuffer();
+        if (key != null) {
+            tags.putVarUInt32(QUERY_CONDITION)
+                    .putVString(field)
+                    .putVarUInt32(OP_AND)
+                    .putVarUInt32(Condition.GT.code);
+            putValues(tags, new Object[]{key});
+        }
+        tags.putVarUInt32(QUERY_SORT_INDEX)
+                .putVString(field)
+                .putVarUInt32(0)
+                .putVarUInt32(0)
+                .putVarUInt32(QUERY_LIMIT)
+                .putVarUInt32(pageSize);
+        List<ReindexerNamespace<?>> queryNamespaces = new ArrayList<>();
+        byte[] queryData = buildSelectQueryBytes(reindexer.getBinding().queryFormatVersion(), null, queryNamespaces,
+                tags.bytes());
+        List<T> items = new ArrayList<>();
+        try (ResultIterator<T> iterator = execute(namespace.getItemClass(), queryData, queryNamespaces)) {
+            while (iterator.hasNext()) {
+                items.add(iterator.next());
+            }
+        }
+        return items;
+    }
+
     /**
      * Will execute query, and return slice of items.
      *
@@ -993,15 +1194,81 @@ public class Query<T> {
      */
     public <S> ResultIterator<S> execute(Class<S> itemClass) {
         byte[] queryData = buildSelectQueryBytes();
-        long[] payloadTypeVersions = getPayloadTypeVersions();
+        return execute(itemClass, queryData, namespaces);
+    }
 
+    /**
+     * Executes the serialized select query, whose namespaces are in the order of the query namespace ids.
+     */
+    <S> ResultIterator<S> execute(Class<S> itemClass, byte[] queryData, List<ReindexerNamespace<?>> queryNamespaces) {
+        long[] payloadTypeVersions = getPayloadTypeVersions(queryNamespaces);
+
+        SlowQueryLog slowQueryLog = reindexer.getSlowQueryLog();
+        long start = slowQueryLog.start();
         RequestContext requestContext = transactionContext != null
                 ? transactionContext.selectQuery(queryData, fetchCount, payloadTypeVersions, false)
                 : reindexer.getBinding().selectQuery(queryData, fetchCount, payloadTypeVersions, false);
+        slowQueryLog.record(this, SELECT, start, requestContext.getQueryResult());
+
+        updatePayloadTypes(requestContext.getQueryResult(), queryNamespaces);
+
+        return new QueryResultIterator<>(namespace, itemClass, requestContext, this, queryNamespaces, fetchCount,
+                readAheadDepth, readAheadThreshold);
+    }
+
+    /**
+     * Will execute query, and return slice of item views. The returned {@link ItemView} is the same instance
+     * for all items, it decodes the fields of the current item on demand and is valid until the next item is read.
+     *
+     * @return an iterator over a query result
+     */
+    public ResultIterator<ItemView> executeViews() {
+        return execute(ItemView.class);
+    }
 
-        updatePayloadTypes(requestContext.getQueryResult());
+    /**
+     * Will execute query, and return the values of the specified root fields of all items as columns.
+     * The values are appended to the columns straight from the result pages, no item objects are created.
+     *
+     * @param fields the json names of the fields, see {@link ColumnSet#of(Class, String...)}
+     * @return the columns of the fields
+     */
+    public ColumnSet executeColumns(String... fields) {
+        ColumnSet columns = ColumnSet.of(namespace.getItemClass(), fields);
+        try (ResultIterator<ItemView> iterator = executeViews()) {
+            while (iterator.hasNext()) {
+                iterator.next().appendTo(columns);
+            }
+        }
+        return columns;
+    }
 
-        return new QueryResultIterator<>(namespace, itemClass, requestContext, this, fetchCount);
+    /**
+     * Will execute query, and pass the values of the specified root fields to the consumer by chunks of columns.
+     * The same {@link ColumnSet} is cleared and refilled for each chunk, so the consumer must not keep it,
+     * the codes of the string values are valid within a chunk only.
+     *
+     * @param chunkSize the max number of the rows of a chunk
+     * @param consumer  the consumer of the chunks
+     * @param fields    the json names of the fields, see {@link ColumnSet#of(Class, String...)}
+     */
+    public void executeColumns(int chunkSize, Consumer<ColumnSet> consumer, String... fields) {
+        if (chunkSize <= 0) {
+            throw new IllegalArgumentException("Chunk size must be positive");
+        }
+        ColumnSet columns = ColumnSet.of(namespace.getItemClass(), fields);
+        try (ResultIterator<ItemView> iterator = executeViews()) {
+            while (iterator.hasNext()) {
+                iterator.next().appendTo(columns);
+                if (columns.size() == chunkSize) {
+                    consumer.accept(columns);
+                    columns.clear();
+                }
+            }
+        }
+        if (columns.size() > 0) {
+            consumer.accept(columns);
+        }
     }
 
     /**
@@ -1011,17 +1278,21 @@ public class Query<T> {
      */
     public QueryResultJsonIterator executeToJson() {
         byte[] queryData = buildSelectQueryBytes();
-        long[] payloadTypeVersions = getPayloadTypeVersions();
+        List<ReindexerNamespace<?>> queryNamespaces = namespaces;
+        long[] payloadTypeVersions = getPayloadTypeVersions(queryNamespaces);
 
+        SlowQueryLog slowQueryLog = reindexer.getSlowQueryLog();
+        long start = slowQueryLog.start();
         RequestContext requestContext = transactionContext != null
                 ? transactionContext.selectQuery(queryData, fetchCount, payloadTypeVersions, true)
                 : reindexer.getBinding().selectQuery(queryData, fetchCount, payloadTypeVersions, true);
 
         QueryResult queryResult = requestContext.getQueryResult();
+        slowQueryLog.record(this, SELECT, start, queryResult);
 
-        updatePayloadTypes(queryResult);
+        updatePayloadTypes(queryResult, queryNamespaces);
 
-        return new QueryResultJsonIterator(requestContext, fetchCount);
+        return new QueryResultJsonIterator(requestContext, fetchCount, readAheadDepth, readAheadThreshold);
     }
 
     /**
@@ -1042,7 +1313,7 @@ public class Query<T> {
         }
     }
 
-    private void updatePayloadTypes(QueryResult queryResult) {
+    private static void updatePayloadTypes(QueryResult queryResult, List<ReindexerNamespace<?>> namespaces) {
         for (PayloadType payloadType : queryResult.getPayloadTypes()) {
             ReindexerNamespace<?> namespace = namespaces.get((int) payloadType.getNamespaceId());
             PayloadType currentPayloadType = namespace.getPayloadType();
@@ -1054,35 +1325,60 @@ public class Query<T> {
     }
 
     private byte[] buildSelectQueryBytes() {
-        logBuilder.type(SELECT);
+        ensureNoParameters();
+        logType = SELECT;
+        List<ReindexerNamespace<?>> queryNamespaces = new ArrayList<>();
+        byte[] queryData = buildSelectQueryBytes(reindexer.getBinding().queryFormatVersion(), null, queryNamespaces,
+                null);
+        namespaces = queryNamespaces;
+        return queryData;
+    }
+
+    /**
+     * Builds the select query, collecting the slots of its parameters if the slots list is not null. The namespaces
+     * of the query are added to the target namespaces, the state of the query is not changed.
+     */
+    byte[] buildSelectQueryBytes(int formatVersion, List<PreparedQuery.Slot> slots,
+                                 List<ReindexerNamespace<?>> targetNamespaces) {
+        return buildSelectQueryBytes(formatVersion, slots, targetNamespaces, null);
+    }
+
+    /**
+     * Builds the select query with the tags, if they are not null, appended to the tags of the query. The namespaces
+     * of the query are added to the target namespaces, the state of the query is not changed.
+     */
+    private byte[] buildSelectQueryBytes(int formatVersion, List<PreparedQuery.Slot> slots,
+                                         List<ReindexerNamespace<?>> targetNamespaces, byte[] tags) {
         if (LOGGER.isDebugEnabled()) {
-            debug();
-            LOGGER.debug(logBuilder.getSql());
+            LOGGER.debug(getSql(SELECT));
         }
 
-        namespaces.clear();
-        namespaces.add(namespace);
+        targetNamespaces.add(namespace);
 
         for (Query<?> mergeQuery : mergeQueries) {
-            namespaces.add(mergeQuery.namespace);
+            targetNamespaces.add(mergeQuery.namespace);
         }
 
-        int formatVersion = reindexer.getBinding().queryFormatVersion();
         ensureNoMergeNestedInJoin();
         ByteBuffer queryBuffer = new ByteBuffer(getQueryBytes(formatVersion));
+        addParameterSlots(slots, this, 0, formatVersion);
+        if (tags != null) {
+            queryBuffer.writeBytes(tags);
+        }
+        putDebugLevel(queryBuffer);
         queryBuffer.putVarUInt32(QUERY_END);
         if (formatVersion == QUERY_FORMAT_V2) {
-            appendJoinQueries(queryBuffer, namespaces, formatVersion);
-            appendMergeQueries(queryBuffer, namespaces, formatVersion);
+            appendJoinQueries(queryBuffer, targetNamespaces, formatVersion, slots);
+            appendMergeQueries(queryBuffer, targetNamespaces, formatVersion, slots);
         } else {
-            appendJoinQueriesV1(queryBuffer, true);
-            appendMergeQueriesV1(queryBuffer);
+            appendJoinQueriesV1(queryBuffer, targetNamespaces, slots);
+            appendMergeQueriesV1(queryBuffer, targetNamespaces, slots);
         }
 
         return queryBuffer.bytes();
     }
 
-    private long[] getPayloadTypeVersions() {
+    private static long[] getPayloadTypeVersions(List<ReindexerNamespace<?>> namespaces) {
         return namespaces.stream()
                 .map(ReindexerNamespace::getPayloadType)
                 .mapToLong(pt -> pt == null ? 0 : (pt.getVersion() ^ pt.getStateToken()))
@@ -1093,16 +1389,22 @@ public class Query<T> {
      * Will execute query, and delete items, matches query.
      */
     public void delete() {
-        logBuilder.type(DELETE);
+        logType = DELETE;
         if (LOGGER.isDebugEnabled()) {
-            debug();
-            LOGGER.debug(logBuilder.getSql());
+            LOGGER.debug(getSql(DELETE));
         }
+        delete(toExecutableBytes());
+    }
+
+    void delete(byte[] queryData) {
+        SlowQueryLog slowQueryLog = reindexer.getSlowQueryLog();
+        long start = slowQueryLog.start();
         if (transactionContext != null) {
-            transactionContext.deleteQuery(toExecutableBytes());
+            transactionContext.deleteQuery(queryData);
         } else {
-            reindexer.getBinding().deleteQuery(toExecutableBytes());
+            reindexer.getBinding().deleteQuery(queryData);
         }
+        slowQueryLog.record(this, DELETE, start, null);
     }
 
     /**
@@ -1113,11 +1415,30 @@ public class Query<T> {
      * @return the {@link Query} for further customizations
      */
     public Query<T> set(String fieldName, Object value) {
+        if (value instanceof QueryParameter) {
+            parameterSlots.add(new PreparedQuery.Slot(buffer.getPosition(), (QueryParameter) value, fieldName));
+            return this;
+        }
         if (!isPrimitive(value)) {
             setObject(fieldName, value);
             return this;
         }
-        logBuilder.set(fieldName, value);
+        putUpdateField(buffer, fieldName, value);
+        return this;
+    }
+
+    /**
+     * Writes the update field request, the same as {@link #set(String, Object)} does.
+     */
+    static void putUpdate(ByteBuffer buffer, String fieldName, Object value) {
+        if (isPrimitive(value)) {
+            putUpdateField(buffer, fieldName, value);
+        } else {
+            putUpdateObject(buffer, fieldName, toJsons(value), isArray(value));
+        }
+    }
+
+    private static void putUpdateField(ByteBuffer buffer, String fieldName, Object value) {
         int cmd = QUERY_UPDATE_FIELD;
         if (value instanceof Collection<?>) { //Not tested
             Collection<?> values = (Collection<?>) value;
@@ -1156,8 +1477,6 @@ public class Query<T> {
             buffer.putVarUInt32(0);
             buffer.putValue(value);
         }
-
-        return this;
     }
 
     /**
@@ -1174,7 +1493,6 @@ public class Query<T> {
     public Query<T> setExpression(String fieldName, SetExpression expression) {
         Objects.requireNonNull(expression, "expression cannot be null");
 
-        logBuilder.set(fieldName, expression);
 
         buffer.putVarUInt32(QUERY_UPDATE_FIELD);
         buffer.putVString(fieldName);
@@ -1185,37 +1503,33 @@ public class Query<T> {
     }
 
     private void setObject(String fieldName, Object value) {
-        boolean isArray = false;
-        int count = 1;
+        putUpdateObject(buffer, fieldName, toJsons(value), isArray(value));
+    }
+
+    private static boolean isArray(Object value) {
+        return value.getClass().isArray() || value instanceof Collection<?>;
+    }
+
+    private static List<String> toJsons(Object value) {
         List<String> jsons = new ArrayList<>();
         if (value.getClass().isArray()) {
-            isArray = true;
-            Object[] array = (Object[]) value;
-            count = array.length;
-            for (Object element : array) {
-                String json = JsonSerializer.toJson(element);
-                jsons.add(json);
+            for (Object element : (Object[]) value) {
+                jsons.add(JsonSerializer.toJson(element));
             }
         } else if (value instanceof Collection<?>) {
-            isArray = true;
-            Collection<?> collection = (Collection<?>) value;
-            count = collection.size();
-            for (Object element : collection) {
-                String json = JsonSerializer.toJson(element);
-                jsons.add(json);
+            for (Object element : (Collection<?>) value) {
+                jsons.add(JsonSerializer.toJson(element));
             }
         } else {
-            String json = JsonSerializer.toJson(value);
-            jsons.add(json);
-        }
-        if (isArray) {
-            logBuilder.setObject(fieldName, jsons);
-        } else {
-            logBuilder.setObject(fieldName, jsons.get(0));
+            jsons.add(JsonSerializer.toJson(value));
         }
+        return jsons;
+    }
+
+    private static void putUpdateObject(ByteBuffer buffer, String fieldName, List<String> jsons, boolean isArray) {
         buffer.putVarUInt32(QUERY_UPDATE_OBJECT);
         buffer.putVString(fieldName);
-        buffer.putVarUInt32(count);
+        buffer.putVarUInt32(jsons.size());
         buffer.putVarUInt32(isArray ? 1 : 0);
         for (String json : jsons) {
             buffer.putVarUInt32(0);
@@ -1224,7 +1538,7 @@ public class Query<T> {
         }
     }
 
-    private boolean isPrimitive(Object value) {
+    private static boolean isPrimitive(Object value) {
         if (value instanceof Collection<?>) {
             Collection<?> collection = (Collection<?>) value;
             if (collection.isEmpty()) {
@@ -1256,35 +1570,66 @@ public class Query<T> {
      * @return the {@link Query} for further customizations
      */
     public Query<T> drop(String field) {
-        logBuilder.drop(field);
         buffer.putVarUInt32(QUERY_DROP_FIELD);
         buffer.putVString(field);
         return this;
     }
 
-    private Query<T> debug() {
-        buffer.putVarUInt32(QUERY_DEBUG_LEVEL).putVarUInt32(4); //4 - TRACE
-        return this;
+    /**
+     * Writes the trace debug level of the query to the serialized query, if the debug logging is enabled.
+     */
+    private static void putDebugLevel(ByteBuffer queryBuffer) {
+        if (LOGGER.isDebugEnabled()) {
+            queryBuffer.putVarUInt32(QUERY_DEBUG_LEVEL).putVarUInt32(4); //4 - TRACE
+        }
     }
 
     /**
      * Will execute query, and update fields in items, which matches query.
      */
     public void update() {
-        logBuilder.type(UPDATE);
+        logType = UPDATE;
         if (LOGGER.isDebugEnabled()) {
-            debug();
-            LOGGER.debug(logBuilder.getSql());
+            LOGGER.debug(getSql(UPDATE));
         }
+        update(toExecutableBytes());
+    }
+
+    void update(byte[] queryData) {
+        SlowQueryLog slowQueryLog = reindexer.getSlowQueryLog();
+        long start = slowQueryLog.start();
         if (transactionContext != null) {
-            transactionContext.updateQuery(toExecutableBytes());
+            transactionContext.updateQuery(queryData);
         } else {
             // There are no support for inner joins for update-queries in Java binding,
             // so we are using single pt version
             PayloadType pt = namespace.getPayloadType();
             long tmVersion = pt == null ? 0 : (pt.getVersion() ^ pt.getStateToken());
-            reindexer.getBinding().updateQuery(toExecutableBytes(), new long[]{tmVersion});
+            reindexer.getBinding().updateQuery(queryData, new long[]{tmVersion});
         }
+        slowQueryLog.record(this, UPDATE, start, null);
+    }
+
+    /**
+     * Prepares the query for the repeated execution. The query is serialized once, and the values of its
+     * {@link #param(String) parameters} are bound to the serialized bytes on each execution.
+     * The query must not be modified after it is prepared.
+     *
+     * @return the prepared query
+     */
+    public PreparedQuery<T> prepare() {
+        return new PreparedQuery<>(this);
+    }
+
+    int queryFormatVersion() {
+        return reindexer.getBinding().queryFormatVersion();
+    }
+
+    /**
+     * Return the fields, selected by {@link #select(String...)}.
+     */
+    public List<String> getSelectFields() {
+        return selectFields;
     }
 
     /**
@@ -1328,7 +1673,38 @@ public class Query<T> {
      * @return SQL-like representation of reindexer query
      */
     String getSql() {
-        return logBuilder.getSql();
+        return getSql(logType);
+    }
+
+    /**
+     * Get constructed sql log string of the given type of the query.
+     *
+     * @param type type of query (select, update, etc.)
+     * @return SQL-like representation of reindexer query
+     */
+    String getSql(QueryLogBuilder.QueryType type) {
+        return QueryLogBuilder.getSql(this, type);
+    }
+
+    /**
+     * Returns a copy of the bytes of this query, without joined and merged queries.
+     */
+    byte[] getBufferBytes() {
+        return buffer.bytes();
+    }
+
+    /**
+     * Returns the places of the {@link QueryParameter}s in the bytes of this query.
+     */
+    List<PreparedQuery.Slot> getParameterSlots() {
+        return parameterSlots;
+    }
+
+    /**
+     * Returns the join type of a joined query.
+     */
+    int getJoinType() {
+        return joinType;
     }
 
     public byte[] bytes() {
@@ -1336,6 +1712,7 @@ public class Query<T> {
     }
 
     private byte[] toSubQueryBytes(int formatVersion) {
+        ensureNoParameters();
         if (!joinQueries.isEmpty()) {
             throw new IllegalStateException("Join cannot be in subquery");
         }
@@ -1353,15 +1730,24 @@ public class Query<T> {
     }
 
     private byte[] toExecutableBytes() {
-        int formatVersion = reindexer.getBinding().queryFormatVersion();
+        ensureNoParameters();
+        return toExecutableBytes(reindexer.getBinding().queryFormatVersion(), null);
+    }
+
+    /**
+     * Builds the update or delete query, collecting the slots of its parameters if the slots list is not null.
+     */
+    byte[] toExecutableBytes(int formatVersion, List<PreparedQuery.Slot> slots) {
         ensureNoMergeNestedInJoin();
         ByteBuffer queryBuffer = new ByteBuffer(getQueryBytes(formatVersion));
+        addParameterSlots(slots, this, 0, formatVersion);
+        putDebugLevel(queryBuffer);
         queryBuffer.putVarUInt32(QUERY_END);
         if (formatVersion == QUERY_FORMAT_V2) {
-            appendJoinQueries(queryBuffer, new ArrayList<>(), formatVersion);
-            appendMergeQueries(queryBuffer, new ArrayList<>(), formatVersion);
+            appendJoinQueries(queryBuffer, new ArrayList<>(), formatVersion, slots);
+            appendMergeQueries(queryBuffer, new ArrayList<>(), formatVersion, slots);
         } else {
-            appendJoinQueriesV1(queryBuffer, false);
+            appendJoinQueriesV1(queryBuffer, new ArrayList<>(), slots);
         }
         return queryBuffer.bytes();
     }
@@ -1378,58 +1764,105 @@ public class Query<T> {
         return Arrays.copyOfRange(queryBytes, 1, queryBytes.length);
     }
 
-    private void appendJoinQueries(ByteBuffer target, List<ReindexerNamespace<?>> targetNamespaces, int formatVersion) {
+    private void appendJoinQueries(ByteBuffer target, List<ReindexerNamespace<?>> targetNamespaces, int formatVersion,
+                                   List<PreparedQuery.Slot> slots) {
         target.putVarUInt32(joinQueries.size());
         for (Query<?> joinQuery : joinQueries) {
-            appendQuery(target, joinQuery, joinQuery.joinType, targetNamespaces, formatVersion);
+            appendQuery(target, joinQuery, joinQuery.joinType, targetNamespaces, formatVersion, slots);
         }
     }
 
-    private void appendMergeQueries(ByteBuffer target, List<ReindexerNamespace<?>> targetNamespaces, int formatVersion) {
+    private void appendMergeQueries(ByteBuffer target, List<ReindexerNamespace<?>> targetNamespaces, int formatVersion,
+                                    List<PreparedQuery.Slot> slots) {
         target.putVarUInt32(mergeQueries.size());
         for (Query<?> mergeQuery : mergeQueries) {
-            appendQuery(target, mergeQuery, MERGE, targetNamespaces, formatVersion);
+            appendQuery(target, mergeQuery, MERGE, targetNamespaces, formatVersion, slots);
         }
     }
 
     private void appendQuery(ByteBuffer target, Query<?> query, int queryJoinType,
-                             List<ReindexerNamespace<?>> targetNamespaces, int formatVersion) {
+                             List<ReindexerNamespace<?>> targetNamespaces, int formatVersion,
+                             List<PreparedQuery.Slot> slots) {
         if (queryJoinType != MERGE) {
             targetNamespaces.add(query.namespace);
         }
 
         target.putVarUInt32(queryJoinType);
-        target.writeBytes(query.getQueryBytes(formatVersion));
+        writeQueryBytes(target, query, formatVersion, slots);
         target.putVarUInt32(QUERY_END);
 
-        query.appendJoinQueries(target, targetNamespaces, formatVersion);
-        query.appendMergeQueries(target, targetNamespaces, formatVersion);
+        query.appendJoinQueries(target, targetNamespaces, formatVersion, slots);
+        query.appendMergeQueries(target, targetNamespaces, formatVersion, slots);
+    }
+
+    private static void writeQueryBytes(ByteBuffer target, Query<?> query, int formatVersion,
+                                        List<PreparedQuery.Slot> slots) {
+        addParameterSlots(slots, query, target.getPosition(), formatVersion);
+        target.writeBytes(query.getQueryBytes(formatVersion));
+    }
+
+    /**
+     * Adds the parameter slots of the query, whose bytes are written at the offset, to the slots list, if it is not null.
+     */
+    private static void addParameterSlots(List<PreparedQuery.Slot> slots, Query<?> query, int offset,
+                                          int formatVersion) {
+        if (slots == null) {
+            return;
+        }
+        // the leading format version byte is not written for QueryFormatV1
+        int shift = formatVersion == QUERY_FORMAT_V2 ? offset : offset - 1;
+        for (PreparedQuery.Slot slot : query.parameterSlots) {
+            slots.add(slot.moveBy(shift));
+        }
+    }
+
+    private void ensureNoParameters() {
+        if (hasParameters()) {
+            throw new IllegalStateException("The query has parameters, execute it with prepare()");
+        }
+    }
+
+    private boolean hasParameters() {
+        if (!parameterSlots.isEmpty()) {
+            return true;
+        }
+        for (Query<?> joinQuery : joinQueries) {
+            if (joinQuery.hasParameters()) {
+                return true;
+            }
+        }
+        for (Query<?> mergeQuery : mergeQueries) {
+            if (mergeQuery.hasParameters()) {
+                return true;
+            }
+        }
+        return false;
     }
 
-    private void appendJoinQueriesV1(ByteBuffer target, boolean appendNamespaces) {
+    private void appendJoinQueriesV1(ByteBuffer target, List<ReindexerNamespace<?>> targetNamespaces,
+                                     List<PreparedQuery.Slot> slots) {
         if (hasNestedJoins()) {
             throw new IllegalStateException("Nested joins are not supported by QueryFormatV1");
         }
         for (Query<?> joinQuery : joinQueries) {
-            if (appendNamespaces) {
-                namespaces.add(joinQuery.namespace);
-            }
+            targetNamespaces.add(joinQuery.namespace);
             target.putVarUInt32(joinQuery.joinType);
-            target.writeBytes(joinQuery.getQueryBytes(QUERY_FORMAT_V1));
+            writeQueryBytes(target, joinQuery, QUERY_FORMAT_V1, slots);
             target.putVarUInt32(QUERY_END);
         }
     }
 
-    private void appendMergeQueriesV1(ByteBuffer target) {
+    private void appendMergeQueriesV1(ByteBuffer target, List<ReindexerNamespace<?>> targetNamespaces,
+                                      List<PreparedQuery.Slot> slots) {
         for (Query<?> mergeQuery : mergeQueries) {
             target.putVarUInt32(MERGE);
-            target.writeBytes(mergeQuery.getQueryBytes(QUERY_FORMAT_V1));
+            writeQueryBytes(target, mergeQuery, QUERY_FORMAT_V1, slots);
             target.putVarUInt32(QUERY_END);
 
             for (Query<?> joinQuery : mergeQuery.joinQueries) {
-                namespaces.add(joinQuery.namespace);
+                targetNamespaces.add(joinQuery.namespace);
                 target.putVarUInt32(joinQuery.joinType);
-                target.writeBytes(joinQuery.getQueryBytes(QUERY_FORMAT_V1));
+                writeQueryBytes(target, joinQuery, QUERY_FORMAT_V1, slots);
                 target.putVarUInt32(QUERY_END);
             }
         }
@@ -16,30 +16,86 @@
 package ru.rt.restream.reindexer;
 
 import org.apache.commons.lang3.StringUtils;
-import ru.rt.restream.reindexer.expression.Expression;
-import ru.rt.restream.reindexer.vector.params.KnnSearchParam;
+import ru.rt.restream.reindexer.binding.cproto.ByteBuffer;
 
 import java.util.ArrayDeque;
 import java.util.ArrayList;
 import java.util.Arrays;
-import java.util.Collection;
+import java.util.Collections;
 import java.util.Deque;
-import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.stream.Collectors;
 
+import static ru.rt.restream.reindexer.Query.QUERY_AGGREGATION;
+import static ru.rt.restream.reindexer.Query.QUERY_AGGREGATION_LIMIT;
+import static ru.rt.restream.reindexer.Query.QUERY_AGGREGATION_OFFSET;
+import static ru.rt.restream.reindexer.Query.QUERY_AGGREGATION_SORT;
+import static ru.rt.restream.reindexer.Query.QUERY_BETWEEN_FIELDS_CONDITION;
+import static ru.rt.restream.reindexer.Query.QUERY_CLOSE_BRACKET;
+import static ru.rt.restream.reindexer.Query.QUERY_CONDITION;
+import static ru.rt.restream.reindexer.Query.QUERY_DEBUG_LEVEL;
+import static ru.rt.restream.reindexer.Query.QUERY_DROP_FIELD;
+import static ru.rt.restream.reindexer.Query.QUERY_END;
+import static ru.rt.restream.reindexer.Query.QUERY_EXPLAIN;
+import static ru.rt.restream.reindexer.Query.QUERY_EXPRESSION_CONDITION;
+import static ru.rt.restream.reindexer.Query.QUERY_FIELD_SUB_QUERY_CONDITION;
+import static ru.rt.restream.reindexer.Query.QUERY_JOIN_CONDITION;
+import static ru.rt.restream.reindexer.Query.QUERY_JOIN_ON;
+import static ru.rt.restream.reindexer.Query.QUERY_KNN_CONDITION;
+import static ru.rt.restream.reindexer.Query.QUERY_LIMIT;
+import static ru.rt.restream.reindexer.Query.QUERY_OFFSET;
+import static ru.rt.restream.reindexer.Query.QUERY_OPEN_BRACKET;
+import static ru.rt.restream.reindexer.Query.QUERY_REQ_TOTAL;
+import static ru.rt.restream.reindexer.Query.QUERY_SELECT_FILTER;
+import static ru.rt.restream.reindexer.Query.QUERY_SORT_INDEX;
+import static ru.rt.restream.reindexer.Query.QUERY_SUB_QUERY_CONDITION;
+import static ru.rt.restream.reindexer.Query.QUERY_UPDATE_FIELD;
+import static ru.rt.restream.reindexer.Query.QUERY_UPDATE_FIELD_V2;
+import static ru.rt.restream.reindexer.Query.QUERY_UPDATE_OBJECT;
+import static ru.rt.restream.reindexer.Query.QUERY_WITH_RANK;
+import static ru.rt.restream.reindexer.binding.Consts.KNN_QUERY_TYPE_HNSW;
+import static ru.rt.restream.reindexer.binding.Consts.KNN_QUERY_TYPE_IVF;
+import static ru.rt.restream.reindexer.binding.Consts.QUERY_FORMAT_V2;
+import static ru.rt.restream.reindexer.binding.Consts.VALUE_BOOL;
+import static ru.rt.restream.reindexer.binding.Consts.VALUE_DOUBLE;
+import static ru.rt.restream.reindexer.binding.Consts.VALUE_INT;
+import static ru.rt.restream.reindexer.binding.Consts.VALUE_INT_64;
+import static ru.rt.restream.reindexer.binding.Consts.VALUE_NULL;
+import static ru.rt.restream.reindexer.binding.Consts.VALUE_STRING;
+import static ru.rt.restream.reindexer.binding.Consts.VALUE_TUPLE;
+import static ru.rt.restream.reindexer.binding.Consts.VALUE_UUID;
+
 /**
  * An internal builder to log executed {@link Query} objects.
+ * <p>
+ * The builder reads the serialized query, so a {@link Query} does not record anything for logging while it is built,
+ * the SQL-like representation is only rendered when it is requested.
  */
 class QueryLogBuilder {
 
+    private static final int EXPRESSION_FIELD = 0;
+    private static final int EXPRESSION_LITERAL = 1;
+    private static final int EXPRESSION_FUNCTION = 2;
+    private static final int EXPRESSION_SUB_QUERY = 3;
+
+    private static final int FUNCTION_FLAT_ARRAY_LENGTH = 0;
+    private static final int FUNCTION_NOW = 1;
+
+    private static final int KNN_SERIALIZE_WITH_K = 1;
+    private static final int KNN_SERIALIZE_WITH_RADIUS = 1 << 1;
+
     private String namespace;
-    private QueryType type = QueryType.SELECT;
+    private final QueryType type;
     private boolean reqTotal;
+    private boolean explain;
     private Integer offset;
     private Integer limit;
-    private final Map<Query<?>.AggregationFacetRequest, AggregateEntry> facetParams = new HashMap<>();
+    private AggregateEntry facet;
+    /**
+     * The tag of an entry, that can not be read, the entries after it are not logged.
+     */
+    private Integer unknownTag;
     private final List<QueryEntry> whereEntries = new ArrayList<>();
     private final List<JoinEntry> joinEntries = new ArrayList<>();
     private final List<QueryEntry> onEntries = new ArrayList<>();
@@ -82,16 +138,33 @@ class QueryLogBuilder {
     private static class UpdateEntry {
         private String field;
         private Object value;
-        private boolean isJsonObject;
         private boolean drop;
     }
 
+    /**
+     * A part of the query, that is logged as is, without quotes.
+     */
+    private static final class SqlPart {
+
+        private final String sql;
+
+        private SqlPart(String sql) {
+            this.sql = sql;
+        }
+
+        @Override
+        public String toString() {
+            return sql;
+        }
+
+    }
+
     enum QueryType {
         SELECT, UPDATE, DELETE, TRUNCATE
     }
 
     enum AggregateType {
-        MIN, MAX, SUM, AVG, FACET, DISTINCT
+        SUM, AVG, FACET, MIN, MAX, DISTINCT
     }
 
     enum Operation {
@@ -133,406 +206,475 @@ class QueryLogBuilder {
         }
     }
 
+    private QueryLogBuilder(QueryType type) {
+        this.type = type;
+    }
+
     /**
-     * Get constructed sql log string.
+     * Get constructed sql log string of the query.
      *
+     * @param query the query to log
+     * @param type  type of query (select, update, etc.)
      * @return SQL-like representation of reindexer query
      */
-    String getSql() {
-        StringBuilder stringBuilder = new StringBuilder(type.name());
-
-        if (type == QueryType.SELECT || type == QueryType.DELETE) {
-            if (type == QueryType.SELECT) {
-                stringBuilder.append(" ")
-                        .append(getSelectPart());
-            }
-            if (reqTotal) {
-                stringBuilder.append(", COUNT(*)");
-            }
-            stringBuilder.append(" FROM");
-        }
-
-        stringBuilder.append(" ")
-                .append(namespace);
-
-        if (!joinEntries.isEmpty()) {
-            stringBuilder.append(getJoinPart());
-        }
-
-        if (type == QueryType.UPDATE) {
-            stringBuilder.append(" ")
-                    .append(getUpdatePart());
-        }
-
-        if (!whereEntries.isEmpty()) {
-            stringBuilder.append(" WHERE ")
-                    .append(getWherePart(whereEntries));
-        }
-
-        if (!mergeQueries.isEmpty()) {
-            stringBuilder.append(getMergePart());
-        }
-
-        if (!sortEntries.isEmpty()) {
-            stringBuilder.append(getOrderByPart(sortEntries));
-        }
+    static String getSql(Query<?> query, QueryType type) {
+        return of(query, type).getSql();
+    }
 
-        if (limit != null) {
-            stringBuilder.append(" LIMIT").append(" ").append(limit);
+    private static QueryLogBuilder of(Query<?> query, QueryType type) {
+        QueryLogBuilder builder = new QueryLogBuilder(type);
+        for (Query<?> joinQuery : query.getJoinQueries()) {
+            JoinEntry joinEntry = new JoinEntry();
+            joinEntry.type = getJoinType(joinQuery.getJoinType());
+            joinEntry.joinQueryLogBuilder = of(joinQuery, QueryType.SELECT);
+            builder.joinEntries.add(joinEntry);
         }
-
-        if (offset != null) {
-            stringBuilder.append(" OFFSET").append(" ").append(offset);
+        for (Query<?> mergeQuery : query.getMergeQueries()) {
+            builder.mergeQueries.add(of(mergeQuery, QueryType.SELECT));
         }
-
-        return stringBuilder.toString();
+        ByteBuffer buffer = new ByteBuffer(query.getBufferBytes()).rewind();
+        // Skip the placeholder of the query format version.
+        buffer.getUInt8();
+        builder.read(buffer, query.getParameterSlots());
+        return builder;
     }
 
-    /**
-     * Add namespace name to builder.
-     *
-     * @param namespace namespace name
-     */
-    void namespace(String namespace) {
-        this.namespace = namespace;
+    private static QueryLogBuilder ofSubQuery(byte[] queryData) {
+        QueryLogBuilder builder = new QueryLogBuilder(QueryType.SELECT);
+        ByteBuffer buffer = new ByteBuffer(queryData).rewind();
+        if (isQueryFormatV2(queryData)) {
+            buffer.getUInt8();
+        }
+        builder.read(buffer, Collections.emptyList());
+        return builder;
     }
 
     /**
-     * Add query type to builder {@link QueryType}.
-     *
-     * @param type type of query (select, update, etc.).
+     * A subquery of QueryFormatV2 starts with the format version and ends with the empty lists of joined and merged
+     * queries, a subquery of QueryFormatV1 starts with the namespace name and has no end tag.
      */
-    void type(QueryType type) {
-        this.type = type;
+    private static boolean isQueryFormatV2(byte[] queryData) {
+        int length = queryData.length;
+        return length > 3 && queryData[0] == QUERY_FORMAT_V2
+                && queryData[length - 3] == QUERY_END && queryData[length - 2] == 0 && queryData[length - 1] == 0;
+    }
+
+    private void read(ByteBuffer buffer, List<PreparedQuery.Slot> slots) {
+        namespace = buffer.getVString();
+        int nextSlot = 0;
+        while (buffer.getPosition() < buffer.length()) {
+            while (nextSlot < slots.size() && slots.get(nextSlot).getPosition() == buffer.getPosition()
+                    && slots.get(nextSlot).getUpdateField() != null) {
+                PreparedQuery.Slot slot = slots.get(nextSlot++);
+                addUpdate(slot.getUpdateField(), new SqlPart(slot.getParameter().toString()));
+            }
+            if (buffer.getPosition() == buffer.length()) {
+                break;
+            }
+            int tag = (int) buffer.getVarUInt();
+            switch (tag) {
+                case QUERY_CONDITION: {
+                    String field = buffer.getVString();
+                    Operation operation = getOperation((int) buffer.getVarUInt());
+                    Condition condition = getCondition((int) buffer.getVarUInt());
+                    QueryEntry queryEntry = where(operation, field, condition);
+                    nextSlot = readValues(buffer, slots, nextSlot, queryEntry.values);
+                    break;
+                }
+                case QUERY_SUB_QUERY_CONDITION: {
+                    Operation operation = getOperation((int) buffer.getVarUInt());
+                    String subQuery = "(" + ofSubQuery(buffer.getVBytes()).getSql() + ")";
+                    Condition condition = getCondition((int) buffer.getVarUInt());
+                    QueryEntry queryEntry = where(operation, subQuery, condition);
+                    nextSlot = readValues(buffer, slots, nextSlot, queryEntry.values);
+                    break;
+                }
+                case QUERY_FIELD_SUB_QUERY_CONDITION: {
+                    Operation operation = getOperation((int) buffer.getVarUInt());
+                    String field = buffer.getVString();
+                    Condition condition = getCondition((int) buffer.getVarUInt());
+                    where(operation, field, condition).values.add(readSubQuery(buffer));
+                    break;
+                }
+                case QUERY_EXPRESSION_CONDITION: {
+                    SqlPart left = readExpression(buffer);
+                    Operation operation = getOperation((int) buffer.getVarUInt());
+                    Condition condition = getCondition((int) buffer.getVarUInt());
+                    where(operation, left.toString(), condition).values.add(readExpression(buffer));
+                    break;
+                }
+                case QUERY_BETWEEN_FIELDS_CONDITION: {
+                    Operation operation = getOperation((int) buffer.getVarUInt());
+                    String firstField = buffer.getVString();
+                    Condition condition = getCondition((int) buffer.getVarUInt());
+                    where(operation, firstField, condition).secondField = buffer.getVString();
+                    break;
+                }
+                case QUERY_KNN_CONDITION:
+                    readKnn(buffer);
+                    break;
+                case QUERY_JOIN_CONDITION: {
+                    JoinType joinType = getJoinType((int) buffer.getVarUInt());
+                    QueryEntry queryEntry = new QueryEntry();
+                    queryEntry.joinIndex = (int) buffer.getVarUInt();
+                    queryEntry.operation = joinType == JoinType.OR_INNER_JOIN ? Operation.OR : Operation.AND;
+                    addWhere(queryEntry);
+                    break;
+                }
+                case QUERY_JOIN_ON: {
+                    QueryEntry queryEntry = new QueryEntry();
+                    queryEntry.operation = getOperation((int) buffer.getVarUInt());
+                    queryEntry.condition = getCondition((int) buffer.getVarUInt());
+                    queryEntry.field = buffer.getVString();
+                    queryEntry.values.add(buffer.getVString());
+                    onEntries.add(queryEntry);
+                    break;
+                }
+                case QUERY_OPEN_BRACKET: {
+                    QueryEntry queryEntry = new QueryEntry();
+                    queryEntry.operation = getOperation((int) buffer.getVarUInt());
+                    addWhere(queryEntry);
+                    whereStack.add(queryEntry);
+                    break;
+                }
+                case QUERY_CLOSE_BRACKET:
+                    whereStack.pollLast();
+                    break;
+                case QUERY_SORT_INDEX: {
+                    SortEntry sortEntry = new SortEntry();
+                    sortEntry.sortIndex = buffer.getVString();
+                    sortEntry.desc = buffer.getVarUInt() != 0;
+                    long count = buffer.getVarUInt();
+                    for (long i = 0; i < count; i++) {
+                        sortEntry.values.add(readValue(buffer));
+                    }
+                    sortEntries.add(sortEntry);
+                    break;
+                }
+                case QUERY_SELECT_FILTER:
+                    selectFields.add(buffer.getVString());
+                    break;
+                case QUERY_WITH_RANK:
+                    selectFields.add("RANK()");
+                    break;
+                case QUERY_AGGREGATION: {
+                    AggregateEntry aggregateEntry = new AggregateEntry();
+                    aggregateEntry.type = AggregateType.values()[(int) buffer.getVarUInt()];
+                    long count = buffer.getVarUInt();
+                    for (long i = 0; i < count; i++) {
+                        aggregateEntry.fields.add(buffer.getVString());
+                    }
+                    aggregateEntries.add(aggregateEntry);
+                    facet = aggregateEntry;
+                    break;
+                }
+                case QUERY_AGGREGATION_LIMIT:
+                    facet.limit = (int) buffer.getVarUInt();
+                    break;
+                case QUERY_AGGREGATION_OFFSET:
+                    facet.offset = (int) buffer.getVarUInt();
+                    break;
+                case QUERY_AGGREGATION_SORT: {
+                    SortEntry sortEntry = new SortEntry();
+                    sortEntry.sortIndex = buffer.getVString();
+                    sortEntry.desc = buffer.getVarUInt() != 0;
+                    facet.sortEntries.add(sortEntry);
+                    break;
+                }
+                case QUERY_REQ_TOTAL:
+                    buffer.getVarUInt();
+                    reqTotal = true;
+                    break;
+                case QUERY_LIMIT:
+                    limit = (int) buffer.getVarUInt();
+                    break;
+                case QUERY_OFFSET:
+                    offset = (int) buffer.getVarUInt();
+                    break;
+                case QUERY_DEBUG_LEVEL:
+                    buffer.getVarUInt();
+                    break;
+                case QUERY_EXPLAIN:
+                    explain = true;
+                    break;
+                case QUERY_UPDATE_FIELD:
+                case QUERY_UPDATE_FIELD_V2:
+                    readUpdate(buffer, tag == QUERY_UPDATE_FIELD_V2);
+                    break;
+                case QUERY_UPDATE_OBJECT:
+                    readUpdateObject(buffer);
+                    break;
+                case QUERY_DROP_FIELD: {
+                    UpdateEntry updateEntry = new UpdateEntry();
+                    updateEntry.drop = true;
+                    updateEntry.field = buffer.getVString();
+                    updateEntries.add(updateEntry);
+                    break;
+                }
+                case QUERY_END:
+                    // the joined and merged queries are read from their query objects
+                    return;
+                default:
+                    // the length of an unknown entry is not known, so the rest of the query can not be read
+                    unknownTag = tag;
+                    return;
+            }
+        }
     }
 
-    /**
-     * Add merge to builder.
-     *
-     * @param mergeQueryLogBuilder {@link QueryLogBuilder} of merged query
-     */
-    void merge(QueryLogBuilder mergeQueryLogBuilder) {
-        mergeQueries.add(mergeQueryLogBuilder);
+    private QueryEntry where(Operation operation, String field, Condition condition) {
+        QueryEntry queryEntry = new QueryEntry();
+        queryEntry.operation = operation;
+        queryEntry.field = field;
+        queryEntry.condition = condition;
+        addWhere(queryEntry);
+        return queryEntry;
     }
 
-    /**
-     * Add field to builder.
-     *
-     * @param field the field to select
-     */
-    void select(String field) {
-        selectFields.add(field);
+    private void addWhere(QueryEntry queryEntry) {
+        if (!whereStack.isEmpty()) {
+            whereStack.getLast().children.add(queryEntry);
+        } else {
+            whereEntries.add(queryEntry);
+        }
     }
 
     /**
-     * Add join to builder.
-     *
-     * @param joinQueryLogBuilder {@link QueryLogBuilder} of joined query
-     * @param joinTypeCode        code of join type. See {@link ru.rt.restream.reindexer.binding.Consts}
+     * Reads the values of a condition, or takes its parameter if the condition has the next parameter slot.
      */
-    void join(QueryLogBuilder joinQueryLogBuilder, int joinTypeCode) {
-        JoinEntry joinEntry = new JoinEntry();
-        joinEntry.type = getJoinType(joinTypeCode);
-        joinEntry.joinQueryLogBuilder = joinQueryLogBuilder;
-        joinEntries.add(joinEntry);
-        if (joinEntry.type != JoinType.LEFT_JOIN) {
-            QueryEntry queryEntry = new QueryEntry();
-            queryEntry.joinIndex = joinEntries.size() - 1;
-            queryEntry.operation = joinEntry.type == JoinType.OR_INNER_JOIN ? Operation.OR : Operation.AND;
-            if (!whereStack.isEmpty()) {
-                whereStack.getLast().children.add(queryEntry);
-            } else {
-                whereEntries.add(queryEntry);
+    private static int readValues(ByteBuffer buffer, List<PreparedQuery.Slot> slots, int nextSlot,
+                                  List<Object> values) {
+        if (nextSlot < slots.size() && slots.get(nextSlot).getPosition() == buffer.getPosition()
+                && slots.get(nextSlot).getUpdateField() == null) {
+            values.add(new SqlPart(slots.get(nextSlot).getParameter().toString()));
+            return nextSlot + 1;
+        }
+        long count = buffer.getVarUInt();
+        for (long i = 0; i < count; i++) {
+            values.add(readValue(buffer));
+        }
+        return nextSlot;
+    }
+
+    private static Object readValue(ByteBuffer buffer) {
+        int valueType = (int) buffer.getVarUInt();
+        switch (valueType) {
+            case VALUE_NULL:
+                return null;
+            case VALUE_BOOL:
+                return buffer.getVarUInt() != 0;
+            case VALUE_INT:
+            case VALUE_INT_64:
+                return buffer.getVarInt();
+            case VALUE_DOUBLE:
+                return buffer.getDouble();
+            case VALUE_STRING:
+                return buffer.getVString();
+            case VALUE_UUID:
+                return buffer.getUuid();
+            case VALUE_TUPLE: {
+                Object[] values = new Object[(int) buffer.getVarUInt()];
+                for (int i = 0; i < values.length; i++) {
+                    values[i] = readValue(buffer);
+                }
+                return values;
             }
+            default:
+                throw new IllegalStateException("Illegal value type: " + valueType);
         }
     }
 
-    /**
-     * Add on condition to query.
-     *
-     * @param operationCode operation code
-     * @param joinField     left side field
-     * @param conditionCode condition code. See {@link Query.Condition}
-     * @param joinIndex     right side index name
-     */
-    void on(int operationCode, String joinField, int conditionCode, String joinIndex) {
-        QueryEntry queryEntry = new QueryEntry();
-        queryEntry.operation = getOperation(operationCode);
-        queryEntry.condition = getCondition(conditionCode);
-        queryEntry.values.add(joinIndex);
-        queryEntry.field = joinField;
-        onEntries.add(queryEntry);
+    private static SqlPart readSubQuery(ByteBuffer buffer) {
+        return new SqlPart("(" + ofSubQuery(buffer.getVBytes()).getSql() + ")");
     }
 
-    /**
-     * Add where condition part to builder.
-     *
-     * @param operationCode operation code
-     * @param field         item field to which the condition applies
-     * @param conditionCode condition code. See {@link Query.Condition}
-     * @param values        value(s) to which the condition applies
-     */
-    void where(int operationCode, String field, int conditionCode, Collection<?> values) {
-        QueryEntry queryEntry = new QueryEntry();
-        queryEntry.operation = getOperation(operationCode);
-        queryEntry.field = field;
-        queryEntry.condition = getCondition(conditionCode);
-        queryEntry.values.addAll(values);
-        if (!whereStack.isEmpty()) {
-            QueryEntry parent = whereStack.getLast();
-            parent.children.add(queryEntry);
-        } else {
-            whereEntries.add(queryEntry);
-        }
-    }
-
-    void where(int operationCode, String field, int conditionCode, Object... values) {
-        QueryEntry queryEntry = new QueryEntry();
-        queryEntry.operation = getOperation(operationCode);
-        queryEntry.field = field;
-        queryEntry.condition = getCondition(conditionCode);
-        queryEntry.values.addAll(Arrays.asList(values));
-        if (!whereStack.isEmpty()) {
-            QueryEntry parent = whereStack.getLast();
-            parent.children.add(queryEntry);
-        } else {
-            whereEntries.add(queryEntry);
+    private static SqlPart readExpression(ByteBuffer buffer) {
+        int expressionType = (int) buffer.getVarUInt();
+        switch (expressionType) {
+            case EXPRESSION_FIELD:
+                return new SqlPart(buffer.getVString());
+            case EXPRESSION_LITERAL: {
+                Object[] values = new Object[(int) buffer.getVarUInt()];
+                for (int i = 0; i < values.length; i++) {
+                    values[i] = readValue(buffer);
+                }
+                StringBuilder stringBuilder = new StringBuilder();
+                appendLiteral(stringBuilder, values);
+                return new SqlPart(stringBuilder.toString());
+            }
+            case EXPRESSION_FUNCTION: {
+                String[] fields = new String[(int) buffer.getVarUInt()];
+                for (int i = 0; i < fields.length; i++) {
+                    fields[i] = buffer.getVString();
+                }
+                Object[] arguments = new Object[(int) buffer.getVarUInt()];
+                for (int i = 0; i < arguments.length; i++) {
+                    arguments[i] = readValue(buffer);
+                }
+                int functionType = (int) buffer.getVarUInt();
+                if (functionType == FUNCTION_FLAT_ARRAY_LENGTH) {
+                    return new SqlPart("flat_array_len(" + String.join(", ", fields) + ")");
+                } else if (functionType == FUNCTION_NOW) {
+                    return new SqlPart("now(" + StringUtils.join(arguments, ", ") + ")");
+                }
+                throw new IllegalStateException("Illegal function type: " + functionType);
+            }
+            case EXPRESSION_SUB_QUERY:
+                return readSubQuery(buffer);
+            default:
+                throw new IllegalStateException("Illegal expression type: " + expressionType);
         }
     }
 
-    void where(int operationCode, Expression left, int conditionCode, Expression right) {
-        QueryEntry queryEntry = new QueryEntry();
-        queryEntry.operation = getOperation(operationCode);
-        queryEntry.field = left;
-        queryEntry.condition = getCondition(conditionCode);
-        queryEntry.values.add(right);
-        if (!whereStack.isEmpty()) {
-            QueryEntry parent = whereStack.getLast();
-            parent.children.add(queryEntry);
+    private static void appendLiteral(StringBuilder stringBuilder, Object value) {
+        if (value instanceof String) {
+            stringBuilder.append("'").append(value).append("'");
+        } else if (value instanceof Object[]) {
+            Object[] values = (Object[]) value;
+            stringBuilder.append('(');
+            for (int i = 0; i < values.length; i++) {
+                if (i > 0) {
+                    stringBuilder.append(", ");
+                }
+                appendLiteral(stringBuilder, values[i]);
+            }
+            stringBuilder.append(')');
         } else {
-            whereEntries.add(queryEntry);
+            stringBuilder.append(value);
         }
     }
 
-    void whereKnn(int operationCode, String indexName, float[] vector, KnnSearchParam params) {
+    private void readKnn(ByteBuffer buffer) {
         QueryEntry queryEntry = new QueryEntry();
-        queryEntry.operation = getOperation(operationCode);
-        queryEntry.field = indexName;
+        queryEntry.field = buffer.getVString();
+        queryEntry.operation = getOperation((int) buffer.getVarUInt());
         queryEntry.condition = Condition.KNN;
-        queryEntry.values.add(indexName);
+        float[] vector = new float[(int) (buffer.getVarUInt() >> 1)];
+        buffer.getFloats(vector);
+        queryEntry.values.add(queryEntry.field);
         queryEntry.values.add(Arrays.toString(vector));
-        queryEntry.values.addAll(params.toLog());
-        whereEntries.add(queryEntry);
-    }
-
-    void where(int operationCode, Query<?> subquery, int conditionCode, Object... values) {
-        where(operationCode, mapToString(subquery), conditionCode, values);
-    }
-
-    void whereBetweenFields(int operationCode, String firstField, int conditionCode, String secondField) {
-        QueryEntry queryEntry = new QueryEntry();
-        queryEntry.operation = getOperation(operationCode);
-        queryEntry.field = firstField;
-        queryEntry.condition = getCondition(conditionCode);
-        queryEntry.secondField = secondField;
-        if (!whereStack.isEmpty()) {
-            QueryEntry parent = whereStack.getLast();
-            parent.children.add(queryEntry);
+        int knnType = (int) buffer.getVarUInt();
+        // Skip the version of the KNN parameters.
+        buffer.getVarUInt();
+        int mask = buffer.getUInt8();
+        if ((mask & KNN_SERIALIZE_WITH_K) != 0) {
+            queryEntry.values.add("k=" + buffer.getVarUInt());
+        }
+        if ((mask & KNN_SERIALIZE_WITH_RADIUS) != 0) {
+            queryEntry.values.add("radius=" + buffer.getFloat());
+        }
+        if (knnType == KNN_QUERY_TYPE_HNSW) {
+            queryEntry.values.add("ef=" + buffer.getVarUInt());
+        } else if (knnType == KNN_QUERY_TYPE_IVF) {
+            queryEntry.values.add("nprobe=" + buffer.getVarUInt());
+        }
+        addWhere(queryEntry);
+    }
+
+    private void readUpdate(ByteBuffer buffer, boolean forceArray) {
+        String field = buffer.getVString();
+        boolean isArray = forceArray && buffer.getVarUInt() != 0;
+        int count = (int) buffer.getVarUInt();
+        List<Object> values = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            boolean isExpression = buffer.getVarUInt() != 0;
+            Object value = readValue(buffer);
+            values.add(isExpression ? new SqlPart(String.valueOf(value)) : value);
+        }
+        if (isArray || count != 1) {
+            addUpdate(field, new SqlPart(values.stream()
+                    .map(QueryLogBuilder::mapToString)
+                    .collect(Collectors.joining(", ", "[", "]"))));
         } else {
-            whereEntries.add(queryEntry);
+            addUpdate(field, values.get(0));
         }
     }
 
-    /**
-     * Add set operation to builder. Used when value is reindexer primitive (int, long, string, bool, null) or array of
-     * primitives.
-     *
-     * @param field field to set
-     * @param value new field value
-     */
-    void set(String field, Object value) {
-        UpdateEntry updateEntry = new UpdateEntry();
-        updateEntry.field = field;
-        updateEntry.value = value;
-        updateEntries.add(updateEntry);
-    }
-
-    /**
-     * Add set operation to builder. Use when value is reindexer object (json string).
-     *
-     * @param field field to set
-     * @param json  new field value
-     */
-    void setObject(String field, String json) {
-        UpdateEntry updateEntry = new UpdateEntry();
-        updateEntry.field = field;
-        updateEntry.value = json;
-        updateEntry.isJsonObject = true;
-        updateEntries.add(updateEntry);
-    }
-
-    /**
-     * Add set operation to builder. Use when value is list of reindexer objects(list of json strings).
-     *
-     * @param field field to set
-     * @param jsons new field value
-     */
-    void setObject(String field, List<String> jsons) {
-        UpdateEntry updateEntry = new UpdateEntry();
-        updateEntry.field = field;
-        updateEntry.value = jsons;
-        updateEntry.isJsonObject = true;
-        updateEntries.add(updateEntry);
+    private void readUpdateObject(ByteBuffer buffer) {
+        String field = buffer.getVString();
+        int count = (int) buffer.getVarUInt();
+        boolean isArray = buffer.getVarUInt() != 0;
+        List<String> jsons = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            // Skip the expression flag and the value type of the json string.
+            buffer.getVarUInt();
+            buffer.getVarUInt();
+            jsons.add(buffer.getVString());
+        }
+        addUpdate(field, new SqlPart(isArray ? String.valueOf(jsons) : jsons.get(0)));
     }
 
-    /**
-     * Add drop field operation to builder.
-     *
-     * @param field field to drop
-     */
-    void drop(String field) {
+    private void addUpdate(String field, Object value) {
         UpdateEntry updateEntry = new UpdateEntry();
-        updateEntry.drop = true;
         updateEntry.field = field;
+        updateEntry.value = value;
         updateEntries.add(updateEntry);
     }
 
     /**
-     * Add aggregate operation to builder. Applicable only with aggregate operations AVG, DISTINCT, MAX, MIN, SUM.
-     * For FACET operations use {@link QueryLogBuilder#aggregate(Query.AggregationFacetRequest, String...)}
+     * Get constructed sql log string.
      *
-     * @param type  type of aggregation
-     * @param field aggregation field
+     * @return SQL-like representation of reindexer query
      */
-    void aggregate(AggregateType type, String field) {
-        AggregateEntry aggregateEntry = new AggregateEntry();
-        aggregateEntry.type = type;
-        aggregateEntry.fields.add(field);
-        aggregateEntries.add(aggregateEntry);
-    }
+    String getSql() {
+        StringBuilder stringBuilder = new StringBuilder();
+        if (explain) {
+            stringBuilder.append("EXPLAIN ");
+        }
+        stringBuilder.append(type.name());
 
-    /**
-     * Add a facet aggregate operation to builder. Applicable only with FACET aggregate operations. For AVG, DISTINCT,
-     * MAX, MIN, SUM operations use {@link QueryLogBuilder#aggregate(AggregateType, String)}
-     *
-     * @param facet  facet request to add to builder
-     * @param fields aggregated fields
-     */
-    void aggregate(Query<?>.AggregationFacetRequest facet, String... fields) {
-        AggregateEntry aggregateEntry = new AggregateEntry();
-        aggregateEntry.type = AggregateType.FACET;
-        aggregateEntry.fields.addAll(Arrays.asList(fields));
-        aggregateEntries.add(aggregateEntry);
-        facetParams.put(facet, aggregateEntry);
-    }
+        if (type == QueryType.SELECT || type == QueryType.DELETE) {
+            if (type == QueryType.SELECT) {
+                stringBuilder.append(" ")
+                        .append(getSelectPart());
+            }
+            if (reqTotal) {
+                stringBuilder.append(", COUNT(*)");
+            }
+            stringBuilder.append(" FROM");
+        }
 
-    /**
-     * Add query sort entry to builder.
-     *
-     * @param sortIndex sort index
-     * @param desc      true, if descending order
-     * @param values    forced order index values
-     */
-    void sort(String sortIndex, boolean desc, Object... values) {
-        SortEntry sortEntry = new SortEntry();
-        sortEntry.sortIndex = sortIndex;
-        sortEntry.desc = desc;
-        sortEntry.values.addAll(Arrays.asList(values));
-        sortEntries.add(sortEntry);
-    }
+        stringBuilder.append(" ")
+                .append(namespace);
 
-    /**
-     * Add facet sort entry to builder.
-     *
-     * @param facet     facet to sort
-     * @param sortIndex facet field
-     * @param desc      true, if descending order
-     */
-    void facetSort(Query<?>.AggregationFacetRequest facet, String sortIndex, boolean desc) {
-        SortEntry sortEntry = new SortEntry();
-        sortEntry.sortIndex = sortIndex;
-        sortEntry.desc = desc;
-        facetParams.get(facet).sortEntries.add(sortEntry);
-    }
+        if (!joinEntries.isEmpty()) {
+            stringBuilder.append(getJoinPart());
+        }
 
-    /**
-     * Set flag of request of total count of items.
-     */
-    void reqTotal() {
-        this.reqTotal = true;
-    }
+        if (type == QueryType.UPDATE) {
+            stringBuilder.append(" ")
+                    .append(getUpdatePart());
+        }
 
-    /**
-     * Add query offset to builder.
-     *
-     * @param offset offset
-     */
-    void offset(int offset) {
-        this.offset = offset;
-    }
+        if (!whereEntries.isEmpty()) {
+            stringBuilder.append(" WHERE ")
+                    .append(getWherePart(whereEntries));
+        }
 
-    /**
-     * Add facet offset to builder.
-     *
-     * @param facet  facet to apply offset
-     * @param offset facet offset
-     */
-    void facetOffset(Query<?>.AggregationFacetRequest facet, int offset) {
-        facetParams.get(facet).offset = offset;
-    }
+        if (!mergeQueries.isEmpty()) {
+            stringBuilder.append(getMergePart());
+        }
 
-    /**
-     * Add query limit to builder.
-     *
-     * @param limit limit
-     */
-    void limit(int limit) {
-        this.limit = limit;
-    }
+        if (!sortEntries.isEmpty()) {
+            stringBuilder.append(getOrderByPart(sortEntries));
+        }
 
-    /**
-     * Add facet limit to builder.
-     *
-     * @param facet facet to apply offset
-     * @param limit facet limit
-     */
-    void facetLimit(Query<?>.AggregationFacetRequest facet, int limit) {
-        facetParams.get(facet).limit = limit;
-    }
+        if (limit != null) {
+            stringBuilder.append(" LIMIT").append(" ").append(limit);
+        }
 
-    /**
-     * Add Rank to builder.
-     */
-    void withRank() {
-        selectFields.add("RANK()");
-    }
+        if (offset != null) {
+            stringBuilder.append(" OFFSET").append(" ").append(offset);
+        }
 
-    /**
-     * Open a bracket in builder.
-     *
-     * @param operationCode operation code, which will be applied to expression in brackets (AND, OR ...)
-     */
-    void openBracket(int operationCode) {
-        Operation operation = getOperation(operationCode);
-        QueryEntry queryEntry = new QueryEntry();
-        queryEntry.operation = operation;
-        if (!whereStack.isEmpty()) {
-            QueryEntry parent = whereStack.getLast();
-            parent.children.add(queryEntry);
-        } else {
-            whereEntries.add(queryEntry);
+        if (unknownTag != null) {
+            stringBuilder.append(" /* unknown tag ").append(unknownTag).append(" */");
         }
-        whereStack.add(queryEntry);
-    }
 
-    /**
-     * Close bracket. After closing brackets expression in brackets can not be modified.
-     */
-    void closeBracket() {
-        whereStack.pollLast();
+        return stringBuilder.toString();
     }
 
-    private Operation getOperation(int operationCode) {
+    private static Operation getOperation(int operationCode) {
         switch (operationCode) {
             case 1:
                 return Operation.OR;
@@ -545,7 +687,7 @@ class QueryLogBuilder {
         }
     }
 
-    private Condition getCondition(int conditionCode) {
+    private static Condition getCondition(int conditionCode) {
         switch (conditionCode) {
             case 0:
                 return Condition.ANY;
@@ -578,7 +720,7 @@ class QueryLogBuilder {
         }
     }
 
-    private JoinType getJoinType(int joinTypeCode) {
+    private static JoinType getJoinType(int joinTypeCode) {
         switch (joinTypeCode) {
             case 0:
                 return JoinType.LEFT_JOIN;
@@ -601,7 +743,7 @@ class QueryLogBuilder {
             if (!sortEntry.values.isEmpty()) {
                 String forcedOrderValues = sortEntry.values.stream()
                         .map(String::valueOf)
-                        .map(this::addQuotes)
+                        .map(QueryLogBuilder::addQuotes)
                         .collect(Collectors.joining(", "));
                 stringBuilder.append("FIELD(").append(sortEntry.sortIndex).append(", ")
                         .append(forcedOrderValues).append(")");
@@ -680,6 +822,9 @@ class QueryLogBuilder {
                 stringBuilder.append("(").append(getWherePart(whereEntry.children))
                         .append(")");
             } else if (whereEntry.condition == Condition.KNN) {
+                if (whereEntry != whereEntries.get(0)) {
+                    stringBuilder.append(" ").append(whereEntry.operation).append(" ");
+                }
                 stringBuilder.append("KNN(");
                 Object start = whereEntry.values.get(0);
                 for (Object value : whereEntry.values) {
@@ -703,7 +848,7 @@ class QueryLogBuilder {
                 } else if (whereEntry.values.size() > 1) {
                     stringBuilder.append(" (");
                     String logValues = whereEntry.values.stream()
-                            .map(this::mapToString)
+                            .map(QueryLogBuilder::mapToString)
                             .collect(Collectors.joining(", "));
                     stringBuilder.append(logValues).append(")");
                 }
@@ -712,14 +857,11 @@ class QueryLogBuilder {
         return stringBuilder.toString();
     }
 
-    private String mapToString(Object whereEntryValue) {
-        if (whereEntryValue.getClass().isArray()) {
+    private static String mapToString(Object whereEntryValue) {
+        if (whereEntryValue instanceof Object[]) {
             return Arrays.stream((Object[]) whereEntryValue)
                     .map(v -> v instanceof String ? addQuotes(v) : String.valueOf(v))
                     .collect(Collectors.joining(", ", "{", "}"));
-        } else if (whereEntryValue instanceof Query<?>) {
-            Query<?> subquery = (Query<?>) whereEntryValue;
-            return "(" + subquery.getSql() + ")";
         }
         return whereEntryValue instanceof String ? addQuotes(whereEntryValue) : String.valueOf(whereEntryValue);
     }
@@ -744,10 +886,7 @@ class QueryLogBuilder {
         if (updateEntries != null) {
             stringBuilder.append("SET ");
             String updateFieldsPart = updateEntries.stream()
-                    .map(updateEntry -> {
-                        String logValue = getValueLog(updateEntry.value, updateEntry.isJsonObject);
-                        return updateEntry.field + " = " + logValue;
-                    })
+                    .map(updateEntry -> updateEntry.field + " = " + mapToString(updateEntry.value))
                     .collect(Collectors.joining(", "));
             stringBuilder.append(updateFieldsPart);
         }
@@ -762,13 +901,6 @@ class QueryLogBuilder {
         return stringBuilder.toString();
     }
 
-    private String getValueLog(Object value, boolean isJsonObject) {
-        if (isJsonObject) {
-            return String.valueOf(value);
-        }
-        return (value instanceof String ? addQuotes(value) : String.valueOf(value));
-    }
-
     private String getAggregationLogValue(AggregateEntry aggregateEntry) {
         StringBuilder stringBuilder = new StringBuilder();
         String logValue = String.join(", ", aggregateEntry.fields);
@@ -787,7 +919,7 @@ class QueryLogBuilder {
         return aggregateEntry.type.name() + "(" + stringBuilder.toString() + ")";
     }
 
-    private String addQuotes(Object value) {
+    private static String addQuotes(Object value) {
         return "'" + value + "'";
     }
 
@@ -0,0 +1,47 @@
+/*
+ * Copyright 2020-present Restream
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ru.rt.restream.reindexer;
+
+import java.util.Objects;
+
+/**
+ * A named placeholder of a query value, which is bound on each execution of the {@link PreparedQuery}.
+ *
+ * @see Query#param(String)
+ */
+public final class QueryParameter {
+
+    private final String name;
+
+    QueryParameter(String name) {
+        this.name = Objects.requireNonNull(name, "name cannot be null");
+    }
+
+    /**
+     * Returns the parameter name.
+     *
+     * @return the parameter name
+     */
+    public String getName() {
+        return name;
+    }
+
+    @Override
+    public String toString() {
+        return "?" + name;
+    }
+
+}
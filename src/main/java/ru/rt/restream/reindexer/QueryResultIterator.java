@@ -23,10 +23,9 @@ import ru.rt.restream.reindexer.binding.Consts;
 import ru.rt.restream.reindexer.binding.QueryResult;
 import ru.rt.restream.reindexer.binding.RequestContext;
 import ru.rt.restream.reindexer.binding.cproto.ByteBuffer;
+import ru.rt.restream.reindexer.binding.cproto.ItemCodec;
 import ru.rt.restream.reindexer.binding.cproto.ItemReader;
-import ru.rt.restream.reindexer.binding.cproto.cjson.CjsonItemReader;
-import ru.rt.restream.reindexer.binding.cproto.cjson.CtagMatcher;
-import ru.rt.restream.reindexer.binding.cproto.cjson.PayloadType;
+import ru.rt.restream.reindexer.binding.cproto.cjson.CjsonItemCodec;
 import ru.rt.restream.reindexer.convert.util.ConversionUtils;
 import ru.rt.restream.reindexer.convert.util.ResolvableType;
 import ru.rt.restream.reindexer.util.BeanPropertyUtils;
@@ -38,8 +37,10 @@ import java.lang.reflect.Field;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 
 /**
  * An iterator over a query result.
@@ -57,14 +58,33 @@ public class QueryResultIterator<T> implements ResultIterator<T> {
 
     private final int fetchCount;
 
+    private final ResultReadAhead readAhead;
+
+    /**
+     * The parameters of the current item, reused for all items.
+     */
+    private final ItemParams itemParams = new ItemParams();
+
     private ItemReader<T> itemReader;
 
     private ByteBuffer buffer;
 
     private QueryResult queryResult;
 
+    /**
+     * The query execution plan, received with the first page of the result.
+     */
+    private byte[] explainData;
+
+    private ExplainResult explainResult;
+
     private Query<?> query;
 
+    /**
+     * The namespaces of the query, that the namespace ids of the joined items refer to.
+     */
+    private final List<ReindexerNamespace<?>> namespaces;
+
     private int position;
 
     private long count;
@@ -78,25 +98,125 @@ public class QueryResultIterator<T> implements ResultIterator<T> {
                                RequestContext requestContext,
                                Query<?> query,
                                int fetchCount) {
+        this(namespace, itemClass, requestContext, query, fetchCount, 0, 0);
+    }
+
+    /**
+     * Creates an iterator that prefetches the next pages of the result.
+     *
+     * @param namespace          the namespace of the items
+     * @param itemClass          the item class
+     * @param requestContext     the request context of the query
+     * @param query              the query, null for SQL queries
+     * @param fetchCount         the number of items to fetch by one request
+     * @param readAheadDepth     the number of pages to prefetch, 0 to disable prefetching
+     * @param readAheadThreshold the fraction of a page to read before the next pages are prefetched
+     */
+    public QueryResultIterator(ReindexerNamespace<?> namespace,
+                               Class<T> itemClass,
+                               RequestContext requestContext,
+                               Query<?> query,
+                               int fetchCount,
+                               int readAheadDepth,
+                               float readAheadThreshold) {
+        this(namespace, itemClass, requestContext, query, query == null ? null : query.getNamespaces(), fetchCount,
+                readAheadDepth, readAheadThreshold);
+    }
+
+    QueryResultIterator(ReindexerNamespace<?> namespace,
+                        Class<T> itemClass,
+                        RequestContext requestContext,
+                        Query<?> query,
+                        List<ReindexerNamespace<?>> namespaces,
+                        int fetchCount,
+                        int readAheadDepth,
+                        float readAheadThreshold) {
         this.namespace = namespace;
+        this.namespaces = namespaces;
         this.itemClass = itemClass;
         this.requestContext = requestContext;
         this.fetchCount = fetchCount;
         this.query = query;
+        readAhead = ResultReadAhead.of(requestContext, fetchCount, readAheadDepth, readAheadThreshold);
         parseQueryResult(requestContext.getQueryResult());
     }
 
+    @SuppressWarnings("unchecked")
     private void parseQueryResult(QueryResult queryResult) {
         this.buffer = queryResult.getBuffer();
         this.queryResult = queryResult;
+        if (queryResult.getExplainData() != null) {
+            explainData = queryResult.getExplainData();
+        }
         count += queryResult.getCount();
+        if (readAhead != null) {
+            readAhead.onPage(count - queryResult.getCount(), count);
+        }
         if (itemReader == null) {
             if (queryResult.isJson()) {
                 throw new UnsupportedOperationException("Query result in json format is not supported");
+            } else if (itemClass == ItemView.class) {
+                itemReader = (ItemReader<T>) new ItemViewReader(namespace.getPayloadType());
+            } else {
+                Set<String> selectedTags = getSelectedTags();
+                itemReader = selectedTags == null ? newItemReader(itemClass, namespace)
+                        : CjsonItemCodec.getProjectingReader(itemClass, namespace.getPayloadType(), selectedTags);
+            }
+        }
+    }
+
+    /**
+     * Returns the tag names of the root item fields, that are selected by the query, or null if all fields are read.
+     * The fields are selected either by an index name or by a json path, only the first segment of a json path
+     * is taken into account. A composite index selects the fields of its sub-indexes.
+     */
+    private Set<String> getSelectedTags() {
+        if (query == null || query.getSelectFields().isEmpty() || !query.getMergeQueries().isEmpty()) {
+            return null;
+        }
+        Set<String> selectedTags = new HashSet<>();
+        for (String field : query.getSelectFields()) {
+            if (field.equals("*") || field.contains("(")) {
+                return null;
+            }
+            ReindexerIndex index = findIndex(field);
+            if (index == null || index.getJsonPaths() == null || index.getJsonPaths().isEmpty()) {
+                selectedTags.add(getRootTagName(field));
+            } else if (index.getFieldType() != FieldType.COMPOSITE) {
+                addRootTagNames(index, selectedTags);
             } else {
-                itemReader = newItemReader(itemClass, namespace);
+                // the json paths of a composite index are the names of its sub-indexes
+                for (String subIndexName : index.getJsonPaths()) {
+                    ReindexerIndex subIndex = findIndex(subIndexName);
+                    if (subIndex == null || subIndex.getFieldType() == FieldType.COMPOSITE
+                            || subIndex.getJsonPaths() == null || subIndex.getJsonPaths().isEmpty()) {
+                        return null;
+                    }
+                    addRootTagNames(subIndex, selectedTags);
+                }
+            }
+        }
+        return selectedTags;
+    }
+
+    private static void addRootTagNames(ReindexerIndex index, Set<String> tagNames) {
+        for (String jsonPath : index.getJsonPaths()) {
+            tagNames.add(getRootTagName(jsonPath));
+        }
+    }
+
+    private ReindexerIndex findIndex(String name) {
+        for (ReindexerIndex index : namespace.getIndexes()) {
+            if (name.equals(index.getName())) {
+                return index;
             }
         }
+        return null;
+    }
+
+    private static String getRootTagName(String jsonPath) {
+        int dot = jsonPath.indexOf('.');
+        return dot < 0 ? jsonPath : jsonPath.substring(0, dot);
     }
 
     @Override
@@ -111,6 +231,22 @@ public class QueryResultIterator<T> implements ResultIterator<T> {
      * @throws IllegalStateException if the iterator is closed or there is no data to read
      */
     public T next() {
+        return read(null);
+    }
+
+    /**
+     * Read next item into the target instance. Moves the cursor to the next row.
+     *
+     * @param target the instance to read the next item into
+     * @return read item, the target or a new item, if the item reader can not fill an existing instance
+     * @throws IllegalStateException if the iterator is closed or there is no data to read
+     */
+    @Override
+    public T nextInto(T target) {
+        return read(target);
+    }
+
+    private T read(T target) {
         if (closed) {
             throw new IllegalStateException("Iterator is closed");
         }
@@ -123,15 +259,19 @@ public class QueryResultIterator<T> implements ResultIterator<T> {
             fetchResults();
         }
 
-        T item = itemClass.cast(readItem(itemReader, query));
+        if (readAhead != null) {
+            readAhead.onRead(position, queryResult.getQCount());
+        }
+
+        T item = itemClass.cast(readItem(itemReader, query, target, itemParams));
         position++;
         return item;
     }
 
-    private <S> S readItem(ItemReader<S> reader, Query<?> queryContext) {
-        ItemParams params = readItemParams();
+    private <S> S readItem(ItemReader<S> reader, Query<?> queryContext, S target, ItemParams params) {
+        readItemParams(params);
         Query<?> itemQueryContext = getItemQueryContext(queryContext, params.nsId);
-        S item = readItemData(params, reader);
+        S item = readItemData(params, reader, target);
         readJoinedItems(item, itemQueryContext, params.nsId);
         return item;
     }
@@ -149,15 +289,16 @@ public class QueryResultIterator<T> implements ResultIterator<T> {
         return defaultQueryContext;
     }
 
-    private <S> S readItemData(ItemParams params, ItemReader<S> reader) {
+    private <S> S readItemData(ItemParams params, ItemReader<S> reader, S target) {
         if (params.cptr != 0) {
             ByteBuffer nativeBuffer = NativeUtils.getNativeBuffer(queryResult.getResultsPtr(), params.cptr,
                     params.nsId);
-            return reader.readItem(nativeBuffer);
+            return target == null ? reader.readItem(nativeBuffer)
+                    : reader.readItem(nativeBuffer, nativeBuffer.length() - nativeBuffer.getPosition(), target);
         }
 
         int length = (int) buffer.getUInt32();
-        return reader.readItem(new ByteBuffer(buffer.getBytes(length)).rewind());
+        return reader.readItem(buffer, length, target);
     }
 
     private void readJoinedItems(Object item, Query<?> queryContext, int nsId) {
@@ -182,10 +323,10 @@ public class QueryResultIterator<T> implements ResultIterator<T> {
 
             Query<?> joinQuery = queryContext.getJoinQueries().get(joinedField);
             ReindexerNamespace<?> joinedNamespace = joinQuery.getNamespace();
-            CjsonItemReader<?> joinedItemReader = newItemReader(joinedNamespace.getItemClass(), joinedNamespace);
+            ItemReader<?> joinedItemReader = newItemReader(joinedNamespace.getItemClass(), joinedNamespace);
             List<Object> subItems = new ArrayList<>(itemsCount);
             for (int i = 0; i < itemsCount; i++) {
-                subItems.add(readItem(joinedItemReader, joinQuery));
+                subItems.add(readItem(joinedItemReader, joinQuery, null, new ItemParams()));
             }
             subItemsMap.computeIfAbsent(queryContext.getJoinFields().get(joinedField), field -> new ArrayList<>())
                     .addAll(subItems);
@@ -206,12 +347,12 @@ public class QueryResultIterator<T> implements ResultIterator<T> {
         Map<String, List<Object>> subItemsMap = new HashMap<>();
         for (int nsIndex = 0; nsIndex < joinedFields; nsIndex++) {
             int itemsCount = (int) buffer.getVarUInt();
-            ReindexerNamespace<?> joinedNamespace = query.getNamespaces().get(nsIndex + namespaceIndexOffset);
-            CjsonItemReader<?> joinedItemReader = newItemReader(joinedNamespace.getItemClass(), joinedNamespace);
+            ReindexerNamespace<?> joinedNamespace = namespaces.get(nsIndex + namespaceIndexOffset);
+            ItemReader<?> joinedItemReader = newItemReader(joinedNamespace.getItemClass(), joinedNamespace);
             List<Object> subItems = new ArrayList<>(itemsCount);
             for (int j = 0; j < itemsCount; j++) {
                 ItemParams subItemParams = readItemParams();
-                subItems.add(readItemData(subItemParams, joinedItemReader));
+                subItems.add(readItemData(subItemParams, joinedItemReader, null));
             }
 
             String joinField = query.getJoinFields().get(nsIndex);
@@ -269,13 +410,8 @@ public class QueryResultIterator<T> implements ResultIterator<T> {
         return offset;
     }
 
-    private <S> CjsonItemReader<S> newItemReader(Class<S> itemClass, ReindexerNamespace<?> itemNamespace) {
-        CtagMatcher ctagMatcher = new CtagMatcher();
-        PayloadType payloadType = itemNamespace.getPayloadType();
-        if (payloadType != null) {
-            ctagMatcher.read(payloadType);
-        }
-        return new CjsonItemReader<>(itemClass, ctagMatcher);
+    private <S> ItemReader<S> newItemReader(Class<S> itemClass, ReindexerNamespace<?> itemNamespace) {
+        return ItemCodec.getInstance(itemClass, itemNamespace.getPayloadType());
     }
 
     private void writeJoinResult(Object item, String fieldName, List<Object> subItems) {
@@ -313,7 +449,11 @@ public class QueryResultIterator<T> implements ResultIterator<T> {
     }
 
     private ItemParams readItemParams() {
-        ItemParams params = new ItemParams();
+        return readItemParams(new ItemParams());
+    }
+
+    private ItemParams readItemParams(ItemParams params) {
+        params.reset();
 
         if (queryResult.isWithItemId()) {
             params.id = buffer.getVarUInt();
@@ -375,6 +515,14 @@ public class QueryResultIterator<T> implements ResultIterator<T> {
         return queryResult.getAggResults();
     }
 
+    @Override
+    public ExplainResult getExplainResults() {
+        if (explainResult == null && explainData != null) {
+            explainResult = ExplainResult.of(explainData);
+        }
+        return explainResult;
+    }
+
     @Override
     public float getCurrentRank() {
         if (queryResult.isWithRank()) {
@@ -403,6 +551,15 @@ public class QueryResultIterator<T> implements ResultIterator<T> {
         private long cptr;
         private int nsId = 0;
 
+        private void reset() {
+            rank = -1;
+            id = -1;
+            shardId = Consts.SHARDING_PROXY_OFF;
+            version = -1;
+            cptr = 0;
+            nsId = 0;
+        }
+
         public float getRank() {
             return rank;
         }
@@ -20,28 +20,75 @@ import ru.rt.restream.reindexer.binding.QueryResult;
 import ru.rt.restream.reindexer.binding.RequestContext;
 import ru.rt.restream.reindexer.binding.cproto.ByteBuffer;
 
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.BufferOverflowException;
+import java.nio.channels.Channels;
+import java.nio.channels.WritableByteChannel;
 import java.nio.charset.StandardCharsets;
 import java.util.List;
 
+/**
+ * An iterator over a query result in JSON format.
+ * <p>
+ * Besides the items as strings, the iterator writes the raw JSON bytes of the items straight from the result pages
+ * to an {@link OutputStream}, a {@link WritableByteChannel} or a {@link java.nio.ByteBuffer}, see
+ * {@link #writeNext(OutputStream)} and {@link #writeAll(String, OutputStream)}, so only the current page is kept
+ * in memory.
+ */
 public class QueryResultJsonIterator implements ResultIterator<String> {
 
+    private static final byte[] ROOT_END = {']', '}'};
+
     private final RequestContext requestContext;
 
     private final int fetchCount;
 
+    private final ResultReadAhead readAhead;
+
     private ByteBuffer buffer;
 
     private QueryResult queryResult;
 
+    /**
+     * The query execution plan, received with the first page of the result.
+     */
+    private byte[] explainData;
+
+    private ExplainResult explainResult;
+
     private int position;
 
     private long count;
 
+    /**
+     * The channel of the last {@link #writeNext(WritableByteChannel)} call and its stream.
+     */
+    private WritableByteChannel channel;
+
+    private OutputStream channelOutput;
+
     private boolean closed;
 
     public QueryResultJsonIterator(RequestContext requestContext, int fetchCount) {
+        this(requestContext, fetchCount, 0, 0);
+    }
+
+    /**
+     * Creates an iterator that prefetches the next pages of the result.
+     *
+     * @param requestContext     the request context of the query
+     * @param fetchCount         the number of items to fetch by one request
+     * @param readAheadDepth     the number of pages to prefetch, 0 to disable prefetching
+     * @param readAheadThreshold the fraction of a page to read before the next pages are prefetched
+     */
+    public QueryResultJsonIterator(RequestContext requestContext, int fetchCount, int readAheadDepth,
+                                   float readAheadThreshold) {
         this.requestContext = requestContext;
         this.fetchCount = fetchCount;
+        readAhead = ResultReadAhead.of(requestContext, fetchCount, readAheadDepth, readAheadThreshold);
         parseQueryResult(requestContext.getQueryResult());
     }
 
@@ -58,6 +105,139 @@ public class QueryResultJsonIterator implements ResultIterator<String> {
      */
     @Override
     public String next() {
+        int length = nextLength();
+        byte[] result = buffer.getBytes(length);
+
+        position++;
+        return new String(result, StandardCharsets.UTF_8);
+
+    }
+
+    /**
+     * Writes next item JSON bytes into the output stream. Moves the cursor to the next row.
+     *
+     * @param output the stream to write to
+     * @throws IOException           if an I/O error occurs
+     * @throws IllegalStateException if the iterator is closed or there is no data to read
+     */
+    public void writeNext(OutputStream output) throws IOException {
+        int length = nextLength();
+        buffer.writeTo(output, length);
+        position++;
+    }
+
+    /**
+     * Writes next item JSON bytes into the channel. Moves the cursor to the next row.
+     *
+     * @param channel the channel to write to
+     * @throws IOException           if an I/O error occurs
+     * @throws IllegalStateException if the iterator is closed or there is no data to read
+     */
+    public void writeNext(WritableByteChannel channel) throws IOException {
+        if (this.channel != channel) {
+            this.channel = channel;
+            channelOutput = Channels.newOutputStream(channel);
+        }
+        writeNext(channelOutput);
+    }
+
+    /**
+     * Writes next item JSON bytes into the buffer. Moves the cursor to the next row. If the item does not fit
+     * into the buffer, nothing is written and the cursor stays on the item.
+     *
+     * @param target the buffer to write to
+     * @throws BufferOverflowException if there is insufficient space in the buffer
+     * @throws IllegalStateException   if the iterator is closed or there is no data to read
+     */
+    public void writeNext(java.nio.ByteBuffer target) {
+        int start = checkNext();
+        int length = readLength();
+        if (target.remaining() < length) {
+            buffer.setPosition(start);
+            throw new BufferOverflowException();
+        }
+        buffer.writeTo(target, length);
+        position++;
+    }
+
+    /**
+     * Returns the length of the next item JSON bytes, without moving the cursor.
+     *
+     * @return the length of the next item JSON
+     * @throws IllegalStateException if the iterator is closed or there is no data to read
+     */
+    public int peekLength() {
+        int start = checkNext();
+        int length = readLength();
+        buffer.setPosition(start);
+        return length;
+    }
+
+    /**
+     * Writes all query results in JSON format into the output stream and closes the iterator. The items are written
+     * as an array of the root object: {"rootName":[...]}.
+     *
+     * @param rootName name of root object of output JSON
+     * @param output   the stream to write to
+     * @throws IOException           if an I/O error occurs
+     * @throws IllegalStateException if the iterator is closed or iterator already uses next()
+     */
+    public void writeAll(String rootName, OutputStream output) throws IOException {
+        if (closed) {
+            throw new IllegalStateException("Iterator is closed");
+        }
+
+        if (position > 0) {
+            throw new IllegalStateException("Iterator already uses next()");
+        }
+
+        try {
+            output.write(("{\"" + rootName + "\":[").getBytes(StandardCharsets.UTF_8));
+            if (hasNext()) {
+                writeNext(output);
+                while (hasNext()) {
+                    output.write(',');
+                    writeNext(output);
+                }
+            }
+            output.write(ROOT_END);
+        } finally {
+            close();
+        }
+    }
+
+    /**
+     * Writes all query results in JSON format into the channel and closes the iterator, see
+     * {@link #writeAll(String, OutputStream)}.
+     *
+     * @param rootName name of root object of output JSON
+     * @param channel  the channel to write to
+     * @throws IOException           if an I/O error occurs
+     * @throws IllegalStateException if the iterator is closed or iterator already uses next()
+     */
+    public void writeAll(String rootName, WritableByteChannel channel) throws IOException {
+        writeAll(rootName, Channels.newOutputStream(channel));
+    }
+
+    private int nextLength() {
+        checkNext();
+        return readLength();
+    }
+
+    /**
+     * Reads the item params and the length of the next item JSON.
+     */
+    private int readLength() {
+        skipItemParams();
+        return (int) buffer.getUInt32();
+    }
+
+    /**
+     * Fetches the next page, if the current one is read.
+     *
+     * @return the buffer position of the next item
+     */
+    private int checkNext() {
         if (closed) {
             throw new IllegalStateException("Iterator is closed");
         }
@@ -70,13 +250,11 @@ public class QueryResultJsonIterator implements ResultIterator<String> {
             fetchResults();
         }
 
-        skipItemParams();
-        int length = (int) buffer.getUInt32();
-        byte[] result = buffer.getBytes(length);
-
-        position++;
-        return new String(result, StandardCharsets.UTF_8);
+        if (readAhead != null) {
+            readAhead.onRead(position, queryResult.getQCount());
+        }
 
+        return buffer.getPosition();
     }
 
     /**
@@ -95,23 +273,13 @@ public class QueryResultJsonIterator implements ResultIterator<String> {
             throw new IllegalStateException("Iterator already uses next()");
         }
 
-        StringBuilder builder = new StringBuilder()
-                .append("{\"")
-                .append(rootName)
-                .append("\":[");
-
-        if (hasNext()) {
-            builder.append(next());
-            while (hasNext()) {
-                builder.append(',').append(next());
-            }
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        try {
+            writeAll(rootName, output);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
         }
-
-        builder.append("]}");
-
-        this.close();
-
-        return builder.toString();
+        return new String(output.toByteArray(), StandardCharsets.UTF_8);
     }
 
     @Override
@@ -129,6 +297,14 @@ public class QueryResultJsonIterator implements ResultIterator<String> {
         return queryResult.getAggResults();
     }
 
+    @Override
+    public ExplainResult getExplainResults() {
+        if (explainResult == null && explainData != null) {
+            explainResult = ExplainResult.of(explainData);
+        }
+        return explainResult;
+    }
+
     public float getCurrentRank() {
         throw new NotImplementedException();
     }
@@ -145,7 +321,13 @@ public class QueryResultJsonIterator implements ResultIterator<String> {
     private void parseQueryResult(QueryResult queryResult) {
         this.buffer = queryResult.getBuffer();
         this.queryResult = queryResult;
+        if (queryResult.getExplainData() != null) {
+            explainData = queryResult.getExplainData();
+        }
         count += queryResult.getCount();
+        if (readAhead != null) {
+            readAhead.onPage(count - queryResult.getCount(), count);
+        }
     }
 
     private boolean needFetch() {
@@ -47,12 +47,19 @@ public class Reindexer implements AutoCloseable {
 
     private final Binding binding;
 
+    private final SlowQueryLog slowQueryLog;
+
     private final ReindexScanner reindexScanner = new ReindexAnnotationScanner();
 
     protected final Map<String, ReindexerNamespace<?>> namespaceMap = new ConcurrentHashMap<>();
 
     protected Reindexer(Binding binding) {
+        this(binding, SlowQueryLog.DISABLED);
+    }
+
+    Reindexer(Binding binding, SlowQueryLog slowQueryLog) {
         this.binding = binding;
+        this.slowQueryLog = slowQueryLog;
     }
 
     @Override
@@ -349,5 +356,9 @@ public class Reindexer implements AutoCloseable {
         return binding;
     }
 
+    SlowQueryLog getSlowQueryLog() {
+        return slowQueryLog;
+    }
+
 }
 
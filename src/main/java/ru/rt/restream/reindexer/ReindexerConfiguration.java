@@ -21,8 +21,11 @@ import ru.rt.restream.reindexer.binding.builtin.Builtin;
 import ru.rt.restream.reindexer.binding.builtin.server.BuiltinServer;
 import ru.rt.restream.reindexer.binding.cproto.Cproto;
 import ru.rt.restream.reindexer.binding.cproto.DataSourceConfiguration;
+import ru.rt.restream.reindexer.binding.cproto.ConnectionSelector;
+import ru.rt.restream.reindexer.binding.cproto.ConnectionSelectorStrategy;
 import ru.rt.restream.reindexer.binding.cproto.DataSourceFactory;
 import ru.rt.restream.reindexer.binding.cproto.DataSourceFactoryStrategy;
+import ru.rt.restream.reindexer.binding.cproto.Transport;
 import ru.rt.restream.reindexer.convert.FieldConverterRegistry;
 import ru.rt.restream.reindexer.convert.FieldConverterRegistryFactory;
 import ru.rt.restream.reindexer.exceptions.UnimplementedException;
@@ -61,6 +64,22 @@ public final class ReindexerConfiguration {
 
     private ObservationRegistry observationRegistry = ObservationRegistry.NOOP;
 
+    private Transport transport = Transport.BLOCKING;
+
+    private int ioThreads = 1;
+
+    private boolean compression = false;
+
+    private int compressionThreshold = 1024;
+
+    private Duration timeoutTick = Duration.ofMillis(10);
+
+    private ConnectionSelector connectionSelector = ConnectionSelectorStrategy.ROUND_ROBIN;
+
+    private Duration slowQueryThreshold;
+
+    private double slowQuerySamplingRate = 1.0;
+
     private ReindexerConfiguration() {
 
     }
@@ -181,7 +200,8 @@ public final class ReindexerConfiguration {
 
     /**
      * Configure an {@link ObservationRegistry} to record connector's metrics and traces.
-     * Defaults to {@link ObservationRegistry#NOOP}.
+     * The execution plans of the queries, requested by {@link Query#explain()}, are emitted as the {@code explain}
+     * event of a {@code reindexer.query} observation. Defaults to {@link ObservationRegistry#NOOP}.
      *
      * @param observationRegistry the {@link ObservationRegistry} to use
      * @return the {@link ReindexerConfiguration} for further customizations
@@ -191,6 +211,113 @@ public final class ReindexerConfiguration {
         return this;
     }
 
+    /**
+     * Configure a {@link Transport} of cproto connections. Defaults to {@link Transport#BLOCKING}.
+     * {@link Transport#NIO} serves all connections of the pool by {@link #ioThreads(int)} selector threads,
+     * it is not available for cprotos (SSL/TLS) protocol, which falls back to {@link Transport#BLOCKING}.
+     *
+     * @param transport the {@link Transport} to use
+     * @return the {@link ReindexerConfiguration} for further customizations
+     */
+    public ReindexerConfiguration transport(Transport transport) {
+        this.transport = Objects.requireNonNull(transport, "transport cannot be null");
+        return this;
+    }
+
+    /**
+     * Configure a number of selector threads for {@link Transport#NIO}. Defaults to 1.
+     *
+     * @param ioThreads the number of selector threads
+     * @return the {@link ReindexerConfiguration} for further customizations
+     */
+    public ReindexerConfiguration ioThreads(int ioThreads) {
+        this.ioThreads = ioThreads;
+        return this;
+    }
+
+    /**
+     * Enables Snappy compression of cproto frames. Defaults to false.
+     * Reduces the traffic of large results at the cost of CPU time, see {@link Cproto#getCompressionStats()}.
+     *
+     * @param compression true to enable compression
+     * @return the {@link ReindexerConfiguration} for further customizations
+     */
+    public ReindexerConfiguration compression(boolean compression) {
+        this.compression = compression;
+        return this;
+    }
+
+    /**
+     * Configure a minimal size of a frame body, starting from which it is compressed. Defaults to 1024 bytes.
+     * Smaller frames are sent in the Snappy format without compression.
+     *
+     * @param compressionThreshold the compression threshold in bytes
+     * @return the {@link ReindexerConfiguration} for further customizations
+     */
+    public ReindexerConfiguration compressionThreshold(int compressionThreshold) {
+        this.compressionThreshold = compressionThreshold;
+        return this;
+    }
+
+    /**
+     * Configure a tick duration of the timer that expires cproto requests. Defaults to 10 milliseconds.
+     * A request times out up to one tick later than the request timeout, shorter ticks cost more CPU time.
+     *
+     * @param timeoutTick the timer tick duration
+     * @return the {@link ReindexerConfiguration} for further customizations
+     */
+    public ReindexerConfiguration timeoutTick(Duration timeoutTick) {
+        this.timeoutTick = timeoutTick;
+        return this;
+    }
+
+    /**
+     * Configure a {@link ConnectionSelector} that selects a pool connection for every request.
+     * Defaults to {@link ConnectionSelectorStrategy#ROUND_ROBIN}. {@link ConnectionSelectorStrategy#LEAST_IN_FLIGHT}
+     * and {@link ConnectionSelectorStrategy#POWER_OF_TWO_CHOICES} avoid connections busy with large results.
+     *
+     * @param connectionSelector the {@link ConnectionSelector} to use
+     * @return the {@link ReindexerConfiguration} for further customizations
+     */
+    public ReindexerConfiguration connectionSelector(ConnectionSelector connectionSelector) {
+        this.connectionSelector = Objects.requireNonNull(connectionSelector, "connectionSelector cannot be null");
+        return this;
+    }
+
+    /**
+     * Enables the slow query log. A query, that takes longer than the threshold, is logged with its SQL-like
+     * representation, duration, the number of the result items and the size of the first result page as a warning of
+     * the {@code ru.rt.restream.reindexer.SlowQueryLog} logger, and is emitted as the {@code slow} event of
+     * a {@code reindexer.query} observation to the {@link #observationRegistry(ObservationRegistry)}.
+     * The duration of a select query is the time to receive its first result page. Disabled by default.
+     *
+     * @param slowQueryThreshold the minimal duration of a logged query
+     * @return the {@link ReindexerConfiguration} for further customizations
+     */
+    public ReindexerConfiguration slowQueryThreshold(Duration slowQueryThreshold) {
+        Objects.requireNonNull(slowQueryThreshold, "slowQueryThreshold cannot be null");
+        if (slowQueryThreshold.isNegative()) {
+            throw new IllegalArgumentException("slowQueryThreshold cannot be negative");
+        }
+        this.slowQueryThreshold = slowQueryThreshold;
+        return this;
+    }
+
+    /**
+     * Configure a fraction of the slow queries to log, see {@link #slowQueryThreshold(Duration)}. Defaults to 1,
+     * the smaller rates limit the log volume when many queries are slow.
+     *
+     * @param slowQuerySamplingRate the fraction of the slow queries in range [0, 1] to log
+     * @return the {@link ReindexerConfiguration} for further customizations
+     */
+    public ReindexerConfiguration slowQuerySamplingRate(double slowQuerySamplingRate) {
+        if (!(slowQuerySamplingRate >= 0 && slowQuerySamplingRate <= 1)) {
+            throw new IllegalArgumentException("slowQuerySamplingRate must be in range [0, 1]");
+        }
+        this.slowQuerySamplingRate = slowQuerySamplingRate;
+        return this;
+    }
+
     /**
      * Build and return reindexer connector instance.
      *
@@ -211,7 +338,9 @@ public final class ReindexerConfiguration {
             }
             uris.add(uri);
         }
-        return new Reindexer(getBinding(protocol, uris));
+        SlowQueryLog slowQueryLog = slowQueryThreshold == null && observationRegistry.isNoop() ? SlowQueryLog.DISABLED
+                : new SlowQueryLog(slowQueryThreshold, slowQuerySamplingRate, observationRegistry);
+        return new Reindexer(getBinding(protocol, uris), slowQueryLog);
     }
 
     private Binding getBinding(String protocol, List<URI> uris) {
@@ -226,6 +355,12 @@ public final class ReindexerConfiguration {
                         .allowUnlistedDataSource(allowUnlistedDataSource)
                         .sslSocketFactory(sslSocketFactory)
                         .observationRegistry(observationRegistry)
+                        .transport(transport)
+                        .ioThreads(ioThreads)
+                        .compression(compression)
+                        .compressionThreshold(compressionThreshold)
+                        .timeoutTick(timeoutTick)
+                        .connectionSelector(connectionSelector)
                         .build();
                 return new Cproto(dataSourceFactory, dataSourceConfig, connectionPoolSize, requestTimeout);
             case "builtin":
@@ -88,6 +88,9 @@ public class ReindexerNamespace<T> implements Namespace<T> {
      *
      * <p>It is an item descriptor that contains current item type
      * state - fields, tags, version and namespace information.
+     *
+     * <p>Its tags are shared as a read-only tag dictionary by all items, that are read or written
+     * until the payload type is updated.
      */
     @Getter
     private volatile PayloadType payloadType;
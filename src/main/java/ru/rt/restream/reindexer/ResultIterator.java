@@ -17,6 +17,7 @@ package ru.rt.restream.reindexer;
 
 import java.util.Iterator;
 import java.util.List;
+import java.util.function.Consumer;
 
 /**
  * This interface is used by iterators that use releasable resources during iteration.
@@ -32,6 +33,33 @@ public interface ResultIterator<E> extends Iterator<E>, AutoCloseable {
      */
     long getTotalCount();
 
+    /**
+     * Reads the next item into the target instance, instead of creating a new one. The fields of the target, that
+     * are absent in the item data, are reset. If the item class can not be read into an existing instance,
+     * a new item is returned.
+     *
+     * @param target the instance to read the next item into
+     * @return the next item, the target or a new item
+     */
+    default E nextInto(E target) {
+        return next();
+    }
+
+    /**
+     * Performs the action for each remaining item, reading all items into the same instance, see
+     * {@link #nextInto(Object)}. The action must not keep the passed item.
+     *
+     * @param target the instance to read the items into
+     * @param action the action to perform
+     */
+    default void forEachInto(E target, Consumer<? super E> action) {
+        E item = target;
+        while (hasNext()) {
+            item = nextInto(item);
+            action.accept(item);
+        }
+    }
+
     /**
      * Returns the iterator size.
      *
@@ -46,6 +74,14 @@ public interface ResultIterator<E> extends Iterator<E>, AutoCloseable {
      * */
     List<AggregationResult> aggResults();
 
+    /**
+     * Returns the query execution plan, if {@link Query} has set explain() flag, else return null.
+     * The plan is parsed on the first call.
+     *
+     * @return the query execution plan
+     */
+    ExplainResult getExplainResults();
+
     /**
      * Returns rank of current item. If the result has no rank, negative infinity is returned.
      */
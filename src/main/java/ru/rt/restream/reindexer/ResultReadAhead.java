@@ -0,0 +1,98 @@
+/*
+ * Copyright 2020-present Restream
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ru.rt.restream.reindexer;
+
+import ru.rt.restream.reindexer.binding.RequestContext;
+
+/**
+ * Requests the next pages of a query result in advance, so that reading a page overlaps with fetching the next ones.
+ * Once the given fraction of the current page is read, the next pages are prefetched, up to depth pages ahead.
+ */
+final class ResultReadAhead {
+
+    private final RequestContext requestContext;
+
+    private final int fetchCount;
+
+    private final int depth;
+
+    private final float threshold;
+
+    /**
+     * The offset following the received and the prefetched items.
+     */
+    private long requested;
+
+    /**
+     * The number of prefetched pages that are not received yet.
+     */
+    private int pendingPages;
+
+    /**
+     * The position of the item, starting from which the next pages are prefetched.
+     */
+    private long triggerPosition = Long.MAX_VALUE;
+
+    ResultReadAhead(RequestContext requestContext, int fetchCount, int depth, float threshold) {
+        this.requestContext = requestContext;
+        this.fetchCount = fetchCount;
+        this.depth = depth;
+        this.threshold = threshold;
+    }
+
+    /**
+     * Creates a read-ahead for an iterator, returns null if read-ahead is disabled.
+     */
+    static ResultReadAhead of(RequestContext requestContext, int fetchCount, int depth, float threshold) {
+        if (depth <= 0 || fetchCount <= 0 || fetchCount == Integer.MAX_VALUE) {
+            return null;
+        }
+        return new ResultReadAhead(requestContext, fetchCount, depth, threshold);
+    }
+
+    /**
+     * Invoked once a page of items is received.
+     *
+     * @param pageStart the position of the first item of the page
+     * @param pageEnd   the position following the last item of the page
+     */
+    void onPage(long pageStart, long pageEnd) {
+        if (pageStart > 0 && pendingPages > 0) {
+            pendingPages--;
+        }
+        requested = Math.max(requested, pageEnd);
+        triggerPosition = pageStart + (long) ((pageEnd - pageStart) * threshold);
+    }
+
+    /**
+     * Invoked before an item is read.
+     *
+     * @param position the position of the item
+     * @param total    the number of items in the query result
+     */
+    void onRead(long position, long total) {
+        if (position < triggerPosition) {
+            return;
+        }
+        while (pendingPages < depth && requested < total) {
+            requestContext.prefetchResults((int) requested, fetchCount);
+            requested += fetchCount;
+            pendingPages++;
+        }
+        triggerPosition = Long.MAX_VALUE;
+    }
+
+}
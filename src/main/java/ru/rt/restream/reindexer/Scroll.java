@@ -0,0 +1,205 @@
+/*
+ * Copyright 2020-present Restream
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ru.rt.restream.reindexer;
+
+import ru.rt.restream.reindexer.annotations.Json;
+import ru.rt.restream.reindexer.util.BeanPropertyUtils;
+
+import java.lang.reflect.Field;
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.UUID;
+import java.util.function.Function;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * Iterates over the pages of the query items, ordered by a unique field, with the keyset pagination.
+ * <p>
+ * Each page is requested by a separate query, that selects the items with the field value greater than the value
+ * of the last item of the previous page, so the server does not skip the items of the previous pages and does not
+ * keep a query result open between the pages. The position of the scroll is saved as a cursor, see
+ * {@link #getCursor()}, a scroll is resumed from the cursor by {@link Query#scroll(String, int, String)}.
+ *
+ * @param <T> the type of the items
+ * @see Query#scroll(String, int)
+ */
+public class Scroll<T> implements Iterator<List<T>> {
+
+    private static final char LONG_KEY = 'L';
+
+    private static final char DOUBLE_KEY = 'D';
+
+    private static final char STRING_KEY = 'S';
+
+    private static final char UUID_KEY = 'U';
+
+    private final Query<T> query;
+
+    private final String field;
+
+    private final int pageSize;
+
+    private final Function<Object, Object> keyGetter;
+
+    /**
+     * The field value of the last item of the previous page, null before the first page.
+     */
+    private Object lastKey;
+
+    /**
+     * The next page, null if it is not requested yet.
+     */
+    private List<T> page;
+
+    /**
+     * An indication that the last requested page is not full, so there are no more pages.
+     */
+    private boolean finished;
+
+    Scroll(Query<T> query, Class<T> itemClass, String field, int pageSize, String cursor) {
+        this.query = query;
+        this.field = field;
+        this.pageSize = pageSize;
+        keyGetter = getKeyGetter(itemClass, field);
+        lastKey = cursor != null ? decodeKey(field, cursor) : null;
+    }
+
+    private static Function<Object, Object> getKeyGetter(Class<?> itemClass, String fieldName) {
+        for (Field field : BeanPropertyUtils.getInheritedFields(itemClass)) {
+            Json json = field.getAnnotation(Json.class);
+            if (!fieldName.equals(json == null ? field.getName() : json.value())) {
+                continue;
+            }
+            Class<?> type = field.getType();
+            if (type == long.class || type == Long.class || type == int.class || type == Integer.class
+                    || type == short.class || type == Short.class || type == byte.class || type == Byte.class
+                    || type == double.class || type == Double.class || type == float.class || type == Float.class
+                    || type == String.class || type == UUID.class) {
+                return BeanPropertyUtils.getPropertyGetter(itemClass, field.getName());
+            }
+            throw new IllegalArgumentException(String.format("Field %s of %s can not be a scroll key", fieldName,
+                    itemClass.getName()));
+        }
+        throw new IllegalArgumentException(String.format("Field %s is not found in %s", fieldName,
+                itemClass.getName()));
+    }
+
+    @Override
+    public boolean hasNext() {
+        if (page == null && !finished) {
+            page = query.executePage(field, lastKey, pageSize);
+            finished = page.size() < pageSize;
+        }
+        return page != null && !page.isEmpty();
+    }
+
+    /**
+     * Returns the next page of the items, at most the page size items.
+     *
+     * @return the next page
+     * @throws NoSuchElementException if there are no more pages
+     * @throws IllegalStateException  if the last item of the page has no value of the field
+     */
+    @Override
+    public List<T> next() {
+        if (!hasNext()) {
+            throw new NoSuchElementException();
+        }
+        List<T> items = page;
+        page = null;
+        Object key = keyGetter.apply(items.get(items.size() - 1));
+        if (key == null) {
+            throw new IllegalStateException(String.format("Scroll key %s of the item is null", field));
+        }
+        lastKey = key;
+        return items;
+    }
+
+    /**
+     * Returns a stream of the items of the remaining pages. The pages are requested as the stream is consumed,
+     * so only one page is kept in memory.
+     *
+     * @return a stream of the items
+     */
+    public Stream<T> stream() {
+        Spliterator<List<T>> pages = Spliterators.spliteratorUnknownSize(this,
+                Spliterator.ORDERED | Spliterator.NONNULL);
+        return StreamSupport.stream(pages, false).flatMap(List::stream);
+    }
+
+    /**
+     * Returns the cursor of the scroll position after the last returned page. The cursor is a URL-safe string,
+     * that can be stored to resume the scroll with {@link Query#scroll(String, int, String)}.
+     *
+     * @return the cursor, null if no page is returned yet and the scroll is not resumed from a cursor
+     */
+    public String getCursor() {
+        if (lastKey == null) {
+            return null;
+        }
+        String value;
+        char type;
+        if (lastKey instanceof String) {
+            type = STRING_KEY;
+            value = (String) lastKey;
+        } else if (lastKey instanceof UUID) {
+            type = UUID_KEY;
+            value = lastKey.toString();
+        } else if (lastKey instanceof Double || lastKey instanceof Float) {
+            type = DOUBLE_KEY;
+            value = String.valueOf(((Number) lastKey).doubleValue());
+        } else {
+            type = LONG_KEY;
+            value = String.valueOf(((Number) lastKey).longValue());
+        }
+        String token = field + '\n' + type + value;
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(token.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static Object decodeKey(String field, String cursor) {
+        String token;
+        try {
+            token = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Invalid scroll cursor: " + cursor, e);
+        }
+        int separator = token.indexOf('\n');
+        if (separator < 0 || separator == token.length() - 1 || !field.equals(token.substring(0, separator))) {
+            throw new IllegalArgumentException(String.format("Scroll cursor %s is not a cursor of field %s",
+                    cursor, field));
+        }
+        String value = token.substring(separator + 2);
+        switch (token.charAt(separator + 1)) {
+            case LONG_KEY:
+                return Long.valueOf(value);
+            case DOUBLE_KEY:
+                return Double.valueOf(value);
+            case STRING_KEY:
+                return value;
+            case UUID_KEY:
+                return UUID.fromString(value);
+            default:
+                throw new IllegalArgumentException("Invalid scroll cursor: " + cursor);
+        }
+    }
+
+}
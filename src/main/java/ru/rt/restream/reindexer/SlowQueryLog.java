@@ -0,0 +1,169 @@
+/*
+ * Copyright 2020-present Restream
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ru.rt.restream.reindexer;
+
+import io.micrometer.observation.Observation;
+import io.micrometer.observation.ObservationRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import ru.rt.restream.reindexer.binding.QueryResult;
+
+import java.time.Duration;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Logs the queries, that take longer than a threshold, with their SQL-like representation and the size of their
+ * results. A slow query is written to the {@code ru.rt.restream.reindexer.SlowQueryLog} logger and emitted as the
+ * {@value #EVENT_NAME} event of a {@value #OBSERVATION_NAME} observation.
+ * <p>
+ * The execution plan of a query, requested by {@link Query#explain()}, is emitted as the {@value #EXPLAIN_EVENT_NAME}
+ * event of a {@value #OBSERVATION_NAME} observation regardless of the query duration, the key values of the plan are
+ * also added to the slow query observation.
+ * <p>
+ * A query is rendered to SQL only when it is logged, so a query faster than the threshold costs two
+ * {@link System#nanoTime()} calls, and a disabled log costs nothing.
+ */
+final class SlowQueryLog {
+
+    /**
+     * The log, that does not log any query.
+     */
+    static final SlowQueryLog DISABLED = new SlowQueryLog(null, 0, ObservationRegistry.NOOP);
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(SlowQueryLog.class);
+
+    private static final String OBSERVATION_NAME = "reindexer.query";
+
+    private static final String EVENT_NAME = "slow";
+
+    private static final String EXPLAIN_EVENT_NAME = "explain";
+
+    /**
+     * The threshold in nanoseconds, -1 if the log is disabled.
+     */
+    private final long thresholdNanos;
+
+    private final double samplingRate;
+
+    private final ObservationRegistry observationRegistry;
+
+    /**
+     * Creates a slow query log.
+     *
+     * @param threshold           the minimal duration of a logged query, null to only emit the execution plans
+     * @param samplingRate        the fraction of the slow queries in range [0, 1] to log
+     * @param observationRegistry the {@link ObservationRegistry} to emit the slow queries to
+     */
+    SlowQueryLog(Duration threshold, double samplingRate, ObservationRegistry observationRegistry) {
+        thresholdNanos = threshold == null ? -1 : threshold.toNanos();
+        this.samplingRate = samplingRate;
+        this.observationRegistry = observationRegistry;
+    }
+
+    /**
+     * Returns the start time of a query to pass to {@link #record(Query, QueryLogBuilder.QueryType, long, QueryResult)}.
+     *
+     * @return the start time in nanoseconds
+     */
+    long start() {
+        return thresholdNanos < 0 ? 0 : System.nanoTime();
+    }
+
+    /**
+     * Logs the query, if it took longer than the threshold and it is sampled.
+     *
+     * @param query      the executed query
+     * @param type       the type of the executed query
+     * @param startNanos the start time, returned by {@link #start()}
+     * @param result     the result of a select query, null for update and delete queries
+     */
+    void record(Query<?> query, QueryLogBuilder.QueryType type, long startNanos, QueryResult result) {
+        ExplainResult explainResult = null;
+        if (result != null && result.getExplainData() != null && !observationRegistry.isNoop()) {
+            explainResult = ExplainResult.of(result.getExplainData());
+        }
+        long durationNanos = thresholdNanos < 0 ? 0 : System.nanoTime() - startNanos;
+        if (thresholdNanos < 0 || durationNanos < thresholdNanos
+                || samplingRate < 1 && ThreadLocalRandom.current().nextDouble() >= samplingRate) {
+            if (explainResult != null) {
+                emitExplain(query, type, explainResult);
+            }
+            return;
+        }
+        long durationMillis = TimeUnit.NANOSECONDS.toMillis(durationNanos);
+        String sql = query.getSql(type);
+        if (result != null) {
+            long count = result.getQCount();
+            int bytes = result.getBuffer() != null ? result.getBuffer().length() : 0;
+            LOGGER.warn("rx: slow query {} ms, {} items, {} bytes: {}", durationMillis, count, bytes, sql);
+            emit(query, type, durationMillis, sql, count, bytes, explainResult);
+        } else {
+            LOGGER.warn("rx: slow query {} ms: {}", durationMillis, sql);
+            emit(query, type, durationMillis, sql, -1, 0, null);
+        }
+    }
+
+    private void emit(Query<?> query, QueryLogBuilder.QueryType type, long durationMillis, String sql, long count,
+                      int bytes, ExplainResult explainResult) {
+        if (observationRegistry.isNoop()) {
+            return;
+        }
+        Observation observation = createObservation(query, type)
+                .highCardinalityKeyValue("db.query.text", sql)
+                .highCardinalityKeyValue("db.reindexer.duration_ms", String.valueOf(durationMillis))
+                .highCardinalityKeyValue("db.response.returned_rows", String.valueOf(count))
+                .highCardinalityKeyValue("db.reindexer.response_bytes", String.valueOf(bytes));
+        if (explainResult != null) {
+            addExplainKeyValues(observation, explainResult);
+        }
+        observation.start();
+        observation.event(Observation.Event.of(EVENT_NAME, "slow query"));
+        observation.stop();
+    }
+
+    private void emitExplain(Query<?> query, QueryLogBuilder.QueryType type, ExplainResult explainResult) {
+        Observation observation = createObservation(query, type)
+                .highCardinalityKeyValue("db.query.text", query.getSql(type));
+        addExplainKeyValues(observation, explainResult);
+        observation.start();
+        observation.event(Observation.Event.of(EXPLAIN_EVENT_NAME, "query execution plan"));
+        observation.stop();
+    }
+
+    private Observation createObservation(Query<?> query, QueryLogBuilder.QueryType type) {
+        return Observation.createNotStarted(OBSERVATION_NAME, observationRegistry)
+                .lowCardinalityKeyValue("db.system.name", "reindexer")
+                .lowCardinalityKeyValue("db.collection.name", query.getNamespace().getName())
+                .lowCardinalityKeyValue("db.operation.name", type.name());
+    }
+
+    private static void addExplainKeyValues(Observation observation, ExplainResult explainResult) {
+        observation.lowCardinalityKeyValue("db.reindexer.explain.scan", String.valueOf(explainResult.isScan()))
+                .highCardinalityKeyValue("db.reindexer.explain.sort_index", String.valueOf(explainResult.getSortIndex()))
+                .highCardinalityKeyValue("db.reindexer.explain.total_us", String.valueOf(explainResult.getTotalUs()))
+                .highCardinalityKeyValue("db.reindexer.explain.prepare_us",
+                        String.valueOf(explainResult.getPrepareUs()))
+                .highCardinalityKeyValue("db.reindexer.explain.indexes_us",
+                        String.valueOf(explainResult.getIndexesUs()))
+                .highCardinalityKeyValue("db.reindexer.explain.loop_us", String.valueOf(explainResult.getLoopUs()))
+                .highCardinalityKeyValue("db.reindexer.explain.general_sort_us",
+                        String.valueOf(explainResult.getGeneralSortUs()))
+                .highCardinalityKeyValue("db.reindexer.explain.postprocess_us",
+                        String.valueOf(explainResult.getPostprocessUs()));
+    }
+
+}
@@ -100,6 +100,11 @@ public class QueryResult {
      */
     private List<AggregationResult> aggResults;
 
+    /**
+     * The JSON representation of the query execution plan, null if the plan is not requested.
+     */
+    private byte[] explainData;
+
     /**
      * Get the {@link ByteBuffer} with query result data
      */
@@ -19,6 +19,7 @@ package ru.rt.restream.reindexer.binding;
 import com.google.gson.Gson;
 import ru.rt.restream.reindexer.AggregationResult;
 import ru.rt.restream.reindexer.binding.cproto.ByteBuffer;
+import ru.rt.restream.reindexer.binding.cproto.StringTable;
 import ru.rt.restream.reindexer.binding.cproto.cjson.PayloadField;
 import ru.rt.restream.reindexer.binding.cproto.cjson.PayloadType;
 
@@ -53,6 +54,12 @@ public class QueryResultReader {
 
     private final Gson gson = new Gson();
 
+    /**
+     * Namespace, tag and field names of the payload types. They are repeated in each page of the query results and
+     * in the joined namespaces, so each of them is decoded once and shared.
+     */
+    private final StringTable names = new StringTable();
+
     /**
      * Reads a {@link QueryResult} from the raw byte array.
      *
@@ -91,14 +98,14 @@ public class QueryResultReader {
             int ptCount = (int) buffer.getVarUInt();
             for (int i = 0; i < ptCount; i++) {
                 long namespaceId = buffer.getVarUInt();
-                String namespaceName = buffer.getVString();
+                String namespaceName = buffer.getVString(names);
                 int stateToken = (int) buffer.getVarUInt();
                 long version = buffer.getVarUInt();
                 //read tags
                 List<String> tags = new ArrayList<>();
                 long tagsCount = buffer.getVarUInt();
                 for (int j = 0; j < tagsCount; j++) {
-                    tags.add(buffer.getVString());
+                    tags.add(buffer.getVString(names));
                 }
                 //read payload fields
                 long pStringHdrOffset = buffer.getVarUInt();
@@ -111,14 +118,14 @@ public class QueryResultReader {
                     int floatVectorDimension = (type == VALUE_FLOAT_VECTOR)
                             ? (int) buffer.getVarUInt()
                             : 0;
-                    String name = buffer.getVString();
+                    String name = buffer.getVString(names);
                     long offset = buffer.getVarUInt();
                     long size = buffer.getVarUInt();
                     boolean isArray = buffer.getVarUInt() != 0;
                     long jsonPathCnt = buffer.getVarUInt();
                     List<String> jsonPaths = new ArrayList<>();
                     for (int k = 0; k < jsonPathCnt; k++) {
-                        jsonPaths.add(buffer.getVString());
+                        jsonPaths.add(buffer.getVString(names));
                     }
                     fields.add(new PayloadField(type, name, offset, size, isArray, jsonPaths, floatVectorDimension));
                 }
@@ -138,7 +145,7 @@ public class QueryResultReader {
                     aggregationResults.add(deserializeAggResult(data));
                     break;
                 case QUERY_RESULT_EXPLAIN:
-                    buffer.getBytes((int) buffer.getUInt32());
+                    queryResult.setExplainData(buffer.getBytes((int) buffer.getUInt32()));
                     break;
                 case QUERY_RESULT_SHARDING_VERSION:
                     queryResult.setShardingVersion(buffer.getVarInt());
@@ -35,6 +35,16 @@ public interface RequestContext {
      */
     void fetchResults(int offset, int limit);
 
+    /**
+     * Requests part of the results in advance, so that a subsequent {@link #fetchResults(int, int)}
+     * with the same offset and limit does not wait for a response. Does nothing by default.
+     *
+     * @param offset an offset
+     * @param limit  a limit
+     */
+    default void prefetchResults(int offset, int limit) {
+    }
+
     /**
      * Closes query results.
      */
@@ -17,9 +17,10 @@ package ru.rt.restream.reindexer.binding.cproto;
 
 import ru.rt.restream.reindexer.binding.Consts;
 
+import java.io.IOException;
+import java.io.OutputStream;
 import java.lang.reflect.Array;
 import java.nio.charset.StandardCharsets;
-import java.util.Arrays;
 import java.util.Collection;
 import java.util.UUID;
 
@@ -132,6 +133,22 @@ public class ByteBuffer {
         return this;
     }
 
+    /**
+     * Encodes an integer value into unsigned 16-bit integer at the specified position.
+     * Doesn't increments buffer position.
+     *
+     * @param value    value to encode
+     * @param position position to write at
+     * @return the {@link ByteBuffer} for further customizations
+     */
+    public ByteBuffer putUInt16(int value, int position) {
+        if (value < 0 || value > 0xFFFF) {
+            throw new IllegalArgumentException();
+        }
+        putIntBits(value, Short.BYTES, position);
+        return this;
+    }
+
     /**
      * Encodes an integer value into unsigned 32-bit integer.
      * Increments buffer position.
@@ -156,21 +173,40 @@ public class ByteBuffer {
     }
 
     private void putIntBits(long input, int size, int position) {
-        grow(size);
-        byte[] buffer = new byte[size];
-        for (int i = 0; i < size; i++) {
-            buffer[i] = (byte) input;
-            input = input >> 8;
+        int offset = position;
+        if (position == -1) {
+            grow(size);
+            offset = this.position;
+            this.position += size;
+            this.size += size;
         }
-        if (position != -1) {
-            System.arraycopy(buffer, 0, this.buffer, position, buffer.length);
-        } else {
-            System.arraycopy(buffer, 0, this.buffer, this.position, buffer.length);
-            this.position = this.position + buffer.length;
-            this.size = this.size + buffer.length;
+        switch (size) {
+            case Long.BYTES:
+                writeLong(offset, input);
+                break;
+            case Integer.BYTES:
+                writeInt(offset, (int) input);
+                break;
+            default:
+                for (int i = 0; i < size; i++) {
+                    buffer[offset + i] = (byte) (input >> (i << 3));
+                }
         }
     }
 
+    private void writeInt(int offset, int value) {
+        byte[] buffer = this.buffer;
+        buffer[offset] = (byte) value;
+        buffer[offset + 1] = (byte) (value >> 8);
+        buffer[offset + 2] = (byte) (value >> 16);
+        buffer[offset + 3] = (byte) (value >> 24);
+    }
+
+    private void writeLong(int offset, long value) {
+        writeInt(offset, (int) value);
+        writeInt(offset + Integer.BYTES, (int) (value >> 32));
+    }
+
     /**
      * Encodes a value using the variable-length encoding from
      * <a href="http://code.google.com/apis/protocolbuffers/docs/encoding.html">
@@ -186,9 +222,7 @@ public class ByteBuffer {
             throw new IllegalArgumentException();
         }
         grow(10);
-        byte[] buffer = new byte[10];
-        int variantSize = putUVariant(buffer, value);
-        System.arraycopy(buffer, 0, this.buffer, position, variantSize);
+        int variantSize = putUVariant(buffer, position, value);
         position = position + variantSize;
         size = size + variantSize;
         return this;
@@ -202,6 +236,7 @@ public class ByteBuffer {
      * @return the {@link ByteBuffer} for further customizations
      */
     public ByteBuffer putVarInt32(int value) {
+        grow(5);
         do {
             int bits = value & 0x7F;
             value >>>= 7;
@@ -225,34 +260,63 @@ public class ByteBuffer {
      */
     public ByteBuffer putVarInt64(long value) {
         // Great trick from http://code.google.com/apis/protocolbuffers/docs/encoding.html#types
-        return putVarUInt32((value << 1) ^ (value >> 63));
+        // the zig-zag value of a large magnitude is negative as long, it is written as unsigned
+        grow(10);
+        int variantSize = putUVariant(buffer, position, (value << 1) ^ (value >> 63));
+        position = position + variantSize;
+        size = size + variantSize;
+        return this;
     }
 
-    private int putUVariant(byte[] buffer, long value) {
-        int i = 0;
-        while (value >= 0x80) {
-            buffer[i] = (byte) (value | 0x80);
-            value >>= 7;
-            i++;
+    private static int putUVariant(byte[] buffer, int offset, long value) {
+        int i = offset;
+        while ((value & ~0x7FL) != 0) {
+            buffer[i++] = (byte) (value | 0x80);
+            value >>>= 7;
         }
         buffer[i] = (byte) value;
-        return i + 1;
+        return i + 1 - offset;
     }
 
     /**
      * Encodes a string value. Inserts encoded length of specified string and
-     * then inserts string bytes in the backed byte array.
+     * then inserts string UTF-8 bytes in the backed byte array, encoding them in place.
      * Increments buffer position.
      *
      * @param value value to encode
      * @return the {@link ByteBuffer} for further customizations
      */
     public ByteBuffer putVString(String value) {
-        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
-        putVBytes(bytes);
+        int maxLength = Utf8.maxEncodedLength(value);
+        int headerSize = varUIntSize(maxLength);
+        if (headerSize != varUIntSize(value.length())) {
+            // the length prefix size depends on the encoded length, so measure it first
+            int length = Utf8.encodedLength(value);
+            putVarUInt32(length);
+            grow(length);
+            Utf8.encode(value, buffer, position);
+            position += length;
+            size += length;
+            return this;
+        }
+        // the length prefix size is known, so encode in a single pass and put the prefix before the string
+        grow(headerSize + maxLength);
+        int end = Utf8.encode(value, buffer, position + headerSize);
+        putUVariant(buffer, position, end - position - headerSize);
+        size += end - position;
+        position = end;
         return this;
     }
 
+    private static int varUIntSize(long value) {
+        int size = 1;
+        while (value >= 0x80) {
+            value >>= 7;
+            size++;
+        }
+        return size;
+    }
+
     /**
      * Encodes a UUID value.
      * Increments buffer position.
@@ -304,7 +368,7 @@ public class ByteBuffer {
         } else if (value instanceof Long) {
             putVarUInt32(Consts.VALUE_INT_64).putVarInt64((Long) value);
         } else if (value instanceof Float) {
-            putVarUInt32(Consts.VALUE_DOUBLE).putFloat(((Float) value));
+            putVarUInt32(Consts.VALUE_DOUBLE).putDouble((Float) value);
         } else if (value instanceof Double) {
             putVarUInt32(Consts.VALUE_DOUBLE).putDouble((Double) value);
         } else if (value instanceof Character) {
@@ -338,13 +402,56 @@ public class ByteBuffer {
      * @return the {@link ByteBuffer} for further customizations
      */
     public ByteBuffer writeBytes(byte[] value) {
+        return writeBytes(value, 0, value.length);
+    }
+
+    /**
+     * Writes specified part of byte array into buffer.
+     * Increments buffer position.
+     *
+     * @param value  array to put
+     * @param offset offset of the first byte to put
+     * @param length number of bytes to put
+     * @return the {@link ByteBuffer} for further customizations
+     */
+    public ByteBuffer writeBytes(byte[] value, int offset, int length) {
+        grow(length);
+        System.arraycopy(value, offset, this.buffer, position, length);
+        position = position + length;
+        size = size + length;
+        return this;
+    }
+
+    /**
+     * Inserts specified byte array into buffer at the specified position, shifting the bytes after it.
+     * Increments buffer position.
+     *
+     * @param position position to insert at
+     * @param value    array to insert
+     * @return the {@link ByteBuffer} for further customizations
+     */
+    public ByteBuffer insertBytes(int position, byte[] value) {
+        if (position < 0 || position > size) {
+            throw new IllegalArgumentException();
+        }
         grow(value.length);
-        System.arraycopy(value, 0, this.buffer, position, value.length);
-        position = position + value.length;
+        System.arraycopy(buffer, position, buffer, position + value.length, size - position);
+        System.arraycopy(value, 0, buffer, position, value.length);
+        this.position = this.position + value.length;
         size = size + value.length;
         return this;
     }
 
+    /**
+     * Reads an unsigned 8-bit integer from the current position in the buffer.
+     * Increments buffer position.
+     *
+     * @return the integer read, as an int to avoid signedness
+     */
+    public int getUInt8() {
+        return (int) readIntBits(Byte.BYTES);
+    }
+
     /**
      * Read an unsigned 16-bit integer from the current position in the buffer.
      * Increments buffer position.
@@ -376,21 +483,33 @@ public class ByteBuffer {
     }
 
     private long readIntBits(int size) {
-        if (position + size > buffer.length) {
-            final String msg = String.format("Buffer underflow error: position %d, length %d, need %d", position,
-                    buffer.length, size);
-            throw new RuntimeException(msg);
-        }
-
-        long value = 0;
-        for (int i = size - 1; i >= 0; i--) {
-            value = (buffer[position + i] & 0xFF) | (value << 8);
+        int offset = checkRemaining(size);
+        long value;
+        switch (size) {
+            case Long.BYTES:
+                value = (readInt(offset) & 0xFFFF_FFFFL) | ((long) readInt(offset + Integer.BYTES) << 32);
+                break;
+            case Integer.BYTES:
+                value = readInt(offset) & 0xFFFF_FFFFL;
+                break;
+            default:
+                value = 0;
+                for (int i = size - 1; i >= 0; i--) {
+                    value = (buffer[offset + i] & 0xFF) | (value << 8);
+                }
         }
-
-        position += size;
+        position = offset + size;
         return value;
     }
 
+    private int readInt(int offset) {
+        byte[] buffer = this.buffer;
+        return (buffer[offset] & 0xFF)
+                | (buffer[offset + 1] & 0xFF) << 8
+                | (buffer[offset + 2] & 0xFF) << 16
+                | (buffer[offset + 3] & 0xFF) << 24;
+    }
+
     /**
      * Reads an unsigned variable length integer from a buffer.
      * Increments buffer position.
@@ -438,6 +557,18 @@ public class ByteBuffer {
         return getString(length);
     }
 
+    /**
+     * Reads a variable length string from a buffer, taking the string instance from the table, so that equal strings
+     * read by the same table are shared. The string is decoded only the first time the table sees it.
+     * Increments buffer position.
+     *
+     * @param table the table of the strings read before
+     * @return the string read from a backed array
+     */
+    public String getVString(StringTable table) {
+        return table.get(table.intern(this));
+    }
+
     /**
      * Reads a UUID (two 64-bit integer) from the current position in the buffer.
      * Increments buffer position.
@@ -456,10 +587,9 @@ public class ByteBuffer {
      * @return the string read from a backed array
      */
     private String getString(int length) {
-        byte[] bytes = new byte[length];
-        System.arraycopy(buffer, position, bytes, 0, length);
+        String value = Utf8.decode(buffer, checkRemaining(length), length);
         position += length;
-        return new String(bytes, StandardCharsets.UTF_8);
+        return value;
     }
 
     /**
@@ -480,6 +610,46 @@ public class ByteBuffer {
         return Float.intBitsToFloat((int) readIntBits(Integer.BYTES));
     }
 
+    /**
+     * Reads float values, written by {@link #putFloats(float[])}, into the array.
+     * Increments buffer position.
+     *
+     * @param values the array to read to, its length is the number of values to read
+     */
+    public void getFloats(float[] values) {
+        int offset = checkRemaining(values.length * Float.BYTES);
+        for (int i = 0; i < values.length; i++) {
+            values[i] = Float.intBitsToFloat(readInt(offset));
+            offset += Float.BYTES;
+        }
+        position = offset;
+    }
+
+    /**
+     * Reads double values, written by {@link #putDoubles(double[])}, into the array.
+     * Increments buffer position.
+     *
+     * @param values the array to read to, its length is the number of values to read
+     */
+    public void getDoubles(double[] values) {
+        int offset = checkRemaining(values.length * Double.BYTES);
+        for (int i = 0; i < values.length; i++) {
+            values[i] = Double.longBitsToDouble((readInt(offset) & 0xFFFF_FFFFL)
+                    | ((long) readInt(offset + Integer.BYTES) << 32));
+            offset += Double.BYTES;
+        }
+        position = offset;
+    }
+
+    private int checkRemaining(int size) {
+        if (position + size > buffer.length) {
+            final String msg = String.format("Buffer underflow error: position %d, length %d, need %d", position,
+                    buffer.length, size);
+            throw new RuntimeException(msg);
+        }
+        return position;
+    }
+
     /**
      * Reads byte array from a buffer. The length of array is encoded into backed array.
      * Increments buffer position.
@@ -529,6 +699,64 @@ public class ByteBuffer {
         return bytes;
     }
 
+    /**
+     * Writes all used bytes from the backed array into the output stream.
+     * Doesn't increments buffer position.
+     *
+     * @param output the stream to write to
+     * @throws IOException if an I/O error occurs
+     */
+    public void writeTo(OutputStream output) throws IOException {
+        output.write(buffer, 0, size);
+    }
+
+    /**
+     * Writes the specified number of bytes from the current position into the output stream, without copying them.
+     * Increments buffer position.
+     *
+     * @param output the stream to write to
+     * @param length the number of bytes to write
+     * @throws IOException if an I/O error occurs
+     */
+    public void writeTo(OutputStream output, int length) throws IOException {
+        checkRemaining(length);
+        output.write(buffer, position, length);
+        position += length;
+    }
+
+    /**
+     * Puts the specified number of bytes from the current position into the target buffer.
+     * Increments buffer position.
+     *
+     * @param target the buffer to put the bytes to
+     * @param length the number of bytes to put
+     * @throws java.nio.BufferOverflowException if there is insufficient space in the target buffer
+     */
+    public void writeTo(java.nio.ByteBuffer target, int length) {
+        checkRemaining(length);
+        target.put(buffer, position, length);
+        position += length;
+    }
+
+    /**
+     * Wraps all used bytes from the backed array into a {@link java.nio.ByteBuffer} without copying.
+     * The returned buffer shares the backed array, so it is valid only until this buffer is modified.
+     *
+     * @return the {@link java.nio.ByteBuffer} view of used bytes
+     */
+    public java.nio.ByteBuffer asNioBuffer() {
+        return java.nio.ByteBuffer.wrap(buffer, 0, size);
+    }
+
+    /**
+     * Returns the backed array. Only the first {@link #length()} bytes are used.
+     *
+     * @return the backed array
+     */
+    byte[] array() {
+        return buffer;
+    }
+
     /**
      * Sets current buffer position at the beginning of the backed array.
      *
@@ -551,19 +779,69 @@ public class ByteBuffer {
         }
     }
 
-    public void putDouble(Double value) {
+    /**
+     * Encodes a double value as 64-bit little-endian integer bits.
+     * Increments buffer position.
+     *
+     * @param value value to encode
+     */
+    public void putDouble(double value) {
         putIntBits(Double.doubleToLongBits(value), Long.BYTES, -1);
     }
 
-    public void putFloat(Float value) {
+    /**
+     * Encodes a float value as 32-bit little-endian integer bits.
+     * Increments buffer position.
+     *
+     * @param value value to encode
+     */
+    public void putFloat(float value) {
         putIntBits(Float.floatToIntBits(value), Integer.BYTES, -1);
     }
 
     public void putFloatVector(float[] vector) {
         putVarUInt32(((long) vector.length) << 1);
-        for (float v : vector) {
-            putIntBits(Float.floatToIntBits(v), Integer.BYTES, -1);
+        putFloats(vector);
+    }
+
+    /**
+     * Writes the float values one after another, each as {@link #putFloat(float)} does, growing the buffer once.
+     * Increments buffer position.
+     *
+     * @param values the values to write
+     * @return the {@link ByteBuffer} for further customizations
+     */
+    public ByteBuffer putFloats(float[] values) {
+        int length = values.length * Float.BYTES;
+        grow(length);
+        int offset = position;
+        for (float value : values) {
+            writeInt(offset, Float.floatToIntBits(value));
+            offset += Float.BYTES;
+        }
+        position += length;
+        size += length;
+        return this;
+    }
+
+    /**
+     * Writes the double values one after another, each as {@link #putDouble(double)} does, growing the buffer once.
+     * Increments buffer position.
+     *
+     * @param values the values to write
+     * @return the {@link ByteBuffer} for further customizations
+     */
+    public ByteBuffer putDoubles(double[] values) {
+        int length = values.length * Double.BYTES;
+        grow(length);
+        int offset = position;
+        for (double value : values) {
+            writeLong(offset, Double.doubleToLongBits(value));
+            offset += Double.BYTES;
         }
+        position += length;
+        size += length;
+        return this;
     }
 
     public void truncateStart(int length) {
@@ -577,13 +855,26 @@ public class ByteBuffer {
     /**
      * Resets the buffer to be empty,
      * but it retains the underlying storage for use by future writes.
+     * The stale bytes are not cleared, they are overwritten by the next writes.
      */
     public void reset() {
-        Arrays.fill(buffer, (byte) 0);
         position = 0;
         size = 0;
     }
 
+    /**
+     * Discards the bytes beyond the specified length and sets the position at the end of the remaining bytes.
+     *
+     * @param length the number of bytes to keep
+     */
+    public void truncate(int length) {
+        if (length < 0 || length > size) {
+            throw new IllegalArgumentException();
+        }
+        position = length;
+        size = length;
+    }
+
     /**
      * Skip bytes and increase position by 'length'.
      *
@@ -602,6 +893,18 @@ public class ByteBuffer {
         return position;
     }
 
+    /**
+     * Set the cursor position in byte buffer.
+     *
+     * @param position the cursor position
+     */
+    public void setPosition(int position) {
+        if (position < 0 || position > size) {
+            throw new IllegalArgumentException();
+        }
+        this.position = position;
+    }
+
     /**
      * Return the size of recorded bytes.
      *
@@ -0,0 +1,90 @@
+/*
+ * Copyright 2020-present Restream
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ru.rt.restream.reindexer.binding.cproto;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Statistics of the cproto frame compression, shared by all connections of a {@link ConnectionPool}.
+ * Only the bodies of compressed frames are counted.
+ */
+public final class CompressionStats {
+
+    private final LongAdder uncompressedBytesSent = new LongAdder();
+
+    private final LongAdder compressedBytesSent = new LongAdder();
+
+    private final LongAdder compressedBytesReceived = new LongAdder();
+
+    private final LongAdder uncompressedBytesReceived = new LongAdder();
+
+    void onSent(int uncompressedBytes, int compressedBytes) {
+        uncompressedBytesSent.add(uncompressedBytes);
+        compressedBytesSent.add(compressedBytes);
+    }
+
+    void onReceived(int compressedBytes, int uncompressedBytes) {
+        compressedBytesReceived.add(compressedBytes);
+        uncompressedBytesReceived.add(uncompressedBytes);
+    }
+
+    /**
+     * Returns the total size of the sent frame bodies before compression.
+     *
+     * @return the number of bytes
+     */
+    public long getUncompressedBytesSent() {
+        return uncompressedBytesSent.sum();
+    }
+
+    /**
+     * Returns the total size of the sent frame bodies after compression.
+     *
+     * @return the number of bytes
+     */
+    public long getCompressedBytesSent() {
+        return compressedBytesSent.sum();
+    }
+
+    /**
+     * Returns the total size of the received compressed frame bodies.
+     *
+     * @return the number of bytes
+     */
+    public long getCompressedBytesReceived() {
+        return compressedBytesReceived.sum();
+    }
+
+    /**
+     * Returns the total size of the received frame bodies after decompression.
+     *
+     * @return the number of bytes
+     */
+    public long getUncompressedBytesReceived() {
+        return uncompressedBytesReceived.sum();
+    }
+
+    @Override
+    public String toString() {
+        return "CompressionStats{" +
+                "uncompressedBytesSent=" + uncompressedBytesSent +
+                ", compressedBytesSent=" + compressedBytesSent +
+                ", compressedBytesReceived=" + compressedBytesReceived +
+                ", uncompressedBytesReceived=" + uncompressedBytesReceived +
+                '}';
+    }
+
+}
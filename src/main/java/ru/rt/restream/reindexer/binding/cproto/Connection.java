@@ -17,6 +17,7 @@ package ru.rt.restream.reindexer.binding.cproto;
 
 import ru.rt.restream.reindexer.ReindexerResponse;
 
+import java.time.Duration;
 import java.util.concurrent.CompletableFuture;
 
 /**
@@ -43,6 +44,33 @@ public interface Connection extends AutoCloseable {
      */
     CompletableFuture<ReindexerResponse> rpcCallAsync(int command, Object... args);
 
+    /**
+     * Call a rpc command with specified arguments and a timeout that overrides the connection request timeout,
+     * e.g. to propagate the remaining time of an enclosing operation.
+     * Connections that do not support per call timeouts ignore it.
+     *
+     * @param timeout the request timeout
+     * @param command command to invoke
+     * @param args    command arguments
+     * @return rpc call result
+     */
+    default ReindexerResponse rpcCall(Duration timeout, int command, Object... args) {
+        return rpcCall(command, args);
+    }
+
+    /**
+     * Call a rpc command with specified arguments and a timeout asynchronously.
+     *
+     * @param timeout the request timeout
+     * @param command command to invoke
+     * @param args    command arguments
+     * @return the {@link CompletableFuture}
+     * @see #rpcCall(Duration, int, Object...)
+     */
+    default CompletableFuture<ReindexerResponse> rpcCallAsync(Duration timeout, int command, Object... args) {
+        return rpcCallAsync(command, args);
+    }
+
     /**
      * Returns true if the connection has an error.
      *
@@ -50,6 +78,15 @@ public interface Connection extends AutoCloseable {
      */
     boolean hasError();
 
+    /**
+     * Returns the number of requests sent over this connection that are awaiting a response.
+     *
+     * @return the number of in-flight requests
+     */
+    default int getInFlightRequests() {
+        return 0;
+    }
+
     /**
      * Returns negotiated query serialization format version.
      *
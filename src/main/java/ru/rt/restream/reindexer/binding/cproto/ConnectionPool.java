@@ -42,6 +42,16 @@ public class ConnectionPool {
 
     private static final Logger LOGGER = LoggerFactory.getLogger(ConnectionPool.class);
 
+    /**
+     * Scheduler size for {@link Transport#NIO}, where the scheduler only handles pings.
+     */
+    private static final int NIO_SCHEDULER_SIZE = 1;
+
+    /**
+     * A number of the request timeout timer buckets.
+     */
+    private static final int TIMER_WHEEL_SIZE = 512;
+
     /**
      * Read/Write lock.
      */
@@ -62,13 +72,28 @@ public class ConnectionPool {
      */
     private final ScheduledThreadPoolExecutor scheduler;
 
+    /**
+     * Selector loops for {@link Transport#NIO}, null for {@link Transport#BLOCKING}.
+     */
+    private final SelectorLoopGroup loopGroup;
+
+    /**
+     * Timer for request timeouts of all connections.
+     */
+    private final HashedWheelTimer timer;
+
     /**
      * Available connections.
      */
     private final List<Connection> connections;
 
     /**
-     * Generator of identifiers for obtaining a connection.
+     * Selects a connection for obtaining.
+     */
+    private final ConnectionSelector connectionSelector;
+
+    /**
+     * Generator of sequence numbers for obtaining a connection.
      */
     private final AtomicInteger next = new AtomicInteger(0);
 
@@ -99,12 +124,36 @@ public class ConnectionPool {
                           int connectionPoolSize, Duration requestTimeout) {
         this.dataSourceFactory = dataSourceFactory;
         this.dataSourceConfiguration = dataSourceConfiguration;
-        scheduler = new ScheduledThreadPoolExecutor(connectionPoolSize * 2 + 1, new ConnectionThreadFactory());
+        connectionSelector = dataSourceConfiguration.getConnectionSelector();
+        ThreadFactory threadFactory = new ConnectionThreadFactory();
+        if (getTransport(dataSourceConfiguration) == Transport.NIO) {
+            loopGroup = new SelectorLoopGroup(dataSourceConfiguration.getIoThreads(), threadFactory);
+            scheduler = new ScheduledThreadPoolExecutor(NIO_SCHEDULER_SIZE, threadFactory);
+        } else {
+            loopGroup = null;
+            scheduler = new ScheduledThreadPoolExecutor(connectionPoolSize * 2 + 1, threadFactory);
+        }
         scheduler.setRemoveOnCancelPolicy(true);
         connections = new ArrayList<>(connectionPoolSize);
         timeout = requestTimeout;
-        dataSource = getDataSource(connectionPoolSize);
-        scheduler.scheduleWithFixedDelay(new PingTask(), 0, 1, TimeUnit.MINUTES);
+        try {
+            timer = new HashedWheelTimer(dataSourceConfiguration.getTimeoutTick(), TIMER_WHEEL_SIZE, threadFactory);
+            dataSource = getDataSource(connectionPoolSize);
+            scheduler.scheduleWithFixedDelay(new PingTask(), 0, 1, TimeUnit.MINUTES);
+        } catch (RuntimeException e) {
+            // the selector loop threads are already started and would keep running
+            close();
+            throw e;
+        }
+    }
+
+    private static Transport getTransport(DataSourceConfiguration dataSourceConfiguration) {
+        Transport transport = dataSourceConfiguration.getTransport();
+        if (transport == Transport.NIO && dataSourceConfiguration.getSslSocketFactory() != null) {
+            LOGGER.warn("rx: transport {} does not support SSL/TLS, falling back to {}", transport, Transport.BLOCKING);
+            return Transport.BLOCKING;
+        }
+        return transport;
     }
 
     /**
@@ -117,10 +166,12 @@ public class ConnectionPool {
         if (closed.get()) {
             throw new IllegalStateException("Connection pool is closed");
         }
-        int id = next.getAndUpdate(i -> ++i < connections.size() ? i : 0);
+        int sequence = next.getAndIncrement();
+        int id;
         Connection connection;
         lock.readLock().lock();
         try {
+            id = connectionSelector.select(connections, sequence);
             connection = connections.get(id);
         } finally {
             lock.readLock().unlock();
@@ -131,7 +182,7 @@ public class ConnectionPool {
                 connection = connections.get(id);
                 if (connection.hasError()) {
                     try {
-                        connection = dataSource.getConnection(timeout, scheduler);
+                        connection = createConnection(dataSource);
                         connections.set(id, connection);
                     } catch (NetworkException e) {
                         LOGGER.error("rx: connection-{} to {} failed with error", id, dataSource, e);
@@ -147,6 +198,15 @@ public class ConnectionPool {
         return connection;
     }
 
+    /**
+     * Returns a statistics of the frame compression of this pool connections.
+     *
+     * @return the {@link CompressionStats}
+     */
+    public CompressionStats getCompressionStats() {
+        return dataSourceConfiguration.getCompressionStats();
+    }
+
     public int queryFormatVersion() {
         return getConnection().queryFormatVersion();
     }
@@ -164,7 +224,7 @@ public class ConnectionPool {
             LOGGER.debug("rx: trying to connect to {}", dataSource);
             try {
                 for (int i = 0; i < connectionPoolSize; i++) {
-                    Connection newConnection = dataSource.getConnection(timeout, scheduler);
+                    Connection newConnection = createConnection(dataSource);
                     if (i < connections.size()) {
                         Connection oldConnection = connections.get(i);
                         oldConnection.close();
@@ -186,6 +246,10 @@ public class ConnectionPool {
         }
     }
 
+    private Connection createConnection(DataSource dataSource) {
+        return dataSource.getConnection(timeout, scheduler, loopGroup, timer);
+    }
+
     /**
      * Closes all unused pooled connections.
      * Exceptions while closing are written to the log.
@@ -199,6 +263,12 @@ public class ConnectionPool {
                 lock.readLock().unlock();
             }
             scheduler.shutdown();
+            if (timer != null) {
+                timer.close();
+            }
+            if (loopGroup != null) {
+                loopGroup.close();
+            }
         }
     }
 
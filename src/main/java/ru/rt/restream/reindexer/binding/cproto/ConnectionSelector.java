@@ -0,0 +1,34 @@
+/*
+ * Copyright 2020-present Restream
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ru.rt.restream.reindexer.binding.cproto;
+
+import java.util.List;
+
+/**
+ * A policy of selecting a {@link ConnectionPool} connection for the next request.
+ */
+public interface ConnectionSelector {
+
+    /**
+     * Selects a connection from the pool connections.
+     *
+     * @param connections the pool connections, not empty
+     * @param sequence    the number of the selection, incremented by the pool for every selection
+     * @return the index of the selected connection
+     */
+    int select(List<Connection> connections, int sequence);
+
+}
@@ -0,0 +1,82 @@
+/*
+ * Copyright 2020-present Restream
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ru.rt.restream.reindexer.binding.cproto;
+
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * A {@link ConnectionSelector} strategies.
+ */
+public enum ConnectionSelectorStrategy implements ConnectionSelector {
+
+    /**
+     * Round-robin strategy. Selects the next connection cyclically.
+     */
+    ROUND_ROBIN {
+        @Override
+        public int select(List<Connection> connections, int sequence) {
+            return Math.floorMod(sequence, connections.size());
+        }
+    },
+
+    /**
+     * Least in-flight strategy. Selects the connection with the least number of requests awaiting a response,
+     * so that requests do not queue up behind a large result. Scans all connections for every selection.
+     */
+    LEAST_IN_FLIGHT {
+        @Override
+        public int select(List<Connection> connections, int sequence) {
+            int size = connections.size();
+            int start = Math.floorMod(sequence, size);
+            int selected = start;
+            int minInFlight = connections.get(start).getInFlightRequests();
+            for (int i = 1; i < size && minInFlight > 0; i++) {
+                int index = (start + i) % size;
+                int inFlight = connections.get(index).getInFlightRequests();
+                if (inFlight < minInFlight) {
+                    selected = index;
+                    minInFlight = inFlight;
+                }
+            }
+            return selected;
+        }
+    },
+
+    /**
+     * Power of two choices strategy. Selects the connection with the least number of requests awaiting
+     * a response of two random connections. Is nearly as good as {@link #LEAST_IN_FLIGHT}, but the cost
+     * of a selection does not depend on the pool size.
+     */
+    POWER_OF_TWO_CHOICES {
+        @Override
+        public int select(List<Connection> connections, int sequence) {
+            int size = connections.size();
+            if (size == 1) {
+                return 0;
+            }
+            ThreadLocalRandom random = ThreadLocalRandom.current();
+            int first = random.nextInt(size);
+            int second = random.nextInt(size - 1);
+            if (second >= first) {
+                second++;
+            }
+            return connections.get(second).getInFlightRequests() < connections.get(first).getInFlightRequests()
+                    ? second : first;
+        }
+    }
+
+}
@@ -55,6 +55,15 @@ public class Cproto implements Binding {
         pool = new ConnectionPool(dataSourceFactory, dataSourceConfig, connectionPoolSize, requestTimeout);
     }
 
+    /**
+     * Returns a statistics of the cproto frame compression, enabled by {@link DataSourceConfiguration#isCompression()}.
+     *
+     * @return the {@link CompressionStats}
+     */
+    public CompressionStats getCompressionStats() {
+        return pool.getCompressionStats();
+    }
+
     /**
      * {@inheritDoc}
      */
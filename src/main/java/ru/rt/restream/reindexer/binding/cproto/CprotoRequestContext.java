@@ -25,6 +25,13 @@ import ru.rt.restream.reindexer.binding.QueryResult;
 import ru.rt.restream.reindexer.binding.QueryResultReader;
 import ru.rt.restream.reindexer.binding.RequestContext;
 import ru.rt.restream.reindexer.binding.cproto.util.ConnectionUtils;
+import ru.rt.restream.reindexer.exceptions.ReindexerException;
+import ru.rt.restream.reindexer.exceptions.ReindexerExceptionFactory;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 
 /**
  * A request context which establish a connection to the Reindexer instance via RPC.
@@ -49,6 +56,11 @@ public class CprotoRequestContext implements RequestContext {
 
     private int requestId = -1;
 
+    /**
+     * Results requested in advance, in the order of their offsets.
+     */
+    private final Deque<Prefetch> prefetches = new ArrayDeque<>();
+
     /**
      * Creates an instance.
      *
@@ -71,12 +83,54 @@ public class CprotoRequestContext implements RequestContext {
 
     @Override
     public void fetchResults(int offset, int limit) {
-        int flags = asJson
+        Prefetch prefetch = prefetches.poll();
+        ReindexerResponse rpcResponse;
+        if (prefetch != null && prefetch.offset == offset && prefetch.limit == limit) {
+            rpcResponse = prefetch.await();
+        } else {
+            if (prefetch != null) {
+                prefetch.discard();
+                discardPrefetches();
+            }
+            rpcResponse = ConnectionUtils.rpcCall(connection, Binding.FETCH_RESULTS, requestId, getFetchFlags(),
+                    offset, getFetchCount(limit));
+        }
+        queryResult = getQueryResult(rpcResponse);
+    }
+
+    /**
+     * Sends the FETCH_RESULTS request without waiting for the response,
+     * which is taken by {@link #fetchResults(int, int)} with the same offset and limit.
+     */
+    @Override
+    public void prefetchResults(int offset, int limit) {
+        if (requestId == -1) {
+            return;
+        }
+        CompletableFuture<ReindexerResponse> response = connection.rpcCallAsync(Binding.FETCH_RESULTS, requestId,
+                getFetchFlags(), offset, getFetchCount(limit));
+        prefetches.add(new Prefetch(offset, limit, response));
+    }
+
+    private int getFetchFlags() {
+        return asJson
                 ? Consts.RESULTS_JSON
                 : Consts.RESULTS_C_JSON | Consts.RESULTS_WITH_PAYLOAD_TYPES;
-        int fetchCount = limit <= 0 ? Integer.MAX_VALUE : limit;
-        ReindexerResponse rpcResponse = ConnectionUtils.rpcCall(connection, Binding.FETCH_RESULTS, requestId, flags, offset, fetchCount);
-        queryResult = getQueryResult(rpcResponse);
+    }
+
+    private static int getFetchCount(int limit) {
+        return limit <= 0 ? Integer.MAX_VALUE : limit;
+    }
+
+    /**
+     * Waits for the outstanding prefetch requests and drops their results,
+     * so that the server does not receive them after the results are closed.
+     */
+    private void discardPrefetches() {
+        Prefetch prefetch;
+        while ((prefetch = prefetches.poll()) != null) {
+            prefetch.discard();
+        }
     }
 
     /**
@@ -84,6 +138,7 @@ public class CprotoRequestContext implements RequestContext {
      */
     @Override
     public void closeResults() {
+        discardPrefetches();
         if (requestId != -1) {
             ReindexerResponse rpcResponse = connection.rpcCall(Binding.CLOSE_RESULTS, requestId);
             if (rpcResponse.hasError()) {
@@ -105,4 +160,45 @@ public class CprotoRequestContext implements RequestContext {
         return reader.read(rawQueryResult, queryFormatVersion);
     }
 
+    private static final class Prefetch {
+
+        private final int offset;
+
+        private final int limit;
+
+        private final CompletableFuture<ReindexerResponse> response;
+
+        private Prefetch(int offset, int limit, CompletableFuture<ReindexerResponse> response) {
+            this.offset = offset;
+            this.limit = limit;
+            this.response = response;
+        }
+
+        private ReindexerResponse await() {
+            ReindexerResponse rpcResponse;
+            try {
+                rpcResponse = response.join();
+            } catch (CompletionException e) {
+                Throwable cause = e.getCause();
+                if (cause instanceof ReindexerException) {
+                    throw (ReindexerException) cause;
+                }
+                throw new ReindexerException(cause);
+            }
+            if (rpcResponse.hasError()) {
+                throw ReindexerExceptionFactory.fromResponse(rpcResponse);
+            }
+            return rpcResponse;
+        }
+
+        private void discard() {
+            try {
+                response.join();
+            } catch (CompletionException e) {
+                LOGGER.debug("rx: discarded prefetch error", e.getCause());
+            }
+        }
+
+    }
+
 }
@@ -16,6 +16,8 @@
 
 package ru.rt.restream.reindexer.binding.cproto;
 
+import ru.rt.restream.reindexer.exceptions.UnimplementedException;
+
 import java.time.Duration;
 import java.util.concurrent.ScheduledThreadPoolExecutor;
 
@@ -33,4 +35,23 @@ public interface DataSource {
      */
     Connection getConnection(Duration timeout, ScheduledThreadPoolExecutor scheduler);
 
+    /**
+     * Creates a {@link Connection} that uses the resources shared by the connections of a {@link ConnectionPool}.
+     * The default implementation supports {@link Transport#BLOCKING} only and ignores the timer.
+     *
+     * @param timeout   the reindexer request timeout
+     * @param scheduler the scheduler for async I/O processing
+     * @param loopGroup the selector loops for {@link Transport#NIO} socket I/O, null for {@link Transport#BLOCKING}
+     * @param timer     the timer for request timeouts
+     * @return the {@link Connection} to use
+     * @throws UnimplementedException if the data source does not support {@link Transport#NIO}
+     */
+    default Connection getConnection(Duration timeout, ScheduledThreadPoolExecutor scheduler,
+                                     SelectorLoopGroup loopGroup, HashedWheelTimer timer) {
+        if (loopGroup == null) {
+            return getConnection(timeout, scheduler);
+        }
+        throw new UnimplementedException("Transport '" + Transport.NIO + "' is not supported by " + this);
+    }
+
 }
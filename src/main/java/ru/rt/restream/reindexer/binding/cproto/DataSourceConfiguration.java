@@ -19,6 +19,7 @@ package ru.rt.restream.reindexer.binding.cproto;
 import io.micrometer.observation.ObservationRegistry;
 import org.apache.commons.lang3.mutable.MutableInt;
 
+import java.time.Duration;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Objects;
@@ -50,6 +51,41 @@ public class DataSourceConfiguration {
      */
     private final ObservationRegistry observationRegistry;
 
+    /**
+     * A {@link Transport} of the connections.
+     */
+    private final Transport transport;
+
+    /**
+     * A number of selector threads for {@link Transport#NIO}.
+     */
+    private final int ioThreads;
+
+    /**
+     * Enables Snappy compression of cproto frames.
+     */
+    private final boolean compression;
+
+    /**
+     * A minimal size of a frame body to search for matches when compressing.
+     */
+    private final int compressionThreshold;
+
+    /**
+     * A statistics of the frame compression.
+     */
+    private final CompressionStats compressionStats;
+
+    /**
+     * A tick duration of the request timeout timer.
+     */
+    private final Duration timeoutTick;
+
+    /**
+     * A policy of selecting a pool connection for a request.
+     */
+    private final ConnectionSelector connectionSelector;
+
     /**
      * An index of the current active data source.
      */
@@ -61,6 +97,13 @@ public class DataSourceConfiguration {
         active = builder.active;
         sslSocketFactory = builder.sslSocketFactory;
         observationRegistry = builder.observationRegistry;
+        transport = builder.transport;
+        ioThreads = builder.ioThreads;
+        compression = builder.compression;
+        compressionThreshold = builder.compressionThreshold;
+        compressionStats = builder.compressionStats;
+        timeoutTick = builder.timeoutTick;
+        connectionSelector = builder.connectionSelector;
     }
 
     public static Builder builder() {
@@ -103,6 +146,71 @@ public class DataSourceConfiguration {
         return observationRegistry;
     }
 
+    /**
+     * Returns a {@link Transport} of the connections. Defaults to {@link Transport#BLOCKING}.
+     *
+     * @return the {@link Transport} to use
+     */
+    public Transport getTransport() {
+        return transport;
+    }
+
+    /**
+     * Returns a number of selector threads for {@link Transport#NIO}. Defaults to 1.
+     *
+     * @return the number of selector threads
+     */
+    public int getIoThreads() {
+        return ioThreads;
+    }
+
+    /**
+     * Returns true if Snappy compression of cproto frames is enabled. Defaults to false.
+     *
+     * @return true if compression is enabled
+     */
+    public boolean isCompression() {
+        return compression;
+    }
+
+    /**
+     * Returns a minimal size of a frame body, starting from which it is compressed. Defaults to 1024 bytes.
+     *
+     * @return the compression threshold in bytes
+     */
+    public int getCompressionThreshold() {
+        return compressionThreshold;
+    }
+
+    /**
+     * Returns a statistics of the frame compression.
+     *
+     * @return the {@link CompressionStats}
+     */
+    public CompressionStats getCompressionStats() {
+        return compressionStats;
+    }
+
+    /**
+     * Returns a tick duration of the request timeout timer, i.e. the precision of the request timeouts.
+     * Defaults to 10 milliseconds.
+     *
+     * @return the timer tick duration
+     */
+    public Duration getTimeoutTick() {
+        return timeoutTick;
+    }
+
+    /**
+     * Returns a policy of selecting a pool connection for a request.
+     * Defaults to {@link ConnectionSelectorStrategy#ROUND_ROBIN}.
+     *
+     * @return the {@link ConnectionSelector} to use
+     */
+    public ConnectionSelector getConnectionSelector() {
+        return connectionSelector;
+    }
+
     /**
      * Returns the index of the current active data source.
      *
@@ -146,6 +254,41 @@ public class DataSourceConfiguration {
          */
         private ObservationRegistry observationRegistry = ObservationRegistry.NOOP;
 
+        /**
+         * A {@link Transport} of the connections.
+         */
+        private Transport transport = Transport.BLOCKING;
+
+        /**
+         * A number of selector threads for {@link Transport#NIO}.
+         */
+        private int ioThreads = 1;
+
+        /**
+         * Enables Snappy compression of cproto frames.
+         */
+        private boolean compression = false;
+
+        /**
+         * A minimal size of a frame body to search for matches when compressing.
+         */
+        private int compressionThreshold = 1024;
+
+        /**
+         * A statistics of the frame compression.
+         */
+        private CompressionStats compressionStats = new CompressionStats();
+
+        /**
+         * A tick duration of the request timeout timer.
+         */
+        private Duration timeoutTick = Duration.ofMillis(10);
+
+        /**
+         * A policy of selecting a pool connection for a request.
+         */
+        private ConnectionSelector connectionSelector = ConnectionSelectorStrategy.ROUND_ROBIN;
+
         /**
          * An index of the current active data source.
          */
@@ -166,6 +309,13 @@ public class DataSourceConfiguration {
             urls = configuration.urls;
             allowUnlistedDataSource = configuration.allowUnlistedDataSource;
             active = configuration.active;
+            transport = configuration.transport;
+            ioThreads = configuration.ioThreads;
+            compression = configuration.compression;
+            compressionThreshold = configuration.compressionThreshold;
+            compressionStats = configuration.compressionStats;
+            timeoutTick = configuration.timeoutTick;
+            connectionSelector = configuration.connectionSelector;
         }
 
         /**
@@ -224,6 +374,84 @@ public class DataSourceConfiguration {
             return this;
         }
 
+        /**
+         * Configure a {@link Transport} of the connections. Defaults to {@link Transport#BLOCKING}.
+         *
+         * @param transport the {@link Transport} to use
+         * @return the {@link Builder} for further customizations
+         */
+        public Builder transport(Transport transport) {
+            this.transport = Objects.requireNonNull(transport, "transport cannot be null");
+            return this;
+        }
+
+        /**
+         * Configure a number of selector threads for {@link Transport#NIO}. Defaults to 1.
+         *
+         * @param ioThreads the number of selector threads
+         * @return the {@link Builder} for further customizations
+         */
+        public Builder ioThreads(int ioThreads) {
+            if (ioThreads <= 0) {
+                throw new IllegalArgumentException("ioThreads must be greater than 0");
+            }
+            this.ioThreads = ioThreads;
+            return this;
+        }
+
+        /**
+         * Enables Snappy compression of cproto frames. Defaults to false.
+         *
+         * @param compression true to enable compression
+         * @return the {@link Builder} for further customizations
+         */
+        public Builder compression(boolean compression) {
+            this.compression = compression;
+            return this;
+        }
+
+        /**
+         * Configure a minimal size of a frame body, starting from which it is compressed. Defaults to 1024 bytes.
+         *
+         * @param compressionThreshold the compression threshold in bytes
+         * @return the {@link Builder} for further customizations
+         */
+        public Builder compressionThreshold(int compressionThreshold) {
+            if (compressionThreshold < 0) {
+                throw new IllegalArgumentException("compressionThreshold cannot be negative");
+            }
+            this.compressionThreshold = compressionThreshold;
+            return this;
+        }
+
+        /**
+         * Configure a tick duration of the request timeout timer. Defaults to 10 milliseconds.
+         * A request times out up to one tick later than its timeout.
+         *
+         * @param timeoutTick the timer tick duration
+         * @return the {@link Builder} for further customizations
+         */
+        public Builder timeoutTick(Duration timeoutTick) {
+            Objects.requireNonNull(timeoutTick, "timeoutTick cannot be null");
+            if (timeoutTick.isNegative() || timeoutTick.isZero()) {
+                throw new IllegalArgumentException("timeoutTick must be positive");
+            }
+            this.timeoutTick = timeoutTick;
+            return this;
+        }
+
+        /**
+         * Configure a policy of selecting a pool connection for a request.
+         * Defaults to {@link ConnectionSelectorStrategy#ROUND_ROBIN}.
+         *
+         * @param connectionSelector the {@link ConnectionSelector} to use
+         * @return the {@link Builder} for further customizations
+         */
+        public Builder connectionSelector(ConnectionSelector connectionSelector) {
+            this.connectionSelector = Objects.requireNonNull(connectionSelector, "connectionSelector cannot be null");
+            return this;
+        }
+
         /**
          * Build and return a {@link DataSource} configuration.
          *
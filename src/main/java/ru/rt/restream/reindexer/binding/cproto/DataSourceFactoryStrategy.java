@@ -135,7 +135,7 @@ public enum DataSourceFactoryStrategy implements DataSourceFactory {
     @Override
     public DataSource getDataSource(DataSourceConfiguration configuration) {
         String url = configuration.getUrls().get(configuration.getActive());
-        PhysicalDataSource dataSource = new PhysicalDataSource(url, configuration.getSslSocketFactory());
+        PhysicalDataSource dataSource = new PhysicalDataSource(url, configuration);
         if (configuration.getObservationRegistry().isNoop()) {
             return dataSource;
         }
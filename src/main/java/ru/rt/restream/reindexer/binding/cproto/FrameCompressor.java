@@ -0,0 +1,81 @@
+/*
+ * Copyright 2020-present Restream
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ru.rt.restream.reindexer.binding.cproto;
+
+import static ru.rt.restream.reindexer.binding.cproto.RpcConnection.BUFFER_CAPACITY;
+import static ru.rt.restream.reindexer.binding.cproto.RpcConnection.CPROTO_HDR_LEN;
+import static ru.rt.restream.reindexer.binding.cproto.RpcConnection.CPROTO_HDR_SIZE_OFFSET;
+import static ru.rt.restream.reindexer.binding.cproto.RpcConnection.CPROTO_HDR_VERSION_OFFSET;
+import static ru.rt.restream.reindexer.binding.cproto.RpcConnection.CPROTO_VERSION;
+import static ru.rt.restream.reindexer.binding.cproto.RpcConnection.CPROTO_VERSION_COMPRESSION_FLAG;
+
+/**
+ * Compresses the cproto frames of a connection with Snappy.
+ * <p>
+ * The server compresses a response only if the request was compressed, so every frame is sent in the Snappy
+ * format. Frames with a body smaller than the threshold are stored as a single literal, which costs a few bytes
+ * and no match search. Not thread safe, requests are compressed under the connection write lock.
+ */
+final class FrameCompressor {
+
+    private final int threshold;
+
+    private final CompressionStats stats;
+
+    private final Snappy snappy = new Snappy();
+
+    private final ByteBuffer compressed = new ByteBuffer(BUFFER_CAPACITY);
+
+    FrameCompressor(int threshold, CompressionStats stats) {
+        this.threshold = threshold;
+        this.stats = stats;
+    }
+
+    /**
+     * Compresses the body of the last frame in the buffer and marks the frame as compressed.
+     *
+     * @param buffer     the buffer with encoded frames
+     * @param frameStart the position of the last frame
+     */
+    void compress(ByteBuffer buffer, int frameStart) {
+        int bodyStart = frameStart + CPROTO_HDR_LEN;
+        int bodyLength = buffer.length() - bodyStart;
+        compressed.truncate(0);
+        if (bodyLength >= threshold) {
+            snappy.compress(buffer.array(), bodyStart, bodyLength, compressed);
+        } else {
+            Snappy.encodeLiteral(buffer.array(), bodyStart, bodyLength, compressed);
+        }
+        buffer.truncate(bodyStart);
+        buffer.writeBytes(compressed.array(), 0, compressed.length());
+        buffer.putUInt16(CPROTO_VERSION | CPROTO_VERSION_COMPRESSION_FLAG, frameStart + CPROTO_HDR_VERSION_OFFSET);
+        buffer.putUInt32(compressed.length(), frameStart + CPROTO_HDR_SIZE_OFFSET);
+        stats.onSent(bodyLength, compressed.length());
+    }
+
+    /**
+     * Decompresses the body of a received frame.
+     *
+     * @param body the compressed body
+     * @return the decompressed body
+     */
+    byte[] uncompress(byte[] body) {
+        byte[] uncompressed = Snappy.uncompress(body, 0, body.length);
+        stats.onReceived(body.length, uncompressed.length);
+        return uncompressed;
+    }
+
+}
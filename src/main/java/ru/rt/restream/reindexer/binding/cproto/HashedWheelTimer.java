@@ -0,0 +1,239 @@
+/*
+ * Copyright 2020-present Restream
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ru.rt.restream.reindexer.binding.cproto;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.time.Duration;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * A timer for request timeouts shared by the connections of a {@link ConnectionPool}.
+ * Timeouts are hashed into the buckets of a wheel that a single thread advances every tick, so adding and
+ * cancelling a timeout takes constant time, and a timeout expires up to one tick late.
+ * Cancelled timeouts are dropped when the thread reaches their bucket.
+ */
+public final class HashedWheelTimer implements AutoCloseable {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(HashedWheelTimer.class);
+
+    private final long tickNanos;
+
+    private final Timeout[] wheel;
+
+    private final int mask;
+
+    /**
+     * Timeouts added since the last tick, linked in the reverse order.
+     */
+    private final AtomicReference<Timeout> pendingTimeouts = new AtomicReference<>();
+
+    private final Thread worker;
+
+    private final long startTime;
+
+    private volatile boolean closed;
+
+    /**
+     * The number of ticks passed, accessed by the worker thread only.
+     */
+    private long tick;
+
+    /**
+     * Creates a timer and starts its thread.
+     *
+     * @param tickDuration  the duration between ticks
+     * @param wheelSize     the number of the wheel buckets, is rounded up to a power of two
+     * @param threadFactory the factory of the timer thread
+     */
+    HashedWheelTimer(Duration tickDuration, int wheelSize, ThreadFactory threadFactory) {
+        if (tickDuration.isNegative() || tickDuration.isZero()) {
+            throw new IllegalArgumentException("tickDuration must be positive");
+        }
+        if (wheelSize <= 0 || wheelSize > 1 << 30) {
+            throw new IllegalArgumentException("wheelSize must be in range (0, 2^30]");
+        }
+        tickNanos = tickDuration.toNanos();
+        int size = Integer.highestOneBit(wheelSize - 1) << 1;
+        wheel = new Timeout[Math.max(size, 1)];
+        mask = wheel.length - 1;
+        startTime = System.nanoTime();
+        worker = threadFactory.newThread(this::run);
+        worker.setDaemon(true);
+        worker.start();
+    }
+
+    /**
+     * Schedules the task to run by the timer thread once the deadline has passed.
+     *
+     * @param task     the task to run, should be short
+     * @param deadline the deadline in terms of {@link System#nanoTime()}
+     * @return the {@link Timeout} to cancel the task
+     */
+    Timeout newTimeout(Runnable task, long deadline) {
+        Timeout timeout = new Timeout(task, deadline);
+        Timeout head;
+        do {
+            head = pendingTimeouts.get();
+            timeout.next = head;
+        } while (!pendingTimeouts.compareAndSet(head, timeout));
+        return timeout;
+    }
+
+    /**
+     * Schedules the task on the scheduler, for connections created without a timer.
+     *
+     * @param scheduler the scheduler to use
+     * @param task      the task to run
+     * @param deadline  the deadline in terms of {@link System#nanoTime()}
+     * @return the {@link Timeout} to cancel the task
+     */
+    static Timeout newTimeout(ScheduledExecutorService scheduler, Runnable task, long deadline) {
+        Timeout timeout = new Timeout(task, deadline);
+        scheduler.schedule(timeout::expire, deadline - System.nanoTime(), TimeUnit.NANOSECONDS);
+        return timeout;
+    }
+
+    private void run() {
+        while (!closed) {
+            long tickDeadline = startTime + (tick + 1) * tickNanos;
+            long now;
+            while ((now = System.nanoTime()) - tickDeadline < 0L) {
+                LockSupport.parkNanos(this, tickDeadline - now);
+                if (closed) {
+                    return;
+                }
+            }
+            transferPendingTimeouts();
+            expireTimeouts((int) (tick & mask), now);
+            tick++;
+        }
+    }
+
+    private void transferPendingTimeouts() {
+        Timeout timeout = pendingTimeouts.getAndSet(null);
+        while (timeout != null) {
+            Timeout next = timeout.next;
+            if (!timeout.isCancelled()) {
+                long ticks = Math.max((timeout.deadline - startTime) / tickNanos, tick);
+                timeout.remainingRounds = (ticks - tick) / wheel.length;
+                int bucket = (int) (ticks & mask);
+                timeout.next = wheel[bucket];
+                wheel[bucket] = timeout;
+            }
+            timeout = next;
+        }
+    }
+
+    private void expireTimeouts(int bucket, long now) {
+        Timeout previous = null;
+        Timeout timeout = wheel[bucket];
+        while (timeout != null) {
+            Timeout next = timeout.next;
+            boolean remove = timeout.isCancelled();
+            if (!remove && timeout.remainingRounds <= 0L && timeout.deadline - now <= 0L) {
+                timeout.expire();
+                remove = true;
+            } else if (!remove) {
+                timeout.remainingRounds--;
+            }
+            if (remove) {
+                if (previous == null) {
+                    wheel[bucket] = next;
+                } else {
+                    previous.next = next;
+                }
+                timeout.next = null;
+            } else {
+                previous = timeout;
+            }
+            timeout = next;
+        }
+    }
+
+    /**
+     * Stops the timer thread, the pending timeouts never expire.
+     */
+    @Override
+    public void close() {
+        closed = true;
+        LockSupport.unpark(worker);
+    }
+
+    /**
+     * A handle of a task scheduled by the timer.
+     */
+    static final class Timeout {
+
+        private static final AtomicIntegerFieldUpdater<Timeout> STATE =
+                AtomicIntegerFieldUpdater.newUpdater(Timeout.class, "state");
+
+        private static final int PENDING = 0;
+
+        private static final int CANCELLED = 1;
+
+        private static final int EXPIRED = 2;
+
+        private final Runnable task;
+
+        private final long deadline;
+
+        private volatile int state;
+
+        /**
+         * The next timeout in the pending list or in the bucket.
+         */
+        private Timeout next;
+
+        private long remainingRounds;
+
+        private Timeout(Runnable task, long deadline) {
+            this.task = task;
+            this.deadline = deadline;
+        }
+
+        /**
+         * Cancels the task if it has not run yet.
+         *
+         * @return true if the task has been cancelled
+         */
+        boolean cancel() {
+            return STATE.compareAndSet(this, PENDING, CANCELLED);
+        }
+
+        boolean isCancelled() {
+            return state == CANCELLED;
+        }
+
+        private void expire() {
+            if (STATE.compareAndSet(this, PENDING, EXPIRED)) {
+                try {
+                    task.run();
+                } catch (Throwable t) {
+                    LOGGER.warn("rx: timeout task failed", t);
+                }
+            }
+        }
+
+    }
+
+}
@@ -0,0 +1,40 @@
+/*
+ * Copyright 2020-present Restream
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ru.rt.restream.reindexer.binding.cproto;
+
+import ru.rt.restream.reindexer.binding.cproto.cjson.CjsonItemCodec;
+import ru.rt.restream.reindexer.binding.cproto.cjson.PayloadType;
+
+/**
+ * Reads and writes items of a class. A codec is prepared once per item class and namespace payload type version:
+ * its field plans, accessors, converters and ctag name indexes are resolved in advance, so that reading and writing
+ * of an item does not resolve them again. A codec can be shared by threads.
+ */
+public interface ItemCodec<T> extends ItemReader<T>, ItemWriter<T> {
+
+    /**
+     * Return ItemCodec.
+     *
+     * @param itemClass   the item class
+     * @param payloadType the namespace payload type, can be null
+     * @param <T>         the item type
+     * @return the ItemCodec of the item class for the payload type
+     */
+    static <T> ItemCodec<T> getInstance(Class<T> itemClass, PayloadType payloadType) {
+        return CjsonItemCodec.getInstance(itemClass, payloadType);
+    }
+
+}
@@ -0,0 +1,45 @@
+/*
+ * Copyright 2020-present Restream
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ru.rt.restream.reindexer.binding.cproto;
+
+import ru.rt.restream.reindexer.binding.cproto.cjson.PayloadType;
+
+/**
+ * Provides {@link ItemCodec}s of an item class, that are prepared at compile time, e.g. by the
+ * {@link ru.rt.restream.reindexer.processor.ItemCodecProcessor}. The providers are discovered by the
+ * {@link java.util.ServiceLoader} of the item class loader, and their codecs are used instead of the codecs,
+ * that are prepared by reflection.
+ *
+ * @param <T> the item type
+ */
+public interface ItemCodecProvider<T> {
+
+    /**
+     * Returns the item class, which items the provided codecs read and write.
+     *
+     * @return the item class
+     */
+    Class<T> getItemClass();
+
+    /**
+     * Creates an {@link ItemCodec} for the payload type.
+     *
+     * @param payloadType the namespace payload type, can be null
+     * @return the ItemCodec of the item class for the payload type
+     */
+    ItemCodec<T> createItemCodec(PayloadType payloadType);
+
+}
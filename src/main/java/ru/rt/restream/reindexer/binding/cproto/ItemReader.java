@@ -28,4 +28,30 @@ public interface ItemReader<T> {
      */
     T readItem(ByteBuffer buffer);
 
+    /**
+     * Reads item, that takes the specified number of bytes from the current position of {@link ByteBuffer}.
+     * The position is moved past the item data.
+     *
+     * @param buffer a buffer to read item from
+     * @param length the length of the item data
+     * @return read item
+     */
+    default T readItem(ByteBuffer buffer, int length) {
+        return readItem(new ByteBuffer(buffer.getBytes(length)).rewind());
+    }
+
+    /**
+     * Reads item, that takes the specified number of bytes from the current position of {@link ByteBuffer}, into
+     * the target instance. The fields of the target, that are absent in the item data, are reset. The readers, that
+     * can not fill an existing instance, return a new item. The position is moved past the item data.
+     *
+     * @param buffer a buffer to read item from
+     * @param length the length of the item data
+     * @param target the instance to read item into, null to create a new item
+     * @return read item, the target or a new item
+     */
+    default T readItem(ByteBuffer buffer, int length, T target) {
+        return readItem(buffer, length);
+    }
+
 }
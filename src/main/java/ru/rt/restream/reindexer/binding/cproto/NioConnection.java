@@ -0,0 +1,211 @@
+/*
+ * Copyright 2020-present Restream
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ru.rt.restream.reindexer.binding.cproto;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import ru.rt.restream.reindexer.exceptions.NetworkException;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.StandardSocketOptions;
+import java.nio.ByteOrder;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.SocketChannel;
+import java.time.Duration;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * A connection with a specific reindexer instance, that performs the socket I/O on a {@link SelectorLoop}
+ * instead of dedicated blocking tasks. Uses reindexer rpc protocol.
+ */
+final class NioConnection extends RpcConnection {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(NioConnection.class);
+
+    private final SocketChannel channel;
+
+    private final SelectorLoop loop;
+
+    private final SelectionKey key;
+
+    /**
+     * Indicates that a flush is already scheduled on the loop.
+     */
+    private final AtomicBoolean flushScheduled = new AtomicBoolean(false);
+
+    private final byte[] header = new byte[CPROTO_HDR_LEN];
+
+    /**
+     * Received bytes, accessed by the loop thread only.
+     */
+    private final java.nio.ByteBuffer readBuffer = java.nio.ByteBuffer.allocate(BUFFER_CAPACITY)
+            .order(ByteOrder.LITTLE_ENDIAN);
+
+    /**
+     * The header of a frame, that does not fit into the read buffer, accessed by the loop thread only.
+     */
+    private FrameHeader largeFrameHeader;
+
+    /**
+     * The body of a frame, that does not fit into the read buffer, is read straight into its own array,
+     * null if no such frame is being read. Accessed by the loop thread only.
+     */
+    private java.nio.ByteBuffer largeFrameBody;
+
+    /**
+     * Requests being sent, accessed by the loop thread only.
+     */
+    private ByteBuffer pending;
+
+    /**
+     * A view of the pending requests that tracks the sent bytes, accessed by the loop thread only.
+     */
+    private java.nio.ByteBuffer writeBuffer = java.nio.ByteBuffer.allocate(0);
+
+    NioConnection(String host, int port, String user, String password, String database,
+                  Duration requestTimeout, ScheduledExecutorService scheduler, SelectorLoopGroup loopGroup,
+                  HashedWheelTimer timer, FrameCompressor compressor) {
+        super(requestTimeout, scheduler, timer, compressor);
+        try {
+            channel = SocketChannel.open(new InetSocketAddress(host, port));
+            channel.setOption(StandardSocketOptions.TCP_NODELAY, true);
+            channel.configureBlocking(false);
+            loop = loopGroup.next();
+            key = loop.register(channel, this, requestTimeout);
+            login(user, password, database);
+        } catch (Exception e) {
+            onError(e);
+            throw new NetworkException(e);
+        }
+    }
+
+    @Override
+    void onPendingWrite() {
+        if (flushScheduled.compareAndSet(false, true)) {
+            loop.execute(() -> {
+                flushScheduled.set(false);
+                onWritable();
+            });
+        }
+    }
+
+    /**
+     * Reads the available bytes and dispatches all complete responses. Invoked on the loop thread.
+     */
+    void onReadable() {
+        try {
+            if (largeFrameBody != null) {
+                readLargeFrame();
+                return;
+            }
+            if (channel.read(readBuffer) < 0) {
+                throw new EOFException("Connection closed by server");
+            }
+            readBuffer.flip();
+            while (readBuffer.remaining() >= CPROTO_HDR_LEN) {
+                readBuffer.mark();
+                readBuffer.get(header);
+                FrameHeader frameHeader = readHeader(new ByteBuffer(header).rewind());
+                if (readBuffer.remaining() < frameHeader.size) {
+                    if (CPROTO_HDR_LEN + frameHeader.size > readBuffer.capacity()) {
+                        largeFrameHeader = frameHeader;
+                        largeFrameBody = java.nio.ByteBuffer.wrap(new byte[frameHeader.size]);
+                        largeFrameBody.put(readBuffer);
+                    } else {
+                        readBuffer.reset();
+                    }
+                    break;
+                }
+                if (isAwaited(frameHeader.seqNum)) {
+                    byte[] body = new byte[frameHeader.size];
+                    readBuffer.get(body);
+                    onResponse(frameHeader, body);
+                } else {
+                    readBuffer.position(readBuffer.position() + frameHeader.size);
+                }
+            }
+            readBuffer.compact();
+        } catch (Exception e) {
+            onError(e);
+        }
+    }
+
+    /**
+     * Reads the body of a frame, that does not fit into the read buffer, and dispatches it once it is complete.
+     * The read buffer is empty until then, the following frames are read on the next readiness.
+     */
+    private void readLargeFrame() throws IOException {
+        if (channel.read(largeFrameBody) < 0) {
+            throw new EOFException("Connection closed by server");
+        }
+        if (largeFrameBody.hasRemaining()) {
+            return;
+        }
+        FrameHeader frameHeader = largeFrameHeader;
+        byte[] body = largeFrameBody.array();
+        largeFrameHeader = null;
+        largeFrameBody = null;
+        if (isAwaited(frameHeader.seqNum)) {
+            onResponse(frameHeader, body);
+        }
+    }
+
+    /**
+     * Writes the pending requests until the socket buffer is full. Invoked on the loop thread.
+     */
+    void onWritable() {
+        try {
+            for (; ; ) {
+                if (!writeBuffer.hasRemaining()) {
+                    if (pending != null) {
+                        pending.reset();
+                    }
+                    pending = pollPendingWrite();
+                    if (pending == null) {
+                        break;
+                    }
+                    writeBuffer = pending.asNioBuffer();
+                }
+                channel.write(writeBuffer);
+                if (writeBuffer.hasRemaining()) {
+                    key.interestOps(SelectionKey.OP_READ | SelectionKey.OP_WRITE);
+                    return;
+                }
+            }
+            key.interestOps(SelectionKey.OP_READ);
+        } catch (Exception e) {
+            onError(e);
+        }
+    }
+
+    @Override
+    public void close() {
+        if (key != null) {
+            key.cancel();
+        }
+        if (channel != null) {
+            try {
+                channel.close();
+            } catch (IOException e) {
+                LOGGER.error("rx: connection close error", e);
+            }
+        }
+    }
+
+}
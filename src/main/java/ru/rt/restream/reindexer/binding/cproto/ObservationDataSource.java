@@ -24,6 +24,7 @@ import ru.rt.restream.reindexer.exceptions.ReindexerExceptionFactory;
 import java.time.Duration;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.function.Supplier;
 
 /**
  * A {@link DataSource} that wraps a target {@link DataSource} and instruments it using configured {@link ObservationRegistry}.
@@ -45,6 +46,13 @@ final class ObservationDataSource implements DataSource {
         return new ObservationConnection(connection);
     }
 
+    @Override
+    public Connection getConnection(Duration timeout, ScheduledThreadPoolExecutor scheduler,
+                                    SelectorLoopGroup loopGroup, HashedWheelTimer timer) {
+        Connection connection = delegate.getConnection(timeout, scheduler, loopGroup, timer);
+        return new ObservationConnection(connection);
+    }
+
     @RequiredArgsConstructor
     private final class ObservationConnection implements Connection {
 
@@ -52,11 +60,30 @@ final class ObservationDataSource implements DataSource {
 
         @Override
         public ReindexerResponse rpcCall(int command, Object... args) {
+            return observe(command, args, () -> delegate.rpcCall(command, args));
+        }
+
+        @Override
+        public ReindexerResponse rpcCall(Duration timeout, int command, Object... args) {
+            return observe(command, args, () -> delegate.rpcCall(timeout, command, args));
+        }
+
+        @Override
+        public CompletableFuture<ReindexerResponse> rpcCallAsync(int command, Object... args) {
+            return observeAsync(command, args, () -> delegate.rpcCallAsync(command, args));
+        }
+
+        @Override
+        public CompletableFuture<ReindexerResponse> rpcCallAsync(Duration timeout, int command, Object... args) {
+            return observeAsync(command, args, () -> delegate.rpcCallAsync(timeout, command, args));
+        }
+
+        private ReindexerResponse observe(int command, Object[] args, Supplier<ReindexerResponse> call) {
             CommandObservationContext context = new CommandObservationContext(command, args);
             context.setRemoteServiceAddress(url);
             Observation observation = Observation.createNotStarted(CONVENTION, () -> context, registry).start();
             try (Observation.Scope scope = observation.openScope()) {
-                ReindexerResponse response = delegate.rpcCall(command, args);
+                ReindexerResponse response = call.get();
                 context.setResponse(response);
                 if (response.hasError()) {
                     observation.error(ReindexerExceptionFactory.fromResponse(response));
@@ -70,14 +97,14 @@ final class ObservationDataSource implements DataSource {
             }
         }
 
-        @Override
-        public CompletableFuture<ReindexerResponse> rpcCallAsync(int command, Object... args) {
+        private CompletableFuture<ReindexerResponse> observeAsync(int command, Object[] args,
+                                                                  Supplier<CompletableFuture<ReindexerResponse>> call) {
             CommandObservationContext context = new CommandObservationContext(command, args);
             context.setRemoteServiceAddress(url);
             Observation observation = Observation.createNotStarted(CONVENTION, () -> context, registry).start();
             CompletableFuture<ReindexerResponse> future;
             try (Observation.Scope scope = observation.openScope()) {
-                future = delegate.rpcCallAsync(command, args);
+                future = call.get();
             } catch (Throwable t) {
                 observation.error(t);
                 observation.stop();
@@ -101,6 +128,11 @@ final class ObservationDataSource implements DataSource {
             return delegate.hasError();
         }
 
+        @Override
+        public int getInFlightRequests() {
+            return delegate.getInFlightRequests();
+        }
+
         @Override
         public void close() {
             delegate.close();
@@ -16,6 +16,8 @@
 
 package ru.rt.restream.reindexer.binding.cproto;
 
+import ru.rt.restream.reindexer.exceptions.UnimplementedException;
+
 import java.net.URI;
 import java.time.Duration;
 import java.util.concurrent.ScheduledThreadPoolExecutor;
@@ -23,7 +25,8 @@ import java.util.concurrent.ScheduledThreadPoolExecutor;
 import javax.net.ssl.SSLSocketFactory;
 
 /**
- * A {@link DataSource} that creates a {@link PhysicalConnection}.
+ * A {@link DataSource} that creates a {@link PhysicalConnection}, or a {@link NioConnection}
+ * if a {@link SelectorLoopGroup} is provided.
  */
 public class PhysicalDataSource implements DataSource {
 
@@ -39,6 +42,12 @@ public class PhysicalDataSource implements DataSource {
 
     private final SSLSocketFactory sslSocketFactory;
 
+    private final boolean compression;
+
+    private final int compressionThreshold;
+
+    private final CompressionStats compressionStats;
+
     /**
      * Creates an instance.
      *
@@ -48,7 +57,7 @@ public class PhysicalDataSource implements DataSource {
      */
     @Deprecated
     public PhysicalDataSource(String url) {
-        this(url, null);
+        this(url, (SSLSocketFactory) null);
     }
 
     /**
@@ -58,6 +67,22 @@ public class PhysicalDataSource implements DataSource {
      * @param sslSocketFactory the {@link SSLSocketFactory} socket factory to use
      */
     public PhysicalDataSource(String url, SSLSocketFactory sslSocketFactory) {
+        this(url, sslSocketFactory, false, 0, null);
+    }
+
+    /**
+     * Creates an instance.
+     *
+     * @param url           the URL to use
+     * @param configuration the {@link DataSourceConfiguration} to use
+     */
+    public PhysicalDataSource(String url, DataSourceConfiguration configuration) {
+        this(url, configuration.getSslSocketFactory(), configuration.isCompression(),
+                configuration.getCompressionThreshold(), configuration.getCompressionStats());
+    }
+
+    private PhysicalDataSource(String url, SSLSocketFactory sslSocketFactory, boolean compression,
+                               int compressionThreshold, CompressionStats compressionStats) {
         URI uri = URI.create(url);
         host = uri.getHost();
         port = uri.getPort();
@@ -76,11 +101,32 @@ public class PhysicalDataSource implements DataSource {
         }
         database = uri.getPath().substring(1);
         this.sslSocketFactory = sslSocketFactory;
+        this.compression = compression;
+        this.compressionThreshold = compressionThreshold;
+        this.compressionStats = compressionStats;
     }
 
     @Override
     public Connection getConnection(Duration timeout, ScheduledThreadPoolExecutor scheduler) {
-        return new PhysicalConnection(host, port, user, password, database, sslSocketFactory, timeout, scheduler);
+        return getConnection(timeout, scheduler, null, null);
+    }
+
+    @Override
+    public Connection getConnection(Duration timeout, ScheduledThreadPoolExecutor scheduler,
+                                    SelectorLoopGroup loopGroup, HashedWheelTimer timer) {
+        if (loopGroup == null) {
+            return new PhysicalConnection(host, port, user, password, database, sslSocketFactory, timeout, scheduler,
+                    timer, createCompressor());
+        }
+        if (sslSocketFactory != null) {
+            throw new UnimplementedException("Transport '" + Transport.NIO + "' does not support SSL/TLS");
+        }
+        return new NioConnection(host, port, user, password, database, timeout, scheduler, loopGroup, timer,
+                createCompressor());
+    }
+
+    private FrameCompressor createCompressor() {
+        return compression ? new FrameCompressor(compressionThreshold, compressionStats) : null;
     }
 
     @Override
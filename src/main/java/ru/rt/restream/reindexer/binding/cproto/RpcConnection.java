@@ -0,0 +1,687 @@
+/*
+ * Copyright 2020-present Restream
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ru.rt.restream.reindexer.binding.cproto;
+
+import ru.rt.restream.reindexer.ReindexerResponse;
+import ru.rt.restream.reindexer.binding.Binding;
+import ru.rt.restream.reindexer.binding.Consts;
+import ru.rt.restream.reindexer.binding.cproto.util.ConnectionUtils;
+import ru.rt.restream.reindexer.exceptions.InvalidProtocolException;
+import ru.rt.restream.reindexer.exceptions.ReindexerException;
+
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.LockSupport;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+import static ru.rt.restream.reindexer.binding.Consts.APP_PROPERTY_NAME;
+import static ru.rt.restream.reindexer.binding.Consts.BINDING_CAPABILITY_COMPLEX_RANK;
+import static ru.rt.restream.reindexer.binding.Consts.BINDING_CAPABILITY_NAMESPACE_INCARNATIONS;
+import static ru.rt.restream.reindexer.binding.Consts.BINDING_CAPABILITY_QUERY_FORMAT_V2;
+import static ru.rt.restream.reindexer.binding.Consts.BINDING_CAPABILITY_RESULTS_WITH_SHARD_IDS;
+import static ru.rt.restream.reindexer.binding.Consts.DEF_APP_NAME;
+import static ru.rt.restream.reindexer.binding.Consts.QUERY_FORMAT_V1;
+import static ru.rt.restream.reindexer.binding.Consts.QUERY_FORMAT_V2;
+import static ru.rt.restream.reindexer.binding.Consts.REINDEXER_VERSION;
+
+/**
+ * Base class for connections with a specific reindexer instance that use reindexer rpc protocol.
+ * Encodes requests into an outgoing buffer and routes responses to the awaiting callers,
+ * the socket I/O is left to the subclasses.
+ */
+abstract class RpcConnection implements Connection {
+
+    static final int BUFFER_CAPACITY = 16 * 1024;
+
+    /**
+     * Max number of in-flight requests per connection, must be a power of two.
+     */
+    static final int QUEUE_SIZE = 512;
+
+    static final int MAX_SEQ_NUM = QUEUE_SIZE * 1000000;
+
+    private static final int MAX_CLAIM_SPINS = 16;
+
+    private static final long CLAIM_PARK_NANOS = TimeUnit.MICROSECONDS.toNanos(100);
+
+    static final long CPROTO_MAGIC = 0xEEDD1132L;
+
+    static final int CPROTO_VERSION = 0x105;
+
+    static final int CPROTO_MIN_COMPAT_VERSION = 0x101;
+
+    static final int CPROTO_HDR_LEN = 16;
+
+    static final int CPROTO_HDR_VERSION_OFFSET = 4;
+
+    static final int CPROTO_HDR_SIZE_OFFSET = 8;
+
+    static final int CPROTO_VERSION_COMPRESSION_FLAG = 1 << 10;
+
+    static final int CPROTO_VERSION_MASK = 0x3FF;
+
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+    private final Condition notEmptyBuffer = lock.writeLock().newCondition();
+
+    private ByteBuffer headBuffer = new ByteBuffer(BUFFER_CAPACITY);
+
+    private ByteBuffer tailBuffer = new ByteBuffer(BUFFER_CAPACITY);
+
+    private volatile Exception error;
+
+    private final Duration timeout;
+
+    private final ScheduledExecutorService scheduler;
+
+    /**
+     * Expires the async requests, null to schedule the timeouts on the {@link #scheduler}.
+     */
+    private final HashedWheelTimer timer;
+
+    /**
+     * In-flight requests, a request with seq num N occupies the slot N % QUEUE_SIZE. Empty slots are null.
+     */
+    private final AtomicReferenceArray<RpcRequest> slots = new AtomicReferenceArray<>(QUEUE_SIZE);
+
+    /**
+     * The seq num to be used by the next request claiming the slot. An element is written by the thread that
+     * releases the slot before the slot is emptied, so it is visible to the thread that claims the slot next.
+     */
+    private final int[] slotSeqNums = new int[QUEUE_SIZE];
+
+    /**
+     * The number of claimed slots.
+     */
+    private final AtomicInteger inFlightRequests = new AtomicInteger();
+
+    /**
+     * Compresses the outgoing frames, null if compression is disabled.
+     */
+    private final FrameCompressor compressor;
+
+    private int queryFormatVersion = QUERY_FORMAT_V1;
+
+    RpcConnection(Duration requestTimeout, ScheduledExecutorService scheduler, HashedWheelTimer timer,
+                  FrameCompressor compressor) {
+        timeout = requestTimeout;
+        this.scheduler = scheduler;
+        this.timer = timer;
+        this.compressor = compressor;
+        for (int i = 0; i < QUEUE_SIZE; i++) {
+            slotSeqNums[i] = i;
+        }
+    }
+
+    /**
+     * Logs in to the database. Must be called by the subclass once the transport is ready.
+     *
+     * @param user     the user name
+     * @param password the user password
+     * @param database the database name
+     */
+    void login(String user, String password, String database) {
+        ReindexerResponse response = ConnectionUtils.rpcCall(this, Binding.LOGIN, user, password, database,
+                false, // create DB if missing
+                false, // checkClusterID
+                -1,    // expectedClusterID
+                REINDEXER_VERSION,
+                getAppName(),
+                BINDING_CAPABILITY_RESULTS_WITH_SHARD_IDS
+                        | BINDING_CAPABILITY_COMPLEX_RANK
+                        | BINDING_CAPABILITY_NAMESPACE_INCARNATIONS
+                        | BINDING_CAPABILITY_QUERY_FORMAT_V2);
+        queryFormatVersion = queryFormatVersionFrom(response);
+    }
+
+    private static int queryFormatVersionFrom(ReindexerResponse response) {
+        Object[] arguments = response.getArguments();
+        if (arguments.length > 2 && arguments[2] instanceof Long) {
+            long capabilities = (Long) arguments[2];
+            return (capabilities & BINDING_CAPABILITY_QUERY_FORMAT_V2) != 0
+                    ? QUERY_FORMAT_V2
+                    : QUERY_FORMAT_V1;
+        }
+        return QUERY_FORMAT_V1;
+    }
+
+    private Object getAppName() {
+        return System.getProperty(APP_PROPERTY_NAME, DEF_APP_NAME);
+    }
+
+    /**
+     * Call a rpc command with specified arguments.
+     *
+     * @param command command to invoke
+     * @param args    command arguments
+     * @return rpc call result
+     */
+    @Override
+    public ReindexerResponse rpcCall(int command, Object... args) {
+        return rpcCall(System.nanoTime() + timeout.toNanos(), command, args);
+    }
+
+    @Override
+    public ReindexerResponse rpcCall(Duration timeout, int command, Object... args) {
+        return rpcCall(System.nanoTime() + timeout.toNanos(), command, args);
+    }
+
+    private ReindexerResponse rpcCall(long deadline, int command, Object[] args) {
+        Exception error = getCurrentError();
+        if (error != null) {
+            throw new ReindexerException(error);
+        }
+        RpcRequest rpcRequest = new RpcRequest(Thread.currentThread(), null);
+        try {
+            claimSlot(rpcRequest, deadline);
+            try {
+                write(command, rpcRequest.seqNum, args);
+            } catch (RuntimeException e) {
+                releaseSlot(rpcRequest);
+                throw e;
+            }
+            Object result;
+            while ((result = rpcRequest.result) == null) {
+                long remaining = deadline - System.nanoTime();
+                if (remaining <= 0L) {
+                    if (releaseSlot(rpcRequest)) {
+                        throw new ReindexerException("Request timeout");
+                    }
+                    // The response is being handed off right now.
+                    Thread.yield();
+                } else {
+                    LockSupport.parkNanos(this, remaining);
+                    if (Thread.interrupted()) {
+                        releaseSlot(rpcRequest);
+                        throw new InterruptedException();
+                    }
+                }
+            }
+            if (result instanceof Exception) {
+                throw new ReindexerException((Exception) result);
+            }
+            return readResponse((ByteBuffer) result);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new ReindexerException("Interrupted while rpcCall", e);
+        }
+    }
+
+    private ReindexerResponse readResponse(ByteBuffer deserializer) {
+        int code = (int) deserializer.getVarUInt();
+        String message = deserializer.getVString();
+        int argsCount = (int) deserializer.getVarUInt();
+        Object[] responseArgs = new Object[argsCount];
+        for (int i = 0; i < argsCount; i++) {
+            responseArgs[i] = readArgument(deserializer);
+        }
+        return new ReindexerResponse(code, message, responseArgs);
+    }
+
+    private Object readArgument(ByteBuffer deserializer) {
+        int type = (int) deserializer.getVarUInt();
+        switch (type) {
+            case Consts.VALUE_INT:
+                return (int) deserializer.getVarInt();
+            case Consts.VALUE_BOOL:
+                return deserializer.getVarInt() != 0;
+            case Consts.VALUE_STRING:
+                return deserializer.getVBytes();
+            case Consts.VALUE_INT_64:
+                return deserializer.getVarInt();
+            case Consts.VALUE_DOUBLE:
+                return deserializer.getDouble();
+            default:
+                throw new InvalidProtocolException(String.format("cproto: Unexpected arg type %d", type));
+        }
+    }
+
+    @Override
+    public CompletableFuture<ReindexerResponse> rpcCallAsync(int command, Object... args) {
+        return rpcCallAsync(System.nanoTime() + timeout.toNanos(), command, args);
+    }
+
+    @Override
+    public CompletableFuture<ReindexerResponse> rpcCallAsync(Duration timeout, int command, Object... args) {
+        return rpcCallAsync(System.nanoTime() + timeout.toNanos(), command, args);
+    }
+
+    /**
+     * The deadline covers the whole request, from waiting for a free slot to receiving the response.
+     */
+    private CompletableFuture<ReindexerResponse> rpcCallAsync(long deadline, int command, Object[] args) {
+        CompletableFuture<ReindexerResponse> completion = new CompletableFuture<>();
+        Exception error = getCurrentError();
+        if (error != null) {
+            completion.completeExceptionally(error);
+            return completion;
+        }
+        RpcRequest rpcRequest = new RpcRequest(null, completion);
+        try {
+            claimSlot(rpcRequest, deadline);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            completion.completeExceptionally(e);
+            return completion;
+        } catch (Exception e) {
+            completion.completeExceptionally(e);
+            return completion;
+        }
+        try {
+            TimeoutTask timeoutTask = new TimeoutTask(rpcRequest);
+            rpcRequest.timeout = timer != null
+                    ? timer.newTimeout(timeoutTask, deadline)
+                    : HashedWheelTimer.newTimeout(scheduler, timeoutTask, deadline);
+            write(command, rpcRequest.seqNum, args);
+        } catch (Exception e) {
+            if (releaseSlot(rpcRequest)) {
+                rpcRequest.cancelTimeout();
+                completion.completeExceptionally(e);
+            }
+        }
+        return completion;
+    }
+
+    /**
+     * Claims a free slot for the request and assigns the request its seq num. Spins over the table starting
+     * from a random slot, so that concurrent callers rarely compete for the same slot, and backs off while
+     * the table is full.
+     */
+    private void claimSlot(RpcRequest rpcRequest, long deadline) throws InterruptedException {
+        for (int attempt = 0; ; attempt++) {
+            int start = ThreadLocalRandom.current().nextInt(QUEUE_SIZE);
+            for (int i = 0; i < QUEUE_SIZE; i++) {
+                int slot = (start + i) & (QUEUE_SIZE - 1);
+                if (slots.get(slot) == null && slots.compareAndSet(slot, null, rpcRequest)) {
+                    rpcRequest.seqNum = slotSeqNums[slot];
+                    inFlightRequests.incrementAndGet();
+                    return;
+                }
+            }
+            if (deadline - System.nanoTime() <= 0L) {
+                throw new ReindexerException("Request queue is full");
+            }
+            if (attempt < MAX_CLAIM_SPINS) {
+                Thread.yield();
+            } else {
+                LockSupport.parkNanos(this, CLAIM_PARK_NANOS);
+            }
+            if (Thread.interrupted()) {
+                throw new InterruptedException();
+            }
+        }
+    }
+
+    /**
+     * Completes the request and frees its slot. Only the first of the competing response, timeout and error
+     * handlers succeeds, the others must leave the request alone.
+     *
+     * @return true if the caller owns the request completion
+     */
+    private boolean releaseSlot(RpcRequest rpcRequest) {
+        if (!rpcRequest.complete()) {
+            return false;
+        }
+        int seqNum = rpcRequest.seqNum;
+        int slot = seqNum % QUEUE_SIZE;
+        slotSeqNums[slot] = nextSeqNum(seqNum);
+        slots.set(slot, null);
+        inFlightRequests.decrementAndGet();
+        return true;
+    }
+
+    /**
+     * Hands off the response or the error to a request, the slot must already be released.
+     */
+    private void handOff(RpcRequest rpcRequest, ByteBuffer response, Exception error) {
+        if (rpcRequest.completion != null) {
+            rpcRequest.cancelTimeout();
+            if (error != null) {
+                rpcRequest.completion.completeExceptionally(error);
+            } else {
+                rpcRequest.completion.complete(readResponse(response));
+            }
+        } else {
+            rpcRequest.result = error != null ? error : response;
+            LockSupport.unpark(rpcRequest.waiter);
+        }
+    }
+
+    private void write(int command, int seqNum, Object[] args) {
+        lock.writeLock().lock();
+        try {
+            int frameStart = headBuffer.length();
+            encode(headBuffer, command, seqNum, args);
+            if (compressor != null) {
+                compressor.compress(headBuffer, frameStart);
+            }
+            notEmptyBuffer.signalAll();
+            onPendingWrite();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Invoked under the write lock each time a request is appended to the outgoing buffer.
+     * Transports that do not wait for {@link #awaitPendingWrite()} should schedule a flush here.
+     */
+    void onPendingWrite() {
+    }
+
+    /**
+     * Waits until there are encoded requests to send and returns them.
+     * The returned buffer must be reset by the caller once its content has been sent.
+     *
+     * @return the buffer with the pending requests
+     * @throws InterruptedException if interrupted while waiting
+     */
+    ByteBuffer awaitPendingWrite() throws InterruptedException {
+        lock.writeLock().lock();
+        try {
+            while (headBuffer.length() == 0) {
+                notEmptyBuffer.await();
+            }
+            return swapBuffers();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Returns the encoded requests to send, or null if there are none.
+     * The returned buffer must be reset by the caller once its content has been sent.
+     *
+     * @return the buffer with the pending requests or null
+     */
+    ByteBuffer pollPendingWrite() {
+        lock.writeLock().lock();
+        try {
+            return headBuffer.length() == 0 ? null : swapBuffers();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private ByteBuffer swapBuffers() {
+        ByteBuffer head = headBuffer;
+        headBuffer = tailBuffer;
+        tailBuffer = head;
+        return tailBuffer;
+    }
+
+    /**
+     * Appends a request frame to the buffer. The header is reserved first and its body size is patched
+     * once the arguments are written, so the frame is built in place without intermediate arrays.
+     *
+     * @param buffer  the buffer to append to
+     * @param command the command to encode
+     * @param seq     the request seq num
+     * @param args    the command arguments
+     */
+    static void encode(ByteBuffer buffer, int command, int seq, Object... args) {
+        int start = buffer.length();
+        try {
+            buffer.putUInt32(CPROTO_MAGIC)
+                    .putUInt16(CPROTO_VERSION)
+                    .putUInt16(command)
+                    .putUInt32(0) // body size, patched below
+                    .putUInt32(seq);
+            encodeArgs(buffer, args);
+            buffer.putUInt32(buffer.length() - start - CPROTO_HDR_LEN, start + CPROTO_HDR_SIZE_OFFSET);
+        } catch (RuntimeException e) {
+            // Drop the incomplete frame, the buffer may already contain frames of other requests.
+            buffer.truncate(start);
+            throw e;
+        }
+    }
+
+    private static void encodeArgs(ByteBuffer buffer, Object[] args) {
+        buffer.putVarUInt32(args.length);
+        for (Object arg : args) {
+            if (arg instanceof byte[]) {
+                buffer.putVarUInt32(Consts.VALUE_STRING)
+                        .putVBytes(((byte[]) arg));
+            } else if (arg instanceof long[]) {
+                long[] array = (long[]) arg;
+                int length = varUIntSize(array.length);
+                for (long i : array) {
+                    length += varUIntSize(zigZag(i));
+                }
+                buffer.putVarUInt32(Consts.VALUE_STRING)
+                        .putVarUInt32(length)
+                        .putVarUInt32(array.length);
+                for (long i : array) {
+                    buffer.putVarInt64(i);
+                }
+            } else {
+                buffer.putValue(arg);
+            }
+        }
+    }
+
+    private static long zigZag(long value) {
+        return (value << 1) ^ (value >> 63);
+    }
+
+    private static int varUIntSize(long value) {
+        int size = 1;
+        while (value >= 0x80) {
+            value >>= 7;
+            size++;
+        }
+        return size;
+    }
+
+    /**
+     * Reads and validates a response header.
+     *
+     * @param deserializer the buffer positioned at the start of the header
+     * @return the response header
+     * @throws InvalidProtocolException if the header is malformed
+     */
+    static FrameHeader readHeader(ByteBuffer deserializer) {
+        long magic = deserializer.getUInt32();
+        if (magic != CPROTO_MAGIC) {
+            throw new InvalidProtocolException(String.format("Invalid cproto magic '%08X'", magic));
+        }
+        int version = deserializer.getUInt16();
+        deserializer.getUInt16();
+        int size = (int) deserializer.getUInt32();
+        int rseq = (int) deserializer.getUInt32();
+        boolean compressed = (version & CPROTO_VERSION_COMPRESSION_FLAG) != 0;
+        version &= CPROTO_VERSION_MASK;
+        if (version < CPROTO_MIN_COMPAT_VERSION) {
+            throw new InvalidProtocolException(String.format("Unsupported cproto version '%04X'. " +
+                                                             "This client expects reindexer server v1.9.8+", version));
+        }
+        if (!isSeqNumValid(rseq)) {
+            throw new InvalidProtocolException(String.format("Invalid seq num: %d", rseq));
+        }
+        return new FrameHeader(size, rseq, compressed);
+    }
+
+    /**
+     * Returns true if a response with the given seq num is still awaited. Responses that are not awaited
+     * (e.g. timed out requests) should be skipped.
+     *
+     * @param rseq the response seq num
+     * @return true if a response is awaited
+     */
+    boolean isAwaited(int rseq) {
+        RpcRequest rpcRequest = slots.get(rseq % QUEUE_SIZE);
+        return rpcRequest != null && rpcRequest.seqNum == rseq;
+    }
+
+    /**
+     * Passes the response body to the request awaiting it.
+     *
+     * @param header the response header
+     * @param body   the response body
+     */
+    void onResponse(FrameHeader header, byte[] body) {
+        if (header.compressed) {
+            body = compressor != null ? compressor.uncompress(body) : Snappy.uncompress(body, 0, body.length);
+        }
+        RpcRequest rpcRequest = slots.get(header.seqNum % QUEUE_SIZE);
+        if (rpcRequest != null && rpcRequest.seqNum == header.seqNum && releaseSlot(rpcRequest)) {
+            handOff(rpcRequest, new ByteBuffer(body).rewind(), null);
+        }
+    }
+
+    private int nextSeqNum(int seqNum) {
+        int result = seqNum + QUEUE_SIZE;
+        if (isSeqNumValid(result)) {
+            return result;
+        }
+        return result - MAX_SEQ_NUM;
+    }
+
+    private static boolean isSeqNumValid(int seqNum) {
+        return seqNum < MAX_SEQ_NUM;
+    }
+
+    @Override
+    public boolean hasError() {
+        return getCurrentError() != null;
+    }
+
+    @Override
+    public int getInFlightRequests() {
+        return inFlightRequests.get();
+    }
+
+    @Override
+    public int queryFormatVersion() {
+        return queryFormatVersion;
+    }
+
+    private Exception getCurrentError() {
+        return error;
+    }
+
+    /**
+     * Marks this connection as failed, closes it and completes all pending requests exceptionally.
+     *
+     * @param error the error occurred
+     */
+    void onError(Exception error) {
+        lock.writeLock().lock();
+        try {
+            if (this.error == null) {
+                this.error = error;
+                close();
+                for (int i = 0; i < QUEUE_SIZE; i++) {
+                    RpcRequest rpcRequest = slots.get(i);
+                    if (rpcRequest != null && releaseSlot(rpcRequest)) {
+                        handOff(rpcRequest, null, error);
+                    }
+                }
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    static final class FrameHeader {
+
+        final int size;
+
+        final int seqNum;
+
+        final boolean compressed;
+
+        private FrameHeader(int size, int seqNum, boolean compressed) {
+            this.size = size;
+            this.seqNum = seqNum;
+            this.compressed = compressed;
+        }
+
+    }
+
+    private static final class RpcRequest {
+
+        private static final AtomicIntegerFieldUpdater<RpcRequest> COMPLETED =
+                AtomicIntegerFieldUpdater.newUpdater(RpcRequest.class, "completed");
+
+        /**
+         * The thread awaiting a sync request, null for async requests.
+         */
+        private final Thread waiter;
+
+        /**
+         * The completion of an async request, null for sync requests.
+         */
+        private final CompletableFuture<ReindexerResponse> completion;
+
+        /**
+         * Assigned once the slot is claimed, invalid until then.
+         */
+        private volatile int seqNum = MAX_SEQ_NUM;
+
+        private volatile int completed;
+
+        /**
+         * The response {@link ByteBuffer} or the connection error of a sync request.
+         */
+        private volatile Object result;
+
+        private volatile HashedWheelTimer.Timeout timeout;
+
+        private RpcRequest(Thread waiter, CompletableFuture<ReindexerResponse> completion) {
+            this.waiter = waiter;
+            this.completion = completion;
+        }
+
+        private boolean complete() {
+            return COMPLETED.compareAndSet(this, 0, 1);
+        }
+
+        private void cancelTimeout() {
+            HashedWheelTimer.Timeout timeout = this.timeout;
+            if (timeout != null) {
+                timeout.cancel();
+            }
+        }
+
+    }
+
+    private class TimeoutTask implements Runnable {
+
+        private final RpcRequest rpcRequest;
+
+        private TimeoutTask(RpcRequest rpcRequest) {
+            this.rpcRequest = rpcRequest;
+        }
+
+        @Override
+        public void run() {
+            if (releaseSlot(rpcRequest)) {
+                rpcRequest.completion.completeExceptionally(new ReindexerException("Request timeout"));
+            }
+        }
+
+    }
+
+}
@@ -0,0 +1,145 @@
+/*
+ * Copyright 2020-present Restream
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ru.rt.restream.reindexer.binding.cproto;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.channels.CancelledKeyException;
+import java.nio.channels.ClosedSelectorException;
+import java.nio.channels.SelectableChannel;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.time.Duration;
+import java.util.Iterator;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * A single thread that waits for socket readiness events of the registered {@link NioConnection}s
+ * and dispatches them. All changes of the selector state are executed on the loop thread.
+ */
+final class SelectorLoop implements Runnable {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(SelectorLoop.class);
+
+    private final Selector selector;
+
+    private final Queue<Runnable> tasks = new ConcurrentLinkedQueue<>();
+
+    private volatile boolean closed;
+
+    SelectorLoop(ThreadFactory threadFactory) throws IOException {
+        selector = Selector.open();
+        threadFactory.newThread(this).start();
+    }
+
+    /**
+     * Registers the channel for read events.
+     *
+     * @param channel    the non-blocking channel to register
+     * @param connection the connection that handles channel events
+     * @param timeout    the registration timeout
+     * @return the registered {@link SelectionKey}
+     */
+    SelectionKey register(SelectableChannel channel, NioConnection connection, Duration timeout)
+            throws IOException, InterruptedException, TimeoutException {
+        CompletableFuture<SelectionKey> registration = new CompletableFuture<>();
+        execute(() -> {
+            try {
+                registration.complete(channel.register(selector, SelectionKey.OP_READ, connection));
+            } catch (Exception e) {
+                registration.completeExceptionally(e);
+            }
+        });
+        try {
+            return registration.get(timeout.toMillis(), TimeUnit.MILLISECONDS);
+        } catch (ExecutionException e) {
+            throw new IOException(e.getCause());
+        }
+    }
+
+    /**
+     * Executes the task on the loop thread.
+     *
+     * @param task the task to execute
+     */
+    void execute(Runnable task) {
+        tasks.add(task);
+        selector.wakeup();
+    }
+
+    @Override
+    public void run() {
+        while (!closed) {
+            try {
+                selector.select();
+                runTasks();
+                Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+                while (keys.hasNext()) {
+                    SelectionKey key = keys.next();
+                    keys.remove();
+                    dispatch(key);
+                }
+            } catch (ClosedSelectorException e) {
+                break;
+            } catch (Exception e) {
+                LOGGER.error("rx: selector loop error", e);
+            }
+        }
+        try {
+            selector.close();
+        } catch (IOException e) {
+            LOGGER.error("rx: selector close error", e);
+        }
+    }
+
+    private void runTasks() {
+        Runnable task;
+        while ((task = tasks.poll()) != null) {
+            task.run();
+        }
+    }
+
+    private void dispatch(SelectionKey key) {
+        NioConnection connection = (NioConnection) key.attachment();
+        try {
+            if (key.isValid() && key.isReadable()) {
+                connection.onReadable();
+            }
+            if (key.isValid() && key.isWritable()) {
+                connection.onWritable();
+            }
+        } catch (CancelledKeyException e) {
+            // The connection has been closed concurrently.
+        }
+    }
+
+    /**
+     * Stops the loop and closes the selector. Registered channels are not closed.
+     */
+    void close() {
+        closed = true;
+        selector.wakeup();
+    }
+
+}
@@ -0,0 +1,64 @@
+/*
+ * Copyright 2020-present Restream
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ru.rt.restream.reindexer.binding.cproto;
+
+import ru.rt.restream.reindexer.exceptions.ReindexerException;
+
+import java.io.IOException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A fixed group of {@link SelectorLoop}s shared by the connections of a {@link ConnectionPool}
+ * that use {@link Transport#NIO}. Connections are assigned to the loops in round-robin order.
+ */
+public final class SelectorLoopGroup {
+
+    private final SelectorLoop[] loops;
+
+    private final AtomicInteger next = new AtomicInteger(0);
+
+    SelectorLoopGroup(int size, ThreadFactory threadFactory) {
+        if (size <= 0) {
+            throw new IllegalArgumentException("size must be greater than 0");
+        }
+        loops = new SelectorLoop[size];
+        for (int i = 0; i < size; i++) {
+            try {
+                loops[i] = new SelectorLoop(threadFactory);
+            } catch (IOException e) {
+                close();
+                throw new ReindexerException("Unable to open selector", e);
+            }
+        }
+    }
+
+    SelectorLoop next() {
+        return loops[Math.floorMod(next.getAndIncrement(), loops.length)];
+    }
+
+    /**
+     * Stops all loops of this group.
+     */
+    void close() {
+        for (SelectorLoop loop : loops) {
+            if (loop != null) {
+                loop.close();
+            }
+        }
+    }
+
+}
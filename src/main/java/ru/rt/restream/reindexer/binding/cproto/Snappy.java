@@ -0,0 +1,306 @@
+/*
+ * Copyright 2020-present Restream
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ru.rt.restream.reindexer.binding.cproto;
+
+import ru.rt.restream.reindexer.exceptions.InvalidProtocolException;
+
+import java.util.Arrays;
+
+/**
+ * A codec of the <a href="https://github.com/google/snappy/blob/main/format_description.txt">Snappy</a> block
+ * format, that is used by reindexer to compress cproto frames.
+ * <p>
+ * An instance keeps the hash table of the compressor, so it is not thread safe.
+ */
+final class Snappy {
+
+    private static final int BLOCK_SIZE = 1 << 16;
+
+    private static final int INPUT_MARGIN = 16 - 1;
+
+    private static final int MIN_NON_LITERAL_BLOCK_SIZE = 1 + 1 + INPUT_MARGIN;
+
+    private static final int MAX_TABLE_SIZE = 1 << 14;
+
+    private static final int TAG_LITERAL = 0x00;
+
+    private static final int TAG_COPY_1 = 0x01;
+
+    private static final int TAG_COPY_2 = 0x02;
+
+    private static final int TAG_COPY_4 = 0x03;
+
+    private final int[] table = new int[MAX_TABLE_SIZE];
+
+    /**
+     * Compresses the bytes and appends the result to the destination buffer.
+     *
+     * @param src    the bytes to compress
+     * @param offset the offset of the first byte to compress
+     * @param length the number of bytes to compress
+     * @param dst    the buffer to append to
+     */
+    void compress(byte[] src, int offset, int length, ByteBuffer dst) {
+        dst.putVarUInt32(length);
+        int end = offset + length;
+        for (int p = offset; p < end; p += BLOCK_SIZE) {
+            int blockLength = Math.min(BLOCK_SIZE, end - p);
+            if (blockLength < MIN_NON_LITERAL_BLOCK_SIZE) {
+                putLiteral(src, p, blockLength, dst);
+            } else {
+                compressBlock(src, p, blockLength, dst);
+            }
+        }
+    }
+
+    /**
+     * Encodes the bytes as a single literal without searching for matches. Valid Snappy data, that is a cheap way
+     * to send a frame which is not worth compressing.
+     *
+     * @param src    the bytes to encode
+     * @param offset the offset of the first byte to encode
+     * @param length the number of bytes to encode
+     * @param dst    the buffer to append to
+     */
+    static void encodeLiteral(byte[] src, int offset, int length, ByteBuffer dst) {
+        dst.putVarUInt32(length);
+        if (length > 0) {
+            putLiteral(src, offset, length, dst);
+        }
+    }
+
+    /**
+     * Decompresses the bytes.
+     *
+     * @param src    the compressed bytes
+     * @param offset the offset of the first compressed byte
+     * @param length the number of compressed bytes
+     * @return the decompressed bytes
+     * @throws InvalidProtocolException if the input is corrupted
+     */
+    static byte[] uncompress(byte[] src, int offset, int length) {
+        int end = offset + length;
+        int s = offset;
+        long uncompressedLength = 0;
+        for (int shift = 0; ; shift += 7) {
+            if (s >= end || shift > 28) {
+                throw corrupted();
+            }
+            int b = src[s++] & 0xFF;
+            uncompressedLength |= (long) (b & 0x7F) << shift;
+            if (b < 0x80) {
+                break;
+            }
+        }
+        if (uncompressedLength > Integer.MAX_VALUE) {
+            throw corrupted();
+        }
+        byte[] dst = new byte[(int) uncompressedLength];
+        int d = 0;
+        while (s < end) {
+            int tag = src[s] & 0xFF;
+            int copyLength;
+            int copyOffset;
+            switch (tag & 0x03) {
+                case TAG_LITERAL:
+                    int literalLength = tag >>> 2;
+                    if (literalLength < 60) {
+                        s++;
+                    } else {
+                        int bytes = literalLength - 59;
+                        if (s + bytes >= end) {
+                            throw corrupted();
+                        }
+                        literalLength = readLittleEndian(src, s + 1, bytes);
+                        s += 1 + bytes;
+                    }
+                    literalLength++;
+                    if (literalLength <= 0 || literalLength > end - s || literalLength > dst.length - d) {
+                        throw corrupted();
+                    }
+                    System.arraycopy(src, s, dst, d, literalLength);
+                    s += literalLength;
+                    d += literalLength;
+                    continue;
+                case TAG_COPY_1:
+                    if (s + 2 > end) {
+                        throw corrupted();
+                    }
+                    copyLength = 4 + ((tag >>> 2) & 0x07);
+                    copyOffset = ((tag & 0xE0) << 3) | (src[s + 1] & 0xFF);
+                    s += 2;
+                    break;
+                case TAG_COPY_2:
+                    if (s + 3 > end) {
+                        throw corrupted();
+                    }
+                    copyLength = 1 + (tag >>> 2);
+                    copyOffset = readLittleEndian(src, s + 1, 2);
+                    s += 3;
+                    break;
+                default:
+                    if (s + 5 > end) {
+                        throw corrupted();
+                    }
+                    copyLength = 1 + (tag >>> 2);
+                    copyOffset = readLittleEndian(src, s + 1, 4);
+                    s += 5;
+                    break;
+            }
+            if (copyOffset <= 0 || copyOffset > d || copyLength > dst.length - d) {
+                throw corrupted();
+            }
+            if (copyOffset >= copyLength) {
+                System.arraycopy(dst, d - copyOffset, dst, d, copyLength);
+                d += copyLength;
+            } else {
+                // Overlapping copy repeats the last copyOffset bytes.
+                for (int i = 0; i < copyLength; i++, d++) {
+                    dst[d] = dst[d - copyOffset];
+                }
+            }
+        }
+        if (d != dst.length) {
+            throw corrupted();
+        }
+        return dst;
+    }
+
+    private void compressBlock(byte[] src, int start, int length, ByteBuffer dst) {
+        int shift = 32 - 8;
+        int tableSize = 1 << 8;
+        while (tableSize < MAX_TABLE_SIZE && tableSize < length) {
+            tableSize <<= 1;
+            shift--;
+        }
+        Arrays.fill(table, 0, tableSize, 0);
+
+        // Positions are relative to the start of the block, as the offsets of copies can not cross blocks.
+        int sLimit = length - INPUT_MARGIN;
+        int nextEmit = 0;
+        int s = 1;
+        int nextHash = hash(load32(src, start + s), shift);
+        outer:
+        for (; ; ) {
+            int skip = 32;
+            int nextS = s;
+            int candidate;
+            do {
+                s = nextS;
+                int bytesBetweenHashLookups = skip >> 5;
+                nextS = s + bytesBetweenHashLookups;
+                skip += bytesBetweenHashLookups;
+                if (nextS > sLimit) {
+                    break outer;
+                }
+                candidate = table[nextHash];
+                table[nextHash] = s;
+                nextHash = hash(load32(src, start + nextS), shift);
+            } while (load32(src, start + s) != load32(src, start + candidate));
+
+            putLiteral(src, start + nextEmit, s - nextEmit, dst);
+
+            for (; ; ) {
+                int base = s;
+                s += 4;
+                int i = candidate + 4;
+                while (s < length && src[start + i] == src[start + s]) {
+                    i++;
+                    s++;
+                }
+                putCopy(base - candidate, s - base, dst);
+                nextEmit = s;
+                if (s >= sLimit) {
+                    break outer;
+                }
+                table[hash(load32(src, start + s - 1), shift)] = s - 1;
+                int currentHash = hash(load32(src, start + s), shift);
+                candidate = table[currentHash];
+                table[currentHash] = s;
+                if (load32(src, start + s) != load32(src, start + candidate)) {
+                    nextHash = hash(load32(src, start + s + 1), shift);
+                    s++;
+                    break;
+                }
+            }
+        }
+        if (nextEmit < length) {
+            putLiteral(src, start + nextEmit, length - nextEmit, dst);
+        }
+    }
+
+    private static void putLiteral(byte[] src, int offset, int length, ByteBuffer dst) {
+        int n = length - 1;
+        if (n < 60) {
+            dst.putUInt8(n << 2 | TAG_LITERAL);
+        } else if (n < 1 << 8) {
+            dst.putUInt8(60 << 2 | TAG_LITERAL);
+            dst.putUInt8(n);
+        } else if (n < 1 << 16) {
+            dst.putUInt8(61 << 2 | TAG_LITERAL);
+            dst.putUInt16(n);
+        } else if (n < 1 << 24) {
+            dst.putUInt8(62 << 2 | TAG_LITERAL);
+            dst.putUInt16(n & 0xFFFF);
+            dst.putUInt8(n >>> 16);
+        } else {
+            dst.putUInt8(63 << 2 | TAG_LITERAL);
+            dst.putUInt32(n);
+        }
+        dst.writeBytes(src, offset, length);
+    }
+
+    private static void putCopy(int offset, int length, ByteBuffer dst) {
+        while (length >= 68) {
+            dst.putUInt8(63 << 2 | TAG_COPY_2);
+            dst.putUInt16(offset);
+            length -= 64;
+        }
+        if (length > 64) {
+            dst.putUInt8(59 << 2 | TAG_COPY_2);
+            dst.putUInt16(offset);
+            length -= 60;
+        }
+        if (length >= 12 || offset >= 2048) {
+            dst.putUInt8((length - 1) << 2 | TAG_COPY_2);
+            dst.putUInt16(offset);
+        } else {
+            dst.putUInt8((offset >>> 8) << 5 | (length - 4) << 2 | TAG_COPY_1);
+            dst.putUInt8(offset & 0xFF);
+        }
+    }
+
+    private static int hash(int value, int shift) {
+        return (value * 0x1E35A7BD) >>> shift;
+    }
+
+    private static int load32(byte[] src, int offset) {
+        return readLittleEndian(src, offset, 4);
+    }
+
+    private static int readLittleEndian(byte[] src, int offset, int bytes) {
+        int value = 0;
+        for (int i = bytes - 1; i >= 0; i--) {
+            value = (value << 8) | (src[offset + i] & 0xFF);
+        }
+        return value;
+    }
+
+    private static InvalidProtocolException corrupted() {
+        return new InvalidProtocolException("Corrupted snappy input");
+    }
+
+}
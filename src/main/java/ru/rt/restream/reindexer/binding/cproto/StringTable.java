@@ -0,0 +1,163 @@
+/*
+ * Copyright 2020-present Restream
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ru.rt.restream.reindexer.binding.cproto;
+
+import java.util.Arrays;
+
+/**
+ * A table of distinct strings, that assigns a code to each string. The strings are looked up by their UTF-8 bytes
+ * straight in a {@link ByteBuffer}, so a string is decoded only the first time it is seen.
+ */
+public final class StringTable {
+
+    private static final int INITIAL_CAPACITY = 16;
+
+    private byte[][] keys = new byte[INITIAL_CAPACITY][];
+
+    private String[] values = new String[INITIAL_CAPACITY];
+
+    private int[] hashes = new int[INITIAL_CAPACITY];
+
+    /**
+     * The open addressing slots, that contain the codes of the strings plus one, 0 for the empty slots.
+     */
+    private int[] slots = new int[INITIAL_CAPACITY * 2];
+
+    private int size;
+
+    /**
+     * Reads a variable length string from the buffer and returns its code. Increments buffer position.
+     *
+     * @param buffer the buffer to read the string from
+     * @return the string code
+     */
+    public int intern(ByteBuffer buffer) {
+        int length = (int) buffer.getVarUInt();
+        int offset = buffer.getPosition();
+        byte[] array = buffer.array();
+        buffer.skip(length);
+        return intern(array, offset, length);
+    }
+
+    /**
+     * Returns the code of the string.
+     *
+     * @param value the string
+     * @return the string code
+     */
+    public int intern(String value) {
+        int length = Utf8.encodedLength(value);
+        byte[] bytes = new byte[length];
+        Utf8.encode(value, bytes, 0);
+        return intern(bytes, 0, bytes.length);
+    }
+
+    private int intern(byte[] array, int offset, int length) {
+        int hash = hash(array, offset, length);
+        int mask = slots.length - 1;
+        for (int slot = hash & mask; ; slot = (slot + 1) & mask) {
+            int code = slots[slot] - 1;
+            if (code < 0) {
+                return add(array, offset, length, hash, slot);
+            }
+            if (hashes[code] == hash && equals(keys[code], array, offset, length)) {
+                return code;
+            }
+        }
+    }
+
+    private int add(byte[] array, int offset, int length, int hash, int slot) {
+        if (size == keys.length) {
+            keys = Arrays.copyOf(keys, size * 2);
+            values = Arrays.copyOf(values, size * 2);
+            hashes = Arrays.copyOf(hashes, size * 2);
+        }
+        int code = size++;
+        keys[code] = Arrays.copyOfRange(array, offset, offset + length);
+        values[code] = Utf8.decode(array, offset, length);
+        hashes[code] = hash;
+        slots[slot] = code + 1;
+        if (size * 2 > slots.length) {
+            rehash();
+        }
+        return code;
+    }
+
+    private void rehash() {
+        slots = new int[slots.length * 2];
+        int mask = slots.length - 1;
+        for (int code = 0; code < size; code++) {
+            int slot = hashes[code] & mask;
+            while (slots[slot] != 0) {
+                slot = (slot + 1) & mask;
+            }
+            slots[slot] = code + 1;
+        }
+    }
+
+    private static int hash(byte[] array, int offset, int length) {
+        int hash = 1;
+        for (int i = offset; i < offset + length; i++) {
+            hash = 31 * hash + array[i];
+        }
+        return hash ^ (hash >>> 16);
+    }
+
+    private static boolean equals(byte[] key, byte[] array, int offset, int length) {
+        if (key.length != length) {
+            return false;
+        }
+        for (int i = 0; i < length; i++) {
+            if (key[i] != array[offset + i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Returns the string of the code.
+     *
+     * @param code the string code
+     * @return the string
+     */
+    public String get(int code) {
+        if (code < 0 || code >= size) {
+            throw new IndexOutOfBoundsException(String.format("Unknown string code %d", code));
+        }
+        return values[code];
+    }
+
+    /**
+     * Returns the number of the distinct strings.
+     *
+     * @return the number of the strings
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Removes all strings.
+     */
+    public void clear() {
+        Arrays.fill(keys, 0, size, null);
+        Arrays.fill(values, 0, size, null);
+        Arrays.fill(slots, 0);
+        size = 0;
+    }
+
+}
@@ -0,0 +1,35 @@
+/*
+ * Copyright 2020-present Restream
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ru.rt.restream.reindexer.binding.cproto;
+
+/**
+ * Socket I/O strategy of cproto connections.
+ */
+public enum Transport {
+
+    /**
+     * Each connection reads and writes its socket with a pair of blocking tasks on the connection pool scheduler.
+     * Supports SSL/TLS.
+     */
+    BLOCKING,
+
+    /**
+     * Connections are multiplexed over a small number of selector threads. Reads and writes are driven by socket
+     * readiness events, so idle connections do not occupy threads. Does not support SSL/TLS.
+     */
+    NIO
+
+}
@@ -0,0 +1,146 @@
+/*
+ * Copyright 2020-present Restream
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ru.rt.restream.reindexer.binding.cproto;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * UTF-8 encoding of strings straight into a byte array, without the intermediate array of
+ * {@link String#getBytes(java.nio.charset.Charset)}. Malformed surrogates are encoded as '?', the same as
+ * {@link StandardCharsets#UTF_8} does.
+ */
+final class Utf8 {
+
+    private static final byte REPLACEMENT = '?';
+
+    private Utf8() {
+        // utils
+    }
+
+    /**
+     * Returns the number of bytes in the UTF-8 encoding of the string.
+     *
+     * @param value the string to measure
+     * @return the encoded length in bytes
+     */
+    static int encodedLength(String value) {
+        int length = value.length();
+        int i = 0;
+        while (i < length && value.charAt(i) < 0x80) {
+            i++;
+        }
+        int encodedLength = length;
+        for (; i < length; i++) {
+            char c = value.charAt(i);
+            if (c < 0x80) {
+                continue;
+            }
+            if (c < 0x800) {
+                encodedLength += 1;
+            } else if (!Character.isSurrogate(c)) {
+                encodedLength += 2;
+            } else if (Character.isHighSurrogate(c) && i + 1 < length
+                    && Character.isLowSurrogate(value.charAt(i + 1))) {
+                // a pair of chars takes 4 bytes
+                encodedLength += 2;
+                i++;
+            }
+        }
+        return encodedLength;
+    }
+
+    /**
+     * Returns the maximum number of bytes in the UTF-8 encoding of the string, 3 bytes per char.
+     *
+     * @param value the string to measure
+     * @return the maximum encoded length in bytes
+     */
+    static int maxEncodedLength(String value) {
+        return value.length() * 3;
+    }
+
+    /**
+     * Encodes the string into the array, that must have room for {@link #encodedLength(String)} bytes.
+     *
+     * @param value  the string to encode
+     * @param array  the array to encode to
+     * @param offset the offset to start at
+     * @return the offset after the last encoded byte
+     */
+    static int encode(String value, byte[] array, int offset) {
+        int length = value.length();
+        int i = 0;
+        for (char c; i < length && (c = value.charAt(i)) < 0x80; i++) {
+            array[offset++] = (byte) c;
+        }
+        for (; i < length; i++) {
+            char c = value.charAt(i);
+            if (c < 0x80) {
+                array[offset++] = (byte) c;
+            } else if (c < 0x800) {
+                array[offset++] = (byte) (0xC0 | c >> 6);
+                array[offset++] = (byte) (0x80 | c & 0x3F);
+            } else if (!Character.isSurrogate(c)) {
+                array[offset++] = (byte) (0xE0 | c >> 12);
+                array[offset++] = (byte) (0x80 | c >> 6 & 0x3F);
+                array[offset++] = (byte) (0x80 | c & 0x3F);
+            } else if (Character.isHighSurrogate(c) && i + 1 < length
+                    && Character.isLowSurrogate(value.charAt(i + 1))) {
+                int codePoint = Character.toCodePoint(c, value.charAt(++i));
+                array[offset++] = (byte) (0xF0 | codePoint >> 18);
+                array[offset++] = (byte) (0x80 | codePoint >> 12 & 0x3F);
+                array[offset++] = (byte) (0x80 | codePoint >> 6 & 0x3F);
+                array[offset++] = (byte) (0x80 | codePoint & 0x3F);
+            } else {
+                array[offset++] = REPLACEMENT;
+            }
+        }
+        return offset;
+    }
+
+    /**
+     * Decodes UTF-8 bytes into a string. ASCII, that is the most of the tag names and many values, is decoded
+     * as ISO-8859-1, which is a plain copy of the bytes instead of running the UTF-8 decoder.
+     *
+     * @param array  the array to decode from
+     * @param offset the offset of the first byte
+     * @param length the number of bytes
+     * @return the decoded string
+     */
+    static String decode(byte[] array, int offset, int length) {
+        return isAscii(array, offset, length)
+                ? new String(array, offset, length, StandardCharsets.ISO_8859_1)
+                : new String(array, offset, length, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Checks that all bytes of the range are ASCII characters.
+     *
+     * @param array  the array to check
+     * @param offset the range start
+     * @param length the range length
+     * @return true, if there are no bytes with the high bit set
+     */
+    static boolean isAscii(byte[] array, int offset, int length) {
+        for (int i = offset; i < offset + length; i++) {
+            if (array[i] < 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+}
@@ -0,0 +1,174 @@
+/*
+ * Copyright 2020-present Restream
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ru.rt.restream.reindexer.binding.cproto.cjson;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import ru.rt.restream.reindexer.annotations.Transient;
+import ru.rt.restream.reindexer.binding.cproto.ByteBuffer;
+import ru.rt.restream.reindexer.binding.cproto.ItemCodec;
+import ru.rt.restream.reindexer.binding.cproto.ItemCodecProvider;
+import ru.rt.restream.reindexer.binding.cproto.ItemReader;
+import ru.rt.restream.reindexer.convert.FieldConverterRegistryFactory;
+import ru.rt.restream.reindexer.util.BeanPropertyUtils;
+
+import java.lang.reflect.Field;
+import java.util.Iterator;
+import java.util.Optional;
+import java.util.ServiceConfigurationError;
+import java.util.ServiceLoader;
+import java.util.Set;
+
+/**
+ * An {@link ItemCodec}, that reads items by a {@link StreamingCjsonItemReader}, or by a {@link CjsonItemReader} if
+ * the item class is not supported by it, and writes items by a {@link StreamingCjsonItemWriter}.
+ * <p>
+ * If an {@link ItemCodecProvider} of the item class is found by the {@link ServiceLoader}, its codecs are used
+ * instead, unless a field converter is registered for a field of the item class.
+ */
+public final class CjsonItemCodec<T> implements ItemCodec<T> {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(CjsonItemCodec.class);
+
+    private static final ClassValue<ItemCodec<?>> CODECS = new ClassValue<ItemCodec<?>>() {
+        @Override
+        protected ItemCodec<?> computeValue(Class<?> type) {
+            return create(type, null);
+        }
+    };
+
+    private static final ClassValue<Optional<ItemCodecProvider<?>>> PROVIDERS =
+            new ClassValue<Optional<ItemCodecProvider<?>>>() {
+                @Override
+                protected Optional<ItemCodecProvider<?>> computeValue(Class<?> type) {
+                    return findProvider(type);
+                }
+            };
+
+    private final ItemReader<T> reader;
+
+    private final StreamingCjsonItemWriter<T> writer;
+
+    CjsonItemCodec(Class<T> itemClass, PayloadType payloadType) {
+        reader = StreamingCjsonItemReader.create(itemClass, new CtagMatcher(payloadType));
+        writer = new StreamingCjsonItemWriter<>(payloadType);
+    }
+
+    /**
+     * Returns the codec of the item class for the payload type. The codecs are cached by the payload type.
+     *
+     * @param itemClass   the item class
+     * @param payloadType the namespace payload type, can be null
+     * @param <T>         the item type
+     * @return the codec to use
+     */
+    @SuppressWarnings("unchecked")
+    public static <T> ItemCodec<T> getInstance(Class<T> itemClass, PayloadType payloadType) {
+        if (payloadType == null) {
+            return (ItemCodec<T>) CODECS.get(itemClass);
+        }
+        return payloadType.getItemCodec(itemClass);
+    }
+
+    /**
+     * Returns the reader of the item class for the payload type, that reads only the selected root fields, see
+     * {@link StreamingCjsonItemReader#create(Class, CtagMatcher, Set)}. The readers are cached by the payload type.
+     *
+     * @param itemClass    the item class
+     * @param payloadType  the namespace payload type, can be null
+     * @param selectedTags the tag names of the root fields to read, must not be changed afterwards
+     * @param <T>          the item type
+     * @return the reader to use
+     */
+    public static <T> ItemReader<T> getProjectingReader(Class<T> itemClass, PayloadType payloadType,
+                                                        Set<String> selectedTags) {
+        if (payloadType == null) {
+            return StreamingCjsonItemReader.create(itemClass, new CtagMatcher(null), selectedTags);
+        }
+        return payloadType.getProjectingReader(itemClass, selectedTags);
+    }
+
+    /**
+     * Creates a codec of the item class for the payload type.
+     *
+     * @param itemClass   the item class
+     * @param payloadType the namespace payload type, can be null
+     * @param <T>         the item type
+     * @return the created codec
+     */
+    @SuppressWarnings("unchecked")
+    static <T> ItemCodec<T> create(Class<T> itemClass, PayloadType payloadType) {
+        Optional<ItemCodecProvider<?>> provider = PROVIDERS.get(itemClass);
+        if (provider.isPresent()) {
+            return ((ItemCodecProvider<T>) provider.get()).createItemCodec(payloadType);
+        }
+        return new CjsonItemCodec<>(itemClass, payloadType);
+    }
+
+    private static Optional<ItemCodecProvider<?>> findProvider(Class<?> itemClass) {
+        try {
+            for (Field field : BeanPropertyUtils.getInheritedFields(itemClass)) {
+                // the generated codecs do not convert the field values
+                if (!field.isAnnotationPresent(Transient.class)
+                        && FieldConverterRegistryFactory.INSTANCE.getFieldConverter(field) != null) {
+                    return Optional.empty();
+                }
+            }
+        } catch (IllegalArgumentException e) {
+            // a field type is not resolvable, leave the item class to the reflection codec
+            return Optional.empty();
+        }
+        // the service class literal can only be raw
+        @SuppressWarnings("rawtypes")
+        Iterator<ItemCodecProvider> providers = ServiceLoader.load(ItemCodecProvider.class, itemClass.getClassLoader())
+                .iterator();
+        while (true) {
+            try {
+                if (!providers.hasNext()) {
+                    return Optional.empty();
+                }
+                ItemCodecProvider<?> provider = providers.next();
+                if (provider.getItemClass() == itemClass) {
+                    return Optional.of(provider);
+                }
+            } catch (ServiceConfigurationError e) {
+                // e.g. a provider of a removed item class is left in the services file
+                LOGGER.warn("rx: cannot load item codec provider", e);
+            }
+        }
+    }
+
+    @Override
+    public T readItem(ByteBuffer buffer) {
+        return reader.readItem(buffer);
+    }
+
+    @Override
+    public T readItem(ByteBuffer buffer, int length) {
+        return reader.readItem(buffer, length);
+    }
+
+    @Override
+    public T readItem(ByteBuffer buffer, int length, T target) {
+        return reader.readItem(buffer, length, target);
+    }
+
+    @Override
+    public void writeItem(ByteBuffer buffer, T item) {
+        writer.writeItem(buffer, item);
+    }
+
+}
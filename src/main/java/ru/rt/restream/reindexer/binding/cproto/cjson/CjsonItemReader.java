@@ -21,6 +21,7 @@ import ru.rt.restream.reindexer.annotations.Json;
 import ru.rt.restream.reindexer.binding.cproto.ByteBuffer;
 import ru.rt.restream.reindexer.binding.cproto.ItemReader;
 import ru.rt.restream.reindexer.binding.cproto.cjson.encdec.CjsonDecoder;
+import ru.rt.restream.reindexer.binding.cproto.cjson.encdec.TagFilter;
 import ru.rt.restream.reindexer.convert.FieldConverter;
 import ru.rt.restream.reindexer.convert.FieldConverterRegistryFactory;
 import ru.rt.restream.reindexer.util.BeanPropertyUtils;
@@ -32,8 +33,10 @@ import ru.rt.restream.reindexer.util.Pair;
 import java.lang.reflect.Array;
 import java.lang.reflect.Constructor;
 import java.lang.reflect.Field;
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.List;
+import java.util.Set;
 import java.util.UUID;
 
 /**
@@ -41,18 +44,52 @@ import java.util.UUID;
  */
 public class CjsonItemReader<T> implements ItemReader<T> {
 
+    private static final ClassValue<Constructor<?>> CONSTRUCTORS = new ClassValue<Constructor<?>>() {
+        @Override
+        protected Constructor<?> computeValue(Class<?> type) {
+            try {
+                Constructor<?> constructor = type.getDeclaredConstructor();
+                constructor.setAccessible(true);
+                return constructor;
+            } catch (NoSuchMethodException e) {
+                throw new RuntimeException(e);
+            }
+        }
+    };
+
     private final Class<T> itemClass;
 
     private final CtagMatcher ctagMatcher;
 
+    private final TagFilter rootFilter;
+
     public CjsonItemReader(Class<T> itemClass, CtagMatcher ctagMatcher) {
+        this(itemClass, ctagMatcher, null);
+    }
+
+    /**
+     * Creates an instance, that decodes only the root fields of the item class, that are selected.
+     *
+     * @param itemClass    the item class
+     * @param ctagMatcher  the item ctag matcher
+     * @param selectedTags the tag names of the root fields to read, null to read all fields of the item class
+     */
+    public CjsonItemReader(Class<T> itemClass, CtagMatcher ctagMatcher, Set<String> selectedTags) {
         this.itemClass = itemClass;
         this.ctagMatcher = ctagMatcher;
+        List<String> tagNames = new ArrayList<>();
+        for (Field field : BeanPropertyUtils.getInheritedFields(itemClass)) {
+            String tagName = getTagName(field);
+            if (selectedTags == null || selectedTags.contains(tagName)) {
+                tagNames.add(tagName);
+            }
+        }
+        rootFilter = new TagFilter(ctagMatcher, tagNames);
     }
 
     @Override
     public T readItem(ByteBuffer buffer) {
-        CjsonDecoder reader = new CjsonDecoder(ctagMatcher, buffer);
+        CjsonDecoder reader = new CjsonDecoder(ctagMatcher, buffer, rootFilter);
         CjsonElement element = reader.decode();
         if (!element.isObject()) {
             throw new IllegalArgumentException("Read object is not an item");
@@ -64,8 +101,7 @@ public class CjsonItemReader<T> implements ItemReader<T> {
         V instance = createInstance(itemClass);
         List<Field> fields = BeanPropertyUtils.getInheritedFields(itemClass);
         for (Field field : fields) {
-            Json json = field.getAnnotation(Json.class);
-            String tagName = json == null ? field.getName() : json.value();
+            String tagName = getTagName(field);
             Object value = getTargetValue(field, cjsonObject.getProperty(tagName));
             if (value != null) {
                 BeanPropertyUtils.setProperty(instance, field.getName(), value);
@@ -74,6 +110,11 @@ public class CjsonItemReader<T> implements ItemReader<T> {
         return instance;
     }
 
+    private static String getTagName(Field field) {
+        Json json = field.getAnnotation(Json.class);
+        return json == null ? field.getName() : json.value();
+    }
+
     private Object getTargetValue(Field field, CjsonElement property) {
         FieldConverter<?, Object> converter = FieldConverterRegistryFactory.INSTANCE.getFieldConverter(field);
         if (converter != null) {
@@ -149,9 +190,9 @@ public class CjsonItemReader<T> implements ItemReader<T> {
 
     private static <T> T createInstance(Class<T> beanClass) {
         try {
-            Constructor<T> constructor = beanClass.getDeclaredConstructor();
-            constructor.setAccessible(true);
-            return constructor.newInstance();
+            return beanClass.cast(CONSTRUCTORS.get(beanClass).newInstance());
+        } catch (RuntimeException e) {
+            throw e;
         } catch (Exception e) {
             throw new RuntimeException(e);
         }
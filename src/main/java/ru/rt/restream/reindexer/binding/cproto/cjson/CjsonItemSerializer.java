@@ -31,13 +31,10 @@ public class CjsonItemSerializer<T> implements ItemSerializer<T> {
 
     @Override
     public byte[] serialize(T item) {
-        CtagMatcher ctagMatcher = new CtagMatcher();
-        if (payloadType != null) {
-            ctagMatcher.read(payloadType);
-        }
+        @SuppressWarnings("unchecked")
+        Class<T> itemClass = (Class<T>) item.getClass();
         ByteBuffer byteBuffer = new ByteBuffer();
-        CJsonItemWriter<T> itemWriter = new CJsonItemWriter<>(ctagMatcher);
-        itemWriter.writeItem(byteBuffer, item);
+        CjsonItemCodec.getInstance(itemClass, payloadType).writeItem(byteBuffer, item);
         return byteBuffer.bytes();
     }
 
@@ -16,21 +16,47 @@
 package ru.rt.restream.reindexer.binding.cproto.cjson;
 
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 
 /**
  * Objects of this class used to match a tag's name index with it string value.
+ * <p>
+ * The tags of the namespace {@link PayloadType} are used as is, without copying them, so a matcher is cheap to
+ * create for each item. The tags added by {@link #getIndex(String)} are kept in the matcher's own overlay, the
+ * payload type is never modified.
  */
 public final class CtagMatcher {
 
-    private final Map<String, Integer> names = new HashMap<>();
+    private final List<String> payloadTags;
 
-    private final List<String> tags = new ArrayList<>();
+    private final Map<String, Integer> payloadNames;
+
+    private Map<String, Integer> names = Collections.emptyMap();
+
+    private List<String> tags = Collections.emptyList();
 
     private boolean updated = false;
 
+    /**
+     * Creates an empty matcher.
+     */
+    public CtagMatcher() {
+        this(null);
+    }
+
+    /**
+     * Creates a matcher, that starts with the tags of the specified payload type.
+     *
+     * @param payloadType the namespace payload type, can be null
+     */
+    public CtagMatcher(PayloadType payloadType) {
+        payloadTags = payloadType == null ? Collections.emptyList() : payloadType.getTags();
+        payloadNames = payloadType == null ? Collections.emptyMap() : payloadType.getNames();
+    }
+
     /**
      * Get name of the tag.
      * @param index ctag name index
@@ -44,11 +70,15 @@ public final class CtagMatcher {
             return "";
         }
 
-        if (index - 1 >= tags.size()) {
+        if (index - 1 < payloadTags.size()) {
+            return payloadTags.get(index - 1);
+        }
+
+        if (index - 1 - payloadTags.size() >= tags.size()) {
             throw new IllegalArgumentException(String.format("Unknown ctag name index %d\n", index));
         }
 
-        return tags.get(index - 1);
+        return tags.get(index - 1 - payloadTags.size());
     }
 
     /**
@@ -58,26 +88,51 @@ public final class CtagMatcher {
      * @return ctag name index
      */
     public int getIndex(String name) {
-        Integer nameIndex = names.get(name);
+        Integer nameIndex = payloadNames.get(name);
         if (nameIndex == null) {
-            tags.add(name);
-            nameIndex = tags.size() - 1;
-            names.put(name, nameIndex);
+            nameIndex = names.get(name);
+        }
+        if (nameIndex == null) {
+            nameIndex = addTag(name);
             updated = true;
         }
 
         return nameIndex + 1;
     }
 
+    /**
+     * Get name index of a known tag, without adding it.
+     * @param name ctag name
+     *
+     * @return ctag name index, or 0 if the tag is unknown
+     */
+    public int findIndex(String name) {
+        Integer nameIndex = payloadNames.get(name);
+        if (nameIndex == null) {
+            nameIndex = names.get(name);
+        }
+
+        return nameIndex == null ? 0 : nameIndex + 1;
+    }
+
+    private int addTag(String name) {
+        if (tags.isEmpty()) {
+            tags = new ArrayList<>();
+            names = new HashMap<>();
+        }
+        tags.add(name);
+        int nameIndex = payloadTags.size() + tags.size() - 1;
+        names.put(name, nameIndex);
+        return nameIndex;
+    }
+
     /**
      * Read the specified payload type and construct name-index map
      * @param payloadType payload type to read
      */
     public void read(PayloadType payloadType) {
-        List<String> payloadTags = payloadType.getTags();
-        for (int i = 0; i < payloadTags.size(); i++) {
-            tags.add(payloadTags.get(i));
-            names.put(payloadTags.get(i), i);
+        for (String tag : payloadType.getTags()) {
+            addTag(tag);
         }
     }
 
@@ -96,7 +151,22 @@ public final class CtagMatcher {
      * @return a list of tag names
      */
     public List<String> getTags() {
-        return tags;
+        if (tags.isEmpty()) {
+            return payloadTags;
+        }
+        List<String> allTags = new ArrayList<>(payloadTags.size() + tags.size());
+        allTags.addAll(payloadTags);
+        allTags.addAll(tags);
+        return allTags;
+    }
+
+    /**
+     * Returns a number of tag names.
+     *
+     * @return a number of tag names
+     */
+    public int getTagsCount() {
+        return payloadTags.size() + tags.size();
     }
 
 }
@@ -0,0 +1,396 @@
+/*
+ * Copyright 2020-present Restream
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ru.rt.restream.reindexer.binding.cproto.cjson;
+
+import ru.rt.restream.reindexer.binding.cproto.ByteBuffer;
+import ru.rt.restream.reindexer.binding.cproto.ItemCodec;
+import ru.rt.restream.reindexer.binding.cproto.cjson.encdec.CjsonReader;
+import ru.rt.restream.reindexer.binding.cproto.cjson.encdec.CjsonWriter;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * A base class of the {@link ItemCodec}s, that are generated by the
+ * {@link ru.rt.restream.reindexer.processor.ItemCodecProcessor}.
+ * <p>
+ * The fields of an item are identified by their ordinals in the field names, passed to the constructor. A generated
+ * subclass creates the items, reads a field by its ordinal and writes the fields by the methods of this class, that
+ * resolve the ctag name indexes, skip the null values and convert the mismatched value types the same way as the
+ * {@link StreamingCjsonItemReader} and the {@link StreamingCjsonItemWriter} do.
+ *
+ * @param <T> the item type
+ */
+public abstract class GeneratedCjsonItemCodec<T> implements ItemCodec<T> {
+
+    private final PayloadType payloadType;
+
+    private final CtagMatcher ctagMatcher;
+
+    private final String[] fieldNames;
+
+    /**
+     * The field ordinals by the ctag name indexes of the payload type, -1 for unknown tags.
+     */
+    private final int[] fields;
+
+    /**
+     * The ctag name indexes of the payload type by the field ordinals, 0 for the tags, that are not in the payload
+     * type.
+     */
+    private final int[] tagNames;
+
+    /**
+     * Creates an instance.
+     *
+     * @param payloadType the namespace payload type, can be null
+     * @param fieldNames  the tag names of the item fields
+     */
+    protected GeneratedCjsonItemCodec(PayloadType payloadType, String[] fieldNames) {
+        this.payloadType = payloadType;
+        this.fieldNames = fieldNames;
+        ctagMatcher = new CtagMatcher(payloadType);
+        fields = new int[ctagMatcher.getTagsCount() + 1];
+        Arrays.fill(fields, -1);
+        tagNames = new int[fieldNames.length];
+        for (int i = 0; i < fieldNames.length; i++) {
+            tagNames[i] = ctagMatcher.findIndex(fieldNames[i]);
+            if (tagNames[i] != 0) {
+                fields[tagNames[i]] = i;
+            }
+        }
+    }
+
+    /**
+     * Creates an item, which absent fields have their default values.
+     *
+     * @return the new item
+     */
+    protected abstract T newItem();
+
+    /**
+     * Resets the fields of an existing item to the values of the absent fields: lists are empty, other fields are
+     * null, 0 or false.
+     *
+     * @param item the item to reset
+     */
+    protected abstract void resetItem(T item);
+
+    /**
+     * Reads the value of the field into the item.
+     *
+     * @param reader the reader, positioned at the field value
+     * @param item   the item to read to
+     * @param field  the field ordinal
+     * @param type   the type of the field value
+     */
+    protected abstract void readField(CjsonReader reader, T item, int field, int type);
+
+    /**
+     * Writes the fields of the item.
+     *
+     * @param writer the writer to use
+     * @param item   the item to write
+     */
+    protected abstract void writeFields(CjsonWriter writer, T item);
+
+    @Override
+    public T readItem(ByteBuffer buffer) {
+        return readItem(buffer, newItem());
+    }
+
+    @Override
+    public T readItem(ByteBuffer buffer, int length) {
+        return readItem(buffer, length, null);
+    }
+
+    @Override
+    public T readItem(ByteBuffer buffer, int length, T target) {
+        int end = buffer.getPosition() + length;
+        T item;
+        if (target == null) {
+            item = readItem(buffer, newItem());
+        } else {
+            resetItem(target);
+            item = readItem(buffer, target);
+        }
+        buffer.setPosition(end);
+        return item;
+    }
+
+    private T readItem(ByteBuffer buffer, T item) {
+        CjsonReader reader = new CjsonReader(buffer);
+        if (reader.readTag() != CjsonReader.OBJECT) {
+            throw new IllegalArgumentException("Read object is not an item");
+        }
+        for (int type = reader.readTag(); type != CjsonReader.END; type = reader.readTag()) {
+            int tagName = reader.getTagName();
+            int field = tagName < fields.length ? fields[tagName] : getField(ctagMatcher.getName(tagName));
+            if (field < 0) {
+                reader.skipValue(type);
+            } else {
+                readField(reader, item, field, type);
+            }
+        }
+        return item;
+    }
+
+    private int getField(String name) {
+        for (int i = 0; i < fieldNames.length; i++) {
+            if (fieldNames[i].equals(name)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    @Override
+    public void writeItem(ByteBuffer buffer, T item) {
+        CjsonWriter writer = new CjsonWriter(buffer, new CtagMatcher(payloadType));
+        writer.begin();
+        writer.beginObject(0);
+        writeFields(writer, item);
+        writer.endObject();
+        writer.end();
+    }
+
+    private int getTagName(CjsonWriter writer, int field) {
+        int tagName = tagNames[field];
+        return tagName != 0 ? tagName : writer.getTagName(fieldNames[field]);
+    }
+
+    protected final void writeVarInt(CjsonWriter writer, int field, long value) {
+        writer.putVarInt(getTagName(writer, field), value);
+    }
+
+    protected final void writeVarInt(CjsonWriter writer, int field, Number value) {
+        if (value != null) {
+            writer.putVarInt(getTagName(writer, field), value.longValue());
+        }
+    }
+
+    protected final void writeBool(CjsonWriter writer, int field, boolean value) {
+        writer.putBool(getTagName(writer, field), value);
+    }
+
+    protected final void writeBool(CjsonWriter writer, int field, Boolean value) {
+        if (value != null) {
+            writer.putBool(getTagName(writer, field), value);
+        }
+    }
+
+    protected final void writeDouble(CjsonWriter writer, int field, double value) {
+        writer.putDouble(getTagName(writer, field), value);
+    }
+
+    protected final void writeDouble(CjsonWriter writer, int field, Double value) {
+        if (value != null) {
+            writer.putDouble(getTagName(writer, field), value);
+        }
+    }
+
+    protected final void writeFloat(CjsonWriter writer, int field, float value) {
+        writer.putFloat(getTagName(writer, field), value);
+    }
+
+    protected final void writeFloat(CjsonWriter writer, int field, Float value) {
+        if (value != null) {
+            writer.putFloat(getTagName(writer, field), value);
+        }
+    }
+
+    protected final void writeString(CjsonWriter writer, int field, String value) {
+        if (value != null) {
+            writer.putString(getTagName(writer, field), value);
+        }
+    }
+
+    protected final void writeUuid(CjsonWriter writer, int field, UUID value) {
+        if (value != null) {
+            writer.putUuid(getTagName(writer, field), value);
+        }
+    }
+
+    protected final void writeUuidString(CjsonWriter writer, int field, String value) {
+        // a String field with Reindex.isUuid() == true is written as UUID
+        if (value != null) {
+            writer.putUuid(getTagName(writer, field), UUID.fromString(value));
+        }
+    }
+
+    protected final void writeVarIntArray(CjsonWriter writer, int field, List<? extends Number> values) {
+        if (beginArray(writer, field, values, CjsonReader.VARINT)) {
+            for (Number value : values) {
+                writer.putVarIntElement(requireElement(value).longValue());
+            }
+        }
+    }
+
+    protected final void writeBoolArray(CjsonWriter writer, int field, List<Boolean> values) {
+        if (beginArray(writer, field, values, CjsonReader.BOOL)) {
+            for (Boolean value : values) {
+                writer.putBoolElement(requireElement(value));
+            }
+        }
+    }
+
+    protected final void writeDoubleArray(CjsonWriter writer, int field, List<Double> values) {
+        if (beginArray(writer, field, values, CjsonReader.DOUBLE)) {
+            for (Double value : values) {
+                writer.putDoubleElement(requireElement(value));
+            }
+        }
+    }
+
+    protected final void writeFloatArray(CjsonWriter writer, int field, List<Float> values) {
+        if (beginArray(writer, field, values, CjsonReader.FLOAT)) {
+            for (Float value : values) {
+                writer.putFloatElement(requireElement(value));
+            }
+        }
+    }
+
+    protected final void writeStringArray(CjsonWriter writer, int field, List<String> values) {
+        if (beginArray(writer, field, values, CjsonReader.STRING)) {
+            for (String value : values) {
+                writer.putStringElement(requireElement(value));
+            }
+        }
+    }
+
+    protected final void writeUuidArray(CjsonWriter writer, int field, List<UUID> values) {
+        if (beginArray(writer, field, values, CjsonReader.UUID)) {
+            for (UUID value : values) {
+                writer.putUuidElement(requireElement(value));
+            }
+        }
+    }
+
+    private boolean beginArray(CjsonWriter writer, int field, List<?> values, int elementType) {
+        if (values == null) {
+            return false;
+        }
+        int tagName = getTagName(writer, field);
+        if (values.isEmpty()) {
+            return false;
+        }
+        writer.beginArray(tagName, values.size(), elementType);
+        return true;
+    }
+
+    private static <E> E requireElement(E element) {
+        if (element == null) {
+            throw new UnsupportedOperationException("Unsupported data cjson type: null");
+        }
+        return element;
+    }
+
+    protected static int readInt(CjsonReader reader, int type) {
+        return type == CjsonReader.VARINT ? (int) reader.readVarInt() : readElement(reader, type).getAsInteger();
+    }
+
+    protected static long readLong(CjsonReader reader, int type) {
+        return type == CjsonReader.VARINT ? reader.readVarInt() : readElement(reader, type).getAsLong();
+    }
+
+    protected static short readShort(CjsonReader reader, int type) {
+        return type == CjsonReader.VARINT ? (short) reader.readVarInt() : readElement(reader, type).getAsShort();
+    }
+
+    protected static byte readByte(CjsonReader reader, int type) {
+        return type == CjsonReader.VARINT ? (byte) reader.readVarInt() : readElement(reader, type).getAsByte();
+    }
+
+    protected static boolean readBool(CjsonReader reader, int type) {
+        return type == CjsonReader.BOOL ? reader.readBool() : readElement(reader, type).getAsBoolean();
+    }
+
+    protected static double readDouble(CjsonReader reader, int type) {
+        return type == CjsonReader.DOUBLE ? reader.readDouble() : readElement(reader, type).getAsDouble();
+    }
+
+    protected static float readFloat(CjsonReader reader, int type) {
+        return type == CjsonReader.FLOAT ? reader.readFloat() : readElement(reader, type).getAsFloat();
+    }
+
+    protected static String readString(CjsonReader reader, int type) {
+        if (type == CjsonReader.NULL) {
+            return null;
+        }
+        return type == CjsonReader.STRING ? reader.readString() : readElement(reader, type).getAsString();
+    }
+
+    protected static UUID readUuid(CjsonReader reader, int type) {
+        if (type == CjsonReader.NULL) {
+            return null;
+        }
+        return type == CjsonReader.UUID ? reader.readUuid() : readElement(reader, type).getAsUuid();
+    }
+
+    /**
+     * Reads an array field value into a list, an absent or null array is read as an empty list.
+     *
+     * @param reader        the reader, positioned at the field value
+     * @param type          the type of the field value
+     * @param elementReader reads an element of the array
+     * @param <E>           the element type
+     * @return the read list
+     */
+    protected static <E> List<E> readList(CjsonReader reader, int type, ElementReader<E> elementReader) {
+        if (type == CjsonReader.NULL) {
+            return new ArrayList<>(0);
+        }
+        if (type != CjsonReader.ARRAY) {
+            throw new IllegalStateException("Field is not an array");
+        }
+        int count = reader.readArrayHeader();
+        int elementType = reader.getArrayType();
+        List<E> elements = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            elements.add(elementReader.read(reader, elementType == CjsonReader.OBJECT ? reader.readTag() : elementType));
+        }
+        return elements;
+    }
+
+    private static CjsonElement readElement(CjsonReader reader, int type) {
+        if (type == CjsonReader.OBJECT || type == CjsonReader.ARRAY) {
+            throw new UnsupportedOperationException(String.format("Unsupported data type: %d", type));
+        }
+        return reader.readElement(type);
+    }
+
+    /**
+     * Reads an array element.
+     *
+     * @param <E> the element type
+     */
+    @FunctionalInterface
+    protected interface ElementReader<E> {
+
+        /**
+         * Reads an element of the type.
+         *
+         * @param reader the reader, positioned at the element
+         * @param type   the type of the element
+         * @return the read element
+         */
+        E read(CjsonReader reader, int type);
+
+    }
+
+}
@@ -15,11 +15,18 @@
  */
 package ru.rt.restream.reindexer.binding.cproto.cjson;
 
+import lombok.AccessLevel;
 import lombok.Getter;
+import ru.rt.restream.reindexer.binding.cproto.ItemCodec;
+import ru.rt.restream.reindexer.binding.cproto.ItemReader;
 
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * Reindexer item type descriptor.
@@ -44,8 +51,23 @@ public class PayloadType {
 
     private final List<PayloadField> fields;
 
+    /**
+     * The tag indexes by the tag names, built once per payload type.
+     */
     private final Map<String, Integer> names = new HashMap<>();
 
+    /**
+     * The item codecs of this payload type by the item classes.
+     */
+    @Getter(AccessLevel.NONE)
+    private final Map<Class<?>, ItemCodec<?>> itemCodecs = new ConcurrentHashMap<>();
+
+    /**
+     * The item readers of the selected root fields of this payload type by the item classes and the field tag names.
+     */
+    @Getter(AccessLevel.NONE)
+    private final Map<List<Object>, ItemReader<?>> projectingReaders = new ConcurrentHashMap<>();
+
     /**
      * Creates an instance.
      *
@@ -64,12 +86,47 @@ public class PayloadType {
         this.version = version;
         this.stateToken = stateToken;
         this.pStringHdrOffset = pStringHdrOffset;
-        this.tags = tags;
+        this.tags = Collections.unmodifiableList(tags);
         this.fields = fields;
         for (int i = 0; i < tags.size(); i++) {
             names.put(tags.get(i), i);
         }
     }
 
-}
+    /**
+     * Returns the item codec of the item class for this payload type.
+     *
+     * @param itemClass the item class
+     * @param <T>       the item type
+     * @return the item codec
+     */
+    @SuppressWarnings("unchecked")
+    <T> ItemCodec<T> getItemCodec(Class<T> itemClass) {
+        //https://bugs.openjdk.java.net/browse/JDK-8161372
+        ItemCodec<?> itemCodec = itemCodecs.get(itemClass);
+        if (itemCodec == null) {
+            itemCodec = itemCodecs.computeIfAbsent(itemClass, type -> CjsonItemCodec.create(type, this));
+        }
+        return (ItemCodec<T>) itemCodec;
+    }
+
+    /**
+     * Returns the item reader of the item class for this payload type, that reads only the selected root fields.
+     *
+     * @param itemClass    the item class
+     * @param selectedTags the tag names of the root fields to read
+     * @param <T>          the item type
+     * @return the item reader
+     */
+    @SuppressWarnings("unchecked")
+    <T> ItemReader<T> getProjectingReader(Class<T> itemClass, Set<String> selectedTags) {
+        List<Object> key = Arrays.asList(itemClass, selectedTags);
+        ItemReader<?> reader = projectingReaders.get(key);
+        if (reader == null) {
+            reader = projectingReaders.computeIfAbsent(key,
+                    k -> StreamingCjsonItemReader.create(itemClass, new CtagMatcher(this), selectedTags));
+        }
+        return (ItemReader<T>) reader;
+    }
 
+}
@@ -0,0 +1,603 @@
+/*
+ * Copyright 2020-present Restream
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ru.rt.restream.reindexer.binding.cproto.cjson;
+
+import ru.rt.restream.reindexer.EnumType;
+import ru.rt.restream.reindexer.annotations.Enumerated;
+import ru.rt.restream.reindexer.annotations.Json;
+import ru.rt.restream.reindexer.binding.cproto.ByteBuffer;
+import ru.rt.restream.reindexer.binding.cproto.ItemReader;
+import ru.rt.restream.reindexer.binding.cproto.cjson.encdec.CjsonReader;
+import ru.rt.restream.reindexer.convert.FieldConverter;
+import ru.rt.restream.reindexer.convert.FieldConverterRegistryFactory;
+import ru.rt.restream.reindexer.convert.util.ConversionUtils;
+import ru.rt.restream.reindexer.convert.util.ResolvableType;
+import ru.rt.restream.reindexer.util.BeanPropertyUtils;
+import ru.rt.restream.reindexer.util.CollectionUtils;
+
+import java.lang.reflect.Array;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
+
+/**
+ * Reads items from a {@link ByteBuffer}, that contains cjson-encoded data, straight into the item objects.
+ * <p>
+ * Unlike {@link CjsonItemReader}, this reader does not build a {@link CjsonElement} tree: ctags are read one by one
+ * and the values are assigned through a field plan, that is computed once per item class. The values of the tags,
+ * that do not match any field, are skipped without materializing them. The produced items are the same as the ones
+ * produced by the {@link CjsonItemReader}, which is still used for the item classes that the plan does not support,
+ * see {@link #create(Class, CtagMatcher)}.
+ */
+public class StreamingCjsonItemReader<T> implements ItemReader<T> {
+
+    /**
+     * A max number of the fields of a class, that get a value when their tag is absent.
+     */
+    private static final int MAX_DEFAULTED_FIELDS = Long.SIZE;
+
+    private static final ClassValue<ObjectPlan> PLANS = new ClassValue<ObjectPlan>() {
+        @Override
+        protected ObjectPlan computeValue(Class<?> type) {
+            return new ObjectPlan(type);
+        }
+    };
+
+    private static final ClassValue<Boolean> SUPPORTED = new ClassValue<Boolean>() {
+        @Override
+        protected Boolean computeValue(Class<?> type) {
+            return supports(type);
+        }
+    };
+
+    /**
+     * A placeholder of the tags, that do not match any field.
+     */
+    private static final FieldPlan SKIP = new FieldPlan();
+
+    private final ObjectPlan plan;
+
+    private final CtagMatcher ctagMatcher;
+
+    private final FieldPlan[] rootBinding;
+
+    /**
+     * The tag names of the root fields to read, null to read all fields.
+     */
+    private final Set<String> selectedTags;
+
+    /**
+     * The fields of the plans by the ctag name indexes, bound once for all plans reachable from the item class.
+     * It is not modified after the construction, so the reader can be shared by threads.
+     */
+    private final Map<ObjectPlan, FieldPlan[]> bindings = new IdentityHashMap<>();
+
+    private StreamingCjsonItemReader(Class<T> itemClass, CtagMatcher ctagMatcher, Set<String> selectedTags) {
+        this.ctagMatcher = ctagMatcher;
+        this.selectedTags = selectedTags;
+        plan = PLANS.get(itemClass);
+        forEachPlan(itemClass, objectPlan -> bindings.put(objectPlan, bind(objectPlan, null)));
+        rootBinding = selectedTags == null ? bindings.get(plan) : bind(plan, selectedTags);
+    }
+
+    /**
+     * Creates an {@link ItemReader} of the item class. Returns a {@link StreamingCjsonItemReader} if the item class
+     * and its nested classes are supported by the field plan, otherwise returns a {@link CjsonItemReader}.
+     *
+     * @param itemClass   the item class
+     * @param ctagMatcher the item ctag matcher
+     * @param <T>         the item type
+     * @return the {@link ItemReader} to use
+     */
+    public static <T> ItemReader<T> create(Class<T> itemClass, CtagMatcher ctagMatcher) {
+        return create(itemClass, ctagMatcher, null);
+    }
+
+    /**
+     * Creates an {@link ItemReader} of the item class, that reads only the selected fields of the root object.
+     * The values of the other root fields are skipped without decoding them, the unselected fields keep the values
+     * that are assigned to the absent tags. The nested objects of the selected fields are read as a whole.
+     *
+     * @param itemClass    the item class
+     * @param ctagMatcher  the item ctag matcher
+     * @param selectedTags the tag names of the root fields to read, null to read all fields
+     * @param <T>          the item type
+     * @return the {@link ItemReader} to use
+     */
+    public static <T> ItemReader<T> create(Class<T> itemClass, CtagMatcher ctagMatcher, Set<String> selectedTags) {
+        if (isSupported(itemClass)) {
+            return new StreamingCjsonItemReader<>(itemClass, ctagMatcher, selectedTags);
+        }
+        return new CjsonItemReader<>(itemClass, ctagMatcher, selectedTags);
+    }
+
+    /**
+     * Returns true if the item class and its nested classes are supported by the field plan.
+     *
+     * @param itemClass the item class
+     * @return true if the item class is supported
+     */
+    static boolean isSupported(Class<?> itemClass) {
+        return SUPPORTED.get(itemClass);
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public T readItem(ByteBuffer buffer) {
+        CjsonReader reader = new CjsonReader(buffer);
+        if (reader.readTag() != CjsonReader.OBJECT) {
+            throw new IllegalArgumentException("Read object is not an item");
+        }
+        return (T) readFields(reader, plan.newInstance(), plan, rootBinding, selectedTags);
+    }
+
+    @Override
+    public T readItem(ByteBuffer buffer, int length) {
+        return readItem(buffer, length, null);
+    }
+
+    /**
+     * Reads item into the target instance. The root fields of the target, that are absent in the item data, get
+     * the values of the absent tags: collections are empty, other fields are reset to null, 0 or false, the field
+     * initializers are not applied. The nested objects are created anew.
+     */
+    @Override
+    public T readItem(ByteBuffer buffer, int length, T target) {
+        int end = buffer.getPosition() + length;
+        T item;
+        if (target == null) {
+            item = readItem(buffer);
+        } else {
+            CjsonReader reader = new CjsonReader(buffer);
+            if (reader.readTag() != CjsonReader.OBJECT) {
+                throw new IllegalArgumentException("Read object is not an item");
+            }
+            plan.reset(target);
+            readFields(reader, target, plan, rootBinding, selectedTags);
+            item = target;
+        }
+        buffer.setPosition(end);
+        return item;
+    }
+
+    private Object readFields(CjsonReader reader, Object instance, ObjectPlan plan, FieldPlan[] binding,
+                              Set<String> selection) {
+        long assigned = 0L;
+        for (int type = reader.readTag(); type != CjsonReader.END; type = reader.readTag()) {
+            int tagName = reader.getTagName();
+            FieldPlan field = tagName < binding.length ? binding[tagName]
+                    : getField(plan, ctagMatcher.getName(tagName), selection);
+            if (field == SKIP) {
+                reader.skipValue(type);
+                continue;
+            }
+            assigned |= field.defaultedBit;
+            field.set(instance, readField(reader, field, type));
+        }
+        if (assigned != plan.defaultedBits) {
+            for (FieldPlan field : plan.defaultedFields) {
+                if ((assigned & field.defaultedBit) == 0) {
+                    field.set(instance, readField(reader, field, CjsonReader.NULL));
+                }
+            }
+        }
+        return instance;
+    }
+
+    private Object readField(CjsonReader reader, FieldPlan field, int type) {
+        Object value = field.collectionLike ? readCollection(reader, field, type) : readValue(reader, field, type);
+        return field.converter == null ? value : field.converter.convertToFieldType(value);
+    }
+
+    private Object readCollection(CjsonReader reader, FieldPlan field, int type) {
+        if (type == CjsonReader.NULL) {
+            return field.type.isArray() ? Array.newInstance(field.componentType, 0)
+                    : CollectionUtils.createCollection(field.type, field.componentType, 0);
+        }
+        if (type != CjsonReader.ARRAY) {
+            throw new IllegalStateException(String.format("Field %s is not an array", field.tagName));
+        }
+        int count = reader.readArrayHeader();
+        int elementType = reader.getArrayType();
+        if (field.type.isArray()) {
+            Object array = field.componentType.isPrimitive()
+                    ? readPrimitiveArray(reader, field.componentType, count, elementType) : null;
+            if (array != null) {
+                return array;
+            }
+            array = Array.newInstance(field.componentType, count);
+            for (int i = 0; i < count; i++) {
+                int type1 = elementType == CjsonReader.OBJECT ? reader.readTag() : elementType;
+                Array.set(array, i, readValue(reader, field, type1));
+            }
+            return array;
+        }
+        Collection<Object> collection = CollectionUtils.createCollection(field.type, field.componentType, count);
+        for (int i = 0; i < count; i++) {
+            int type1 = elementType == CjsonReader.OBJECT ? reader.readTag() : elementType;
+            collection.add(readValue(reader, field, type1));
+        }
+        return collection;
+    }
+
+    /**
+     * Reads an array of the matching element type into a primitive array, without boxing the elements.
+     *
+     * @return the read array, or null if the element type does not match the component type
+     */
+    private static Object readPrimitiveArray(CjsonReader reader, Class<?> componentType, int count, int elementType) {
+        if (componentType == float.class && elementType == CjsonReader.FLOAT) {
+            float[] array = new float[count];
+            reader.readFloats(array);
+            return array;
+        } else if (componentType == double.class && elementType == CjsonReader.DOUBLE) {
+            double[] array = new double[count];
+            reader.readDoubles(array);
+            return array;
+        } else if (componentType == boolean.class && elementType == CjsonReader.BOOL) {
+            boolean[] array = new boolean[count];
+            for (int i = 0; i < count; i++) {
+                array[i] = reader.readBool();
+            }
+            return array;
+        } else if (elementType != CjsonReader.VARINT) {
+            return null;
+        } else if (componentType == int.class) {
+            int[] array = new int[count];
+            for (int i = 0; i < count; i++) {
+                array[i] = (int) reader.readVarInt();
+            }
+            return array;
+        } else if (componentType == long.class) {
+            long[] array = new long[count];
+            for (int i = 0; i < count; i++) {
+                array[i] = reader.readVarInt();
+            }
+            return array;
+        } else if (componentType == short.class) {
+            short[] array = new short[count];
+            for (int i = 0; i < count; i++) {
+                array[i] = (short) reader.readVarInt();
+            }
+            return array;
+        } else if (componentType == byte.class) {
+            byte[] array = new byte[count];
+            for (int i = 0; i < count; i++) {
+                array[i] = (byte) reader.readVarInt();
+            }
+            return array;
+        }
+        return null;
+    }
+
+    private Object readValue(CjsonReader reader, FieldPlan field, int type) {
+        if (type == CjsonReader.NULL) {
+            return null;
+        }
+        switch (field.kind) {
+            case INTEGER:
+                return type == CjsonReader.VARINT ? (Object) (int) reader.readVarInt()
+                        : readElement(reader, field, type).getAsInteger();
+            case LONG:
+                return type == CjsonReader.VARINT ? (Object) reader.readVarInt()
+                        : readElement(reader, field, type).getAsLong();
+            case SHORT:
+                return type == CjsonReader.VARINT ? (Object) (short) reader.readVarInt()
+                        : readElement(reader, field, type).getAsShort();
+            case BYTE:
+                return type == CjsonReader.VARINT ? (Object) (byte) reader.readVarInt()
+                        : readElement(reader, field, type).getAsByte();
+            case BOOLEAN:
+                return type == CjsonReader.BOOL ? (Object) reader.readBool()
+                        : readElement(reader, field, type).getAsBoolean();
+            case STRING:
+                return type == CjsonReader.STRING ? reader.readString() : readElement(reader, field, type).getAsString();
+            case DOUBLE:
+                return type == CjsonReader.DOUBLE ? (Object) reader.readDouble()
+                        : readElement(reader, field, type).getAsDouble();
+            case FLOAT:
+                return type == CjsonReader.FLOAT ? (Object) reader.readFloat()
+                        : readElement(reader, field, type).getAsFloat();
+            case UUID:
+                return type == CjsonReader.UUID ? reader.readUuid() : readElement(reader, field, type).getAsUuid();
+            case ENUM_STRING:
+                String name = type == CjsonReader.STRING ? reader.readString()
+                        : readElement(reader, field, type).getAsString();
+                Object constant = field.enumConstantsByName.get(name);
+                if (constant == null) {
+                    throw new IllegalArgumentException(String.format("No enum constant %s.%s",
+                            field.componentType.getCanonicalName(), name));
+                }
+                return constant;
+            case ENUM_ORDINAL:
+                int ordinal = type == CjsonReader.VARINT ? (int) reader.readVarInt()
+                        : readElement(reader, field, type).getAsInteger();
+                return field.enumConstants[ordinal];
+            case OBJECT:
+                if (type != CjsonReader.OBJECT) {
+                    throw new UnsupportedOperationException(String.format("Unsupported data type: %s",
+                            field.componentType.getName()));
+                }
+                ObjectPlan nestedPlan = PLANS.get(field.componentType);
+                return readFields(reader, nestedPlan.newInstance(), nestedPlan, bindings.get(nestedPlan), null);
+            default:
+                throw new IllegalStateException("Unexpected field kind: " + field.kind);
+        }
+    }
+
+    private static CjsonElement readElement(CjsonReader reader, FieldPlan field, int type) {
+        if (type == CjsonReader.OBJECT || type == CjsonReader.ARRAY) {
+            throw new UnsupportedOperationException(String.format("Unsupported data type: %s",
+                    field.componentType.getName()));
+        }
+        return reader.readElement(type);
+    }
+
+    private static FieldPlan getField(ObjectPlan plan, String tagName, Set<String> selection) {
+        return selection == null || selection.contains(tagName) ? plan.getField(tagName) : SKIP;
+    }
+
+    private FieldPlan[] bind(ObjectPlan plan, Set<String> selection) {
+        FieldPlan[] binding = new FieldPlan[ctagMatcher.getTagsCount() + 1];
+        Arrays.fill(binding, SKIP);
+        for (FieldPlan field : plan.fields.values()) {
+            if (selection != null && !selection.contains(field.tagName)) {
+                continue;
+            }
+            int tagName = ctagMatcher.findIndex(field.tagName);
+            if (tagName != 0) {
+                binding[tagName] = field;
+            }
+        }
+        return binding;
+    }
+
+    private static boolean supports(Class<?> itemClass) {
+        boolean[] supported = {true};
+        forEachPlan(itemClass, plan -> supported[0] &= plan.supported);
+        return supported[0];
+    }
+
+    private static void forEachPlan(Class<?> itemClass, Consumer<ObjectPlan> action) {
+        Set<Class<?>> visited = new HashSet<>();
+        Deque<Class<?>> classes = new ArrayDeque<>();
+        classes.add(itemClass);
+        while (!classes.isEmpty()) {
+            Class<?> type = classes.poll();
+            if (!visited.add(type)) {
+                continue;
+            }
+            ObjectPlan plan = PLANS.get(type);
+            action.accept(plan);
+            if (!plan.supported) {
+                continue;
+            }
+            for (FieldPlan field : plan.fields.values()) {
+                if (field.kind == Kind.OBJECT) {
+                    classes.add(field.componentType);
+                }
+            }
+        }
+    }
+
+    private enum Kind {
+        INTEGER, LONG, SHORT, BYTE, BOOLEAN, STRING, DOUBLE, FLOAT, UUID, ENUM_STRING, ENUM_ORDINAL, OBJECT
+    }
+
+    /**
+     * A plan of reading an object of a class: its constructor and its fields by the tag names.
+     */
+    private static final class ObjectPlan {
+
+        private final Map<String, FieldPlan> fields = new HashMap<>();
+
+        private FieldPlan[] defaultedFields = new FieldPlan[0];
+
+        /**
+         * The fields, that are reset before reading into an existing instance, the defaulted fields get their
+         * values after reading anyway.
+         */
+        private FieldPlan[] resetFields = new FieldPlan[0];
+
+        private long defaultedBits;
+
+        private Constructor<?> constructor;
+
+        private boolean supported;
+
+        private ObjectPlan(Class<?> type) {
+            try {
+                constructor = type.getDeclaredConstructor();
+                constructor.setAccessible(true);
+                List<Field> beanFields = BeanPropertyUtils.getInheritedFields(type);
+                for (Field beanField : beanFields) {
+                    FieldPlan field = new FieldPlan(type, beanField);
+                    if (field.kind == null || fields.put(field.tagName, field) != null) {
+                        return;
+                    }
+                    if (field.collectionLike || field.converter != null) {
+                        if (defaultedFields.length == MAX_DEFAULTED_FIELDS) {
+                            return;
+                        }
+                        field.defaultedBit = 1L << defaultedFields.length;
+                        defaultedBits |= field.defaultedBit;
+                        defaultedFields = Arrays.copyOf(defaultedFields, defaultedFields.length + 1);
+                        defaultedFields[defaultedFields.length - 1] = field;
+                    } else {
+                        resetFields = Arrays.copyOf(resetFields, resetFields.length + 1);
+                        resetFields[resetFields.length - 1] = field;
+                    }
+                }
+                supported = !Modifier.isAbstract(type.getModifiers());
+            } catch (Exception e) {
+                supported = false;
+            }
+        }
+
+        private FieldPlan getField(String tagName) {
+            return fields.getOrDefault(tagName, SKIP);
+        }
+
+        private void reset(Object instance) {
+            for (FieldPlan field : resetFields) {
+                field.setter().accept(instance, field.resetValue);
+            }
+        }
+
+        private Object newInstance() {
+            try {
+                return constructor.newInstance();
+            } catch (Exception e) {
+                throw new RuntimeException(e);
+            }
+        }
+
+    }
+
+    /**
+     * A plan of reading a field: its target type and its setter.
+     */
+    private static final class FieldPlan {
+
+        private final Class<?> beanClass;
+
+        private final String fieldName;
+
+        private final String tagName;
+
+        private final FieldConverter<?, Object> converter;
+
+        private final Class<?> type;
+
+        private final Class<?> componentType;
+
+        private final boolean collectionLike;
+
+        private final Kind kind;
+
+        private final Object[] enumConstants;
+
+        private final Map<String, Object> enumConstantsByName;
+
+        /**
+         * The value of the field, when an existing instance is reset: 0 or false for primitives, otherwise null.
+         */
+        private final Object resetValue;
+
+        private long defaultedBit;
+
+        private BiConsumer<Object, Object> setter;
+
+        private FieldPlan() {
+            beanClass = null;
+            fieldName = null;
+            tagName = null;
+            converter = null;
+            type = null;
+            componentType = null;
+            collectionLike = false;
+            kind = null;
+            enumConstants = null;
+            enumConstantsByName = null;
+            resetValue = null;
+        }
+
+        private FieldPlan(Class<?> beanClass, Field field) {
+            this.beanClass = beanClass;
+            fieldName = field.getName();
+            Json json = field.getAnnotation(Json.class);
+            tagName = json == null ? field.getName() : json.value();
+            converter = FieldConverterRegistryFactory.INSTANCE.getFieldConverter(field);
+            ResolvableType resolvableType = converter != null ? converter.getConvertiblePair().getSecond()
+                    : ConversionUtils.resolveFieldType(field);
+            type = resolvableType.getType();
+            collectionLike = resolvableType.isCollectionLike();
+            componentType = collectionLike ? resolvableType.getComponentType() : resolvableType.getType();
+            kind = getKind(field, componentType);
+            if (componentType.isEnum()) {
+                enumConstants = componentType.getEnumConstants();
+                enumConstantsByName = new HashMap<>();
+                for (Object constant : enumConstants) {
+                    enumConstantsByName.put(((Enum<?>) constant).name(), constant);
+                }
+            } else {
+                enumConstants = null;
+                enumConstantsByName = null;
+            }
+            resetValue = type.isPrimitive() ? Array.get(Array.newInstance(type, 1), 0) : null;
+        }
+
+        private static Kind getKind(Field field, Class<?> type) {
+            if (type == Integer.class || type == int.class) {
+                return Kind.INTEGER;
+            } else if (type == Long.class || type == long.class) {
+                return Kind.LONG;
+            } else if (type == Short.class || type == short.class) {
+                return Kind.SHORT;
+            } else if (type == Byte.class || type == byte.class) {
+                return Kind.BYTE;
+            } else if (type == Boolean.class || type == boolean.class) {
+                return Kind.BOOLEAN;
+            } else if (type == String.class) {
+                return Kind.STRING;
+            } else if (type == Double.class || type == double.class) {
+                return Kind.DOUBLE;
+            } else if (type == Float.class || type == float.class) {
+                return Kind.FLOAT;
+            } else if (type == UUID.class) {
+                return Kind.UUID;
+            } else if (Enum.class.isAssignableFrom(type)) {
+                Enumerated enumerated = field.getAnnotation(Enumerated.class);
+                return enumerated != null && enumerated.value() == EnumType.STRING ? Kind.ENUM_STRING
+                        : Kind.ENUM_ORDINAL;
+            } else if (type.isPrimitive() || type.isArray() || type.isInterface() || type == Object.class
+                    || Map.class.isAssignableFrom(type) || Collection.class.isAssignableFrom(type)) {
+                return null;
+            }
+            return Kind.OBJECT;
+        }
+
+        private void set(Object instance, Object value) {
+            if (value != null) {
+                setter().accept(instance, value);
+            }
+        }
+
+        private BiConsumer<Object, Object> setter() {
+            BiConsumer<Object, Object> setter = this.setter;
+            if (setter == null) {
+                setter = BeanPropertyUtils.getPropertySetter(beanClass, fieldName);
+                this.setter = setter;
+            }
+            return setter;
+        }
+
+    }
+
+}
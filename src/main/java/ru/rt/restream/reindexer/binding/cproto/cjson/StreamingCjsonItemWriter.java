@@ -0,0 +1,451 @@
+/*
+ * Copyright 2020-present Restream
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ru.rt.restream.reindexer.binding.cproto.cjson;
+
+import ru.rt.restream.reindexer.EnumType;
+import ru.rt.restream.reindexer.annotations.Enumerated;
+import ru.rt.restream.reindexer.annotations.Json;
+import ru.rt.restream.reindexer.annotations.Reindex;
+import ru.rt.restream.reindexer.annotations.Transient;
+import ru.rt.restream.reindexer.binding.cproto.ByteBuffer;
+import ru.rt.restream.reindexer.binding.cproto.ItemWriter;
+import ru.rt.restream.reindexer.binding.cproto.cjson.encdec.CjsonReader;
+import ru.rt.restream.reindexer.binding.cproto.cjson.encdec.CjsonWriter;
+import ru.rt.restream.reindexer.convert.FieldConverter;
+import ru.rt.restream.reindexer.convert.FieldConverterRegistryFactory;
+import ru.rt.restream.reindexer.util.BeanPropertyUtils;
+
+import java.lang.reflect.Array;
+import java.lang.reflect.Field;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+import java.util.function.Predicate;
+import java.util.function.ToDoubleFunction;
+import java.util.function.ToIntFunction;
+import java.util.function.ToLongFunction;
+
+/**
+ * Encodes item into cjson format and writes its data into the {@link ByteBuffer}.
+ * <p>
+ * Unlike {@link CJsonItemWriter}, this writer does not build a {@link CjsonElement} tree: the ctags and values are
+ * written straight from the item fields through a field plan, that is computed once per item class. The properties of
+ * primitive types are read by the getters, that do not box the values. The produced data is decoded to the same item
+ * as the one produced by the {@link CJsonItemWriter}.
+ */
+public class StreamingCjsonItemWriter<T> implements ItemWriter<T> {
+
+    private static final ClassValue<ObjectPlan> PLANS = new ClassValue<ObjectPlan>() {
+        @Override
+        protected ObjectPlan computeValue(Class<?> type) {
+            return new ObjectPlan(type);
+        }
+    };
+
+    /**
+     * The ctag matcher shared by the written items, null if each item is written with its own one.
+     */
+    private final CtagMatcher ctagMatcher;
+
+    private final PayloadType payloadType;
+
+    /**
+     * The tags known before writing any item, to resolve the ctag name indexes of the fields in advance.
+     */
+    private final CtagMatcher knownTags;
+
+    private final Map<ObjectPlan, int[]> tagNames = new ConcurrentHashMap<>();
+
+    /**
+     * Creates a writer, that writes all items with the specified ctag matcher.
+     *
+     * @param ctagMatcher the ctag matcher to use
+     */
+    public StreamingCjsonItemWriter(CtagMatcher ctagMatcher) {
+        this.ctagMatcher = ctagMatcher;
+        payloadType = null;
+        knownTags = ctagMatcher;
+    }
+
+    /**
+     * Creates a writer, that writes each item with a new ctag matcher of the payload type tags.
+     * Such a writer can be shared by threads.
+     *
+     * @param payloadType the namespace payload type, can be null
+     */
+    public StreamingCjsonItemWriter(PayloadType payloadType) {
+        ctagMatcher = null;
+        this.payloadType = payloadType;
+        knownTags = new CtagMatcher(payloadType);
+    }
+
+    @Override
+    public void writeItem(ByteBuffer buffer, T item) {
+        CjsonWriter writer = new CjsonWriter(buffer, ctagMatcher != null ? ctagMatcher : new CtagMatcher(payloadType));
+        writer.begin();
+        writeValue(writer, 0, item, null);
+        writer.end();
+    }
+
+    private void writeValue(CjsonWriter writer, int tagName, Object value, FieldPlan field) {
+        if (value == null) {
+            writer.putNull(tagName);
+        } else if (value instanceof Integer || value instanceof Long || value instanceof Short
+                || value instanceof Byte) {
+            writer.putVarInt(tagName, ((Number) value).longValue());
+        } else if (value instanceof Boolean) {
+            writer.putBool(tagName, (Boolean) value);
+        } else if (value instanceof String) {
+            writer.putString(tagName, (String) value);
+        } else if (value instanceof Double) {
+            writer.putDouble(tagName, (Double) value);
+        } else if (value instanceof Float) {
+            writer.putFloat(tagName, (Float) value);
+        } else if (value instanceof UUID) {
+            writer.putUuid(tagName, (UUID) value);
+        } else if (value instanceof Enum<?>) {
+            if (field != null && field.enumString) {
+                writer.putString(tagName, ((Enum<?>) value).name());
+            } else {
+                writer.putVarInt(tagName, ((Enum<?>) value).ordinal());
+            }
+        } else if (value instanceof Collection<?>) {
+            writeArray(writer, tagName, (Collection<?>) value, field);
+        } else if (value instanceof Iterable<?>) {
+            List<Object> elements = new ArrayList<>();
+            ((Iterable<?>) value).forEach(elements::add);
+            writeArray(writer, tagName, elements, field);
+        } else if (value.getClass().isArray()) {
+            writePrimitiveArray(writer, tagName, value, field);
+        } else {
+            writeObject(writer, tagName, value);
+        }
+    }
+
+    private void writeObject(CjsonWriter writer, int tagName, Object value) {
+        ObjectPlan plan = PLANS.get(value.getClass());
+        int[] planTagNames = getTagNames(plan);
+        writer.beginObject(tagName);
+        for (FieldPlan[] fields : plan.fields) {
+            // the last declared field of the fields with the same tag name takes precedence
+            for (FieldPlan field : fields) {
+                if (writeField(writer, field, planTagNames[field.ordinal], value)) {
+                    break;
+                }
+            }
+        }
+        writer.endObject();
+    }
+
+    private int[] getTagNames(ObjectPlan plan) {
+        //https://bugs.openjdk.java.net/browse/JDK-8161372
+        int[] planTagNames = tagNames.get(plan);
+        if (planTagNames != null) {
+            return planTagNames;
+        }
+        return tagNames.computeIfAbsent(plan, p -> {
+            int[] resolved = new int[p.fieldsCount];
+            for (FieldPlan[] fields : p.fields) {
+                for (FieldPlan field : fields) {
+                    resolved[field.ordinal] = knownTags.findIndex(field.tagName);
+                }
+            }
+            return resolved;
+        });
+    }
+
+    private boolean writeField(CjsonWriter writer, FieldPlan field, int tagName, Object instance) {
+        switch (field.kind) {
+            case INTEGER:
+                writer.putVarInt(getTagName(writer, field, tagName), field.intGetter.applyAsInt(instance));
+                return true;
+            case LONG:
+                writer.putVarInt(getTagName(writer, field, tagName), field.longGetter.applyAsLong(instance));
+                return true;
+            case DOUBLE:
+                writer.putDouble(getTagName(writer, field, tagName), field.doubleGetter.applyAsDouble(instance));
+                return true;
+            case FLOAT:
+                writer.putFloat(getTagName(writer, field, tagName),
+                        (float) field.doubleGetter.applyAsDouble(instance));
+                return true;
+            case BOOLEAN:
+                writer.putBool(getTagName(writer, field, tagName), field.booleanGetter.test(instance));
+                return true;
+            default:
+                Object value = field.getter.apply(instance);
+                if (field.converter != null) {
+                    value = field.converter.convertToDatabaseType(value);
+                }
+                if (value == null) {
+                    return false;
+                }
+                tagName = getTagName(writer, field, tagName);
+                if (value instanceof String && field.uuidString) {
+                    // hack for serialization of String field with Reindex.isUuid() == true as UUID.
+                    writer.putUuid(tagName, UUID.fromString((String) value));
+                } else {
+                    writeValue(writer, tagName, value, field);
+                }
+                return true;
+        }
+    }
+
+    private static int getTagName(CjsonWriter writer, FieldPlan field, int tagName) {
+        return tagName != 0 ? tagName : writer.getTagName(field.tagName);
+    }
+
+    private void writeArray(CjsonWriter writer, int tagName, Collection<?> elements, FieldPlan field) {
+        int count = elements.size();
+        if (count == 0) {
+            return;
+        }
+        int elementType = getElementType(elements.iterator().next(), field);
+        writer.beginArray(tagName, count, elementType);
+        for (Object element : elements) {
+            writeElement(writer, elementType, element, field);
+        }
+    }
+
+    private void writePrimitiveArray(CjsonWriter writer, int tagName, Object array, FieldPlan field) {
+        int count = Array.getLength(array);
+        if (count == 0) {
+            return;
+        }
+        if (array instanceof int[]) {
+            writer.beginArray(tagName, count, CjsonReader.VARINT);
+            for (int value : (int[]) array) {
+                writer.putVarIntElement(value);
+            }
+        } else if (array instanceof long[]) {
+            writer.beginArray(tagName, count, CjsonReader.VARINT);
+            for (long value : (long[]) array) {
+                writer.putVarIntElement(value);
+            }
+        } else if (array instanceof short[]) {
+            writer.beginArray(tagName, count, CjsonReader.VARINT);
+            for (short value : (short[]) array) {
+                writer.putVarIntElement(value);
+            }
+        } else if (array instanceof byte[]) {
+            writer.beginArray(tagName, count, CjsonReader.VARINT);
+            for (byte value : (byte[]) array) {
+                writer.putVarIntElement(value);
+            }
+        } else if (array instanceof double[]) {
+            writer.beginArray(tagName, count, CjsonReader.DOUBLE);
+            writer.putDoubleElements((double[]) array);
+        } else if (array instanceof float[]) {
+            writer.beginArray(tagName, count, CjsonReader.FLOAT);
+            writer.putFloatElements((float[]) array);
+        } else if (array instanceof boolean[]) {
+            writer.beginArray(tagName, count, CjsonReader.BOOL);
+            for (boolean value : (boolean[]) array) {
+                writer.putBoolElement(value);
+            }
+        } else if (array instanceof Object[]) {
+            writeArray(writer, tagName, Arrays.asList((Object[]) array), field);
+        } else {
+            List<Object> elements = new ArrayList<>(count);
+            for (int i = 0; i < count; i++) {
+                elements.add(Array.get(array, i));
+            }
+            writeArray(writer, tagName, elements, field);
+        }
+    }
+
+    private int getElementType(Object element, FieldPlan field) {
+        if (element instanceof Integer || element instanceof Long || element instanceof Short
+                || element instanceof Byte) {
+            return CjsonReader.VARINT;
+        } else if (element instanceof Boolean) {
+            return CjsonReader.BOOL;
+        } else if (element instanceof String) {
+            return CjsonReader.STRING;
+        } else if (element instanceof Double) {
+            return CjsonReader.DOUBLE;
+        } else if (element instanceof Float) {
+            return CjsonReader.FLOAT;
+        } else if (element instanceof UUID) {
+            return CjsonReader.UUID;
+        } else if (element instanceof Enum<?>) {
+            return field != null && field.enumString ? CjsonReader.STRING : CjsonReader.VARINT;
+        } else if (element == null || element instanceof Iterable<?> || element.getClass().isArray()) {
+            throw new UnsupportedOperationException(String.format("Unsupported data cjson type: %s", element));
+        }
+        return CjsonReader.OBJECT;
+    }
+
+    private void writeElement(CjsonWriter writer, int elementType, Object element, FieldPlan field) {
+        switch (elementType) {
+            case CjsonReader.VARINT:
+                if (element instanceof Integer || element instanceof Long || element instanceof Short
+                        || element instanceof Byte) {
+                    writer.putVarIntElement(((Number) element).longValue());
+                } else {
+                    writer.putVarIntElement(toPrimitive(element, field).getAsLong());
+                }
+                break;
+            case CjsonReader.BOOL:
+                writer.putBoolElement(element instanceof Boolean ? (Boolean) element
+                        : toPrimitive(element, field).getAsBoolean());
+                break;
+            case CjsonReader.STRING:
+                writer.putStringElement(element instanceof String ? (String) element
+                        : toPrimitive(element, field).getAsString());
+                break;
+            case CjsonReader.DOUBLE:
+                writer.putDoubleElement(element instanceof Double ? (Double) element
+                        : toPrimitive(element, field).getAsDouble());
+                break;
+            case CjsonReader.FLOAT:
+                writer.putFloatElement(element instanceof Float ? (Float) element
+                        : toPrimitive(element, field).getAsFloat());
+                break;
+            case CjsonReader.UUID:
+                writer.putUuidElement(element instanceof UUID ? (UUID) element
+                        : toPrimitive(element, field).getAsUuid());
+                break;
+            default:
+                if (getElementType(element, field) != CjsonReader.OBJECT) {
+                    throw new IllegalStateException("Not a cjson object: " + element);
+                }
+                writeObject(writer, 0, element);
+        }
+    }
+
+    private static CjsonPrimitive toPrimitive(Object value, FieldPlan field) {
+        if (value instanceof Integer || value instanceof Long || value instanceof Short || value instanceof Byte) {
+            return new CjsonPrimitive(((Number) value).longValue());
+        } else if (value instanceof Boolean) {
+            return new CjsonPrimitive((Boolean) value);
+        } else if (value instanceof String) {
+            return new CjsonPrimitive((String) value);
+        } else if (value instanceof Double) {
+            return new CjsonPrimitive((Double) value);
+        } else if (value instanceof Float) {
+            return new CjsonPrimitive((Float) value);
+        } else if (value instanceof UUID) {
+            return new CjsonPrimitive((UUID) value);
+        } else if (value instanceof Enum<?>) {
+            return field != null && field.enumString ? new CjsonPrimitive(((Enum<?>) value).name())
+                    : new CjsonPrimitive((long) ((Enum<?>) value).ordinal());
+        }
+        throw new UnsupportedOperationException(String.format("Unsupported data cjson type: %s", value));
+    }
+
+    private enum Kind {
+        INTEGER, LONG, DOUBLE, FLOAT, BOOLEAN, OBJECT
+    }
+
+    /**
+     * A plan of writing an object of a class: its fields grouped by the tag names.
+     */
+    private static final class ObjectPlan {
+
+        private final FieldPlan[][] fields;
+
+        private final int fieldsCount;
+
+        private ObjectPlan(Class<?> type) {
+            Map<String, List<FieldPlan>> fieldsByTag = new LinkedHashMap<>();
+            int ordinal = 0;
+            for (Field field : BeanPropertyUtils.getInheritedFields(type)) {
+                if (field.isAnnotationPresent(Transient.class)) {
+                    continue;
+                }
+                FieldPlan fieldPlan = new FieldPlan(type, field, ordinal++);
+                fieldsByTag.computeIfAbsent(fieldPlan.tagName, k -> new ArrayList<>()).add(0, fieldPlan);
+            }
+            fields = fieldsByTag.values().stream()
+                    .map(tagFields -> tagFields.toArray(new FieldPlan[0]))
+                    .toArray(FieldPlan[][]::new);
+            fieldsCount = ordinal;
+        }
+
+    }
+
+    /**
+     * A plan of writing a field: its tag name, its getter and the annotations affecting its value encoding.
+     */
+    private static final class FieldPlan {
+
+        private final String tagName;
+
+        private final int ordinal;
+
+        private final FieldConverter<Object, ?> converter;
+
+        private final boolean enumString;
+
+        private final boolean uuidString;
+
+        private Kind kind = Kind.OBJECT;
+
+        private Function<Object, Object> getter;
+
+        private ToIntFunction<Object> intGetter;
+
+        private ToLongFunction<Object> longGetter;
+
+        private ToDoubleFunction<Object> doubleGetter;
+
+        private Predicate<Object> booleanGetter;
+
+        private FieldPlan(Class<?> beanClass, Field field, int ordinal) {
+            this.ordinal = ordinal;
+            Json json = field.getAnnotation(Json.class);
+            tagName = json == null ? field.getName() : json.value();
+            converter = FieldConverterRegistryFactory.INSTANCE.getFieldConverter(field);
+            Enumerated enumerated = field.getAnnotation(Enumerated.class);
+            enumString = enumerated != null && enumerated.value() == EnumType.STRING;
+            Reindex reindex = field.getAnnotation(Reindex.class);
+            uuidString = reindex != null && reindex.isUuid();
+            Class<?> type = field.getType();
+            if (converter == null && type.isPrimitive()) {
+                try {
+                    if (type == int.class || type == short.class || type == byte.class) {
+                        intGetter = BeanPropertyUtils.getIntPropertyGetter(beanClass, field.getName());
+                        kind = Kind.INTEGER;
+                    } else if (type == long.class) {
+                        longGetter = BeanPropertyUtils.getLongPropertyGetter(beanClass, field.getName());
+                        kind = Kind.LONG;
+                    } else if (type == double.class || type == float.class) {
+                        doubleGetter = BeanPropertyUtils.getDoublePropertyGetter(beanClass, field.getName());
+                        kind = type == double.class ? Kind.DOUBLE : Kind.FLOAT;
+                    } else if (type == boolean.class) {
+                        booleanGetter = BeanPropertyUtils.getBooleanPropertyGetter(beanClass, field.getName());
+                        kind = Kind.BOOLEAN;
+                    }
+                } catch (IllegalArgumentException e) {
+                    // the getter does not return the field type, use the boxing getter
+                    kind = Kind.OBJECT;
+                }
+            }
+            if (kind == Kind.OBJECT) {
+                getter = BeanPropertyUtils.getPropertyGetter(beanClass, field.getName());
+            }
+        }
+
+    }
+
+}
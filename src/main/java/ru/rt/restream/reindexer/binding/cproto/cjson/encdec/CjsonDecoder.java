@@ -25,6 +25,8 @@ public class CjsonDecoder {
 
     private final CtagMatcher ctagMatcher;
     private final ByteBuffer buffer;
+    private final TagFilter rootFilter;
+    private final CjsonReader skipper;
 
     /**
      * Creates an instance.
@@ -33,8 +35,22 @@ public class CjsonDecoder {
      * @param buffer      buffer with encoded cjson data
      */
     public CjsonDecoder(CtagMatcher ctagMatcher, ByteBuffer buffer) {
+        this(ctagMatcher, buffer, null);
+    }
+
+    /**
+     * Creates an instance, that decodes only the wanted fields of the root object.
+     * The values of the other fields are skipped without decoding them.
+     *
+     * @param ctagMatcher item ctag matcher
+     * @param buffer      buffer with encoded cjson data
+     * @param rootFilter  the wanted fields of the root object, null to decode all fields
+     */
+    public CjsonDecoder(CtagMatcher ctagMatcher, ByteBuffer buffer, TagFilter rootFilter) {
         this.ctagMatcher = ctagMatcher;
         this.buffer = buffer;
+        this.rootFilter = rootFilter;
+        skipper = rootFilter == null ? null : new CjsonReader(buffer);
     }
 
     /**
@@ -45,7 +61,7 @@ public class CjsonDecoder {
     public CjsonElement decode() {
         Ctag ctag = new Ctag(buffer.getVarUInt());
         if (ctag.type() == Ctag.OBJECT) {
-            return readCjsonObject();
+            return rootFilter == null ? readCjsonObject() : readFilteredCjsonObject();
         } else if (ctag.type() == Ctag.ARRAY) {
             return readCjsonArray();
         } else {
@@ -87,6 +103,20 @@ public class CjsonDecoder {
         return cjsonObject;
     }
 
+    private CjsonElement readFilteredCjsonObject() {
+        CjsonObject cjsonObject = new CjsonObject();
+        Ctag ctag = new Ctag(buffer.getVarUInt());
+        while (ctag.type() != Ctag.END) {
+            if (rootFilter.isWanted(ctag.name())) {
+                cjsonObject.add(ctagMatcher.getName(ctag.name()), decode(ctag.type()));
+            } else {
+                skipper.skipValue(ctag.type());
+            }
+            ctag = new Ctag(buffer.getVarUInt());
+        }
+        return cjsonObject;
+    }
+
     private CjsonElement readCjsonArray() {
         CarrayTag carrayTag = new CarrayTag(buffer.getUInt32());
         int count = carrayTag.count();
@@ -0,0 +1,229 @@
+/*
+ * Copyright 2020-present Restream
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ru.rt.restream.reindexer.binding.cproto.cjson.encdec;
+
+import ru.rt.restream.reindexer.binding.cproto.ByteBuffer;
+import ru.rt.restream.reindexer.binding.cproto.cjson.CjsonElement;
+import ru.rt.restream.reindexer.binding.cproto.cjson.CjsonNull;
+import ru.rt.restream.reindexer.binding.cproto.cjson.CjsonPrimitive;
+
+import java.util.UUID;
+
+/**
+ * Reads cjson byte data value by value, straight from a buffer, without building a tree of {@link CjsonElement}s.
+ * <p>
+ * A typical object traversal is:
+ * <pre>
+ * int type = reader.readTag();
+ * while (type != CjsonReader.END) {
+ *     String name = ctagMatcher.getName(reader.getTagName());
+ *     ... read or skip the value of the type ...
+ *     type = reader.readTag();
+ * }
+ * </pre>
+ */
+public final class CjsonReader {
+
+    public static final int VARINT = Ctag.VARINT;
+
+    public static final int DOUBLE = Ctag.DOUBLE;
+
+    public static final int STRING = Ctag.STRING;
+
+    public static final int BOOL = Ctag.BOOL;
+
+    public static final int NULL = Ctag.NULL;
+
+    public static final int ARRAY = Ctag.ARRAY;
+
+    public static final int OBJECT = Ctag.OBJECT;
+
+    public static final int END = Ctag.END;
+
+    public static final int UUID = Ctag.UUID;
+
+    public static final int FLOAT = Ctag.FLOAT;
+
+    private final ByteBuffer buffer;
+
+    private int tagName;
+
+    private int arrayType;
+
+    /**
+     * Creates an instance.
+     *
+     * @param buffer buffer with encoded cjson data
+     */
+    public CjsonReader(ByteBuffer buffer) {
+        this.buffer = buffer;
+    }
+
+    /**
+     * Reads the next ctag.
+     *
+     * @return the type of the read ctag
+     */
+    public int readTag() {
+        long value = buffer.getVarUInt();
+        tagName = (int) (value >> Ctag.NAME_SHIFT & Ctag.NAME_MASK);
+        return (int) ((value & Ctag.TYPE0_MASK) | (value >> Ctag.TYPE1_SHIFT & Ctag.TYPE1_MASK));
+    }
+
+    /**
+     * Returns the name index of the last ctag read by {@link #readTag()}.
+     *
+     * @return the ctag name index
+     */
+    public int getTagName() {
+        return tagName;
+    }
+
+    /**
+     * Reads the header of an array, that follows an {@link #ARRAY} ctag.
+     * If the element type is {@link #OBJECT}, each element is prefixed by its own ctag,
+     * that should be read by {@link #readTag()}.
+     *
+     * @return the count of the array elements
+     */
+    public int readArrayHeader() {
+        CarrayTag carrayTag = new CarrayTag(buffer.getUInt32());
+        arrayType = carrayTag.tag();
+        return carrayTag.count();
+    }
+
+    /**
+     * Returns the element type of the last array header read by {@link #readArrayHeader()}.
+     *
+     * @return the array element type
+     */
+    public int getArrayType() {
+        return arrayType;
+    }
+
+    public long readVarInt() {
+        return buffer.getVarInt();
+    }
+
+    public boolean readBool() {
+        return buffer.getVarUInt() == 1L;
+    }
+
+    public double readDouble() {
+        return buffer.getDouble();
+    }
+
+    public float readFloat() {
+        return buffer.getFloat();
+    }
+
+    /**
+     * Reads the elements of a {@link #FLOAT} array into the array.
+     *
+     * @param values the array to read to, its length is the count of the elements to read
+     */
+    public void readFloats(float[] values) {
+        buffer.getFloats(values);
+    }
+
+    /**
+     * Reads the elements of a {@link #DOUBLE} array into the array.
+     *
+     * @param values the array to read to, its length is the count of the elements to read
+     */
+    public void readDoubles(double[] values) {
+        buffer.getDoubles(values);
+    }
+
+    public String readString() {
+        return buffer.getVString();
+    }
+
+    public UUID readUuid() {
+        return buffer.getUuid();
+    }
+
+    /**
+     * Reads a value of the given type as a {@link CjsonElement}.
+     * Objects and arrays are decoded into a tree, so this method is intended for rare cases only.
+     *
+     * @param type the value type
+     * @return the read {@link CjsonElement}
+     */
+    public CjsonElement readElement(int type) {
+        switch (type) {
+            case VARINT:
+                return new CjsonPrimitive(readVarInt());
+            case BOOL:
+                return new CjsonPrimitive(readBool());
+            case DOUBLE:
+                return new CjsonPrimitive(readDouble());
+            case FLOAT:
+                return new CjsonPrimitive(readFloat());
+            case STRING:
+                return new CjsonPrimitive(readString());
+            case UUID:
+                return new CjsonPrimitive(readUuid());
+            case NULL:
+                return CjsonNull.INSTANCE;
+            default:
+                throw new IllegalStateException("Not a cjson primitive type");
+        }
+    }
+
+    /**
+     * Skips a value of the given type, including nested objects and arrays, without materializing it.
+     *
+     * @param type the value type
+     */
+    public void skipValue(int type) {
+        switch (type) {
+            case VARINT:
+            case BOOL:
+                buffer.getVarUInt();
+                break;
+            case DOUBLE:
+                buffer.skip(Double.BYTES);
+                break;
+            case FLOAT:
+                buffer.skip(Float.BYTES);
+                break;
+            case STRING:
+                buffer.skip((int) buffer.getVarUInt());
+                break;
+            case UUID:
+                buffer.skip(Long.BYTES * 2);
+                break;
+            case NULL:
+                break;
+            case OBJECT:
+                for (int fieldType = readTag(); fieldType != END; fieldType = readTag()) {
+                    skipValue(fieldType);
+                }
+                break;
+            case ARRAY:
+                int count = readArrayHeader();
+                int elementType = arrayType;
+                for (int i = 0; i < count; i++) {
+                    skipValue(elementType == OBJECT ? readTag() : elementType);
+                }
+                break;
+            default:
+                throw new IllegalStateException("Unexpected ctag type");
+        }
+    }
+
+}
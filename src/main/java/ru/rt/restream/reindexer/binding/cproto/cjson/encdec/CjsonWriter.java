@@ -0,0 +1,208 @@
+/*
+ * Copyright 2020-present Restream
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ru.rt.restream.reindexer.binding.cproto.cjson.encdec;
+
+import ru.rt.restream.reindexer.binding.cproto.ByteBuffer;
+import ru.rt.restream.reindexer.binding.cproto.cjson.CjsonElement;
+import ru.rt.restream.reindexer.binding.cproto.cjson.CtagMatcher;
+
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Writes cjson byte data value by value, straight into a buffer, without building a tree of {@link CjsonElement}s.
+ * <p>
+ * An item is written between {@link #begin()} and {@link #end()}, which produce the same layout as
+ * {@link CjsonEncoder#encode(CjsonElement)}: the updated tags header is only written if the ctag matcher is updated.
+ * If the ctag matcher is not updated at the beginning, the header is inserted once a new tag is added, so the common
+ * case of an item without new tags is written without copying it.
+ */
+public final class CjsonWriter {
+
+    private static final long END_TAG = new Ctag(Ctag.END, 0, 0).getValue();
+
+    private static final byte[] TAGS_HEADER = {(byte) END_TAG, 0, 0, 0, 0};
+
+    private static final int TAGS_OFFSET_POSITION = 1;
+
+    private final ByteBuffer buffer;
+
+    private final CtagMatcher ctagMatcher;
+
+    private int start;
+
+    private boolean headerWritten;
+
+    /**
+     * Creates an instance.
+     *
+     * @param buffer      buffer to write to
+     * @param ctagMatcher item ctag matcher
+     */
+    public CjsonWriter(ByteBuffer buffer, CtagMatcher ctagMatcher) {
+        this.buffer = buffer;
+        this.ctagMatcher = ctagMatcher;
+    }
+
+    /**
+     * Begins writing of an item at the current buffer position.
+     */
+    public void begin() {
+        start = buffer.getPosition();
+        headerWritten = ctagMatcher.isUpdated();
+        if (headerWritten) {
+            buffer.writeBytes(TAGS_HEADER);
+        }
+    }
+
+    /**
+     * Ends writing of an item, writing the updated tags if needed.
+     */
+    public void end() {
+        if (!ctagMatcher.isUpdated()) {
+            return;
+        }
+        if (!headerWritten) {
+            buffer.insertBytes(start, TAGS_HEADER);
+            headerWritten = true;
+        }
+        buffer.putUInt32(buffer.getPosition() - start, start + TAGS_OFFSET_POSITION);
+        List<String> tags = ctagMatcher.getTags();
+        buffer.putVarUInt32(tags.size());
+        for (String tag : tags) {
+            buffer.putVString(tag);
+        }
+    }
+
+    /**
+     * Returns the name index of the tag, adding it to the ctag matcher if needed.
+     *
+     * @param name the tag name
+     * @return the ctag name index
+     */
+    public int getTagName(String name) {
+        return ctagMatcher.getIndex(name);
+    }
+
+    public void putVarInt(int tagName, long value) {
+        putTag(Ctag.VARINT, tagName);
+        buffer.putVarInt64(value);
+    }
+
+    public void putBool(int tagName, boolean value) {
+        putTag(Ctag.BOOL, tagName);
+        buffer.putVarUInt32(value ? 1L : 0L);
+    }
+
+    public void putDouble(int tagName, double value) {
+        putTag(Ctag.DOUBLE, tagName);
+        buffer.putDouble(value);
+    }
+
+    public void putFloat(int tagName, float value) {
+        putTag(Ctag.FLOAT, tagName);
+        buffer.putFloat(value);
+    }
+
+    public void putString(int tagName, String value) {
+        putTag(Ctag.STRING, tagName);
+        buffer.putVString(value);
+    }
+
+    public void putUuid(int tagName, UUID value) {
+        putTag(Ctag.UUID, tagName);
+        buffer.putUuid(value);
+    }
+
+    public void putNull(int tagName) {
+        putTag(Ctag.NULL, tagName);
+    }
+
+    /**
+     * Begins an object, its fields should be followed by {@link #endObject()}.
+     *
+     * @param tagName the ctag name index, 0 for the array elements
+     */
+    public void beginObject(int tagName) {
+        putTag(Ctag.OBJECT, tagName);
+    }
+
+    public void endObject() {
+        buffer.putVarUInt32(END_TAG);
+    }
+
+    /**
+     * Begins an array, its elements should be written by the element methods of the array element type.
+     * Elements of the {@link CjsonReader#OBJECT} type are written by {@link #beginObject(int)} with 0 tag name.
+     *
+     * @param tagName     the ctag name index
+     * @param count       the count of the array elements
+     * @param elementType the array element type, one of the {@link CjsonReader} types
+     */
+    public void beginArray(int tagName, int count, int elementType) {
+        putTag(Ctag.ARRAY, tagName);
+        buffer.putUInt32(new CarrayTag(count, elementType).getValue());
+    }
+
+    public void putVarIntElement(long value) {
+        buffer.putVarInt64(value);
+    }
+
+    public void putBoolElement(boolean value) {
+        buffer.putVarUInt32(value ? 1L : 0L);
+    }
+
+    public void putDoubleElement(double value) {
+        buffer.putDouble(value);
+    }
+
+    public void putFloatElement(float value) {
+        buffer.putFloat(value);
+    }
+
+    /**
+     * Writes all elements of a {@link CjsonReader#FLOAT} array at once.
+     *
+     * @param values the array elements
+     */
+    public void putFloatElements(float[] values) {
+        buffer.putFloats(values);
+    }
+
+    /**
+     * Writes all elements of a {@link CjsonReader#DOUBLE} array at once.
+     *
+     * @param values the array elements
+     */
+    public void putDoubleElements(double[] values) {
+        buffer.putDoubles(values);
+    }
+
+    public void putStringElement(String value) {
+        buffer.putVString(value);
+    }
+
+    public void putUuidElement(UUID value) {
+        buffer.putUuid(value);
+    }
+
+    private void putTag(int type, int tagName) {
+        buffer.putVarUInt32((type & Ctag.TYPE0_MASK)
+                | ((long) (type & Ctag.TYPE1_MASK) << Ctag.TYPE1_SHIFT)
+                | ((long) (tagName & Ctag.NAME_MASK) << Ctag.NAME_SHIFT));
+    }
+
+}
@@ -0,0 +1,59 @@
+/*
+ * Copyright 2020-present Restream
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ru.rt.restream.reindexer.binding.cproto.cjson.encdec;
+
+import ru.rt.restream.reindexer.binding.cproto.cjson.CtagMatcher;
+
+import java.util.BitSet;
+import java.util.Collection;
+
+/**
+ * A bitmap of the wanted ctag name indexes. The tags, that are unknown to the ctag matcher at the filter creation,
+ * are always wanted, since their names can not be checked by the bitmap.
+ */
+public final class TagFilter {
+
+    private final BitSet wantedTags = new BitSet();
+
+    private final int knownTagsCount;
+
+    /**
+     * Creates an instance.
+     *
+     * @param ctagMatcher the item ctag matcher
+     * @param tagNames    the names of the wanted tags
+     */
+    public TagFilter(CtagMatcher ctagMatcher, Collection<String> tagNames) {
+        knownTagsCount = ctagMatcher.getTagsCount();
+        for (String tagName : tagNames) {
+            int index = ctagMatcher.findIndex(tagName);
+            if (index != 0) {
+                wantedTags.set(index);
+            }
+        }
+    }
+
+    /**
+     * Returns true, if the value of the tag is wanted.
+     *
+     * @param tagName the ctag name index
+     * @return true, if the value of the tag is wanted
+     */
+    public boolean isWanted(int tagName) {
+        return tagName > knownTagsCount || wantedTags.get(tagName);
+    }
+
+}
@@ -0,0 +1,105 @@
+/*
+ * Copyright 2020-present Restream
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ru.rt.restream.reindexer.column;
+
+import java.util.BitSet;
+
+/**
+ * A column of the values of a root field of the result items. The null values are kept in a bitmap, the column
+ * arrays grow as the values are appended.
+ */
+public abstract class Column {
+
+    static final int INITIAL_CAPACITY = 64;
+
+    private final String name;
+
+    private final BitSet nulls = new BitSet();
+
+    private int size;
+
+    Column(String name) {
+        this.name = name;
+    }
+
+    /**
+     * Returns the field name.
+     *
+     * @return the field name
+     */
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * Returns the number of the values.
+     *
+     * @return the number of the values
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Returns true, if the value of the row is null or absent.
+     *
+     * @param row the row index
+     * @return true, if the value is null
+     */
+    public boolean isNull(int row) {
+        checkRow(row);
+        return nulls.get(row);
+    }
+
+    /**
+     * Appends a null value.
+     */
+    public void appendNull() {
+        nulls.set(size);
+        appendDefault();
+    }
+
+    /**
+     * Removes all values.
+     */
+    public void clear() {
+        nulls.clear();
+        size = 0;
+    }
+
+    /**
+     * Appends the default value to the column array, the row is already marked as null.
+     */
+    abstract void appendDefault();
+
+    /**
+     * Returns the index of the appended row.
+     */
+    int nextRow() {
+        return size++;
+    }
+
+    void checkRow(int row) {
+        if (row < 0 || row >= size) {
+            throw new IndexOutOfBoundsException(String.format("Row %d is out of column %s size %d", row, name, size));
+        }
+    }
+
+    static int grow(int capacity) {
+        return capacity + (capacity >> 1);
+    }
+
+}
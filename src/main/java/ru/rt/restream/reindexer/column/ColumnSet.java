@@ -0,0 +1,199 @@
+/*
+ * Copyright 2020-present Restream
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ru.rt.restream.reindexer.column;
+
+import ru.rt.restream.reindexer.EnumType;
+import ru.rt.restream.reindexer.annotations.Enumerated;
+import ru.rt.restream.reindexer.annotations.Json;
+import ru.rt.restream.reindexer.util.BeanPropertyUtils;
+
+import java.lang.reflect.Field;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * The columns of the root fields of the result items, see
+ * {@link ru.rt.restream.reindexer.Query#executeColumns(String...)}.
+ */
+public final class ColumnSet {
+
+    private final Column[] columns;
+
+    /**
+     * Creates an instance.
+     *
+     * @param columns the columns
+     */
+    public ColumnSet(Column... columns) {
+        if (columns.length == 0) {
+            throw new IllegalArgumentException("No columns specified");
+        }
+        this.columns = columns.clone();
+    }
+
+    /**
+     * Creates the columns of the root fields of the item class. The integer, enum ordinal and boolean fields get
+     * a {@link LongColumn}, the floating point fields get a {@link DoubleColumn}, the string, uuid and enum name fields
+     * get a {@link StringColumn}.
+     *
+     * @param itemClass  the item class
+     * @param fieldNames the json names of the fields
+     * @return the {@link ColumnSet} to fill
+     * @throws IllegalArgumentException if there is no such scalar field in the item class
+     */
+    public static ColumnSet of(Class<?> itemClass, String... fieldNames) {
+        Column[] columns = new Column[fieldNames.length];
+        List<Field> fields = BeanPropertyUtils.getInheritedFields(itemClass);
+        for (int i = 0; i < fieldNames.length; i++) {
+            columns[i] = newColumn(itemClass, fields, fieldNames[i]);
+        }
+        return new ColumnSet(columns);
+    }
+
+    private static Column newColumn(Class<?> itemClass, List<Field> fields, String fieldName) {
+        for (Field field : fields) {
+            Json json = field.getAnnotation(Json.class);
+            if (!fieldName.equals(json == null ? field.getName() : json.value())) {
+                continue;
+            }
+            Class<?> type = field.getType();
+            if (type == long.class || type == Long.class || type == int.class || type == Integer.class
+                    || type == short.class || type == Short.class || type == byte.class || type == Byte.class
+                    || type == boolean.class || type == Boolean.class) {
+                return new LongColumn(fieldName);
+            } else if (type == double.class || type == Double.class || type == float.class || type == Float.class) {
+                return new DoubleColumn(fieldName);
+            } else if (type == String.class || type == UUID.class) {
+                return new StringColumn(fieldName);
+            } else if (type.isEnum()) {
+                Enumerated enumerated = field.getAnnotation(Enumerated.class);
+                return enumerated != null && enumerated.value() == EnumType.STRING ? new StringColumn(fieldName)
+                        : new LongColumn(fieldName);
+            }
+            throw new IllegalArgumentException(String.format("Field %s of %s is not a scalar field", fieldName,
+                    itemClass.getName()));
+        }
+        throw new IllegalArgumentException(String.format("Field %s is not found in %s", fieldName,
+                itemClass.getName()));
+    }
+
+    /**
+     * Returns the number of the rows.
+     *
+     * @return the number of the rows
+     */
+    public int size() {
+        return columns[0].size();
+    }
+
+    /**
+     * Returns the columns.
+     *
+     * @return the columns
+     */
+    public List<Column> getColumns() {
+        return Collections.unmodifiableList(Arrays.asList(columns));
+    }
+
+    /**
+     * Returns the column of the field.
+     *
+     * @param name the field name
+     * @return the column
+     * @throws IllegalArgumentException if there is no such column
+     */
+    public Column getColumn(String name) {
+        for (Column column : columns) {
+            if (column.getName().equals(name)) {
+                return column;
+            }
+        }
+        throw new IllegalArgumentException(String.format("No column %s", name));
+    }
+
+    /**
+     * Returns the {@link LongColumn} of the field.
+     *
+     * @param name the field name
+     * @return the column
+     * @throws IllegalArgumentException if there is no such column of the type
+     */
+    public LongColumn getLongColumn(String name) {
+        return getColumn(name, LongColumn.class);
+    }
+
+    /**
+     * Returns the {@link DoubleColumn} of the field.
+     *
+     * @param name the field name
+     * @return the column
+     * @throws IllegalArgumentException if there is no such column of the type
+     */
+    public DoubleColumn getDoubleColumn(String name) {
+        return getColumn(name, DoubleColumn.class);
+    }
+
+    /**
+     * Returns the {@link StringColumn} of the field.
+     *
+     * @param name the field name
+     * @return the column
+     * @throws IllegalArgumentException if there is no such column of the type
+     */
+    public StringColumn getStringColumn(String name) {
+        return getColumn(name, StringColumn.class);
+    }
+
+    private <C extends Column> C getColumn(String name, Class<C> columnClass) {
+        Column column = getColumn(name);
+        if (!columnClass.isInstance(column)) {
+            throw new IllegalArgumentException(String.format("Column %s is a %s", name,
+                    column.getClass().getSimpleName()));
+        }
+        return columnClass.cast(column);
+    }
+
+    /**
+     * Returns the number of the columns.
+     *
+     * @return the number of the columns
+     */
+    public int getColumnCount() {
+        return columns.length;
+    }
+
+    /**
+     * Returns the column by its index.
+     *
+     * @param index the column index
+     * @return the column
+     */
+    public Column getColumn(int index) {
+        return columns[index];
+    }
+
+    /**
+     * Removes all rows of the columns.
+     */
+    public void clear() {
+        for (Column column : columns) {
+            column.clear();
+        }
+    }
+
+}
@@ -0,0 +1,69 @@
+/*
+ * Copyright 2020-present Restream
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ru.rt.restream.reindexer.column;
+
+import java.util.Arrays;
+
+/**
+ * A column of integer or boolean values, booleans are stored as 1 and 0.
+ */
+public final class LongColumn extends Column {
+
+    private long[] values = new long[INITIAL_CAPACITY];
+
+    public LongColumn(String name) {
+        super(name);
+    }
+
+    /**
+     * Returns the value of the row, 0 for the null values.
+     *
+     * @param row the row index
+     * @return the row value
+     */
+    public long get(int row) {
+        checkRow(row);
+        return values[row];
+    }
+
+    /**
+     * Appends a value.
+     *
+     * @param value the value to append
+     */
+    public void append(long value) {
+        int row = nextRow();
+        if (row == values.length) {
+            values = Arrays.copyOf(values, grow(values.length));
+        }
+        values[row] = value;
+    }
+
+    @Override
+    void appendDefault() {
+        append(0L);
+    }
+
+    /**
+     * Returns a copy of the values, null values are 0.
+     *
+     * @return the values
+     */
+    public long[] toArray() {
+        return Arrays.copyOf(values, size());
+    }
+
+}
@@ -0,0 +1,119 @@
+/*
+ * Copyright 2020-present Restream
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ru.rt.restream.reindexer.column;
+
+import ru.rt.restream.reindexer.binding.cproto.ByteBuffer;
+import ru.rt.restream.reindexer.binding.cproto.StringTable;
+
+import java.util.Arrays;
+
+/**
+ * A dictionary encoded column of string values: each row keeps the code of its value in the dictionary of the
+ * distinct values. The dictionary is reset when the column is cleared, so the codes are valid within one chunk
+ * of a result only, and the memory of a column is bounded by its chunk.
+ */
+public final class StringColumn extends Column {
+
+    private final StringTable dictionary = new StringTable();
+
+    private int[] codes = new int[INITIAL_CAPACITY];
+
+    public StringColumn(String name) {
+        super(name);
+    }
+
+    /**
+     * Returns the value of the row.
+     *
+     * @param row the row index
+     * @return the row value, null for the null values
+     */
+    public String get(int row) {
+        return isNull(row) ? null : dictionary.get(codes[row]);
+    }
+
+    /**
+     * Returns the dictionary code of the row value.
+     *
+     * @param row the row index
+     * @return the value code, -1 for the null values
+     */
+    public int getCode(int row) {
+        return isNull(row) ? -1 : codes[row];
+    }
+
+    /**
+     * Returns the value of the dictionary code.
+     *
+     * @param code the value code
+     * @return the value
+     */
+    public String getValue(int code) {
+        return dictionary.get(code);
+    }
+
+    /**
+     * Returns the number of the distinct values.
+     *
+     * @return the dictionary size
+     */
+    public int getDictionarySize() {
+        return dictionary.size();
+    }
+
+    /**
+     * Appends a value.
+     *
+     * @param value the value to append, can be null
+     */
+    public void append(String value) {
+        if (value == null) {
+            appendNull();
+        } else {
+            appendCode(dictionary.intern(value));
+        }
+    }
+
+    /**
+     * Appends a variable length string, read from the buffer. The string is decoded only if it is not in
+     * the dictionary yet.
+     *
+     * @param buffer the buffer to read the string from
+     */
+    public void append(ByteBuffer buffer) {
+        appendCode(dictionary.intern(buffer));
+    }
+
+    @Override
+    public void clear() {
+        super.clear();
+        dictionary.clear();
+    }
+
+    @Override
+    void appendDefault() {
+        appendCode(-1);
+    }
+
+    private void appendCode(int code) {
+        int row = nextRow();
+        if (row == codes.length) {
+            codes = Arrays.copyOf(codes, grow(codes.length));
+        }
+        codes[row] = code;
+    }
+
+}
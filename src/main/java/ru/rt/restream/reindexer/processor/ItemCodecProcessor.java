@@ -0,0 +1,559 @@
+/*
+ * Copyright 2020-present Restream
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ru.rt.restream.reindexer.processor;
+
+import ru.rt.restream.reindexer.annotations.Convert;
+import ru.rt.restream.reindexer.annotations.Json;
+import ru.rt.restream.reindexer.annotations.Reindex;
+import ru.rt.restream.reindexer.annotations.Transient;
+import ru.rt.restream.reindexer.binding.cproto.ItemCodecProvider;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
+
+import javax.annotation.processing.AbstractProcessor;
+import javax.annotation.processing.RoundEnvironment;
+import javax.annotation.processing.SupportedAnnotationTypes;
+import javax.lang.model.SourceVersion;
+import javax.lang.model.element.Element;
+import javax.lang.model.element.ElementKind;
+import javax.lang.model.element.ExecutableElement;
+import javax.lang.model.element.Modifier;
+import javax.lang.model.element.NestingKind;
+import javax.lang.model.element.PackageElement;
+import javax.lang.model.element.TypeElement;
+import javax.lang.model.element.VariableElement;
+import javax.lang.model.type.DeclaredType;
+import javax.lang.model.type.TypeKind;
+import javax.lang.model.type.TypeMirror;
+import javax.lang.model.util.ElementFilter;
+import javax.tools.Diagnostic;
+import javax.tools.FileObject;
+import javax.tools.StandardLocation;
+
+/**
+ * Generates an {@link ItemCodecProvider} for each item class with {@link Reindex} annotated fields, and registers
+ * the generated providers for the {@link java.util.ServiceLoader}. The generated codecs read and write items through
+ * the item getters and setters, without reflection.
+ * <p>
+ * The processor is optional and is not discovered by the compiler: it has to be enabled explicitly, e.g. by the
+ * {@code -processor} compiler option or the {@code annotationProcessors} of the maven-compiler-plugin, along with the
+ * other used processors, like lombok. A codec is generated only for a class, which non transient fields have the
+ * primitive, boxed, {@link String} or {@link java.util.UUID} types, or are lists of such types, have the accessible
+ * getters and setters, and do not use {@link Convert}. The other classes are reported by a note and are read and
+ * written by reflection.
+ */
+@SupportedAnnotationTypes("ru.rt.restream.reindexer.annotations.Reindex")
+public class ItemCodecProcessor extends AbstractProcessor {
+
+    static final String PROVIDER_SUFFIX = "_ItemCodecProvider";
+
+    private static final String SERVICES_FILE = "META-INF/services/" + ItemCodecProvider.class.getName();
+
+    private final Set<String> processed = new HashSet<>();
+
+    private final Set<String> providers = new TreeSet<>();
+
+    @Override
+    public SourceVersion getSupportedSourceVersion() {
+        return SourceVersion.latestSupported();
+    }
+
+    @Override
+    public boolean process(Set<? extends TypeElement> annotations, RoundEnvironment roundEnv) {
+        if (roundEnv.processingOver()) {
+            if (!providers.isEmpty()) {
+                writeServicesFile();
+            }
+            return false;
+        }
+        Set<TypeElement> itemTypes = new LinkedHashSet<>();
+        for (Element element : roundEnv.getElementsAnnotatedWith(Reindex.class)) {
+            Element itemType = element.getKind() == ElementKind.FIELD ? element.getEnclosingElement() : element;
+            if (itemType instanceof TypeElement) {
+                itemTypes.add((TypeElement) itemType);
+            }
+        }
+        for (TypeElement itemType : itemTypes) {
+            if (processed.add(itemType.getQualifiedName().toString())) {
+                generate(itemType);
+            }
+        }
+        return false;
+    }
+
+    private void generate(TypeElement itemType) {
+        try {
+            List<FieldInfo> fields = getFields(itemType);
+            String packageName = getPackage(itemType).getQualifiedName().toString();
+            String providerName = getProviderName(itemType);
+            try (Writer writer = processingEnv.getFiler().createSourceFile(
+                    (packageName.isEmpty() ? "" : packageName + ".") + providerName, itemType).openWriter()) {
+                writer.write(new SourceBuilder(packageName, providerName, itemType, fields).build());
+            }
+            providers.add((packageName.isEmpty() ? "" : packageName + ".") + providerName);
+        } catch (UnsupportedItemException e) {
+            processingEnv.getMessager().printMessage(Diagnostic.Kind.NOTE,
+                    String.format("rx: item codec is not generated for %s: %s", itemType.getQualifiedName(),
+                            e.getMessage()), itemType);
+        } catch (IOException e) {
+            processingEnv.getMessager().printMessage(Diagnostic.Kind.ERROR,
+                    String.format("rx: cannot write item codec of %s: %s", itemType.getQualifiedName(), e), itemType);
+        }
+    }
+
+    private void writeServicesFile() {
+        Set<String> services = new TreeSet<>(providers);
+        try {
+            // keep the providers of an incremental compilation, that are not generated again
+            FileObject existing = processingEnv.getFiler().getResource(StandardLocation.CLASS_OUTPUT, "",
+                    SERVICES_FILE);
+            try (BufferedReader reader = new BufferedReader(existing.openReader(true))) {
+                for (String line = reader.readLine(); line != null; line = reader.readLine()) {
+                    if (!line.trim().isEmpty()) {
+                        services.add(line.trim());
+                    }
+                }
+            }
+        } catch (IOException e) {
+            // no services file yet
+        }
+        try {
+            FileObject file = processingEnv.getFiler().createResource(StandardLocation.CLASS_OUTPUT, "",
+                    SERVICES_FILE);
+            try (PrintWriter writer = new PrintWriter(new OutputStreamWriter(file.openOutputStream(),
+                    StandardCharsets.UTF_8))) {
+                services.forEach(writer::println);
+            }
+        } catch (IOException e) {
+            processingEnv.getMessager().printMessage(Diagnostic.Kind.ERROR,
+                    String.format("rx: cannot write %s: %s", SERVICES_FILE, e));
+        }
+    }
+
+    private List<FieldInfo> getFields(TypeElement itemType) throws UnsupportedItemException {
+        if (itemType.getKind() != ElementKind.CLASS || itemType.getModifiers().contains(Modifier.ABSTRACT)) {
+            throw new UnsupportedItemException("not a concrete class");
+        }
+        if (itemType.getNestingKind() != NestingKind.TOP_LEVEL
+                && (itemType.getNestingKind() != NestingKind.MEMBER
+                || !itemType.getModifiers().contains(Modifier.STATIC))) {
+            throw new UnsupportedItemException("not a top level or a static nested class");
+        }
+        for (Element element = itemType; element instanceof TypeElement; element = element.getEnclosingElement()) {
+            if (element.getModifiers().contains(Modifier.PRIVATE)) {
+                throw new UnsupportedItemException("the class is private");
+            }
+        }
+        boolean hasConstructor = false;
+        for (ExecutableElement constructor : ElementFilter.constructorsIn(itemType.getEnclosedElements())) {
+            hasConstructor |= constructor.getParameters().isEmpty() && isAccessible(constructor, itemType);
+        }
+        if (!hasConstructor) {
+            throw new UnsupportedItemException("no accessible constructor without parameters");
+        }
+        List<ExecutableElement> methods = ElementFilter.methodsIn(
+                processingEnv.getElementUtils().getAllMembers(itemType));
+        List<FieldInfo> fields = new ArrayList<>();
+        Set<String> tagNames = new HashSet<>();
+        for (TypeElement type = itemType; type != null; type = getSuperclass(type)) {
+            for (VariableElement field : ElementFilter.fieldsIn(type.getEnclosedElements())) {
+                if (field.getModifiers().contains(Modifier.STATIC) || field.getAnnotation(Transient.class) != null) {
+                    continue;
+                }
+                FieldInfo fieldInfo = getField(itemType, field, methods);
+                if (!tagNames.add(fieldInfo.tagName)) {
+                    throw new UnsupportedItemException("several fields with the tag name " + fieldInfo.tagName);
+                }
+                fields.add(fieldInfo);
+            }
+        }
+        return fields;
+    }
+
+    private FieldInfo getField(TypeElement itemType, VariableElement field, List<ExecutableElement> methods)
+            throws UnsupportedItemException {
+        String name = field.getSimpleName().toString();
+        if (field.getAnnotation(Convert.class) != null) {
+            throw new UnsupportedItemException("the field " + name + " has a converter");
+        }
+        TypeMirror type = field.asType();
+        Kind kind = getKind(type);
+        Kind elementKind = null;
+        if (kind == Kind.LIST) {
+            List<? extends TypeMirror> typeArguments = ((DeclaredType) type).getTypeArguments();
+            elementKind = typeArguments.size() == 1 ? getKind(typeArguments.get(0)) : null;
+            if (elementKind == null || elementKind.primitive || elementKind == Kind.LIST) {
+                throw new UnsupportedItemException("unsupported element type of the field " + name);
+            }
+        } else if (kind == null) {
+            throw new UnsupportedItemException("unsupported type of the field " + name);
+        }
+        Reindex reindex = field.getAnnotation(Reindex.class);
+        if (kind == Kind.STRING && reindex != null && reindex.isUuid()) {
+            kind = Kind.UUID_STRING;
+        }
+        Json json = field.getAnnotation(Json.class);
+        String tagName = json == null ? name : json.value();
+        String capitalized = Character.toUpperCase(name.charAt(0)) + name.substring(1);
+        boolean booleanField = type.getKind() == TypeKind.BOOLEAN;
+        ExecutableElement getter = findGetter(itemType, methods, type, "get" + capitalized, "is" + capitalized,
+                booleanField && name.startsWith("is") ? name : null);
+        String booleanSetter = booleanField && name.startsWith("is") && name.length() > 2
+                ? "set" + name.substring(2) : null;
+        ExecutableElement setter = findSetter(itemType, methods, type, "set" + capitalized, booleanSetter);
+        if (getter == null || setter == null) {
+            throw new UnsupportedItemException("no accessible getter and setter of the field " + name);
+        }
+        return new FieldInfo(tagName, kind, elementKind, getter.getSimpleName().toString(),
+                setter.getSimpleName().toString());
+    }
+
+    private ExecutableElement findGetter(TypeElement itemType, List<ExecutableElement> methods, TypeMirror type,
+                                         String... names) {
+        for (String name : names) {
+            for (ExecutableElement method : methods) {
+                if (name != null && method.getSimpleName().contentEquals(name) && method.getParameters().isEmpty()
+                        && isAccessible(method, itemType)
+                        && processingEnv.getTypeUtils().isSameType(method.getReturnType(), type)) {
+                    return method;
+                }
+            }
+        }
+        return null;
+    }
+
+    private ExecutableElement findSetter(TypeElement itemType, List<ExecutableElement> methods, TypeMirror type,
+                                         String... names) {
+        for (String name : names) {
+            for (ExecutableElement method : methods) {
+                if (name != null && method.getSimpleName().contentEquals(name)
+                        && method.getParameters().size() == 1 && isAccessible(method, itemType)
+                        && processingEnv.getTypeUtils().isSameType(method.getParameters().get(0).asType(), type)) {
+                    return method;
+                }
+            }
+        }
+        return null;
+    }
+
+    private boolean isAccessible(Element member, TypeElement itemType) {
+        Set<Modifier> modifiers = member.getModifiers();
+        if (modifiers.contains(Modifier.PUBLIC)) {
+            return true;
+        }
+        // the generated provider is in the package of the item class, but it is not a subclass of it
+        return !modifiers.contains(Modifier.PRIVATE) && !modifiers.contains(Modifier.STATIC)
+                && getPackage(member).equals(getPackage(itemType));
+    }
+
+    private TypeElement getSuperclass(TypeElement type) {
+        TypeMirror superclass = type.getSuperclass();
+        if (superclass.getKind() != TypeKind.DECLARED) {
+            return null;
+        }
+        TypeElement superType = (TypeElement) ((DeclaredType) superclass).asElement();
+        return superType.getQualifiedName().contentEquals(Object.class.getName()) ? null : superType;
+    }
+
+    private PackageElement getPackage(Element element) {
+        return processingEnv.getElementUtils().getPackageOf(element);
+    }
+
+    private static Kind getKind(TypeMirror type) {
+        switch (type.getKind()) {
+            case INT:
+                return Kind.INT;
+            case LONG:
+                return Kind.LONG;
+            case SHORT:
+                return Kind.SHORT;
+            case BYTE:
+                return Kind.BYTE;
+            case BOOLEAN:
+                return Kind.BOOLEAN;
+            case DOUBLE:
+                return Kind.DOUBLE;
+            case FLOAT:
+                return Kind.FLOAT;
+            case DECLARED:
+                String name = ((TypeElement) ((DeclaredType) type).asElement()).getQualifiedName().toString();
+                for (Kind kind : Kind.values()) {
+                    if (name.equals(kind.className)) {
+                        return kind;
+                    }
+                }
+                return null;
+            default:
+                return null;
+        }
+    }
+
+    private static String getProviderName(TypeElement itemType) {
+        StringBuilder name = new StringBuilder(itemType.getSimpleName());
+        for (Element element = itemType.getEnclosingElement(); element instanceof TypeElement;
+             element = element.getEnclosingElement()) {
+            name.insert(0, element.getSimpleName() + "_");
+        }
+        return name.append(PROVIDER_SUFFIX).toString();
+    }
+
+    /**
+     * The supported field types, with the base codec methods, that read and write them.
+     */
+    private enum Kind {
+        INT(null, true, "readInt", "writeVarInt", null, "0"),
+        LONG(null, true, "readLong", "writeVarInt", null, "0L"),
+        SHORT(null, true, "readShort", "writeVarInt", null, "(short) 0"),
+        BYTE(null, true, "readByte", "writeVarInt", null, "(byte) 0"),
+        BOOLEAN(null, true, "readBool", "writeBool", null, "false"),
+        DOUBLE(null, true, "readDouble", "writeDouble", null, "0.0D"),
+        FLOAT(null, true, "readFloat", "writeFloat", null, "0.0F"),
+        INTEGER_OBJECT("java.lang.Integer", false, "readInt", "writeVarInt", "writeVarIntArray", "null"),
+        LONG_OBJECT("java.lang.Long", false, "readLong", "writeVarInt", "writeVarIntArray", "null"),
+        SHORT_OBJECT("java.lang.Short", false, "readShort", "writeVarInt", "writeVarIntArray", "null"),
+        BYTE_OBJECT("java.lang.Byte", false, "readByte", "writeVarInt", "writeVarIntArray", "null"),
+        BOOLEAN_OBJECT("java.lang.Boolean", false, "readBool", "writeBool", "writeBoolArray", "null"),
+        DOUBLE_OBJECT("java.lang.Double", false, "readDouble", "writeDouble", "writeDoubleArray", "null"),
+        FLOAT_OBJECT("java.lang.Float", false, "readFloat", "writeFloat", "writeFloatArray", "null"),
+        STRING("java.lang.String", false, "readString", "writeString", "writeStringArray", "null"),
+        UUID("java.util.UUID", false, "readUuid", "writeUuid", "writeUuidArray", "null"),
+        UUID_STRING(null, false, "readString", "writeUuidString", null, "null"),
+        LIST("java.util.List", false, "readList", null, null, "new java.util.ArrayList<>()");
+
+        private final String className;
+
+        private final boolean primitive;
+
+        private final String readMethod;
+
+        private final String writeMethod;
+
+        private final String writeArrayMethod;
+
+        private final String resetValue;
+
+        Kind(String className, boolean primitive, String readMethod, String writeMethod, String writeArrayMethod,
+             String resetValue) {
+            this.className = className;
+            this.primitive = primitive;
+            this.readMethod = readMethod;
+            this.writeMethod = writeMethod;
+            this.writeArrayMethod = writeArrayMethod;
+            this.resetValue = resetValue;
+        }
+
+        /**
+         * Returns true, if the read method returns a primitive value, and null has to be checked before calling it.
+         */
+        private boolean readsPrimitive() {
+            return this != STRING && this != UUID && this != UUID_STRING && this != LIST;
+        }
+
+    }
+
+    private static final class FieldInfo {
+
+        private final String tagName;
+
+        private final Kind kind;
+
+        private final Kind elementKind;
+
+        private final String getter;
+
+        private final String setter;
+
+        private FieldInfo(String tagName, Kind kind, Kind elementKind, String getter, String setter) {
+            this.tagName = tagName;
+            this.kind = kind;
+            this.elementKind = elementKind;
+            this.getter = getter;
+            this.setter = setter;
+        }
+
+    }
+
+    /**
+     * Builds the source of an item codec provider.
+     */
+    private static final class SourceBuilder {
+
+        private final StringBuilder source = new StringBuilder();
+
+        private final String packageName;
+
+        private final String providerName;
+
+        private final String itemName;
+
+        private final List<FieldInfo> fields;
+
+        private SourceBuilder(String packageName, String providerName, TypeElement itemType, List<FieldInfo> fields) {
+            this.packageName = packageName;
+            this.providerName = providerName;
+            itemName = itemType.getQualifiedName().toString();
+            this.fields = fields;
+        }
+
+        private String build() {
+            if (!packageName.isEmpty()) {
+                line("package %s;", packageName).line("");
+            }
+            line("import ru.rt.restream.reindexer.binding.cproto.ItemCodec;");
+            line("import ru.rt.restream.reindexer.binding.cproto.ItemCodecProvider;");
+            line("import ru.rt.restream.reindexer.binding.cproto.cjson.GeneratedCjsonItemCodec;");
+            line("import ru.rt.restream.reindexer.binding.cproto.cjson.PayloadType;");
+            line("import ru.rt.restream.reindexer.binding.cproto.cjson.encdec.CjsonReader;");
+            line("import ru.rt.restream.reindexer.binding.cproto.cjson.encdec.CjsonWriter;");
+            line("");
+            line("/**");
+            line(" * Provides the item codecs of {@link %s}.", itemName);
+            line(" * Generated by %s, do not edit.", ItemCodecProcessor.class.getName());
+            line(" */");
+            line("public final class %s implements ItemCodecProvider<%s> {", providerName, itemName);
+            line("");
+            line("    @Override");
+            line("    public Class<%s> getItemClass() {", itemName);
+            line("        return %s.class;", itemName);
+            line("    }");
+            line("");
+            line("    @Override");
+            line("    public ItemCodec<%s> createItemCodec(PayloadType payloadType) {", itemName);
+            line("        return new Codec(payloadType);");
+            line("    }");
+            line("");
+            line("    private static final class Codec extends GeneratedCjsonItemCodec<%s> {", itemName);
+            line("");
+            source.append("        private static final String[] FIELD_NAMES = {");
+            for (int i = 0; i < fields.size(); i++) {
+                source.append(i == 0 ? "" : ", ").append('"').append(escape(fields.get(i).tagName)).append('"');
+            }
+            line("};");
+            line("");
+            line("        private Codec(PayloadType payloadType) {");
+            line("            super(payloadType, FIELD_NAMES);");
+            line("        }");
+            line("");
+            buildNewItem();
+            buildResetItem();
+            buildReadField();
+            buildWriteFields();
+            line("    }");
+            line("");
+            line("}");
+            return source.toString();
+        }
+
+        private void buildNewItem() {
+            line("        @Override");
+            line("        protected %s newItem() {", itemName);
+            line("            %s item = new %s();", itemName, itemName);
+            for (FieldInfo field : fields) {
+                if (field.kind == Kind.LIST) {
+                    line("            item.%s(new java.util.ArrayList<>());", field.setter);
+                }
+            }
+            line("            return item;");
+            line("        }");
+            line("");
+        }
+
+        private void buildResetItem() {
+            line("        @Override");
+            line("        protected void resetItem(%s item) {", itemName);
+            for (FieldInfo field : fields) {
+                line("            item.%s(%s);", field.setter, field.kind.resetValue);
+            }
+            line("        }");
+            line("");
+        }
+
+        private void buildReadField() {
+            line("        @Override");
+            line("        protected void readField(CjsonReader reader, %s item, int field, int type) {", itemName);
+            line("            switch (field) {");
+            for (int i = 0; i < fields.size(); i++) {
+                FieldInfo field = fields.get(i);
+                line("                case %d:", i);
+                if (field.kind.primitive) {
+                    line("                    if (type != CjsonReader.NULL) {");
+                    line("                        item.%s(%s(reader, type));", field.setter, field.kind.readMethod);
+                    line("                    }");
+                } else if (field.kind == Kind.LIST) {
+                    line("                    item.%s(readList(reader, type, (r, t) -> %s));", field.setter,
+                            readExpression(field.elementKind, "r", "t"));
+                } else {
+                    line("                    item.%s(%s);", field.setter, readExpression(field.kind, "reader", "type"));
+                }
+                line("                    break;");
+            }
+            line("                default:");
+            line("                    reader.skipValue(type);");
+            line("            }");
+            line("        }");
+            line("");
+        }
+
+        private static String readExpression(Kind kind, String reader, String type) {
+            String read = String.format("%s(%s, %s)", kind.readMethod, reader, type);
+            return kind.readsPrimitive() ? String.format("%s == CjsonReader.NULL ? null : %s", type, read) : read;
+        }
+
+        private void buildWriteFields() {
+            line("        @Override");
+            line("        protected void writeFields(CjsonWriter writer, %s item) {", itemName);
+            for (int i = 0; i < fields.size(); i++) {
+                FieldInfo field = fields.get(i);
+                String method = field.kind == Kind.LIST ? field.elementKind.writeArrayMethod : field.kind.writeMethod;
+                line("            %s(writer, %d, item.%s());", method, i, field.getter);
+            }
+            line("        }");
+            line("");
+        }
+
+        private SourceBuilder line(String format, Object... args) {
+            source.append(args.length == 0 ? format : String.format(format, args)).append('\n');
+            return this;
+        }
+
+        private static String escape(String value) {
+            return value.replace("\\", "\\\\").replace("\"", "\\\"");
+        }
+
+    }
+
+    private static final class UnsupportedItemException extends Exception {
+
+        private static final long serialVersionUID = 1L;
+
+        private UnsupportedItemException(String message) {
+            super(message);
+        }
+
+    }
+
+}
@@ -31,6 +31,7 @@ import java.lang.reflect.Field;
 import java.lang.reflect.Method;
 import java.lang.reflect.Modifier;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
@@ -39,6 +40,10 @@ import java.util.function.Function;
 import java.util.function.ObjDoubleConsumer;
 import java.util.function.ObjIntConsumer;
 import java.util.function.ObjLongConsumer;
+import java.util.function.Predicate;
+import java.util.function.ToDoubleFunction;
+import java.util.function.ToIntFunction;
+import java.util.function.ToLongFunction;
 import java.util.regex.Pattern;
 import java.util.stream.Stream;
 
@@ -103,6 +108,18 @@ public final class BeanPropertyUtils {
         getCachedSetter(beanObject.getClass(), propertyName).accept(beanObject, value);
     }
 
+    /**
+     * Returns a setter of the bean class property, that can be kept to set the property value repeatedly.
+     *
+     * @param beanClass    bean class
+     * @param propertyName property name
+     * @return the property setter
+     */
+    @SuppressWarnings("unchecked")
+    public static BiConsumer<Object, Object> getPropertySetter(Class<?> beanClass, String propertyName) {
+        return getCachedSetter(beanClass, propertyName);
+    }
+
     private static BiConsumer getCachedSetter(Class<?> beanClass, String fieldName) {
         //https://bugs.openjdk.java.net/browse/JDK-8161372
         BiConsumer setter = SETTER_CACHE.get(beanClass).get(fieldName);
@@ -132,6 +149,99 @@ public final class BeanPropertyUtils {
         return GETTER_CACHE.get(itemClass).computeIfAbsent(property, name -> createGetter(itemClass, name));
     }
 
+    /**
+     * Returns a getter of the bean class property, that can be kept to get the property value repeatedly.
+     *
+     * @param beanClass    bean class
+     * @param propertyName property name
+     * @return the property getter
+     */
+    @SuppressWarnings("unchecked")
+    public static Function<Object, Object> getPropertyGetter(Class<?> beanClass, String propertyName) {
+        return getCachedGetter(beanClass, propertyName);
+    }
+
+    /**
+     * Returns a getter of the bean class property, that returns an int, short or byte value without boxing.
+     *
+     * @param beanClass    bean class
+     * @param propertyName property name
+     * @return the property getter
+     * @throws IllegalArgumentException if the property getter does not return an int, short or byte value
+     */
+    @SuppressWarnings("unchecked")
+    public static ToIntFunction<Object> getIntPropertyGetter(Class<?> beanClass, String propertyName) {
+        return (ToIntFunction<Object>) createPrimitiveGetter(beanClass, propertyName, ToIntFunction.class,
+                "applyAsInt", int.class, int.class, short.class, byte.class);
+    }
+
+    /**
+     * Returns a getter of the bean class property, that returns a long value without boxing.
+     *
+     * @param beanClass    bean class
+     * @param propertyName property name
+     * @return the property getter
+     * @throws IllegalArgumentException if the property getter does not return a long value
+     */
+    @SuppressWarnings("unchecked")
+    public static ToLongFunction<Object> getLongPropertyGetter(Class<?> beanClass, String propertyName) {
+        return (ToLongFunction<Object>) createPrimitiveGetter(beanClass, propertyName, ToLongFunction.class,
+                "applyAsLong", long.class, long.class);
+    }
+
+    /**
+     * Returns a getter of the bean class property, that returns a double or float value without boxing.
+     *
+     * @param beanClass    bean class
+     * @param propertyName property name
+     * @return the property getter
+     * @throws IllegalArgumentException if the property getter does not return a double or float value
+     */
+    @SuppressWarnings("unchecked")
+    public static ToDoubleFunction<Object> getDoublePropertyGetter(Class<?> beanClass, String propertyName) {
+        return (ToDoubleFunction<Object>) createPrimitiveGetter(beanClass, propertyName, ToDoubleFunction.class,
+                "applyAsDouble", double.class, double.class, float.class);
+    }
+
+    /**
+     * Returns a getter of the bean class property, that returns a boolean value without boxing.
+     *
+     * @param beanClass    bean class
+     * @param propertyName property name
+     * @return the property getter
+     * @throws IllegalArgumentException if the property getter does not return a boolean value
+     */
+    @SuppressWarnings("unchecked")
+    public static Predicate<Object> getBooleanPropertyGetter(Class<?> beanClass, String propertyName) {
+        return (Predicate<Object>) createPrimitiveGetter(beanClass, propertyName, Predicate.class,
+                "test", boolean.class, boolean.class);
+    }
+
+    private static Object createPrimitiveGetter(Class<?> itemClass, String property, Class<?> interfaceType,
+                                                String interfaceMethod, Class<?> returnType,
+                                                Class<?>... getterReturnTypes) {
+        Method getterMethod = Stream.of(itemClass.getDeclaredMethods())
+                .filter(BeanPropertyUtils::isGetterMethod)
+                .filter(method -> isGetterMethodForFieldName(method, property))
+                .findFirst()
+                .orElseThrow(() -> new IllegalStateException(
+                        "Public getter is not found for the field: '" + property + "' of " + itemClass.getName()));
+        if (!Arrays.asList(getterReturnTypes).contains(getterMethod.getReturnType())) {
+            throw new IllegalArgumentException("Getter (" + getterMethod.getName() + ") returns "
+                    + getterMethod.getReturnType().getName() + ", expected " + returnType.getName());
+        }
+        try {
+            MethodHandle getterMethodHandle = LOOKUP.unreflect(getterMethod);
+            return LambdaMetafactory.metafactory(LOOKUP, interfaceMethod,
+                    MethodType.methodType(interfaceType),
+                    MethodType.methodType(returnType, Object.class),
+                    getterMethodHandle, MethodType.methodType(returnType, itemClass)).getTarget().invoke();
+        } catch (Throwable e) {
+            throw new IllegalArgumentException(
+                    "Lambda creation failed for getterMethod (" + getterMethod.getName() + ").", e);
+        }
+    }
+
     private static BiConsumer createSetter(Class<?> itemClass, String property) {
         final boolean isBooleanField = property.length() > 2
                 && property.startsWith("is")
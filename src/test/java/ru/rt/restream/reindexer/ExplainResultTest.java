@@ -0,0 +1,82 @@
+/*
+ * Copyright 2020-present Restream
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ru.rt.restream.reindexer;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.empty;
+import static org.hamcrest.Matchers.hasSize;
+import static org.hamcrest.Matchers.is;
+
+/**
+ * Tests for {@link ExplainResult}.
+ */
+class ExplainResultTest {
+
+    @Test
+    void ofWhenJoinedQueryPlanThenAllPhasesParsed() {
+        ExplainResult explainResult = ExplainResult.of(("{"
+                + "\"total_us\":120,\"prepare_us\":5,\"indexes_us\":30,\"postprocess_us\":2,\"loop_us\":70,"
+                + "\"general_sort_us\":8,\"preselect_us\":4,\"sort_index\":\"id\",\"sort_by_uncommitted_index\":false,"
+                + "\"selectors\":["
+                + "{\"field\":\"id\",\"field_type\":\"indexed\",\"method\":\"index\",\"keys\":2,\"comparators\":0,"
+                + "\"cost\":2.5,\"matched\":2,\"items\":2,\"description\":\"unordered\"},"
+                + "{\"field\":\"tags\",\"type\":\"inner_join\",\"method\":\"no_preselect\",\"matched\":1,"
+                + "\"explain_select\":{\"total_us\":10,\"selectors\":[{\"field\":\"-scan\",\"method\":\"scan\","
+                + "\"items\":100}]}}],"
+                + "\"on_conditions_injections\":[{\"namespace\":\"tags\",\"on_condition\":\"INNER JOIN ON (id = id)\","
+                + "\"success\":true,\"total_time_us\":3,\"was_cached\":false,\"injected_condition\":\"(id IN (1))\","
+                + "\"conditions\":[{\"condition\":\"id = id\",\"success\":true,\"new_condition\":\"id IN (1)\","
+                + "\"values_count\":1,\"total_time_us\":1}]}]"
+                + "}").getBytes(StandardCharsets.UTF_8));
+
+        assertThat(explainResult.getTotalUs(), is(120L));
+        assertThat(explainResult.getIndexesUs(), is(30L));
+        assertThat(explainResult.getLoopUs(), is(70L));
+        assertThat(explainResult.getGeneralSortUs(), is(8L));
+        assertThat(explainResult.getSortIndex(), is("id"));
+        assertThat(explainResult.getSelectors(), hasSize(2));
+        ExplainResult.Selector selector = explainResult.getSelectors().get(0);
+        assertThat(selector.getField(), is("id"));
+        assertThat(selector.getFieldType(), is("indexed"));
+        assertThat(selector.getKeys(), is(2));
+        assertThat(selector.getCost(), is(2.5));
+        ExplainResult.Selector join = explainResult.getSelectors().get(1);
+        assertThat(join.getType(), is("inner_join"));
+        assertThat(join.getExplainSelect().getSelectors().get(0).isScan(), is(true));
+        assertThat(explainResult.isScan(), is(false));
+        ExplainResult.JoinOnInjection injection = explainResult.getOnConditionsInjections().get(0);
+        assertThat(injection.getNamespace(), is("tags"));
+        assertThat(injection.isSuccess(), is(true));
+        assertThat(injection.getInjectedCondition(), is("(id IN (1))"));
+        assertThat(injection.getConditions().get(0).getValuesCount(), is(1));
+        assertThat(explainResult.getSubQueries(), is(empty()));
+    }
+
+    @Test
+    void isScanWhenNestedSelectorScansThenTrue() {
+        ExplainResult explainResult = ExplainResult.of(("{\"selectors\":[{\"field\":\"(id and name)\","
+                + "\"selectors\":[{\"field\":\"id\",\"method\":\"index\"},{\"field\":\"name\",\"method\":\"scan\"}]}]}")
+                .getBytes(StandardCharsets.UTF_8));
+
+        assertThat(explainResult.isScan(), is(true));
+        assertThat(explainResult.getOnConditionsInjections(), is(empty()));
+    }
+
+}
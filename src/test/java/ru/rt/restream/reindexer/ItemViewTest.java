@@ -0,0 +1,174 @@
+/*
+ * Copyright 2020-present Restream
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ru.rt.restream.reindexer;
+
+import lombok.Data;
+import org.junit.jupiter.api.Test;
+import ru.rt.restream.reindexer.binding.cproto.ByteBuffer;
+import ru.rt.restream.reindexer.binding.cproto.ItemCodec;
+import ru.rt.restream.reindexer.binding.cproto.cjson.PayloadType;
+import ru.rt.restream.reindexer.column.ColumnSet;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.UUID;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.nullValue;
+import static org.hamcrest.Matchers.sameInstance;
+
+/**
+ * Tests for {@link ItemView}.
+ */
+class ItemViewTest {
+
+    private final PayloadType payloadType = new PayloadType(1L, "items", 1L, 1, 0L,
+            Arrays.asList("id", "name", "price", "active", "uuid", "values", "tags", "nested", "value"),
+            Collections.emptyList());
+
+    @Test
+    void readItemWhenPageOfItemsThenViewPositionedOverEachItem() {
+        TestItem first = newTestItem(1, "first");
+        TestItem second = newTestItem(2, "second");
+        ByteBuffer page = writePage(first, second);
+        ItemViewReader reader = new ItemViewReader(payloadType);
+
+        ItemView view = reader.readItem(page, (int) page.getUInt32());
+        int next = page.getPosition();
+        assertThat(view.getLong("id"), is(1L));
+        assertThat(view.getString("name"), is("first"));
+        assertThat(page.getPosition(), is(next));
+
+        ItemView secondView = reader.readItem(page, (int) page.getUInt32());
+        assertThat(secondView, sameInstance(view));
+        assertThat(view.getString("name"), is("second"));
+        assertThat(view.getInt("id"), is(2));
+        assertThat(view.getDouble("price"), is(second.getPrice()));
+        assertThat(view.getBoolean("active"), is(true));
+        assertThat(view.getUuid("uuid"), is(second.getUuid()));
+    }
+
+    @Test
+    void forEachWhenArrayFieldThenElementsRead() {
+        ByteBuffer page = writePage(newTestItem(1, "first"));
+        ItemView view = new ItemViewReader(payloadType).readItem(page, (int) page.getUInt32());
+
+        List<Long> values = new ArrayList<>();
+        view.forEachLong("values", values::add);
+        List<String> tags = new ArrayList<>();
+        view.forEachString("tags", tags::add);
+
+        assertThat(view.getArraySize("values"), is(3));
+        assertThat(values, contains(10L, 20L, 30L));
+        assertThat(tags, contains("a", "b"));
+    }
+
+    @Test
+    void getWhenFieldAbsentThenDefaultValue() {
+        TestItem item = new TestItem();
+        item.setId(1);
+        ByteBuffer page = writePage(item);
+        ItemView view = new ItemViewReader(payloadType).readItem(page, (int) page.getUInt32());
+
+        assertThat(view.contains("id"), is(true));
+        assertThat(view.contains("name"), is(false));
+        assertThat(view.contains("unknown"), is(false));
+        assertThat(view.getString("name"), is(nullValue()));
+        assertThat(view.getLong("unknown"), is(0L));
+        assertThat(view.getArraySize("tags"), is(0));
+    }
+
+    @Test
+    void getLongWhenOtherScalarTypeThenConverted() {
+        TestItem item = newTestItem(1, "42");
+        ByteBuffer page = writePage(item);
+        ItemView view = new ItemViewReader(payloadType).readItem(page, (int) page.getUInt32());
+
+        assertThat(view.getLong("name"), is(42L));
+        assertThat(view.getString("id"), is("1"));
+    }
+
+    @Test
+    void appendToWhenColumnsThenValuesOfEachItemAppended() {
+        TestItem absent = new TestItem();
+        absent.setId(3);
+        ByteBuffer page = writePage(newTestItem(1, "first"), newTestItem(2, "second"), absent);
+        ItemViewReader reader = new ItemViewReader(payloadType);
+        ColumnSet columns = ColumnSet.of(TestItem.class, "id", "price", "name", "active");
+
+        for (int i = 0; i < 3; i++) {
+            int length = (int) page.getUInt32();
+            int next = page.getPosition() + length;
+            reader.readItem(page, length).appendTo(columns);
+            assertThat(page.getPosition(), is(next));
+        }
+
+        assertThat(columns.getLongColumn("id").toArray(), is(new long[]{1L, 2L, 3L}));
+        assertThat(columns.getDoubleColumn("price").toArray(), is(new double[]{1.5D, 3.0D, 0.0D}));
+        assertThat(columns.getStringColumn("name").get(1), is("second"));
+        assertThat(columns.getStringColumn("name").isNull(2), is(true));
+        assertThat(columns.getLongColumn("active").toArray(), is(new long[]{1L, 1L, 0L}));
+    }
+
+    private ByteBuffer writePage(TestItem... items) {
+        ItemCodec<TestItem> codec = ItemCodec.getInstance(TestItem.class, payloadType);
+        ByteBuffer page = new ByteBuffer();
+        for (TestItem item : items) {
+            ByteBuffer itemBuffer = new ByteBuffer();
+            codec.writeItem(itemBuffer, item);
+            byte[] data = itemBuffer.bytes();
+            page.putUInt32(data.length).writeBytes(data);
+        }
+        return page.rewind();
+    }
+
+    private static TestItem newTestItem(int id, String name) {
+        TestItem item = new TestItem();
+        item.setId(id);
+        item.setName(name);
+        item.setPrice(id * 1.5D);
+        item.setActive(true);
+        item.setUuid(UUID.randomUUID());
+        item.setValues(Arrays.asList(10L, 20L, 30L));
+        item.setTags(Arrays.asList("a", "b"));
+        Nested nested = new Nested();
+        nested.setValue("nested");
+        item.setNested(nested);
+        return item;
+    }
+
+    @Data
+    public static class TestItem {
+        private int id;
+        private String name;
+        private double price;
+        private boolean active;
+        private UUID uuid;
+        private List<Long> values;
+        private List<String> tags;
+        private Nested nested;
+    }
+
+    @Data
+    public static class Nested {
+        private String value;
+    }
+
+}
@@ -0,0 +1,164 @@
+/*
+ * Copyright 2020-present Restream
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ru.rt.restream.reindexer;
+
+import lombok.Data;
+import org.junit.jupiter.api.Test;
+import ru.rt.restream.reindexer.annotations.Reindex;
+import ru.rt.restream.reindexer.binding.Consts;
+
+import java.util.Arrays;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.empty;
+import static org.hamcrest.Matchers.is;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static ru.rt.restream.reindexer.Query.Condition.EQ;
+import static ru.rt.restream.reindexer.Query.Condition.SET;
+import static ru.rt.restream.reindexer.Query.param;
+
+/**
+ * Tests for {@link PreparedQuery}.
+ */
+class PreparedQueryTest {
+
+    private final StubBinding binding = new StubBinding();
+
+    private final Reindexer db = binding.newReindexer();
+
+    PreparedQueryTest() {
+        db.openNamespace("items", NamespaceOptions.defaultOptions(), TestItem.class);
+        db.openNamespace("tags", NamespaceOptions.defaultOptions(), TestItem.class);
+    }
+
+    @Test
+    void executeWhenParametersBoundThenSameBytesAsQueryWithValues() {
+        for (int version : new int[]{Consts.QUERY_FORMAT_V1, Consts.QUERY_FORMAT_V2}) {
+            binding.setQueryFormatVersion(version);
+            PreparedQuery<TestItem> prepared = db.query("items", TestItem.class)
+                    .where("id", SET, param("ids"))
+                    .where("name", EQ, param("name"))
+                    .limit(10)
+                    .join(db.query("tags", TestItem.class).where("name", EQ, param("tag")).on("id", EQ, "id"), "tags")
+                    .prepare();
+
+            assertThat(prepared.getParameterNames(), contains("ids", "name", "tag"));
+            byte[] expected = selectBytes(db.query("items", TestItem.class)
+                    .where("id", SET, 1, 2, 3)
+                    .where("name", EQ, "first")
+                    .limit(10)
+                    .join(db.query("tags", TestItem.class).where("name", EQ, "red").on("id", EQ, "id"), "tags"));
+            assertThat(selectBytes(prepared.bind("ids", Arrays.asList(1, 2, 3)).bind("name", "first")
+                    .bind("tag", "red")), is(expected));
+            expected = selectBytes(db.query("items", TestItem.class)
+                    .where("id", SET, 4)
+                    .where("name", EQ, "second")
+                    .limit(10)
+                    .join(db.query("tags", TestItem.class).where("name", EQ, "blue").on("id", EQ, "id"), "tags"));
+            assertThat(selectBytes(prepared.bind("ids", 4).bind("name", "second").bind("tag", "blue")),
+                    is(expected));
+        }
+    }
+
+    @Test
+    void executeWhenPreparedThenQueryNotMutated() {
+        Query<TestItem> query = db.query("items", TestItem.class)
+                .where("name", EQ, param("name"))
+                .join(db.query("tags", TestItem.class).on("id", EQ, "id"), "tags");
+        byte[] queryBytes = query.getBufferBytes();
+        PreparedQuery<TestItem> prepared = query.prepare();
+
+        binding.setQueryFormatVersion(Consts.QUERY_FORMAT_V1);
+        selectBytes(prepared.bind("name", "first"));
+        prepared.bind("name", "first").delete();
+
+        assertThat(query.getBufferBytes(), is(queryBytes));
+        assertThat(query.getNamespaces(), is(empty()));
+    }
+
+    @Test
+    void updateWhenParametersBoundThenSameBytesAsQueryWithValues() {
+        PreparedQuery<TestItem> prepared = db.query("items", TestItem.class)
+                .where("id", EQ, param("id"))
+                .set("name", param("name"))
+                .prepare();
+
+        db.query("items", TestItem.class).where("id", EQ, 7).set("name", "renamed").update();
+        byte[] expected = binding.getLastQuery();
+        prepared.bind("id", 7).bind("name", "renamed").update();
+
+        assertThat(binding.getLastQuery(), is(expected));
+    }
+
+    @Test
+    void deleteWhenParametersBoundThenSameBytesAsQueryWithValues() {
+        PreparedQuery<TestItem> prepared = db.query("items", TestItem.class)
+                .where("name", EQ, param("name"))
+                .prepare();
+
+        db.query("items", TestItem.class).where("name", EQ, "deleted").delete();
+        byte[] expected = binding.getLastQuery();
+        prepared.bind("name", "deleted").delete();
+
+        assertThat(binding.getLastQuery(), is(expected));
+    }
+
+    @Test
+    void bindWhenParameterUnknownOrNotBoundThenException() {
+        PreparedQuery<TestItem> prepared = db.query("items", TestItem.class)
+                .where("id", EQ, param("id"))
+                .where("name", EQ, param("name"))
+                .prepare();
+
+        assertThrows(IllegalArgumentException.class, () -> prepared.bind("unknown", 1));
+        assertThrows(IllegalStateException.class, () -> prepared.bind("id", 1).delete());
+    }
+
+    @Test
+    void executeWhenQueryHasParametersThenException() {
+        Query<TestItem> query = db.query("items", TestItem.class).where("id", EQ, param("id"));
+
+        assertThrows(IllegalStateException.class, query::execute);
+        assertThrows(IllegalStateException.class, query::delete);
+        assertThrows(IllegalArgumentException.class,
+                () -> db.query("items", TestItem.class).where("id", SET, param("id"), 2));
+    }
+
+    private byte[] selectBytes(Query<TestItem> query) {
+        query.execute().close();
+        return binding.getLastQuery();
+    }
+
+    private byte[] selectBytes(PreparedQuery<TestItem>.BoundQuery query) {
+        query.execute().close();
+        return binding.getLastQuery();
+    }
+
+    @Data
+    public static class TestItem {
+
+        @Reindex(name = "id", isPrimaryKey = true)
+        private Integer id;
+
+        @Reindex(name = "name")
+        private String name;
+
+        private TestItem tags;
+
+    }
+
+}
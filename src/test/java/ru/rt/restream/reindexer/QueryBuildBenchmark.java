@@ -0,0 +1,101 @@
+/*
+ * Copyright 2020-present Restream
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ru.rt.restream.reindexer;
+
+import lombok.Data;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import ru.rt.restream.reindexer.annotations.Reindex;
+
+import java.util.concurrent.TimeUnit;
+
+import static ru.rt.restream.reindexer.Query.Condition.EQ;
+import static ru.rt.restream.reindexer.Query.Condition.GT;
+import static ru.rt.restream.reindexer.Query.Condition.SET;
+
+/**
+ * Measures time and allocations of building a {@link Query} with several conditions, sorting and an aggregation,
+ * and of rendering its SQL-like representation, that is only done for logging.
+ * Run {@link #main(String[])} and see gc.alloc.rate.norm for the allocated bytes per operation.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class QueryBuildBenchmark {
+
+    private Reindexer db;
+
+    @Setup
+    public void setUp() {
+        db = new StubBinding().newReindexer();
+        db.openNamespace("items", NamespaceOptions.defaultOptions(), Item.class);
+    }
+
+    @Benchmark
+    public Query<Item> build() {
+        return db.query("items", Item.class)
+                .where("id", SET, 1, 2, 3, 4, 5)
+                .where("name", EQ, "item-name")
+                .openBracket()
+                .where("id", GT, 10)
+                .or()
+                .where("name", EQ, "other-name")
+                .closeBracket()
+                .sort("name", true)
+                .aggregateMax("id")
+                .limit(100)
+                .offset(10);
+    }
+
+    @Benchmark
+    public String buildAndRender() {
+        return build().toString();
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(QueryBuildBenchmark.class.getSimpleName())
+                .addProfiler(GCProfiler.class)
+                .build()).run();
+    }
+
+    @Data
+    public static class Item {
+
+        @Reindex(name = "id", isPrimaryKey = true)
+        private Integer id;
+
+        @Reindex(name = "name")
+        private String name;
+
+    }
+
+}
@@ -0,0 +1,124 @@
+/*
+ * Copyright 2020-present Restream
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ru.rt.restream.reindexer;
+
+import lombok.Data;
+import org.apache.commons.lang3.reflect.FieldUtils;
+import org.junit.jupiter.api.Test;
+import ru.rt.restream.reindexer.annotations.Reindex;
+import ru.rt.restream.reindexer.binding.Consts;
+import ru.rt.restream.reindexer.binding.cproto.ByteBuffer;
+import ru.rt.restream.reindexer.expression.Expression;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
+import static ru.rt.restream.reindexer.Query.Condition.EQ;
+import static ru.rt.restream.reindexer.Query.Condition.GT;
+import static ru.rt.restream.reindexer.Query.Condition.LE;
+import static ru.rt.restream.reindexer.Query.Condition.SET;
+import static ru.rt.restream.reindexer.Query.param;
+
+/**
+ * Tests for {@link QueryLogBuilder}.
+ */
+class QueryLogBuilderTest {
+
+    private final StubBinding binding = new StubBinding();
+
+    private final Reindexer db = binding.newReindexer();
+
+    QueryLogBuilderTest() {
+        db.openNamespace("items", NamespaceOptions.defaultOptions(), TestItem.class);
+        db.openNamespace("tags", NamespaceOptions.defaultOptions(), TestItem.class);
+    }
+
+    @Test
+    void getSqlWhenSelectQueryThenRenderedFromQueryBytes() {
+        Query<TestItem> query = db.query("items", TestItem.class)
+                .select("id", "name")
+                .reqTotal()
+                .where("id", SET, 1, 2L)
+                .openBracket()
+                .where("name", EQ, "first")
+                .or()
+                .where("name", EQ, (Object) null)
+                .closeBracket()
+                .whereComposite("id+name", EQ, 1, "a")
+                .where(Expression.field("id"), LE, Expression.now())
+                .sort("id", true, 3, 1)
+                .limit(10)
+                .offset(20);
+
+        assertThat(query.toString(), is("SELECT id, name, COUNT(*) FROM items WHERE id IN (1, 2)"
+                + " AND (name = 'first' OR name = null) AND id+name = {1, 'a'} AND id <= now(sec)"
+                + " ORDER BY FIELD(id, '3', '1') DESC LIMIT 10 OFFSET 20"));
+    }
+
+    @Test
+    void getSqlWhenJoinsAndSubqueriesThenRendered() {
+        for (int version : new int[]{Consts.QUERY_FORMAT_V1, Consts.QUERY_FORMAT_V2}) {
+            binding.setQueryFormatVersion(version);
+            Query<TestItem> query = db.query("items", TestItem.class)
+                    .where("id", SET, db.query("tags", TestItem.class).select("id").where("name", EQ, "red"))
+                    .where(db.query("tags", TestItem.class).aggregateMax("id"), GT, 5)
+                    .innerJoin(db.query("tags", TestItem.class).where("name", EQ, "blue").on("id", EQ, "id"), "tags")
+                    .leftJoin(db.query("tags", TestItem.class).on("id", EQ, "id"), "tags")
+                    .merge(db.query("items", TestItem.class).where("id", EQ, 1));
+
+            assertThat(query.toString(), is("SELECT * FROM items LEFT JOIN tags ON tags.id = items.id"
+                    + " WHERE id IN (SELECT id FROM tags WHERE name = 'red')"
+                    + " AND (SELECT MAX(id) FROM tags) > 5"
+                    + " AND INNER JOIN (SELECT * FROM tags WHERE name = 'blue') ON tags.id = items.id"
+                    + " MERGE(SELECT * FROM items WHERE id = 1)"));
+        }
+    }
+
+    @Test
+    void getSqlWhenUnknownTagThenMarkerRendered() throws IllegalAccessException {
+        Query<TestItem> query = db.query("items", TestItem.class).where("id", EQ, 1);
+        ByteBuffer buffer = (ByteBuffer) FieldUtils.readField(query, "buffer", true);
+        buffer.putVarUInt32(Query.QUERY_DISTINCT);
+
+        assertThat(query.limit(10).toString(), is("SELECT * FROM items WHERE id = 1 /* unknown tag 1 */"));
+    }
+
+    @Test
+    void getSqlWhenUpdateQueryWithParametersThenParametersRendered() {
+        Query<TestItem> query = db.query("items", TestItem.class)
+                .where("id", EQ, param("id"))
+                .set("name", param("name"))
+                .set("tags", new TestItem())
+                .drop("value");
+
+        assertThat(query.getSql(QueryLogBuilder.QueryType.UPDATE), is("UPDATE items"
+                + " SET name = ?name, tags = {\"id\":null,\"name\":null,\"tags\":null} DROP value WHERE id = ?id"));
+        assertThat(query.getSql(QueryLogBuilder.QueryType.DELETE), is("DELETE FROM items WHERE id = ?id"));
+    }
+
+    @Data
+    public static class TestItem {
+
+        @Reindex(name = "id", isPrimaryKey = true)
+        private Integer id;
+
+        @Reindex(name = "name")
+        private String name;
+
+        private TestItem tags;
+
+    }
+
+}
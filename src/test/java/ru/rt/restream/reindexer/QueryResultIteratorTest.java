@@ -0,0 +1,94 @@
+/*
+ * Copyright 2020-present Restream
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ru.rt.restream.reindexer;
+
+import lombok.Data;
+import org.junit.jupiter.api.Test;
+import ru.rt.restream.reindexer.annotations.Json;
+import ru.rt.restream.reindexer.annotations.Reindex;
+import ru.rt.restream.reindexer.binding.cproto.cjson.PayloadType;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.nullValue;
+
+/**
+ * Tests for {@link QueryResultIterator}.
+ */
+class QueryResultIteratorTest {
+
+    private final PayloadType payloadType = new PayloadType(0L, "items", 1L, 1, 0L,
+            Arrays.asList("id", "item_title", "description"), Collections.emptyList());
+
+    private final StubBinding binding = new StubBinding();
+
+    private final Reindexer db = binding.newReindexer();
+
+    QueryResultIteratorTest() {
+        db.openNamespace("items", NamespaceOptions.defaultOptions(), TestItem.class);
+    }
+
+    @Test
+    void nextWhenCompositeIndexSelectedThenSubIndexFieldsRead() {
+        TestItem item = new TestItem();
+        item.setId(1);
+        item.setTitle("first");
+        item.setDescription("the first item");
+        binding.addResult(StubBinding.itemsResult(payloadType, TestItem.class, Collections.singletonList(item)));
+
+        List<TestItem> items = db.query("items", TestItem.class).select("id+title").toList();
+
+        assertThat(items.size(), is(1));
+        assertThat(items.get(0).getId(), is(1));
+        assertThat(items.get(0).getTitle(), is("first"));
+        assertThat(items.get(0).getDescription(), nullValue());
+    }
+
+    @Test
+    void nextWhenFieldSelectedByIndexNameThenJsonPathFieldRead() {
+        TestItem item = new TestItem();
+        item.setId(1);
+        item.setTitle("first");
+        item.setDescription("the first item");
+        binding.addResult(StubBinding.itemsResult(payloadType, TestItem.class, Collections.singletonList(item)));
+
+        List<TestItem> items = db.query("items", TestItem.class).select("title").toList();
+
+        assertThat(items.get(0).getId(), nullValue());
+        assertThat(items.get(0).getTitle(), is("first"));
+        assertThat(items.get(0).getDescription(), nullValue());
+    }
+
+    @Data
+    @Reindex(name = "composite", subIndexes = {"id", "title"})
+    public static class TestItem {
+
+        @Reindex(name = "id", isPrimaryKey = true)
+        private Integer id;
+
+        @Json("item_title")
+        @Reindex(name = "title")
+        private String title;
+
+        private String description;
+
+    }
+
+}
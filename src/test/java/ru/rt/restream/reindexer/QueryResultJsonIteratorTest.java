@@ -0,0 +1,162 @@
+/*
+ * Copyright 2020-present Restream
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ru.rt.restream.reindexer;
+
+import org.junit.jupiter.api.Test;
+import ru.rt.restream.reindexer.binding.QueryResult;
+import ru.rt.restream.reindexer.binding.RequestContext;
+import ru.rt.restream.reindexer.binding.cproto.ByteBuffer;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.channels.Channels;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+/**
+ * Tests for {@link QueryResultJsonIterator}.
+ */
+class QueryResultJsonIteratorTest {
+
+    private static final List<String> ITEMS = Arrays.asList("{\"id\":1,\"name\":\"первый\"}", "{\"id\":2}",
+            "{\"id\":3}");
+
+    @Test
+    void writeAllWhenSeveralPagesThenItemsStreamedInRootArray() throws Exception {
+        PagedRequestContext requestContext = new PagedRequestContext(2);
+        QueryResultJsonIterator iterator = new QueryResultJsonIterator(requestContext, 2);
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+
+        iterator.writeAll("items", Channels.newChannel(output));
+
+        assertThat(new String(output.toByteArray(), StandardCharsets.UTF_8),
+                is("{\"items\":[" + String.join(",", ITEMS) + "]}"));
+        assertThat(requestContext.fetches, is(1));
+        assertThat(requestContext.closed, is(true));
+    }
+
+    @Test
+    void fetchAllWhenNoItemsThenEmptyRootArray() {
+        QueryResultJsonIterator iterator = new QueryResultJsonIterator(new PagedRequestContext(0), 2);
+
+        assertThat(iterator.fetchAll("items"), is("{\"items\":[]}"));
+    }
+
+    @Test
+    void fetchAllWhenSeveralPagesThenSameAsNext() {
+        QueryResultJsonIterator iterator = new QueryResultJsonIterator(new PagedRequestContext(2), 2);
+
+        assertThat(iterator.fetchAll("items"), is("{\"items\":[" + String.join(",", ITEMS) + "]}"));
+    }
+
+    @Test
+    void writeNextWhenNioBufferThenItemBytesPut() {
+        QueryResultJsonIterator iterator = new QueryResultJsonIterator(new PagedRequestContext(2, true), 2);
+        byte[] first = ITEMS.get(0).getBytes(StandardCharsets.UTF_8);
+        java.nio.ByteBuffer target = java.nio.ByteBuffer.allocate(first.length + 2);
+
+        assertThat(iterator.peekLength(), is(first.length));
+        iterator.writeNext(target);
+
+        assertThat(Arrays.copyOf(target.array(), first.length), is(first));
+        assertThat(iterator.next(), is(ITEMS.get(1)));
+        java.nio.ByteBuffer small = java.nio.ByteBuffer.allocate(1);
+        assertThrows(java.nio.BufferOverflowException.class, () -> iterator.writeNext(small));
+        assertThat(small.position(), is(0));
+        assertThrows(java.nio.BufferOverflowException.class, () -> iterator.writeNext(small));
+
+        byte[] third = ITEMS.get(2).getBytes(StandardCharsets.UTF_8);
+        target.clear();
+        iterator.writeNext(target);
+        assertThat(Arrays.copyOf(target.array(), target.position()), is(third));
+        assertThat(iterator.hasNext(), is(false));
+    }
+
+    @Test
+    void nextWhenNioBufferOverflowedThenSameItemReturned() {
+        QueryResultJsonIterator iterator = new QueryResultJsonIterator(new PagedRequestContext(2, true), 2);
+
+        assertThrows(java.nio.BufferOverflowException.class, () -> iterator.writeNext(java.nio.ByteBuffer.allocate(1)));
+
+        assertThat(iterator.next(), is(ITEMS.get(0)));
+        assertThat(iterator.next(), is(ITEMS.get(1)));
+    }
+
+    private static final class PagedRequestContext implements RequestContext {
+
+        private final int pageSize;
+
+        private final boolean withItemId;
+
+        private QueryResult queryResult;
+
+        private int fetches;
+
+        private boolean closed;
+
+        private PagedRequestContext(int pageSize) {
+            this(pageSize, false);
+        }
+
+        private PagedRequestContext(int pageSize, boolean withItemId) {
+            this.pageSize = pageSize;
+            this.withItemId = withItemId;
+            queryResult = newPage(0);
+        }
+
+        private QueryResult newPage(int offset) {
+            int total = pageSize == 0 ? 0 : ITEMS.size();
+            int end = Math.min(total, offset + pageSize);
+            ByteBuffer buffer = new ByteBuffer();
+            for (int i = offset; i < end; i++) {
+                byte[] item = ITEMS.get(i).getBytes(StandardCharsets.UTF_8);
+                if (withItemId) {
+                    buffer.putVarUInt32(i + 1).putVarUInt32(1);
+                }
+                buffer.putUInt32(item.length).writeBytes(item);
+            }
+            QueryResult result = new QueryResult();
+            result.setJson(true);
+            result.setWithItemId(withItemId);
+            result.setQCount(total);
+            result.setCount(end - offset);
+            result.setBuffer(buffer.rewind());
+            return result;
+        }
+
+        @Override
+        public QueryResult getQueryResult() {
+            return queryResult;
+        }
+
+        @Override
+        public void fetchResults(int offset, int limit) {
+            fetches++;
+            queryResult = newPage(offset);
+        }
+
+        @Override
+        public void closeResults() {
+            closed = true;
+        }
+
+    }
+
+}
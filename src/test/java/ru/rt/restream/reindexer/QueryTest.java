@@ -0,0 +1,130 @@
+/*
+ * Copyright 2020-present Restream
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ru.rt.restream.reindexer;
+
+import lombok.Data;
+import org.junit.jupiter.api.Test;
+import ru.rt.restream.reindexer.annotations.Reindex;
+import ru.rt.restream.reindexer.binding.QueryResult;
+import ru.rt.restream.reindexer.binding.cproto.cjson.PayloadType;
+import ru.rt.restream.reindexer.column.StringColumn;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.empty;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.lessThanOrEqualTo;
+import static ru.rt.restream.reindexer.Query.Condition.EQ;
+
+/**
+ * Tests for {@link Query}.
+ */
+class QueryTest {
+
+    private final StubBinding binding = new StubBinding();
+
+    private final Reindexer db = binding.newReindexer();
+
+    QueryTest() {
+        db.openNamespace("items", NamespaceOptions.defaultOptions(), TestItem.class);
+    }
+
+    @Test
+    void countWhenQueryHasLimitAndOffsetThenOnlyTotalCountRequested() {
+        Query<TestItem> query = db.query("items", TestItem.class).where("name", EQ, "first").offset(5).limit(10);
+        byte[] queryBytes = query.getBufferBytes();
+        binding.addResult(totalCountResult(12));
+
+        assertThat(query.count(), is(7L));
+        assertThat(binding.isLastAsJson(), is(true));
+        assertThat(binding.getClosedResults(), is(1));
+        assertThat(binding.getLastQuery(), is(selectBytes(db.query("items", TestItem.class).where("name", EQ, "first")
+                .offset(5).limit(10).reqTotal().limit(0))));
+        binding.addResult(totalCountResult(100));
+        assertThat(query.count(), is(10L));
+        assertThat(query.toString(), is("SELECT * FROM items WHERE name = 'first' LIMIT 10 OFFSET 5"));
+        assertThat(query.getBufferBytes(), is(queryBytes));
+        assertThat(query.getNamespaces(), is(empty()));
+    }
+
+    @Test
+    void existsWhenCalledThenOneItemRequestedAndQueryNotMutated() {
+        Query<TestItem> query = db.query("items", TestItem.class).where("name", EQ, "first");
+        QueryResult found = StubBinding.emptyResult();
+        found.setQCount(1);
+        binding.addResult(found);
+
+        assertThat(query.exists(), is(true));
+        assertThat(binding.isLastAsJson(), is(true));
+        assertThat(binding.getClosedResults(), is(1));
+        assertThat(binding.getLastQuery(), is(selectBytes(db.query("items", TestItem.class).where("name", EQ, "first").limit(1))));
+        assertThat(query.notExists(), is(true));
+        assertThat(selectBytes(query), is(selectBytes(db.query("items", TestItem.class).where("name", EQ, "first"))));
+    }
+
+    @Test
+    void executeColumnsWhenChunkedThenDictionaryBoundedByChunk() {
+        PayloadType payloadType = new PayloadType(0L, "items", 1L, 1, 0L, Arrays.asList("id", "name"),
+                Collections.emptyList());
+        List<TestItem> items = new ArrayList<>();
+        for (int i = 0; i < 100; i++) {
+            TestItem item = new TestItem();
+            item.setId(i);
+            item.setName("name-" + i);
+            items.add(item);
+        }
+        binding.addResult(StubBinding.itemsResult(payloadType, TestItem.class, items));
+        List<String> names = new ArrayList<>();
+
+        db.query("items", TestItem.class).executeColumns(8, columns -> {
+            StringColumn column = columns.getStringColumn("name");
+            assertThat(column.getDictionarySize(), lessThanOrEqualTo(8));
+            for (int row = 0; row < columns.size(); row++) {
+                names.add(column.getValue(column.getCode(row)));
+            }
+        }, "name");
+
+        assertThat(names.size(), is(100));
+        assertThat(names.get(99), is("name-99"));
+    }
+
+    private byte[] selectBytes(Query<TestItem> query) {
+        query.executeToJson();
+        return binding.getLastQuery();
+    }
+
+    private QueryResult totalCountResult(long totalCount) {
+        QueryResult queryResult = StubBinding.emptyResult();
+        queryResult.setTotalCount(totalCount);
+        return queryResult;
+    }
+
+    @Data
+    public static class TestItem {
+
+        @Reindex(name = "id", isPrimaryKey = true)
+        private Integer id;
+
+        @Reindex(name = "name")
+        private String name;
+
+    }
+
+}
@@ -0,0 +1,107 @@
+/*
+ * Copyright 2020-present Restream
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ru.rt.restream.reindexer;
+
+import org.junit.jupiter.api.Test;
+import ru.rt.restream.reindexer.binding.QueryResult;
+import ru.rt.restream.reindexer.binding.RequestContext;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.nullValue;
+
+/**
+ * Tests for {@link ResultReadAhead}.
+ */
+class ResultReadAheadTest {
+
+    private final RecordingRequestContext requestContext = new RecordingRequestContext();
+
+    @Test
+    void onReadWhenThresholdReachedThenPrefetchesUpToDepth() {
+        ResultReadAhead readAhead = ResultReadAhead.of(requestContext, 10, 2, 0.5f);
+        readAhead.onPage(0, 10);
+
+        readAhead.onRead(4, 100);
+        assertThat(requestContext.prefetchedOffsets, is(Collections.emptyList()));
+
+        readAhead.onRead(5, 100);
+        assertThat(requestContext.prefetchedOffsets, is(Arrays.asList(10, 20)));
+
+        readAhead.onRead(6, 100);
+        assertThat(requestContext.prefetchedOffsets, is(Arrays.asList(10, 20)));
+    }
+
+    @Test
+    void onReadWhenPrefetchedPageReceivedThenPrefetchesNextPage() {
+        ResultReadAhead readAhead = ResultReadAhead.of(requestContext, 10, 2, 0.5f);
+        readAhead.onPage(0, 10);
+        readAhead.onRead(5, 100);
+
+        readAhead.onPage(10, 20);
+        readAhead.onRead(15, 100);
+
+        assertThat(requestContext.prefetchedOffsets, is(Arrays.asList(10, 20, 30)));
+    }
+
+    @Test
+    void onReadWhenAllItemsRequestedThenStopsPrefetching() {
+        ResultReadAhead readAhead = ResultReadAhead.of(requestContext, 10, 5, 0f);
+        readAhead.onPage(0, 10);
+
+        readAhead.onRead(0, 25);
+
+        assertThat(requestContext.prefetchedOffsets, is(Arrays.asList(10, 20)));
+    }
+
+    @Test
+    void ofWhenDisabledThenNull() {
+        assertThat(ResultReadAhead.of(requestContext, 10, 0, 0.5f), nullValue());
+        assertThat(ResultReadAhead.of(requestContext, 0, 2, 0.5f), nullValue());
+        assertThat(ResultReadAhead.of(requestContext, Integer.MAX_VALUE, 2, 0.5f), nullValue());
+    }
+
+    private static final class RecordingRequestContext implements RequestContext {
+
+        private final List<Integer> prefetchedOffsets = new ArrayList<>();
+
+        @Override
+        public QueryResult getQueryResult() {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public void fetchResults(int offset, int limit) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public void prefetchResults(int offset, int limit) {
+            prefetchedOffsets.add(offset);
+        }
+
+        @Override
+        public void closeResults() {
+        }
+
+    }
+
+}
@@ -0,0 +1,170 @@
+/*
+ * Copyright 2020-present Restream
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ru.rt.restream.reindexer;
+
+import lombok.Data;
+import org.junit.jupiter.api.Test;
+import ru.rt.restream.reindexer.annotations.Reindex;
+import ru.rt.restream.reindexer.binding.QueryResult;
+import ru.rt.restream.reindexer.binding.cproto.cjson.PayloadType;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.Collections;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.nullValue;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static ru.rt.restream.reindexer.Query.Condition.EQ;
+import static ru.rt.restream.reindexer.Query.Condition.GT;
+
+/**
+ * Tests for {@link Scroll}.
+ */
+class ScrollTest {
+
+    private final PayloadType payloadType = new PayloadType(0L, "items", 1L, 1, 0L,
+            Arrays.asList("id", "name", "tags"), Collections.emptyList());
+
+    private final StubBinding binding = new StubBinding();
+
+    private final Reindexer db = binding.newReindexer();
+
+    ScrollTest() {
+        db.openNamespace("items", NamespaceOptions.defaultOptions(), TestItem.class);
+    }
+
+    @Test
+    void hasNextWhenFirstPageThenSortedAndLimitedQuerySent() {
+        Query<TestItem> query = db.query("items", TestItem.class).where("name", EQ, "first");
+        Scroll<TestItem> scroll = query.scroll("id", 2);
+
+        assertThat(scroll.hasNext(), is(false));
+        assertThat(scroll.hasNext(), is(false));
+        assertThat(binding.getQueries().size(), is(1));
+        assertThat(scroll.getCursor(), is(nullValue()));
+        assertThat(binding.getLastQuery(), is(selectBytes(db.query("items", TestItem.class).where("name", EQ, "first")
+                .sort("id", false).limit(2))));
+        assertThat(query.toString(), is("SELECT * FROM items WHERE name = 'first'"));
+    }
+
+    @Test
+    void hasNextWhenResumedFromCursorThenItemsAfterKeySelected() {
+        String cursor = encodeCursor("id\nL7");
+        Scroll<TestItem> scroll = db.query("items", TestItem.class).where("name", EQ, "first")
+                .scroll("id", 2, cursor);
+
+        assertThat(scroll.getCursor(), is(cursor));
+        assertThat(scroll.stream().count(), is(0L));
+        assertThat(binding.getLastQuery(), is(selectBytes(db.query("items", TestItem.class).where("name", EQ, "first")
+                .where("id", GT, 7L).sort("id", false).limit(2))));
+    }
+
+    @Test
+    void nextWhenFullPageThenCursorResumesAfterLastItem() {
+        binding.addResult(pageResult(1, 2)).addResult(pageResult(3));
+        Scroll<TestItem> scroll = db.query("items", TestItem.class).where("name", EQ, "first").scroll("id", 2);
+
+        assertThat(ids(scroll.next()), contains(1, 2));
+        String cursor = scroll.getCursor();
+        assertThat(cursor, is(encodeCursor("id\nL2")));
+
+        Scroll<TestItem> resumed = db.query("items", TestItem.class).where("name", EQ, "first")
+                .scroll("id", 2, cursor);
+        assertThat(ids(resumed.next()), contains(3));
+        assertThat(resumed.getCursor(), is(encodeCursor("id\nL3")));
+        assertThat(binding.getLastQuery(), is(selectBytes(db.query("items", TestItem.class).where("name", EQ, "first")
+                .where("id", GT, 2L).sort("id", false).limit(2))));
+        assertThat(resumed.hasNext(), is(false));
+        assertThat(binding.getQueries().size(), is(3));
+    }
+
+    @Test
+    void streamWhenSeveralPagesThenAllItemsReadUntilShortPage() {
+        binding.addResult(pageResult(1, 2)).addResult(pageResult(3, 4)).addResult(pageResult(5));
+        Scroll<TestItem> scroll = db.query("items", TestItem.class).scroll("id", 2);
+
+        List<Integer> ids = scroll.stream().map(TestItem::getId).collect(Collectors.toList());
+
+        assertThat(ids, contains(1, 2, 3, 4, 5));
+        assertThat(binding.getQueries().size(), is(3));
+        assertThat(scroll.getCursor(), is(encodeCursor("id\nL5")));
+    }
+
+    @Test
+    void hasNextWhenLastPageIsFullThenEmptyPageEndsScroll() {
+        binding.addResult(pageResult(1, 2)).addResult(pageResult());
+        Scroll<TestItem> scroll = db.query("items", TestItem.class).scroll("id", 2);
+
+        assertThat(scroll.stream().count(), is(2L));
+        assertThat(binding.getQueries().size(), is(2));
+        assertThat(scroll.getCursor(), is(encodeCursor("id\nL2")));
+    }
+
+    @Test
+    void scrollWhenInvalidCursorOrQueryThenException() {
+        String cursor = Base64.getUrlEncoder().encodeToString("name\nSfirst".getBytes(StandardCharsets.UTF_8));
+
+        assertThrows(IllegalArgumentException.class, () -> db.query("items", TestItem.class).scroll("id", 2, cursor));
+        assertThrows(IllegalArgumentException.class, () -> db.query("items", TestItem.class).scroll("tags", 2));
+        assertThrows(IllegalArgumentException.class, () -> db.query("items", TestItem.class).scroll("id", 0));
+        assertThrows(IllegalStateException.class, () -> db.query("items", TestItem.class).limit(10).scroll("id", 2));
+    }
+
+    private byte[] selectBytes(Query<TestItem> query) {
+        query.executeToJson();
+        return binding.getLastQuery();
+    }
+
+    private QueryResult pageResult(int... ids) {
+        List<TestItem> items = new ArrayList<>();
+        for (int id : ids) {
+            TestItem item = new TestItem();
+            item.setId(id);
+            item.setName("item" + id);
+            items.add(item);
+        }
+        return StubBinding.itemsResult(payloadType, TestItem.class, items);
+    }
+
+    private static List<Integer> ids(List<TestItem> items) {
+        return items.stream().map(TestItem::getId).collect(Collectors.toList());
+    }
+
+    private static String encodeCursor(String token) {
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(token.getBytes(StandardCharsets.UTF_8));
+    }
+
+    @Data
+    public static class TestItem {
+
+        @Reindex(name = "id", isPrimaryKey = true)
+        private Integer id;
+
+        @Reindex(name = "name")
+        private String name;
+
+        private TestItem tags;
+
+    }
+
+}
@@ -0,0 +1,123 @@
+/*
+ * Copyright 2020-present Restream
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ru.rt.restream.reindexer;
+
+import io.micrometer.observation.Observation;
+import io.micrometer.observation.ObservationHandler;
+import io.micrometer.observation.ObservationRegistry;
+import lombok.Data;
+import org.junit.jupiter.api.Test;
+import ru.rt.restream.reindexer.annotations.Reindex;
+import ru.rt.restream.reindexer.binding.QueryResult;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.empty;
+import static org.hamcrest.Matchers.hasSize;
+import static org.hamcrest.Matchers.is;
+import static ru.rt.restream.reindexer.Query.Condition.EQ;
+
+/**
+ * Tests for {@link SlowQueryLog}.
+ */
+class SlowQueryLogTest {
+
+    private final List<Observation.Context> events = new ArrayList<>();
+
+    private final ObservationRegistry registry = ObservationRegistry.create();
+
+    private final StubBinding binding = new StubBinding();
+
+    SlowQueryLogTest() {
+        registry.observationConfig().observationHandler(new ObservationHandler<Observation.Context>() {
+            @Override
+            public void onEvent(Observation.Event event, Observation.Context context) {
+                events.add(context);
+            }
+
+            @Override
+            public boolean supportsContext(Observation.Context context) {
+                return true;
+            }
+        });
+    }
+
+    @Test
+    void recordWhenQueryIsSlowThenEventEmitted() {
+        Reindexer db = reindexer(new SlowQueryLog(Duration.ZERO, 1, registry));
+
+        db.query("items", TestItem.class).where("id", EQ, 1).delete();
+
+        assertThat(events, hasSize(1));
+        Observation.Context context = events.get(0);
+        assertThat(context.getName(), is("reindexer.query"));
+        assertThat(context.getLowCardinalityKeyValue("db.collection.name").getValue(), is("items"));
+        assertThat(context.getLowCardinalityKeyValue("db.operation.name").getValue(), is("DELETE"));
+        assertThat(context.getHighCardinalityKeyValue("db.query.text").getValue(),
+                is("DELETE FROM items WHERE id = 1"));
+    }
+
+    @Test
+    void recordWhenQueryIsFastOrNotSampledThenNothingEmitted() {
+        reindexer(new SlowQueryLog(Duration.ofHours(1), 1, registry))
+                .query("items", TestItem.class).set("name", "first").update();
+        reindexer(new SlowQueryLog(Duration.ZERO, 0, registry))
+                .query("items", TestItem.class).set("name", "first").update();
+        reindexer(SlowQueryLog.DISABLED)
+                .query("items", TestItem.class).set("name", "first").update();
+
+        assertThat(events, is(empty()));
+    }
+
+    @Test
+    void recordWhenResultHasExplainThenPlanEmitted() {
+        SlowQueryLog slowQueryLog = new SlowQueryLog(null, 1, registry);
+        Query<TestItem> query = reindexer(slowQueryLog).query("items", TestItem.class).explain();
+        QueryResult result = new QueryResult();
+        result.setExplainData(("{\"total_us\":42,\"sort_index\":\"-\","
+                + "\"selectors\":[{\"field\":\"name\",\"method\":\"scan\"}]}").getBytes(StandardCharsets.UTF_8));
+
+        slowQueryLog.record(query, QueryLogBuilder.QueryType.SELECT, slowQueryLog.start(), result);
+
+        assertThat(events, hasSize(1));
+        Observation.Context context = events.get(0);
+        assertThat(context.getHighCardinalityKeyValue("db.query.text").getValue(), is("EXPLAIN SELECT * FROM items"));
+        assertThat(context.getHighCardinalityKeyValue("db.reindexer.explain.total_us").getValue(), is("42"));
+        assertThat(context.getLowCardinalityKeyValue("db.reindexer.explain.scan").getValue(), is("true"));
+    }
+
+    private Reindexer reindexer(SlowQueryLog slowQueryLog) {
+        Reindexer db = binding.newReindexer(slowQueryLog);
+        db.openNamespace("items", NamespaceOptions.defaultOptions(), TestItem.class);
+        return db;
+    }
+
+    @Data
+    public static class TestItem {
+
+        @Reindex(name = "id", isPrimaryKey = true)
+        private Integer id;
+
+        @Reindex(name = "name")
+        private String name;
+
+    }
+
+}
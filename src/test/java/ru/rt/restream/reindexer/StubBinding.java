@@ -0,0 +1,191 @@
+/*
+ * Copyright 2020-present Restream
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ru.rt.restream.reindexer;
+
+import ru.rt.restream.reindexer.binding.Binding;
+import ru.rt.restream.reindexer.binding.Consts;
+import ru.rt.restream.reindexer.binding.QueryResult;
+import ru.rt.restream.reindexer.binding.RequestContext;
+import ru.rt.restream.reindexer.binding.cproto.ByteBuffer;
+import ru.rt.restream.reindexer.binding.cproto.ItemCodec;
+import ru.rt.restream.reindexer.binding.cproto.cjson.PayloadType;
+
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.List;
+
+/**
+ * A {@link Binding} for the tests without a server. It records the serialized select, update and delete queries and
+ * answers the select queries with the added query results, or with an empty result.
+ */
+class StubBinding {
+
+    private final Binding binding = (Binding) Proxy.newProxyInstance(StubBinding.class.getClassLoader(),
+            new Class<?>[]{Binding.class}, (proxy, method, args) -> invoke(method, args));
+
+    private final Deque<QueryResult> results = new ArrayDeque<>();
+
+    private final List<byte[]> queries = new ArrayList<>();
+
+    private int queryFormatVersion = Consts.QUERY_FORMAT_V2;
+
+    private boolean lastAsJson;
+
+    private int closedResults;
+
+    /**
+     * Creates a connector, that uses this binding.
+     *
+     * @return the connector
+     */
+    Reindexer newReindexer() {
+        return new Reindexer(binding);
+    }
+
+    /**
+     * Creates a connector, that uses this binding and the slow query log.
+     *
+     * @param slowQueryLog the slow query log
+     * @return the connector
+     */
+    Reindexer newReindexer(SlowQueryLog slowQueryLog) {
+        return new Reindexer(binding, slowQueryLog);
+    }
+
+    void setQueryFormatVersion(int queryFormatVersion) {
+        this.queryFormatVersion = queryFormatVersion;
+    }
+
+    /**
+     * Adds the result of the next select query.
+     *
+     * @param queryResult the query result
+     * @return this binding
+     */
+    StubBinding addResult(QueryResult queryResult) {
+        results.add(queryResult);
+        return this;
+    }
+
+    /**
+     * Returns the serialized queries in the order of their execution.
+     *
+     * @return the serialized queries
+     */
+    List<byte[]> getQueries() {
+        return queries;
+    }
+
+    /**
+     * Returns the last serialized query.
+     *
+     * @return the last serialized query, null if no query is executed
+     */
+    byte[] getLastQuery() {
+        return queries.isEmpty() ? null : queries.get(queries.size() - 1);
+    }
+
+    /**
+     * Returns an indication that the last select query is requested in json format.
+     *
+     * @return true, if the last select query result is json
+     */
+    boolean isLastAsJson() {
+        return lastAsJson;
+    }
+
+    /**
+     * Returns the number of the closed select query results.
+     *
+     * @return the number of the closed results
+     */
+    int getClosedResults() {
+        return closedResults;
+    }
+
+    /**
+     * Creates a query result without items.
+     *
+     * @return the empty query result
+     */
+    static QueryResult emptyResult() {
+        QueryResult queryResult = new QueryResult();
+        queryResult.setPayloadTypes(Collections.emptyList());
+        return queryResult;
+    }
+
+    /**
+     * Creates a query result with the items in cjson format of the payload type. The payload type namespace id
+     * must be the id of the namespace in the query, 0 for the main namespace.
+     *
+     * @param <T>         the item type
+     * @param payloadType the payload type of the items
+     * @param itemClass   the item class
+     * @param items       the items
+     * @return the query result
+     */
+    static <T> QueryResult itemsResult(PayloadType payloadType, Class<T> itemClass, List<T> items) {
+        ItemCodec<T> codec = ItemCodec.getInstance(itemClass, payloadType);
+        ByteBuffer page = new ByteBuffer();
+        for (T item : items) {
+            ByteBuffer itemBuffer = new ByteBuffer();
+            codec.writeItem(itemBuffer, item);
+            byte[] data = itemBuffer.bytes();
+            page.putUInt32(data.length).writeBytes(data);
+        }
+        QueryResult queryResult = new QueryResult();
+        queryResult.setPayloadTypes(Collections.singletonList(payloadType));
+        queryResult.setCount(items.size());
+        queryResult.setQCount(items.size());
+        queryResult.setBuffer(page.rewind());
+        return queryResult;
+    }
+
+    private Object invoke(Method method, Object[] args) {
+        switch (method.getName()) {
+            case "queryFormatVersion":
+                return queryFormatVersion;
+            case "selectQuery":
+                queries.add((byte[]) args[0]);
+                lastAsJson = (boolean) args[3];
+                return newRequestContext(results.isEmpty() ? emptyResult() : results.poll());
+            case "deleteQuery":
+            case "updateQuery":
+                queries.add((byte[]) args[0]);
+                return null;
+            default:
+                return null;
+        }
+    }
+
+    private RequestContext newRequestContext(QueryResult queryResult) {
+        return (RequestContext) Proxy.newProxyInstance(StubBinding.class.getClassLoader(),
+                new Class<?>[]{RequestContext.class}, (proxy, method, args) -> {
+                    if ("getQueryResult".equals(method.getName())) {
+                        return queryResult;
+                    }
+                    if ("closeResults".equals(method.getName())) {
+                        closedResults++;
+                    }
+                    return null;
+                });
+    }
+
+}
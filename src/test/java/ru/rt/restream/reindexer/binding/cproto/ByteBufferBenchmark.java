@@ -0,0 +1,163 @@
+/*
+ * Copyright 2020-present Restream
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ru.rt.restream.reindexer.binding.cproto;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures time and allocations of encoding and decoding the {@link ByteBuffer} primitives: varints, 32-bit
+ * integers, doubles and strings. Each operation handles {@link #COUNT} values.
+ * Run {@link #main(String[])} and see gc.alloc.rate.norm for the allocated bytes per operation.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ByteBufferBenchmark {
+
+    private static final int COUNT = 100;
+
+    private final ByteBuffer buffer = new ByteBuffer(RpcConnection.BUFFER_CAPACITY);
+
+    private final long[] longs = new long[COUNT];
+
+    private final double[] doubles = new double[COUNT];
+
+    private final String[] strings = new String[COUNT];
+
+    private ByteBuffer varInts;
+
+    private ByteBuffer uInt32s;
+
+    private ByteBuffer encodedDoubles;
+
+    private ByteBuffer encodedStrings;
+
+    @Setup
+    public void setUp() {
+        Random random = new Random(0);
+        for (int i = 0; i < COUNT; i++) {
+            longs[i] = random.nextInt() & 0xFFFF_FFFFL;
+            doubles[i] = random.nextDouble();
+            strings[i] = "item-name-" + random.nextInt(1_000_000);
+        }
+        varInts = new ByteBuffer();
+        uInt32s = new ByteBuffer();
+        encodedDoubles = new ByteBuffer();
+        encodedStrings = new ByteBuffer();
+        for (int i = 0; i < COUNT; i++) {
+            varInts.putVarInt64(longs[i]);
+            uInt32s.putUInt32(longs[i]);
+            encodedDoubles.putDouble(doubles[i]);
+            encodedStrings.putVString(strings[i]);
+        }
+    }
+
+    @Benchmark
+    public ByteBuffer putVarInt() {
+        buffer.truncate(0);
+        for (long value : longs) {
+            buffer.putVarInt64(value);
+        }
+        return buffer;
+    }
+
+    @Benchmark
+    public ByteBuffer putUInt32() {
+        buffer.truncate(0);
+        for (long value : longs) {
+            buffer.putUInt32(value);
+        }
+        return buffer;
+    }
+
+    @Benchmark
+    public ByteBuffer putDouble() {
+        buffer.truncate(0);
+        for (double value : doubles) {
+            buffer.putDouble(value);
+        }
+        return buffer;
+    }
+
+    @Benchmark
+    public ByteBuffer putVString() {
+        buffer.truncate(0);
+        for (String value : strings) {
+            buffer.putVString(value);
+        }
+        return buffer;
+    }
+
+    @Benchmark
+    public void getVarInt(Blackhole blackhole) {
+        varInts.rewind();
+        for (int i = 0; i < COUNT; i++) {
+            blackhole.consume(varInts.getVarInt());
+        }
+    }
+
+    @Benchmark
+    public void getUInt32(Blackhole blackhole) {
+        uInt32s.rewind();
+        for (int i = 0; i < COUNT; i++) {
+            blackhole.consume(uInt32s.getUInt32());
+        }
+    }
+
+    @Benchmark
+    public void getDouble(Blackhole blackhole) {
+        encodedDoubles.rewind();
+        for (int i = 0; i < COUNT; i++) {
+            blackhole.consume(encodedDoubles.getDouble());
+        }
+    }
+
+    @Benchmark
+    public void getVString(Blackhole blackhole) {
+        encodedStrings.rewind();
+        for (int i = 0; i < COUNT; i++) {
+            blackhole.consume(encodedStrings.getVString());
+        }
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(ByteBufferBenchmark.class.getSimpleName())
+                .addProfiler(GCProfiler.class)
+                .build()).run();
+    }
+
+}
@@ -0,0 +1,214 @@
+/*
+ * Copyright 2020-present Restream
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ru.rt.restream.reindexer.binding.cproto;
+
+import org.junit.jupiter.api.Test;
+import ru.rt.restream.reindexer.binding.Consts;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+/**
+ * Tests for {@link ByteBuffer}.
+ */
+class ByteBufferTest {
+
+    private static final long[] UNSIGNED_VALUES = {
+            0, 1, 127, 128, 255, 16_383, 16_384, Integer.MAX_VALUE, 1L << 31, 0xFFFF_FFFFL, 1L << 32, Long.MAX_VALUE
+    };
+
+    private static final long[] SIGNED_VALUES = {
+            0, 1, -1, 63, -64, 64, -65, 127, 128, -128, Integer.MAX_VALUE, Integer.MIN_VALUE, 0xFFFF_FFFFL,
+            -0xFFFF_FFFFL, Long.MAX_VALUE, Long.MIN_VALUE
+    };
+
+    @Test
+    void putVarUInt32WhenValueThenReadBack() {
+        ByteBuffer buffer = new ByteBuffer(4);
+        for (long value : UNSIGNED_VALUES) {
+            buffer.putVarUInt32(value);
+        }
+        buffer.rewind();
+
+        for (long value : UNSIGNED_VALUES) {
+            assertThat(buffer.getVarUInt(), is(value));
+        }
+        assertThat(buffer.getPosition(), is(buffer.length()));
+    }
+
+    @Test
+    void putVarUInt32WhenBoundaryThenEncodedLength() {
+        assertThat(new ByteBuffer().putVarUInt32(0).length(), is(1));
+        assertThat(new ByteBuffer().putVarUInt32(127).length(), is(1));
+        assertThat(new ByteBuffer().putVarUInt32(128).length(), is(2));
+        assertThat(new ByteBuffer().putVarUInt32(Integer.MAX_VALUE).length(), is(5));
+        assertThat(new ByteBuffer().putVarUInt32(0xFFFF_FFFFL).length(), is(5));
+        assertThat(new ByteBuffer().putVarUInt32(Long.MAX_VALUE).length(), is(9));
+    }
+
+    @Test
+    void putVarUInt32WhenNegativeThenException() {
+        assertThrows(IllegalArgumentException.class, () -> new ByteBuffer().putVarUInt32(-1));
+    }
+
+    @Test
+    void putVarInt64WhenValueThenReadBack() {
+        ByteBuffer buffer = new ByteBuffer(4);
+        for (long value : SIGNED_VALUES) {
+            buffer.putVarInt64(value);
+        }
+        buffer.rewind();
+
+        for (long value : SIGNED_VALUES) {
+            assertThat(buffer.getVarInt(), is(value));
+        }
+        assertThat(buffer.getPosition(), is(buffer.length()));
+    }
+
+    @Test
+    void putVarInt64WhenSmallNegativeThenOneByte() {
+        ByteBuffer buffer = new ByteBuffer().putVarInt64(-64);
+
+        assertThat(buffer.length(), is(1));
+        assertThat(buffer.rewind().getVarUInt(), is(127L));
+    }
+
+    @Test
+    void putVarInt32WhenNegativeThenReadBackAsUnsigned() {
+        ByteBuffer buffer = new ByteBuffer().putVarInt32(-1).putVarInt32(Integer.MIN_VALUE).putVarInt32(128).rewind();
+
+        assertThat(buffer.getVarUInt(), is(0xFFFF_FFFFL));
+        assertThat(buffer.getVarUInt(), is(1L << 31));
+        assertThat(buffer.getVarUInt(), is(128L));
+    }
+
+    @Test
+    void putUInt32WhenAboveIntMaxThenReadBack() {
+        ByteBuffer buffer = new ByteBuffer(2)
+                .putUInt32(0)
+                .putUInt32(Integer.MAX_VALUE)
+                .putUInt32(1L << 31)
+                .putUInt32(0xFFFF_FFFFL)
+                .rewind();
+
+        assertThat(buffer.getUInt32(), is(0L));
+        assertThat(buffer.getUInt32(), is((long) Integer.MAX_VALUE));
+        assertThat(buffer.getUInt32(), is(1L << 31));
+        assertThat(buffer.getUInt32(), is(0xFFFF_FFFFL));
+        assertThat(buffer.getPosition(), is(buffer.length()));
+    }
+
+    @Test
+    void putUInt32WhenPositionThenValueReplacedInPlace() {
+        ByteBuffer buffer = new ByteBuffer()
+                .putUInt8(7)
+                .putUInt32(0)
+                .putUInt8(9);
+
+        buffer.putUInt32(0xFFFF_FFFEL, 1);
+
+        assertThat(buffer.length(), is(6));
+        assertThat(buffer.getPosition(), is(6));
+        buffer.rewind();
+        assertThat(buffer.getUInt8(), is(7));
+        assertThat(buffer.getUInt32(), is(0xFFFF_FFFEL));
+        assertThat(buffer.getUInt8(), is(9));
+    }
+
+    @Test
+    void putUInt32WhenOutOfRangeThenException() {
+        ByteBuffer buffer = new ByteBuffer().putUInt32(0);
+
+        assertThrows(IllegalArgumentException.class, () -> buffer.putUInt32(-1));
+        assertThrows(IllegalArgumentException.class, () -> buffer.putUInt32(1L << 32));
+        assertThrows(IllegalArgumentException.class, () -> buffer.putUInt32(1L << 32, 0));
+    }
+
+    @Test
+    void resetWhenShorterWritesThenStaleBytesNotReturned() {
+        ByteBuffer buffer = new ByteBuffer(4)
+                .putVString("a long value, that is going to be overwritten")
+                .putUInt32(0xFFFF_FFFFL);
+
+        buffer.reset();
+        buffer.putVString("short").putVarUInt32(300);
+
+        assertThat(buffer.bytes(), is(new ByteBuffer().putVString("short").putVarUInt32(300).bytes()));
+        buffer.rewind();
+        assertThat(buffer.getVString(), is("short"));
+        assertThat(buffer.getVarUInt(), is(300L));
+        assertThat(buffer.getPosition(), is(buffer.length()));
+    }
+
+    @Test
+    void truncateStartWhenLengthThenRemainingBytesShifted() {
+        ByteBuffer buffer = new ByteBuffer()
+                .putUInt32(0xFFFF_FFFFL)
+                .putVString("tail")
+                .putVarInt64(-300);
+
+        buffer.truncateStart(Integer.BYTES);
+
+        assertThat(buffer.length(), is(new ByteBuffer().putVString("tail").putVarInt64(-300).length()));
+        assertThat(buffer.getPosition(), is(buffer.length()));
+        buffer.rewind();
+        assertThat(buffer.getVString(), is("tail"));
+        assertThat(buffer.getVarInt(), is(-300L));
+    }
+
+    @Test
+    void putFloatVectorWhenVectorThenReadBack() {
+        float[] vector = {0f, -0f, 1.5f, -2.25f, Float.MIN_VALUE, Float.MAX_VALUE, Float.NaN,
+                Float.NEGATIVE_INFINITY};
+        ByteBuffer buffer = new ByteBuffer(4);
+        buffer.putFloatVector(vector);
+        buffer.putFloatVector(new float[0]);
+        buffer.rewind();
+
+        float[] actual = new float[(int) (buffer.getVarUInt() >> 1)];
+        buffer.getFloats(actual);
+        assertThat(actual, is(vector));
+        assertThat(buffer.getVarUInt(), is(0L));
+        assertThat(buffer.getPosition(), is(buffer.length()));
+    }
+
+    @Test
+    void putValueWhenFloatThenEncodedAsDouble() {
+        ByteBuffer buffer = new ByteBuffer();
+        buffer.putValue(1.5f);
+
+        ByteBuffer expected = new ByteBuffer().putVarUInt32(Consts.VALUE_DOUBLE);
+        expected.putDouble(1.5);
+        assertThat(buffer.bytes(), is(expected.bytes()));
+
+        buffer.rewind();
+        assertThat(buffer.getVarUInt(), is((long) Consts.VALUE_DOUBLE));
+        assertThat(buffer.getDouble(), is(1.5));
+        assertThat(buffer.getPosition(), is(buffer.length()));
+    }
+
+    @Test
+    void putValueWhenFloatThenSameBytesAsDouble() {
+        ByteBuffer floatBuffer = new ByteBuffer();
+        floatBuffer.putValue(0.1f);
+        ByteBuffer doubleBuffer = new ByteBuffer();
+        doubleBuffer.putValue((double) 0.1f);
+
+        assertThat(floatBuffer.bytes(), is(doubleBuffer.bytes()));
+    }
+
+}
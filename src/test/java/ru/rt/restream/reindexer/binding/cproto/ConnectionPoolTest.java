@@ -0,0 +1,62 @@
+/*
+ * Copyright 2020-present Restream
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ru.rt.restream.reindexer.binding.cproto;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.empty;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+/**
+ * Tests for {@link ConnectionPool}.
+ */
+class ConnectionPoolTest {
+
+    @Test
+    void constructorWhenDataSourceFailsThenPoolThreadsStopped() throws InterruptedException {
+        Set<Thread> threadsBefore = getPoolThreads();
+        DataSourceConfiguration configuration = DataSourceConfiguration.builder()
+                .url("cproto://localhost:6534/test")
+                .transport(Transport.NIO)
+                .ioThreads(2)
+                .build();
+
+        assertThrows(IllegalArgumentException.class,
+                () -> new ConnectionPool(c -> null, configuration, 1, Duration.ofSeconds(1)));
+
+        Set<Thread> threads = getPoolThreads();
+        threads.removeAll(threadsBefore);
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (!threads.isEmpty() && System.nanoTime() < deadline) {
+            threads.removeIf(thread -> !thread.isAlive());
+            TimeUnit.MILLISECONDS.sleep(10);
+        }
+        assertThat(threads, empty());
+    }
+
+    private static Set<Thread> getPoolThreads() {
+        return Thread.getAllStackTraces().keySet().stream()
+                .filter(thread -> thread.getName().startsWith(ConnectionPool.ConnectionThreadFactory.POOL_NAME_PREFIX))
+                .collect(Collectors.toSet());
+    }
+
+}
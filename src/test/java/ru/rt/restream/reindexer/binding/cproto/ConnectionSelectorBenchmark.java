@@ -0,0 +1,147 @@
+/*
+ * Copyright 2020-present Restream
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ru.rt.restream.reindexer.binding.cproto;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import ru.rt.restream.reindexer.ReindexerResponse;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Measures the latency distribution of requests with the {@link ConnectionSelectorStrategy} strategies,
+ * when a few requests take much longer than the others, e.g. selects of large pages.
+ * Each connection serves its requests one by one, like a connection reading its responses, so the requests
+ * sent after a large one wait until it is done. Run {@link #main(String[])} and compare p0.99 of the strategies.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Threads(16)
+@Fork(1)
+public class ConnectionSelectorBenchmark {
+
+    private static final int POOL_SIZE = 4;
+
+    private static final long SMALL_REQUEST_NANOS = TimeUnit.MICROSECONDS.toNanos(50);
+
+    private static final long LARGE_REQUEST_NANOS = TimeUnit.MILLISECONDS.toNanos(5);
+
+    private static final double LARGE_REQUEST_RATIO = 0.02;
+
+    @Param({"ROUND_ROBIN", "LEAST_IN_FLIGHT", "POWER_OF_TWO_CHOICES"})
+    private ConnectionSelectorStrategy strategy;
+
+    private final AtomicInteger next = new AtomicInteger();
+
+    private List<Connection> connections;
+
+    @Setup
+    public void setUp() {
+        connections = new ArrayList<>();
+        for (int i = 0; i < POOL_SIZE; i++) {
+            connections.add(new SimulatedConnection());
+        }
+    }
+
+    @TearDown
+    public void tearDown() {
+        connections.forEach(Connection::close);
+    }
+
+    @Benchmark
+    public ReindexerResponse mixedRequests() {
+        long serviceNanos = ThreadLocalRandom.current().nextDouble() < LARGE_REQUEST_RATIO
+                ? LARGE_REQUEST_NANOS : SMALL_REQUEST_NANOS;
+        Connection connection = connections.get(strategy.select(connections, next.getAndIncrement()));
+        return connection.rpcCall(0, serviceNanos);
+    }
+
+    /**
+     * A connection that serves the requests in order, taking the given time for every request.
+     */
+    private static final class SimulatedConnection implements Connection {
+
+        private static final ReindexerResponse OK = new ReindexerResponse(0, null, new Object[0]);
+
+        private final ExecutorService server = Executors.newSingleThreadExecutor();
+
+        private final AtomicInteger inFlightRequests = new AtomicInteger();
+
+        @Override
+        public ReindexerResponse rpcCall(int command, Object... args) {
+            return rpcCallAsync(command, args).join();
+        }
+
+        @Override
+        public CompletableFuture<ReindexerResponse> rpcCallAsync(int command, Object... args) {
+            long serviceNanos = (Long) args[0];
+            inFlightRequests.incrementAndGet();
+            return CompletableFuture.supplyAsync(() -> {
+                LockSupport.parkNanos(serviceNanos);
+                inFlightRequests.decrementAndGet();
+                return OK;
+            }, server);
+        }
+
+        @Override
+        public boolean hasError() {
+            return false;
+        }
+
+        @Override
+        public int getInFlightRequests() {
+            return inFlightRequests.get();
+        }
+
+        @Override
+        public void close() {
+            server.shutdownNow();
+        }
+
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(ConnectionSelectorBenchmark.class.getSimpleName())
+                .build()).run();
+    }
+
+}
@@ -0,0 +1,118 @@
+/*
+ * Copyright 2020-present Restream
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ru.rt.restream.reindexer.binding.cproto;
+
+import org.junit.jupiter.api.Test;
+import ru.rt.restream.reindexer.ReindexerResponse;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.not;
+
+/**
+ * Tests for {@link ConnectionSelectorStrategy}.
+ */
+class ConnectionSelectorStrategyTest {
+
+    @Test
+    void roundRobinSelectsConnectionsCyclically() {
+        List<Connection> connections = connections(5, 0, 0);
+
+        assertThat(ConnectionSelectorStrategy.ROUND_ROBIN.select(connections, 0), is(0));
+        assertThat(ConnectionSelectorStrategy.ROUND_ROBIN.select(connections, 1), is(1));
+        assertThat(ConnectionSelectorStrategy.ROUND_ROBIN.select(connections, 3), is(0));
+        assertThat(ConnectionSelectorStrategy.ROUND_ROBIN.select(connections, Integer.MIN_VALUE), is(1));
+    }
+
+    @Test
+    void leastInFlightSelectsLeastLoadedConnection() {
+        List<Connection> connections = connections(3, 1, 2);
+
+        for (int sequence = 0; sequence < 3; sequence++) {
+            assertThat(ConnectionSelectorStrategy.LEAST_IN_FLIGHT.select(connections, sequence), is(1));
+        }
+    }
+
+    @Test
+    void leastInFlightWhenEquallyLoadedThenSelectsCyclically() {
+        List<Connection> connections = connections(2, 2, 2);
+
+        assertThat(ConnectionSelectorStrategy.LEAST_IN_FLIGHT.select(connections, 0), is(0));
+        assertThat(ConnectionSelectorStrategy.LEAST_IN_FLIGHT.select(connections, 1), is(1));
+        assertThat(ConnectionSelectorStrategy.LEAST_IN_FLIGHT.select(connections, 2), is(2));
+    }
+
+    @Test
+    void powerOfTwoChoicesNeverSelectsMostLoadedConnection() {
+        List<Connection> connections = connections(0, 100, 0, 0);
+
+        for (int i = 0; i < 1000; i++) {
+            assertThat(ConnectionSelectorStrategy.POWER_OF_TWO_CHOICES.select(connections, i), not(1));
+        }
+    }
+
+    @Test
+    void powerOfTwoChoicesWhenSingleConnectionThenSelectsIt() {
+        assertThat(ConnectionSelectorStrategy.POWER_OF_TWO_CHOICES.select(connections(7), 42), is(0));
+    }
+
+    private static List<Connection> connections(int... inFlightRequests) {
+        List<Connection> connections = new ArrayList<>();
+        for (int inFlight : inFlightRequests) {
+            connections.add(new StubConnection(inFlight));
+        }
+        return connections;
+    }
+
+    private static final class StubConnection implements Connection {
+
+        private final int inFlightRequests;
+
+        private StubConnection(int inFlightRequests) {
+            this.inFlightRequests = inFlightRequests;
+        }
+
+        @Override
+        public ReindexerResponse rpcCall(int command, Object... args) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public CompletableFuture<ReindexerResponse> rpcCallAsync(int command, Object... args) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public boolean hasError() {
+            return false;
+        }
+
+        @Override
+        public int getInFlightRequests() {
+            return inFlightRequests;
+        }
+
+        @Override
+        public void close() {
+        }
+
+    }
+
+}
@@ -0,0 +1,78 @@
+/*
+ * Copyright 2020-present Restream
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ru.rt.restream.reindexer.binding.cproto;
+
+import org.junit.jupiter.api.Test;
+import ru.rt.restream.reindexer.binding.Binding;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.lessThan;
+
+/**
+ * Tests for {@link FrameCompressor}.
+ */
+class FrameCompressorTest {
+
+    private final CompressionStats stats = new CompressionStats();
+
+    private final FrameCompressor compressor = new FrameCompressor(1024, stats);
+
+    @Test
+    void compressWhenLargeFrameThenCompressed() {
+        ByteBuffer buffer = new ByteBuffer();
+        RpcConnection.encode(buffer, Binding.PING, 1);
+        int frameStart = buffer.length();
+        RpcConnection.encode(buffer, Binding.MODIFY_ITEM, 2, "items", new byte[4096]);
+        byte[] body = bodyOf(buffer, frameStart);
+
+        compressor.compress(buffer, frameStart);
+
+        ByteBuffer frame = new ByteBuffer(buffer.bytes()).rewind();
+        frame.skip(frameStart);
+        RpcConnection.FrameHeader header = RpcConnection.readHeader(frame);
+        assertThat(header.compressed, is(true));
+        assertThat(header.seqNum, is(2));
+        assertThat(header.size, lessThan(body.length));
+        assertThat(header.size, is(buffer.length() - frameStart - RpcConnection.CPROTO_HDR_LEN));
+        assertThat(compressor.uncompress(frame.getBytes(header.size)), is(body));
+        assertThat(stats.getUncompressedBytesSent(), is((long) body.length));
+        assertThat(stats.getCompressedBytesSent(), is((long) header.size));
+        assertThat(stats.getUncompressedBytesReceived(), is((long) body.length));
+    }
+
+    @Test
+    void compressWhenSmallFrameThenStoredAsLiteral() {
+        ByteBuffer buffer = new ByteBuffer();
+        RpcConnection.encode(buffer, Binding.PING, 1);
+        byte[] body = bodyOf(buffer, 0);
+
+        compressor.compress(buffer, 0);
+
+        ByteBuffer frame = new ByteBuffer(buffer.bytes()).rewind();
+        RpcConnection.FrameHeader header = RpcConnection.readHeader(frame);
+        assertThat(header.compressed, is(true));
+        byte[] compressed = frame.getBytes(header.size);
+        assertThat(Snappy.uncompress(compressed, 0, compressed.length), is(body));
+    }
+
+    private static byte[] bodyOf(ByteBuffer buffer, int frameStart) {
+        ByteBuffer frame = new ByteBuffer(buffer.bytes()).rewind();
+        frame.skip(frameStart + RpcConnection.CPROTO_HDR_LEN);
+        return frame.getBytes();
+    }
+
+}
@@ -0,0 +1,137 @@
+/*
+ * Copyright 2020-present Restream
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ru.rt.restream.reindexer.binding.cproto;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import ru.rt.restream.reindexer.binding.Binding;
+import ru.rt.restream.reindexer.binding.Consts;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures time and allocations per request of encoding cproto frames into the outgoing buffer.
+ * Compares in place encoding with encoding through intermediate arrays, that was used before.
+ * Run {@link #main(String[])} and see gc.alloc.rate.norm for the allocated bytes per request.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class FrameEncodingBenchmark {
+
+    private static final int MODE_UPSERT = 2;
+
+    @Param({"MODIFY_ITEM", "SELECT"})
+    private String command;
+
+    private final ByteBuffer buffer = new ByteBuffer(RpcConnection.BUFFER_CAPACITY);
+
+    private int commandCode;
+
+    private Object[] args;
+
+    @Setup
+    public void setUp() {
+        Random random = new Random(0);
+        byte[] data = new byte[200];
+        random.nextBytes(data);
+        if ("MODIFY_ITEM".equals(command)) {
+            commandCode = Binding.MODIFY_ITEM;
+            args = new Object[]{"items", Consts.FORMAT_C_JSON, data, MODE_UPSERT, new byte[0], 42, 0};
+        } else {
+            commandCode = Binding.SELECT;
+            args = new Object[]{data, Consts.RESULTS_C_JSON | Consts.RESULTS_WITH_PAYLOAD_TYPES, 100,
+                    new long[]{random.nextInt(), random.nextInt(), random.nextInt()}};
+        }
+    }
+
+    @Benchmark
+    public ByteBuffer inPlace() {
+        buffer.truncate(0);
+        RpcConnection.encode(buffer, commandCode, 1, args);
+        return buffer;
+    }
+
+    @Benchmark
+    public ByteBuffer intermediateArrays() {
+        buffer.truncate(0);
+        buffer.writeBytes(encode(commandCode, 1, args));
+        return buffer;
+    }
+
+    private static byte[] encode(int command, int seq, Object... args) {
+        byte[] body = encodeArgs(args);
+        byte[] header = new ByteBuffer()
+                .putUInt32(RpcConnection.CPROTO_MAGIC)
+                .putUInt16(RpcConnection.CPROTO_VERSION)
+                .putUInt16(command)
+                .putUInt32(body.length)
+                .putUInt32(seq)
+                .bytes();
+        byte[] bytes = new byte[header.length + body.length];
+        System.arraycopy(header, 0, bytes, 0, header.length);
+        System.arraycopy(body, 0, bytes, header.length, body.length);
+        return bytes;
+    }
+
+    private static byte[] encodeArgs(Object[] args) {
+        ByteBuffer buffer = new ByteBuffer();
+        buffer.putVarUInt32(args.length);
+        for (Object arg : args) {
+            if (arg instanceof byte[]) {
+                buffer.putVarUInt32(Consts.VALUE_STRING)
+                        .putVBytes(((byte[]) arg));
+            } else if (arg instanceof long[]) {
+                long[] array = (long[]) arg;
+                buffer.putVarUInt32(Consts.VALUE_STRING);
+                ByteBuffer arrayBuffer = new ByteBuffer();
+                arrayBuffer.putVarUInt32(array.length);
+                for (long i : array) {
+                    arrayBuffer.putVarInt64(i);
+                }
+                buffer.putVBytes(arrayBuffer.bytes());
+            } else {
+                buffer.putValue(arg);
+            }
+        }
+        return buffer.bytes();
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(FrameEncodingBenchmark.class.getSimpleName())
+                .addProfiler(GCProfiler.class)
+                .build()).run();
+    }
+
+}
@@ -0,0 +1,119 @@
+/*
+ * Copyright 2020-present Restream
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ru.rt.restream.reindexer.binding.cproto;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.greaterThanOrEqualTo;
+import static org.hamcrest.Matchers.is;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+/**
+ * Tests for {@link HashedWheelTimer}.
+ */
+class HashedWheelTimerTest {
+
+    private final HashedWheelTimer timer = new HashedWheelTimer(Duration.ofMillis(1), 4, Thread::new);
+
+    @AfterEach
+    void tearDown() {
+        timer.close();
+    }
+
+    @Test
+    void newTimeoutExpiresAfterDeadline() throws InterruptedException {
+        CountDownLatch expired = new CountDownLatch(1);
+        AtomicLong expiredAt = new AtomicLong();
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(20);
+
+        timer.newTimeout(() -> {
+            expiredAt.set(System.nanoTime());
+            expired.countDown();
+        }, deadline);
+
+        assertThat(expired.await(5, TimeUnit.SECONDS), is(true));
+        assertThat(expiredAt.get() - deadline, greaterThanOrEqualTo(0L));
+    }
+
+    @Test
+    void newTimeoutWhenDeadlinePassedThenExpiresOnNextTick() throws InterruptedException {
+        CountDownLatch expired = new CountDownLatch(1);
+
+        timer.newTimeout(expired::countDown, System.nanoTime() - TimeUnit.SECONDS.toNanos(1));
+
+        assertThat(expired.await(5, TimeUnit.SECONDS), is(true));
+    }
+
+    @Test
+    void newTimeoutWhenDeadlineBeyondWheelRoundThenExpiresInLaterRound() throws InterruptedException {
+        CountDownLatch expired = new CountDownLatch(2);
+        long start = System.nanoTime();
+        long farDeadline = start + TimeUnit.MILLISECONDS.toNanos(30);
+        AtomicLong farExpiredAt = new AtomicLong();
+
+        timer.newTimeout(expired::countDown, start + TimeUnit.MILLISECONDS.toNanos(2));
+        timer.newTimeout(() -> {
+            farExpiredAt.set(System.nanoTime());
+            expired.countDown();
+        }, farDeadline);
+
+        assertThat(expired.await(5, TimeUnit.SECONDS), is(true));
+        assertThat(farExpiredAt.get() - farDeadline, greaterThanOrEqualTo(0L));
+    }
+
+    @Test
+    void cancelledTimeoutNeverExpires() throws InterruptedException {
+        AtomicInteger cancelledRuns = new AtomicInteger();
+        CountDownLatch expired = new CountDownLatch(1);
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(10);
+
+        HashedWheelTimer.Timeout timeout = timer.newTimeout(cancelledRuns::incrementAndGet, deadline);
+        timer.newTimeout(expired::countDown, deadline + TimeUnit.MILLISECONDS.toNanos(10));
+
+        assertThat(timeout.cancel(), is(true));
+        assertThat(expired.await(5, TimeUnit.SECONDS), is(true));
+        assertThat(cancelledRuns.get(), is(0));
+        assertThat(timeout.cancel(), is(false));
+    }
+
+    @Test
+    void newTimeoutWhenTaskFailsThenTimerKeepsRunning() throws InterruptedException {
+        CountDownLatch expired = new CountDownLatch(1);
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(5);
+
+        timer.newTimeout(() -> {
+            throw new IllegalStateException();
+        }, deadline);
+        timer.newTimeout(expired::countDown, deadline + TimeUnit.MILLISECONDS.toNanos(5));
+
+        assertThat(expired.await(5, TimeUnit.SECONDS), is(true));
+    }
+
+    @Test
+    void constructorWhenTickNotPositiveThenException() {
+        assertThrows(IllegalArgumentException.class,
+                () -> new HashedWheelTimer(Duration.ZERO, 4, Thread::new));
+    }
+
+}
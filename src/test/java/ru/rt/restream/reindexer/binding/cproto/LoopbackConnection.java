@@ -0,0 +1,94 @@
+/*
+ * Copyright 2020-present Restream
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ru.rt.restream.reindexer.binding.cproto;
+
+import java.time.Duration;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * An in-memory {@link RpcConnection} that answers every request with an empty successful response
+ * from a dedicated thread, the same way a transport read loop does.
+ */
+final class LoopbackConnection extends RpcConnection {
+
+    private static final byte[] EMPTY_RESPONSE = {0, 0, 0};
+
+    private final Thread responder;
+
+    private final AtomicInteger receivedCount = new AtomicInteger();
+
+    private volatile boolean responding = true;
+
+    LoopbackConnection(Duration requestTimeout, ScheduledExecutorService scheduler, HashedWheelTimer timer) {
+        super(requestTimeout, scheduler, timer, null);
+        responder = new Thread(this::respond, "loopback-responder");
+        responder.setDaemon(true);
+        responder.start();
+    }
+
+    /**
+     * Sets whether the requests should be answered, unanswered requests time out.
+     */
+    void setResponding(boolean responding) {
+        this.responding = responding;
+    }
+
+    /**
+     * Returns the number of requests received so far.
+     */
+    int getReceivedCount() {
+        return receivedCount.get();
+    }
+
+    private void respond() {
+        try {
+            while (!Thread.currentThread().isInterrupted()) {
+                ByteBuffer buffer = awaitPendingWrite();
+                ByteBuffer frames = new ByteBuffer(buffer.bytes()).rewind();
+                buffer.reset();
+                while (frames.getPosition() < frames.length()) {
+                    frames.skip(CPROTO_HDR_SIZE_OFFSET);
+                    int size = (int) frames.getUInt32();
+                    int seqNum = (int) frames.getUInt32();
+                    frames.skip(size);
+                    receivedCount.incrementAndGet();
+                    if (responding) {
+                        onResponse(responseHeader(seqNum), EMPTY_RESPONSE);
+                    }
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static FrameHeader responseHeader(int seqNum) {
+        ByteBuffer header = new ByteBuffer(CPROTO_HDR_LEN)
+                .putUInt32(CPROTO_MAGIC)
+                .putUInt16(CPROTO_VERSION)
+                .putUInt16(0)
+                .putUInt32(EMPTY_RESPONSE.length)
+                .putUInt32(seqNum);
+        return readHeader(header.rewind());
+    }
+
+    @Override
+    public void close() {
+        responder.interrupt();
+    }
+
+}
@@ -0,0 +1,104 @@
+/*
+ * Copyright 2020-present Restream
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ru.rt.restream.reindexer.binding.cproto;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import ru.rt.restream.reindexer.ReindexerResponse;
+import ru.rt.restream.reindexer.binding.Binding;
+
+import java.time.Duration;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the throughput of rpc calls made by concurrent caller threads through a single connection,
+ * i.e. the cost of claiming a request slot, encoding the request and handing the response off to the caller.
+ * The responses are produced by a {@link LoopbackConnection}, so no network is involved. The async calls expire
+ * either by the {@link HashedWheelTimer} of the connection pool or by a task on the scheduler per request.
+ * Run {@link #main(String[])} to measure with 1 to 64 caller threads.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class RpcCallContentionBenchmark {
+
+    private static final int[] THREADS = {1, 4, 16, 32, 64};
+
+    @Param({"timer", "scheduler"})
+    private String timeouts;
+
+    private ScheduledThreadPoolExecutor scheduler;
+
+    private HashedWheelTimer timer;
+
+    private LoopbackConnection connection;
+
+    @Setup
+    public void setUp() {
+        scheduler = new ScheduledThreadPoolExecutor(1);
+        scheduler.setRemoveOnCancelPolicy(true);
+        if ("timer".equals(timeouts)) {
+            timer = new HashedWheelTimer(Duration.ofMillis(10), 512, Thread::new);
+        }
+        connection = new LoopbackConnection(Duration.ofSeconds(30), scheduler, timer);
+    }
+
+    @TearDown
+    public void tearDown() {
+        connection.close();
+        scheduler.shutdownNow();
+        if (timer != null) {
+            timer.close();
+        }
+    }
+
+    @Benchmark
+    public ReindexerResponse rpcCall() {
+        return connection.rpcCall(Binding.PING);
+    }
+
+    @Benchmark
+    public ReindexerResponse rpcCallAsync() {
+        return connection.rpcCallAsync(Binding.PING).join();
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        for (int threads : THREADS) {
+            new Runner(new OptionsBuilder()
+                    .include(RpcCallContentionBenchmark.class.getSimpleName())
+                    .threads(threads)
+                    .build()).run();
+        }
+    }
+
+}
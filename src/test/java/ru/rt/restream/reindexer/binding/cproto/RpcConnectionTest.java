@@ -0,0 +1,245 @@
+/*
+ * Copyright 2020-present Restream
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ru.rt.restream.reindexer.binding.cproto;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import ru.rt.restream.reindexer.ReindexerResponse;
+import ru.rt.restream.reindexer.binding.Binding;
+import ru.rt.restream.reindexer.binding.Consts;
+import ru.rt.restream.reindexer.exceptions.ReindexerException;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.instanceOf;
+import static org.hamcrest.Matchers.is;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+/**
+ * Tests for {@link RpcConnection}.
+ */
+class RpcConnectionTest {
+
+    private final ScheduledThreadPoolExecutor scheduler = new ScheduledThreadPoolExecutor(1);
+
+    private LoopbackConnection connection;
+
+    @AfterEach
+    void tearDown() {
+        if (connection != null) {
+            connection.close();
+        }
+        scheduler.shutdownNow();
+    }
+
+    @Test
+    void encodeWritesHeaderWithBodySize() {
+        ByteBuffer buffer = new ByteBuffer();
+        RpcConnection.encode(buffer, Binding.MODIFY_ITEM, 7, "items", new byte[]{1, 2, 3}, 5);
+
+        ByteBuffer expectedBody = new ByteBuffer()
+                .putVarUInt32(3)
+                .putVarUInt32(Consts.VALUE_STRING).putVString("items")
+                .putVarUInt32(Consts.VALUE_STRING).putVBytes(new byte[]{1, 2, 3})
+                .putVarUInt32(Consts.VALUE_INT).putVarInt64(5);
+        ByteBuffer frame = new ByteBuffer(buffer.bytes()).rewind();
+        assertThat(frame.getUInt32(), is(RpcConnection.CPROTO_MAGIC));
+        assertThat(frame.getUInt16(), is(RpcConnection.CPROTO_VERSION));
+        assertThat(frame.getUInt16(), is(Binding.MODIFY_ITEM));
+        assertThat(frame.getUInt32(), is((long) expectedBody.length()));
+        assertThat(frame.getUInt32(), is(7L));
+        assertThat(frame.getBytes(), is(expectedBody.bytes()));
+    }
+
+    @Test
+    void encodeWritesLongArrayAsBytes() {
+        long[] array = {0, -1, 300, 1L << 40};
+        ByteBuffer buffer = new ByteBuffer();
+        RpcConnection.encode(buffer, Binding.SELECT, 1, (Object) array);
+
+        ByteBuffer arrayBuffer = new ByteBuffer().putVarUInt32(array.length);
+        for (long value : array) {
+            arrayBuffer.putVarInt64(value);
+        }
+        ByteBuffer frame = new ByteBuffer(buffer.bytes()).rewind();
+        frame.skip(RpcConnection.CPROTO_HDR_LEN);
+        assertThat(frame.getVarUInt(), is(1L));
+        assertThat(frame.getVarUInt(), is((long) Consts.VALUE_STRING));
+        assertThat(frame.getVBytes(), is(arrayBuffer.bytes()));
+    }
+
+    @Test
+    void encodeAppendsFrames() {
+        ByteBuffer buffer = new ByteBuffer();
+        RpcConnection.encode(buffer, Binding.PING, 1);
+        RpcConnection.encode(buffer, Binding.PING, 2);
+
+        ByteBuffer frames = new ByteBuffer(buffer.bytes()).rewind();
+        frames.skip(RpcConnection.CPROTO_HDR_LEN - Integer.BYTES);
+        assertThat(frames.getUInt32(), is(1L));
+        frames.skip(1 + RpcConnection.CPROTO_HDR_LEN - Integer.BYTES);
+        assertThat(frames.getUInt32(), is(2L));
+    }
+
+    @Test
+    void encodeWhenUnsupportedArgumentThenBufferUnchanged() {
+        ByteBuffer buffer = new ByteBuffer();
+        RpcConnection.encode(buffer, Binding.PING, 1);
+        byte[] bytes = buffer.bytes();
+
+        assertThrows(IllegalArgumentException.class,
+                () -> RpcConnection.encode(buffer, Binding.PING, 2, new Object()));
+        assertThat(buffer.bytes(), is(bytes));
+    }
+
+    @Test
+    void rpcCallReusesSlotsWithNextSeqNums() {
+        connection = new LoopbackConnection(Duration.ofSeconds(5), scheduler, null);
+
+        for (int i = 0; i < RpcConnection.QUEUE_SIZE * 3; i++) {
+            assertThat(connection.rpcCall(Binding.PING).hasError(), is(false));
+            assertThat(connection.rpcCallAsync(Binding.PING).join().hasError(), is(false));
+        }
+    }
+
+    @Test
+    void rpcCallFromConcurrentThreads() throws Exception {
+        connection = new LoopbackConnection(Duration.ofSeconds(5), scheduler, null);
+        ExecutorService executor = Executors.newFixedThreadPool(16);
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int i = 0; i < 16; i++) {
+                futures.add(executor.submit(() -> {
+                    for (int j = 0; j < 2000; j++) {
+                        assertThat(connection.rpcCall(Binding.PING).hasError(), is(false));
+                        assertThat(connection.rpcCallAsync(Binding.PING).join().hasError(), is(false));
+                    }
+                }));
+            }
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    void rpcCallWhenNoResponseThenTimeoutAndSlotReleased() {
+        connection = new LoopbackConnection(Duration.ofMillis(50), scheduler, null);
+        connection.setResponding(false);
+
+        ReindexerException exception = assertThrows(ReindexerException.class,
+                () -> connection.rpcCall(Binding.PING));
+        assertThat(exception.getMessage(), is("Request timeout"));
+        ExecutionException asyncException = assertThrows(ExecutionException.class,
+                () -> connection.rpcCallAsync(Binding.PING).get());
+        assertThat(asyncException.getCause().getMessage(), is("Request timeout"));
+
+        connection.setResponding(true);
+        for (int i = 0; i < RpcConnection.QUEUE_SIZE; i++) {
+            assertThat(connection.rpcCall(Binding.PING).hasError(), is(false));
+        }
+    }
+
+    @Test
+    void rpcCallAsyncWhenNoResponseThenTimerExpiresRequest() {
+        try (HashedWheelTimer timer = new HashedWheelTimer(Duration.ofMillis(1), 8, Thread::new)) {
+            connection = new LoopbackConnection(Duration.ofSeconds(30), scheduler, timer);
+            connection.setResponding(false);
+
+            ExecutionException exception = assertThrows(ExecutionException.class,
+                    () -> connection.rpcCallAsync(Duration.ofMillis(20), Binding.PING).get(5, TimeUnit.SECONDS));
+            assertThat(exception.getCause().getMessage(), is("Request timeout"));
+            connection.setResponding(true);
+            assertThat(connection.rpcCallAsync(Binding.PING).join().hasError(), is(false));
+        }
+    }
+
+    @Test
+    void getInFlightRequestsCountsAwaitedRequests() {
+        connection = new LoopbackConnection(Duration.ofMillis(100), scheduler, null);
+        connection.setResponding(false);
+
+        CompletableFuture<ReindexerResponse> first = connection.rpcCallAsync(Binding.PING);
+        CompletableFuture<ReindexerResponse> second = connection.rpcCallAsync(Binding.PING);
+        assertThat(connection.getInFlightRequests(), is(2));
+
+        assertThrows(ExecutionException.class, first::get);
+        assertThrows(ExecutionException.class, second::get);
+        assertThat(connection.getInFlightRequests(), is(0));
+    }
+
+    @Test
+    void rpcCallWhenAllSlotsTakenThenQueueIsFull() {
+        connection = new LoopbackConnection(Duration.ofMillis(200), scheduler, null);
+        connection.setResponding(false);
+        // Keep the async requests from timing out while the slots are awaited.
+        CountDownLatch timeoutsBlocked = new CountDownLatch(1);
+        scheduler.execute(() -> {
+            try {
+                timeoutsBlocked.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        for (int i = 0; i < RpcConnection.QUEUE_SIZE; i++) {
+            connection.rpcCallAsync(Binding.PING);
+        }
+
+        ReindexerException exception = assertThrows(ReindexerException.class,
+                () -> connection.rpcCall(Binding.PING));
+        assertThat(exception.getMessage(), is("Request queue is full"));
+    }
+
+    @Test
+    void onErrorCompletesPendingRequests() throws Exception {
+        connection = new LoopbackConnection(Duration.ofSeconds(30), scheduler, null);
+        connection.setResponding(false);
+        CompletableFuture<ReindexerResponse> asyncCall = connection.rpcCallAsync(Binding.PING);
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            Future<?> syncCall = executor.submit(() -> connection.rpcCall(Binding.PING));
+            while (connection.getReceivedCount() < 2) {
+                Thread.yield();
+            }
+            IOException error = new IOException("Connection reset");
+            connection.onError(error);
+
+            ExecutionException syncException = assertThrows(ExecutionException.class, syncCall::get);
+            assertThat(syncException.getCause(), instanceOf(ReindexerException.class));
+            assertThat(syncException.getCause().getCause(), is(error));
+            ExecutionException asyncException = assertThrows(ExecutionException.class, asyncCall::get);
+            assertThat(asyncException.getCause(), is(error));
+            assertThat(connection.hasError(), is(true));
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+}
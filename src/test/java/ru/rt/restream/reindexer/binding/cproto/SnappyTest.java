@@ -0,0 +1,97 @@
+/*
+ * Copyright 2020-present Restream
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ru.rt.restream.reindexer.binding.cproto;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+import ru.rt.restream.reindexer.exceptions.InvalidProtocolException;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.lessThan;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+/**
+ * Tests for {@link Snappy}.
+ */
+class SnappyTest {
+
+    private final Snappy snappy = new Snappy();
+
+    @ParameterizedTest
+    @ValueSource(ints = {0, 1, 16, 17, 100, 65535, 65536, 65537, 200000})
+    void compressWhenRepetitiveThenRoundTrip(int length) {
+        byte[] json = "{\"id\":123,\"name\":\"item\",\"articles\":[1,2,3],\"year\":2020}"
+                .getBytes(StandardCharsets.UTF_8);
+        byte[] data = new byte[length];
+        for (int i = 0; i < length; i++) {
+            data[i] = json[i % json.length];
+        }
+        byte[] compressed = compress(data);
+        assertThat(Snappy.uncompress(compressed, 0, compressed.length), is(data));
+        if (length > 1000) {
+            assertThat(compressed.length, lessThan(length / 4));
+        }
+    }
+
+    @ParameterizedTest
+    @ValueSource(ints = {1, 100, 70000})
+    void compressWhenRandomThenRoundTrip(int length) {
+        byte[] data = new byte[length];
+        new Random(length).nextBytes(data);
+        byte[] compressed = compress(data);
+        assertThat(Snappy.uncompress(compressed, 0, compressed.length), is(data));
+    }
+
+    @Test
+    void encodeLiteralThenRoundTrip() {
+        byte[] data = new byte[300];
+        new Random(0).nextBytes(data);
+        ByteBuffer buffer = new ByteBuffer();
+        Snappy.encodeLiteral(data, 0, data.length, buffer);
+        assertThat(Snappy.uncompress(buffer.bytes(), 0, buffer.length()), is(data));
+    }
+
+    @Test
+    void uncompressWhenOverlappingCopyThenRepeats() {
+        // Length 8, literal "ab", copy of 6 bytes with offset 2.
+        byte[] compressed = {8, 1 << 2, 'a', 'b', (byte) ((6 - 4) << 2 | 0x01), 2};
+        assertThat(new String(Snappy.uncompress(compressed, 0, compressed.length), StandardCharsets.UTF_8),
+                is("abababab"));
+    }
+
+    @Test
+    void uncompressWhenCorruptedThenException() {
+        byte[] compressed = compress(new byte[100]);
+        byte[] truncated = Arrays.copyOf(compressed, compressed.length - 1);
+        assertThrows(InvalidProtocolException.class, () -> Snappy.uncompress(truncated, 0, truncated.length));
+        byte[] invalidOffset = {4, (byte) (0x01), 5};
+        assertThrows(InvalidProtocolException.class,
+                () -> Snappy.uncompress(invalidOffset, 0, invalidOffset.length));
+    }
+
+    private byte[] compress(byte[] data) {
+        ByteBuffer buffer = new ByteBuffer();
+        snappy.compress(data, 0, data.length, buffer);
+        return buffer.bytes();
+    }
+
+}
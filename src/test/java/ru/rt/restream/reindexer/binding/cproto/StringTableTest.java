@@ -0,0 +1,70 @@
+/*
+ * Copyright 2020-present Restream
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ru.rt.restream.reindexer.binding.cproto;
+
+import org.junit.jupiter.api.Test;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
+
+/**
+ * Tests for {@link StringTable}.
+ */
+class StringTableTest {
+
+    @Test
+    void internWhenSameBytesThenSameCode() {
+        ByteBuffer buffer = new ByteBuffer().putVString("first").putVString("second").putVString("first").rewind();
+        StringTable table = new StringTable();
+
+        int first = table.intern(buffer);
+        int second = table.intern(buffer);
+
+        assertThat(table.intern(buffer), is(first));
+        assertThat(table.intern("second"), is(second));
+        assertThat(table.get(first), is("first"));
+        assertThat(table.get(second), is("second"));
+        assertThat(table.size(), is(2));
+        assertThat(buffer.getPosition(), is(buffer.length()));
+    }
+
+    @Test
+    void internWhenManyStringsThenCodesKept() {
+        StringTable table = new StringTable();
+        for (int i = 0; i < 1000; i++) {
+            assertThat(table.intern("значение-" + i), is(i));
+        }
+        for (int i = 0; i < 1000; i++) {
+            ByteBuffer buffer = new ByteBuffer().putVString("значение-" + i).rewind();
+            assertThat(table.intern(buffer), is(i));
+            assertThat(table.get(i), is("значение-" + i));
+        }
+        assertThat(table.size(), is(1000));
+    }
+
+    @Test
+    void clearWhenInternedThenCodesStartOver() {
+        StringTable table = new StringTable();
+        table.intern("first");
+        table.intern("second");
+
+        table.clear();
+
+        assertThat(table.size(), is(0));
+        assertThat(table.intern("second"), is(0));
+    }
+
+}
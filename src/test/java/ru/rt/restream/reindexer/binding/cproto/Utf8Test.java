@@ -0,0 +1,75 @@
+/*
+ * Copyright 2020-present Restream
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ru.rt.restream.reindexer.binding.cproto;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.sameInstance;
+
+/**
+ * Tests for {@link Utf8}.
+ */
+class Utf8Test {
+
+    private static final String[] VALUES = {
+            "", "name", "значение", "日本語", "emoji 😀 pair", "lone \uD800 high", "lone \uDC00 low",
+            "trailing \uD83D", "mixed ascii, ü and €",
+            "длинное значение, длина которого помещается в один байт",
+            "длинное значение, длина которого не помещается в один байт и занимает два байта"
+    };
+
+    @Test
+    void encodeWhenStringThenSameBytesAsGetBytes() {
+        for (String value : VALUES) {
+            byte[] expected = value.getBytes(StandardCharsets.UTF_8);
+            byte[] actual = new byte[Utf8.encodedLength(value)];
+
+            assertThat(Utf8.encode(value, actual, 0), is(expected.length));
+            assertThat(actual, is(expected));
+        }
+    }
+
+    @Test
+    void putVStringWhenStringThenReadBack() {
+        ByteBuffer buffer = new ByteBuffer(4);
+        for (String value : VALUES) {
+            buffer.putVString(value);
+        }
+        buffer.rewind();
+
+        for (String value : VALUES) {
+            assertThat(buffer.getVString(), is(new String(value.getBytes(StandardCharsets.UTF_8),
+                    StandardCharsets.UTF_8)));
+        }
+        assertThat(buffer.getPosition(), is(buffer.length()));
+    }
+
+    @Test
+    void getVStringWhenTableThenSameInstance() {
+        ByteBuffer buffer = new ByteBuffer().putVString("tag").putVString("tag").rewind();
+        StringTable table = new StringTable();
+
+        String first = buffer.getVString(table);
+
+        assertThat(first, is("tag"));
+        assertThat(buffer.getVString(table), sameInstance(first));
+    }
+
+}
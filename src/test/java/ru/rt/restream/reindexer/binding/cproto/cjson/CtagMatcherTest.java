@@ -0,0 +1,74 @@
+/*
+ * Copyright 2020-present Restream
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ru.rt.restream.reindexer.binding.cproto.cjson;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.sameInstance;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+/**
+ * Tests for {@link CtagMatcher}.
+ */
+class CtagMatcherTest {
+
+    private final PayloadType payloadType = new PayloadType(1L, "items", 1L, 1, 0L, Arrays.asList("id", "name"),
+            Collections.emptyList());
+
+    @Test
+    void getIndexWhenPayloadTagThenNotUpdated() {
+        CtagMatcher ctagMatcher = new CtagMatcher(payloadType);
+
+        assertThat(ctagMatcher.getIndex("name"), is(2));
+        assertThat(ctagMatcher.getName(1), is("id"));
+        assertThat(ctagMatcher.isUpdated(), is(false));
+        assertThat(ctagMatcher.getTags(), sameInstance(payloadType.getTags()));
+    }
+
+    @Test
+    void getIndexWhenNewTagThenAddedToMatcherOnly() {
+        CtagMatcher ctagMatcher = new CtagMatcher(payloadType);
+
+        assertThat(ctagMatcher.getIndex("value"), is(3));
+        assertThat(ctagMatcher.getIndex("value"), is(3));
+        assertThat(ctagMatcher.getName(3), is("value"));
+        assertThat(ctagMatcher.isUpdated(), is(true));
+        assertThat(ctagMatcher.getTags(), contains("id", "name", "value"));
+        assertThat(ctagMatcher.getTagsCount(), is(3));
+        assertThat(payloadType.getTags(), contains("id", "name"));
+        CtagMatcher otherMatcher = new CtagMatcher(payloadType);
+        assertThrows(IllegalArgumentException.class, () -> otherMatcher.getName(3));
+        assertThat(otherMatcher.getIndex("other"), is(3));
+    }
+
+    @Test
+    void readWhenEmptyMatcherThenPayloadTagsAdded() {
+        CtagMatcher ctagMatcher = new CtagMatcher();
+
+        ctagMatcher.read(payloadType);
+
+        assertThat(ctagMatcher.getIndex("name"), is(2));
+        assertThat(ctagMatcher.isUpdated(), is(false));
+        assertThat(ctagMatcher.getTags(), contains("id", "name"));
+    }
+
+}
@@ -0,0 +1,153 @@
+/*
+ * Copyright 2020-present Restream
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ru.rt.restream.reindexer.binding.cproto.cjson;
+
+import lombok.Data;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import ru.rt.restream.reindexer.binding.cproto.ByteBuffer;
+import ru.rt.restream.reindexer.binding.cproto.ItemReader;
+import ru.rt.restream.reindexer.binding.cproto.cjson.encdec.CjsonReader;
+import ru.rt.restream.reindexer.binding.cproto.cjson.encdec.CjsonWriter;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures time and allocations of reading and writing an item with a float vector and a long array.
+ * Compares the streaming reader and writer, that read and write primitive arrays without boxing, with the
+ * {@link CjsonItemReader} and {@link CJsonItemWriter}, and the bulk vector writing with writing it by elements.
+ * Run {@link #main(String[])} and see gc.alloc.rate.norm for the allocated bytes per item.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class FloatVectorBenchmark {
+
+    @Param({"768", "1536"})
+    private int dimension;
+
+    private final ByteBuffer buffer = new ByteBuffer();
+
+    private PayloadType payloadType;
+
+    private StreamingCjsonItemWriter<VectorItem> writer;
+
+    private ItemReader<VectorItem> reader;
+
+    private CjsonItemReader<VectorItem> treeReader;
+
+    private VectorItem item;
+
+    private byte[] data;
+
+    @Setup
+    public void setUp() {
+        Random random = new Random(0);
+        item = new VectorItem();
+        item.setId(42);
+        item.setEmbedding(new float[dimension]);
+        for (int i = 0; i < dimension; i++) {
+            item.getEmbedding()[i] = random.nextFloat();
+        }
+        item.setTags(random.longs(32, 0, 1_000_000L).toArray());
+        payloadType = new PayloadType(1L, "items", 1L, 1, 0L, Arrays.asList("id", "embedding", "tags"),
+                Collections.emptyList());
+        writer = new StreamingCjsonItemWriter<>(payloadType);
+        reader = StreamingCjsonItemReader.create(VectorItem.class, new CtagMatcher(payloadType));
+        treeReader = new CjsonItemReader<>(VectorItem.class, new CtagMatcher(payloadType));
+        ByteBuffer itemBuffer = new ByteBuffer();
+        writer.writeItem(itemBuffer, item);
+        data = itemBuffer.bytes();
+    }
+
+    @Benchmark
+    public ByteBuffer writeStreaming() {
+        buffer.truncate(0);
+        writer.writeItem(buffer, item);
+        return buffer;
+    }
+
+    @Benchmark
+    public ByteBuffer writeTree() {
+        buffer.truncate(0);
+        new CJsonItemWriter<VectorItem>(new CtagMatcher(payloadType)).writeItem(buffer, item);
+        return buffer;
+    }
+
+    @Benchmark
+    public VectorItem readStreaming() {
+        return reader.readItem(new ByteBuffer(data).rewind());
+    }
+
+    @Benchmark
+    public VectorItem readTree() {
+        return treeReader.readItem(new ByteBuffer(data).rewind());
+    }
+
+    @Benchmark
+    public ByteBuffer writeVectorBulk() {
+        buffer.truncate(0);
+        CjsonWriter cjsonWriter = new CjsonWriter(buffer, new CtagMatcher(payloadType));
+        cjsonWriter.beginArray(2, dimension, CjsonReader.FLOAT);
+        cjsonWriter.putFloatElements(item.getEmbedding());
+        return buffer;
+    }
+
+    @Benchmark
+    public ByteBuffer writeVectorByElements() {
+        buffer.truncate(0);
+        CjsonWriter cjsonWriter = new CjsonWriter(buffer, new CtagMatcher(payloadType));
+        cjsonWriter.beginArray(2, dimension, CjsonReader.FLOAT);
+        for (float value : item.getEmbedding()) {
+            cjsonWriter.putFloatElement(value);
+        }
+        return buffer;
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(FloatVectorBenchmark.class.getSimpleName())
+                .addProfiler(GCProfiler.class)
+                .build()).run();
+    }
+
+    @Data
+    public static class VectorItem {
+        private int id;
+        private float[] embedding;
+        private long[] tags;
+    }
+
+}
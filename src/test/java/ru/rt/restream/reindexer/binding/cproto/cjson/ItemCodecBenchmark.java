@@ -0,0 +1,198 @@
+/*
+ * Copyright 2020-present Restream
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ru.rt.restream.reindexer.binding.cproto.cjson;
+
+import lombok.Data;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import ru.rt.restream.reindexer.binding.cproto.ByteBuffer;
+import ru.rt.restream.reindexer.binding.cproto.ItemCodec;
+
+import java.lang.reflect.Field;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures throughput of reading and writing a 30 field item by an {@link ItemCodec}, compared with the
+ * {@link CjsonItemReader} and {@link CJsonItemWriter}, that build an element tree of each item.
+ * The readInto benchmark reads the item in place into the same instance, as a scan by
+ * {@link ru.rt.restream.reindexer.ResultIterator#forEachInto} does.
+ * Run {@link #main(String[])} and see gc.alloc.rate.norm for the allocated bytes per item.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ItemCodecBenchmark {
+
+    private final ByteBuffer buffer = new ByteBuffer();
+
+    private PayloadType payloadType;
+
+    private ItemCodec<TestItem> codec;
+
+    private CjsonItemReader<TestItem> treeReader;
+
+    private TestItem item;
+
+    private byte[] data;
+
+    private ByteBuffer page;
+
+    private TestItem target;
+
+    @Setup
+    public void setUp() {
+        List<String> tags = new ArrayList<>();
+        for (Field field : TestItem.class.getDeclaredFields()) {
+            tags.add(field.getName());
+        }
+        payloadType = new PayloadType(1L, "items", 1L, 1, 0L, tags, Collections.emptyList());
+        codec = ItemCodec.getInstance(TestItem.class, payloadType);
+        treeReader = new CjsonItemReader<>(TestItem.class, new CtagMatcher(payloadType));
+        item = TestItem.newInstance();
+        ByteBuffer itemBuffer = new ByteBuffer();
+        codec.writeItem(itemBuffer, item);
+        data = itemBuffer.bytes();
+        page = new ByteBuffer(data);
+        target = new TestItem();
+    }
+
+    @Benchmark
+    public TestItem readCodec() {
+        return codec.readItem(new ByteBuffer(data).rewind());
+    }
+
+    @Benchmark
+    public TestItem readInto() {
+        page.setPosition(0);
+        return codec.readItem(page, data.length, target);
+    }
+
+    @Benchmark
+    public TestItem readTree() {
+        return treeReader.readItem(new ByteBuffer(data).rewind());
+    }
+
+    @Benchmark
+    public ByteBuffer writeCodec() {
+        buffer.truncate(0);
+        codec.writeItem(buffer, item);
+        return buffer;
+    }
+
+    @Benchmark
+    public ByteBuffer writeTree() {
+        buffer.truncate(0);
+        new CJsonItemWriter<TestItem>(new CtagMatcher(payloadType)).writeItem(buffer, item);
+        return buffer;
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(ItemCodecBenchmark.class.getSimpleName())
+                .addProfiler(GCProfiler.class)
+                .build()).run();
+    }
+
+    @Data
+    public static class TestItem {
+        private Integer id;
+        private Long version;
+        private String name;
+        private String title;
+        private String description;
+        private String category;
+        private String brand;
+        private String country;
+        private String currency;
+        private String status;
+        private Integer quantity;
+        private Integer rating;
+        private Integer views;
+        private Integer likes;
+        private Long createdAt;
+        private Long updatedAt;
+        private Long ownerId;
+        private Long shopId;
+        private Double price;
+        private Double discount;
+        private Double weight;
+        private Float score;
+        private Boolean active;
+        private Boolean deleted;
+        private Boolean featured;
+        private UUID uuid;
+        private List<String> tags;
+        private List<Integer> sizes;
+        private List<Long> relatedIds;
+        private List<Double> coordinates;
+
+        static TestItem newInstance() {
+            TestItem item = new TestItem();
+            item.setId(42);
+            item.setVersion(7L);
+            item.setName("product-42");
+            item.setTitle("A product title of a realistic length");
+            item.setDescription("A longer product description, that is shown on the product page");
+            item.setCategory("electronics");
+            item.setBrand("brand");
+            item.setCountry("RU");
+            item.setCurrency("RUB");
+            item.setStatus("ACTIVE");
+            item.setQuantity(100);
+            item.setRating(5);
+            item.setViews(123456);
+            item.setLikes(789);
+            item.setCreatedAt(1600000000000L);
+            item.setUpdatedAt(1600000001000L);
+            item.setOwnerId(1001L);
+            item.setShopId(2002L);
+            item.setPrice(1999.99);
+            item.setDiscount(0.15);
+            item.setWeight(1.25);
+            item.setScore(4.5f);
+            item.setActive(true);
+            item.setDeleted(false);
+            item.setFeatured(true);
+            item.setUuid(UUID.fromString("3f2504e0-4f89-11d3-9a0c-0305e82c3301"));
+            item.setTags(Arrays.asList("new", "sale", "popular"));
+            item.setSizes(Arrays.asList(38, 40, 42, 44));
+            item.setRelatedIds(Arrays.asList(1L, 2L, 3L, 4L, 5L));
+            item.setCoordinates(Arrays.asList(55.75, 37.61));
+            return item;
+        }
+    }
+
+}
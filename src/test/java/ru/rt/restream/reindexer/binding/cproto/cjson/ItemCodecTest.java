@@ -0,0 +1,97 @@
+/*
+ * Copyright 2020-present Restream
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ru.rt.restream.reindexer.binding.cproto.cjson;
+
+import lombok.Data;
+import org.junit.jupiter.api.Test;
+import ru.rt.restream.reindexer.binding.cproto.ByteBuffer;
+import ru.rt.restream.reindexer.binding.cproto.ItemCodec;
+import ru.rt.restream.reindexer.binding.cproto.ItemReader;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.instanceOf;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.not;
+import static org.hamcrest.Matchers.sameInstance;
+
+/**
+ * Tests for {@link ItemCodec}.
+ */
+class ItemCodecTest {
+
+    private static final int END_TAG = 7;
+
+    @Test
+    void getInstanceWhenSamePayloadTypeThenSameCodec() {
+        PayloadType payloadType = newPayloadType();
+
+        ItemCodec<TestItem> codec = ItemCodec.getInstance(TestItem.class, payloadType);
+
+        assertThat(codec, instanceOf(CjsonItemCodec.class));
+        assertThat(ItemCodec.getInstance(TestItem.class, payloadType), sameInstance(codec));
+        assertThat(ItemCodec.getInstance(TestItem.class, newPayloadType()), not(sameInstance(codec)));
+        assertThat(ItemCodec.getInstance(TestItem.class, null),
+                sameInstance(ItemCodec.getInstance(TestItem.class, null)));
+    }
+
+    @Test
+    void getProjectingReaderWhenSameTagsThenSameReader() {
+        PayloadType payloadType = newPayloadType();
+
+        ItemReader<TestItem> reader = CjsonItemCodec.getProjectingReader(TestItem.class, payloadType,
+                new HashSet<>(Arrays.asList("id", "name")));
+
+        assertThat(CjsonItemCodec.getProjectingReader(TestItem.class, payloadType,
+                new HashSet<>(Arrays.asList("name", "id"))), sameInstance(reader));
+        assertThat(CjsonItemCodec.getProjectingReader(TestItem.class, payloadType,
+                Collections.singleton("id")), not(sameInstance(reader)));
+        assertThat(CjsonItemCodec.getProjectingReader(TestItem.class, newPayloadType(),
+                new HashSet<>(Arrays.asList("id", "name"))), not(sameInstance(reader)));
+    }
+
+    @Test
+    void writeItemWhenPayloadTypeTagsThenReadSameItem() {
+        ItemCodec<TestItem> codec = ItemCodec.getInstance(TestItem.class, newPayloadType());
+        TestItem item = new TestItem();
+        item.setId(42);
+        item.setName("name");
+        item.setValues(Arrays.asList(1L, 2L, 3L));
+
+        ByteBuffer buffer = new ByteBuffer();
+        codec.writeItem(buffer, item);
+
+        assertThat(buffer.rewind().getVarUInt() == END_TAG, is(false));
+        assertThat(codec.readItem(buffer.rewind()), is(item));
+    }
+
+    private static PayloadType newPayloadType() {
+        return new PayloadType(1L, "items", 1L, 1, 0L, Arrays.asList("id", "name", "values"),
+                Collections.emptyList());
+    }
+
+    @Data
+    public static class TestItem {
+        private Integer id;
+        private String name;
+        private List<Long> values;
+    }
+
+}
@@ -0,0 +1,299 @@
+/*
+ * Copyright 2020-present Restream
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ru.rt.restream.reindexer.binding.cproto.cjson;
+
+import lombok.Data;
+import org.junit.jupiter.api.Test;
+import ru.rt.restream.reindexer.EnumType;
+import ru.rt.restream.reindexer.annotations.Enumerated;
+import ru.rt.restream.reindexer.annotations.Json;
+import ru.rt.restream.reindexer.binding.cproto.ByteBuffer;
+import ru.rt.restream.reindexer.binding.cproto.ItemReader;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.empty;
+import static org.hamcrest.Matchers.instanceOf;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.nullValue;
+import static org.hamcrest.Matchers.sameInstance;
+
+/**
+ * Tests for {@link StreamingCjsonItemReader}.
+ */
+class StreamingCjsonItemReaderTest {
+
+    private final CtagMatcher ctagMatcher = new CtagMatcher();
+
+    @Test
+    void readItemWhenAllFieldsSetThenSameAsCjsonItemReader() {
+        TestItem item = newTestItem();
+        byte[] data = write(item);
+
+        TestItem streamed = read(StreamingCjsonItemReader.create(TestItem.class, ctagMatcher), data);
+        TestItem decoded = read(new CjsonItemReader<>(TestItem.class, ctagMatcher), data);
+
+        assertThat(streamed, is(item));
+        assertThat(streamed, is(decoded));
+    }
+
+    @Test
+    void readItemWhenFieldsAbsentThenSameAsCjsonItemReader() {
+        byte[] data = write(new TestItem());
+
+        TestItem streamed = read(StreamingCjsonItemReader.create(TestItem.class, ctagMatcher), data);
+        TestItem decoded = read(new CjsonItemReader<>(TestItem.class, ctagMatcher), data);
+
+        assertThat(streamed, is(decoded));
+        assertThat(streamed.getName(), is(nullValue()));
+        assertThat(streamed.getTags(), is(empty()));
+        assertThat(streamed.getCodes().length, is(0));
+    }
+
+    @Test
+    void readItemWhenArrayElementTypeDiffersThenConverted() {
+        DoubleVectorItem item = new DoubleVectorItem();
+        item.setVector(new double[]{1.0D, -0.5D});
+        item.setFlags(new int[]{1, 0});
+        byte[] data = write(item);
+
+        FloatVectorItem streamed = read(StreamingCjsonItemReader.create(FloatVectorItem.class, ctagMatcher), data);
+
+        assertThat(streamed.getVector(), is(new float[]{1.0F, -0.5F}));
+        assertThat(streamed.getFlags(), is(new boolean[]{true, false}));
+    }
+
+    @Test
+    void readItemWhenUnknownTagsThenSkipped() {
+        WideItem item = new WideItem();
+        item.setId(42);
+        item.setExtraNested(newNested(7, "extra"));
+        item.setExtraList(Arrays.asList(newNested(8, "a"), newNested(9, "b")));
+        item.setExtraStrings(Arrays.asList("x", "y"));
+        item.setExtraUuid(UUID.randomUUID());
+        item.setExtraDouble(1.5D);
+        item.setName("wide");
+        byte[] data = write(item);
+
+        TestItem streamed = read(StreamingCjsonItemReader.create(TestItem.class, ctagMatcher), data);
+
+        assertThat(streamed.getId(), is(42));
+        assertThat(streamed.getName(), is("wide"));
+    }
+
+    @Test
+    void readItemWhenFieldsSelectedThenOthersSkipped() {
+        TestItem item = newTestItem();
+        byte[] data = write(item);
+        Set<String> selectedTags = new HashSet<>(Arrays.asList("id", "name", "nested"));
+
+        TestItem streamed = read(StreamingCjsonItemReader.create(TestItem.class, ctagMatcher, selectedTags), data);
+        TestItem decoded = read(new CjsonItemReader<>(TestItem.class, ctagMatcher, selectedTags), data);
+
+        assertThat(streamed, is(decoded));
+        assertThat(streamed.getId(), is(item.getId()));
+        assertThat(streamed.getName(), is(item.getName()));
+        assertThat(streamed.getNested(), is(item.getNested()));
+        assertThat(streamed.getPrice(), is(0.0D));
+        assertThat(streamed.getUuid(), is(nullValue()));
+        assertThat(streamed.getTags(), is(empty()));
+        assertThat(streamed.getNestedList(), is(empty()));
+    }
+
+    @Test
+    void readItemWhenFieldsSelectedAndTagsUnknownThenOthersSkipped() {
+        Set<String> selectedTags = Collections.singleton("name");
+        ItemReader<TestItem> reader = StreamingCjsonItemReader.create(TestItem.class, ctagMatcher, selectedTags);
+        TestItem item = newTestItem();
+
+        TestItem streamed = read(reader, write(item));
+
+        assertThat(streamed.getName(), is(item.getName()));
+        assertThat(streamed.getId(), is(0));
+        assertThat(streamed.getNested(), is(nullValue()));
+    }
+
+    @Test
+    void readItemWhenTargetThenFilledAndAbsentFieldsReset() {
+        TestItem item = newTestItem();
+        byte[] data = write(item);
+        TestItem sparse = new TestItem();
+        sparse.setId(2);
+        byte[] sparseData = write(sparse);
+        ItemReader<TestItem> reader = StreamingCjsonItemReader.create(TestItem.class, ctagMatcher);
+        TestItem target = new TestItem();
+
+        assertThat(readInto(reader, data, target), sameInstance(target));
+        assertThat(target, is(item));
+
+        assertThat(readInto(reader, sparseData, target), sameInstance(target));
+        assertThat(target, is(read(reader, sparseData)));
+        assertThat(target.getId(), is(2));
+        assertThat(target.getPrice(), is(0.0D));
+        assertThat(target.getName(), is(nullValue()));
+        assertThat(target.getNested(), is(nullValue()));
+        assertThat(target.getTags(), is(empty()));
+    }
+
+    @Test
+    void readItemWhenManyItemsThenBindingsReused() {
+        ItemReader<TestItem> reader = StreamingCjsonItemReader.create(TestItem.class, ctagMatcher);
+        for (int i = 0; i < 3; i++) {
+            TestItem item = newTestItem();
+            item.setId(i);
+            assertThat(read(reader, write(item)), is(item));
+        }
+    }
+
+    @Test
+    void createWhenUnsupportedFieldTypeThenCjsonItemReader() {
+        assertThat(StreamingCjsonItemReader.create(MapItem.class, ctagMatcher), instanceOf(CjsonItemReader.class));
+        assertThat(StreamingCjsonItemReader.create(TestItem.class, ctagMatcher),
+                instanceOf(StreamingCjsonItemReader.class));
+    }
+
+    private byte[] write(Object item) {
+        ByteBuffer buffer = new ByteBuffer();
+        new CJsonItemWriter<>(ctagMatcher).writeItem(buffer, item);
+        return buffer.bytes();
+    }
+
+    private static <T> T read(ItemReader<T> reader, byte[] data) {
+        ByteBuffer buffer = new ByteBuffer(data).rewind();
+        // the writer prepends the offset of the updated tags
+        buffer.getVarUInt();
+        buffer.getUInt32();
+        return reader.readItem(buffer);
+    }
+
+    private static <T> T readInto(ItemReader<T> reader, byte[] data, T target) {
+        ByteBuffer buffer = new ByteBuffer(data).rewind();
+        buffer.getVarUInt();
+        buffer.getUInt32();
+        int length = data.length - buffer.getPosition();
+        T item = reader.readItem(buffer, length, target);
+        assertThat(buffer.getPosition(), is(data.length));
+        return item;
+    }
+
+    private static TestItem newTestItem() {
+        TestItem item = new TestItem();
+        item.setId(1);
+        item.setValue(-123456789012L);
+        item.setShortValue((short) -5);
+        item.setByteValue((byte) 3);
+        item.setName("name");
+        item.setActive(true);
+        item.setPrice(10.25D);
+        item.setRate(0.5F);
+        item.setUuid(UUID.randomUUID());
+        item.setColor(Color.GREEN);
+        item.setSize(Color.BLUE);
+        item.setTags(Arrays.asList("a", "b", "c"));
+        item.setCodes(new int[]{1, -2, 3});
+        item.setIds(new long[]{-1234567890123L, 0L, 7L});
+        item.setWeights(new double[]{0.25D, -1.5D});
+        item.setVector(new float[]{1.0F, -0.5F, Float.MAX_VALUE});
+        item.setFlags(new boolean[]{true, false, true});
+        item.setColors(Collections.singleton(Color.RED));
+        item.setNested(newNested(1, "first"));
+        item.setNestedList(Arrays.asList(newNested(2, "second"), newNested(3, "third")));
+        return item;
+    }
+
+    private static Nested newNested(int id, String value) {
+        Nested nested = new Nested();
+        nested.setId(id);
+        nested.setValue(value);
+        nested.setNumbers(Arrays.asList((long) id, (long) id * 2));
+        return nested;
+    }
+
+    public enum Color {
+        RED, GREEN, BLUE
+    }
+
+    @Data
+    public static class TestItem {
+        private int id;
+        private long value;
+        private short shortValue;
+        private byte byteValue;
+        private String name;
+        @Json("is_active")
+        private Boolean active;
+        private double price;
+        private float rate;
+        private UUID uuid;
+        @Enumerated(EnumType.STRING)
+        private Color color;
+        private Color size;
+        private List<String> tags;
+        private int[] codes;
+        private long[] ids;
+        private double[] weights;
+        private float[] vector;
+        private boolean[] flags;
+        @Enumerated(EnumType.STRING)
+        private Set<Color> colors;
+        private Nested nested;
+        private List<Nested> nestedList;
+    }
+
+    @Data
+    public static class WideItem {
+        private Nested extraNested;
+        private int id;
+        private List<Nested> extraList;
+        private List<String> extraStrings;
+        private UUID extraUuid;
+        private double extraDouble;
+        private String name;
+    }
+
+    @Data
+    public static class Nested {
+        private int id;
+        private String value;
+        private List<Long> numbers;
+    }
+
+    @Data
+    public static class DoubleVectorItem {
+        private double[] vector;
+        private int[] flags;
+    }
+
+    @Data
+    public static class FloatVectorItem {
+        private float[] vector;
+        private boolean[] flags;
+    }
+
+    @Data
+    public static class MapItem {
+        private int id;
+        private Map<String, String> attributes;
+    }
+
+}
@@ -0,0 +1,232 @@
+/*
+ * Copyright 2020-present Restream
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ru.rt.restream.reindexer.binding.cproto.cjson;
+
+import lombok.Data;
+import org.junit.jupiter.api.Test;
+import ru.rt.restream.reindexer.EnumType;
+import ru.rt.restream.reindexer.annotations.Enumerated;
+import ru.rt.restream.reindexer.annotations.Json;
+import ru.rt.restream.reindexer.annotations.Reindex;
+import ru.rt.restream.reindexer.annotations.Transient;
+import ru.rt.restream.reindexer.binding.cproto.ByteBuffer;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.UUID;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.empty;
+import static org.hamcrest.Matchers.hasItem;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.not;
+import static org.hamcrest.Matchers.nullValue;
+
+/**
+ * Tests for {@link StreamingCjsonItemWriter}.
+ */
+class StreamingCjsonItemWriterTest {
+
+    private static final int END_TAG = 7;
+
+    @Test
+    void writeItemWhenNewTagsThenSameItemAsCJsonItemWriter() {
+        TestItem item = newTestItem();
+
+        CtagMatcher streamingMatcher = new CtagMatcher();
+        ByteBuffer streamed = new ByteBuffer();
+        new StreamingCjsonItemWriter<TestItem>(streamingMatcher).writeItem(streamed, item);
+        CtagMatcher treeMatcher = new CtagMatcher();
+        ByteBuffer encoded = new ByteBuffer();
+        new CJsonItemWriter<TestItem>(treeMatcher).writeItem(encoded, item);
+
+        assertThat(streamed.length(), is(encoded.length()));
+        assertThat(readTags(streamed.rewind(), 0), is(streamingMatcher.getTags()));
+        assertThat(read(streamed.rewind(), streamingMatcher), is(item));
+        assertThat(read(streamed.rewind(), streamingMatcher), is(read(encoded.rewind(), treeMatcher)));
+    }
+
+    @Test
+    void writeItemWhenNoNewTagsThenNoTagsHeader() {
+        TestItem item = newTestItem();
+        CtagMatcher ctagMatcher = newCtagMatcher(item);
+        ByteBuffer buffer = new ByteBuffer();
+
+        new StreamingCjsonItemWriter<TestItem>(ctagMatcher).writeItem(buffer, item);
+
+        assertThat(ctagMatcher.isUpdated(), is(false));
+        assertThat(buffer.bytes()[0] == END_TAG, is(false));
+        assertThat(new CjsonItemReader<>(TestItem.class, ctagMatcher).readItem(buffer.rewind()), is(item));
+    }
+
+    @Test
+    void writeItemWhenBufferNotEmptyThenItemAppended() {
+        TestItem item = newTestItem();
+        CtagMatcher ctagMatcher = new CtagMatcher();
+        ByteBuffer buffer = new ByteBuffer();
+        buffer.putVString("prefix");
+        int start = buffer.getPosition();
+
+        new StreamingCjsonItemWriter<TestItem>(ctagMatcher).writeItem(buffer, item);
+
+        assertThat(buffer.rewind().getVString(), is("prefix"));
+        assertThat(readTags(buffer.rewind(), start), is(ctagMatcher.getTags()));
+        buffer.rewind().getVString();
+        assertThat(read(buffer, ctagMatcher), is(item));
+    }
+
+    @Test
+    void writeItemWhenTransientNullAndEmptyFieldsThenNotWritten() {
+        TestItem item = new TestItem();
+        item.setId(1);
+        item.setSecret("secret");
+        item.setTags(Collections.emptyList());
+        CtagMatcher ctagMatcher = new CtagMatcher();
+        ByteBuffer buffer = new ByteBuffer();
+
+        new StreamingCjsonItemWriter<TestItem>(ctagMatcher).writeItem(buffer, item);
+        TestItem read = read(buffer.rewind(), ctagMatcher);
+
+        assertThat(ctagMatcher.getTags(), not(hasItem("secret")));
+        assertThat(ctagMatcher.getTags(), not(hasItem("name")));
+        assertThat(ctagMatcher.getTags(), hasItem("tags"));
+        assertThat(read.getSecret(), is(nullValue()));
+        assertThat(read.getName(), is(nullValue()));
+        assertThat(read.getTags(), is(empty()));
+    }
+
+    @Test
+    void writeItemWhenUuidStringFieldThenWrittenAsUuid() {
+        UuidItem item = new UuidItem();
+        item.setId(UUID.randomUUID().toString());
+        item.setIds(Arrays.asList(UUID.randomUUID(), UUID.randomUUID()));
+        CtagMatcher ctagMatcher = new CtagMatcher();
+        ByteBuffer buffer = new ByteBuffer();
+
+        new StreamingCjsonItemWriter<UuidItem>(ctagMatcher).writeItem(buffer, item);
+        UuidItem read = read(buffer.rewind(), ctagMatcher, UuidItem.class);
+
+        assertThat(read.getId(), is(item.getId()));
+        assertThat(read.getIds(), contains(item.getIds().toArray()));
+    }
+
+    private static TestItem read(ByteBuffer buffer, CtagMatcher ctagMatcher) {
+        return read(buffer, ctagMatcher, TestItem.class);
+    }
+
+    private static <T> T read(ByteBuffer buffer, CtagMatcher ctagMatcher, Class<T> itemClass) {
+        // skip the updated tags header
+        buffer.getVarUInt();
+        buffer.getUInt32();
+        return new CjsonItemReader<>(itemClass, ctagMatcher).readItem(buffer);
+    }
+
+    private static List<String> readTags(ByteBuffer buffer, int start) {
+        buffer.skip(start);
+        assertThat(buffer.getVarUInt(), is((long) END_TAG));
+        long offset = buffer.getUInt32();
+        buffer.rewind().skip((int) (start + offset));
+        String[] tags = new String[(int) buffer.getVarUInt()];
+        for (int i = 0; i < tags.length; i++) {
+            tags[i] = buffer.getVString();
+        }
+        return Arrays.asList(tags);
+    }
+
+    private static CtagMatcher newCtagMatcher(Object item) {
+        CtagMatcher updatedMatcher = new CtagMatcher();
+        new StreamingCjsonItemWriter<>(updatedMatcher).writeItem(new ByteBuffer(), item);
+        CtagMatcher ctagMatcher = new CtagMatcher();
+        ctagMatcher.read(new PayloadType(1L, "items", 1L, 1, 0L, updatedMatcher.getTags(),
+                Collections.emptyList()));
+        return ctagMatcher;
+    }
+
+    private static TestItem newTestItem() {
+        TestItem item = new TestItem();
+        item.setId(7);
+        item.setValue(-1234567890123L);
+        item.setShortValue((short) 300);
+        item.setByteValue((byte) -1);
+        item.setName("name");
+        item.setActive(true);
+        item.setEnabled(Boolean.FALSE);
+        item.setPrice(-0.75D);
+        item.setRate(3.5F);
+        item.setColor(Color.BLUE);
+        item.setSize(Color.GREEN);
+        item.setTags(Arrays.asList("a", "b"));
+        item.setCodes(new int[]{3, 2, 1});
+        item.setWeights(new double[]{0.1D, 0.2D});
+        item.setVector(new float[]{1.0F, -1.0F});
+        item.setFlags(new boolean[]{true, false});
+        item.setColors(Arrays.asList(Color.RED, Color.BLUE));
+        Nested nested = new Nested();
+        nested.setId(1);
+        nested.setValue("nested");
+        item.setNested(nested);
+        item.setNestedList(Arrays.asList(nested, new Nested()));
+        return item;
+    }
+
+    public enum Color {
+        RED, GREEN, BLUE
+    }
+
+    @Data
+    public static class TestItem {
+        private int id;
+        private long value;
+        private short shortValue;
+        private byte byteValue;
+        private String name;
+        @Json("is_active")
+        private boolean active;
+        private Boolean enabled;
+        private double price;
+        private float rate;
+        @Enumerated(EnumType.STRING)
+        private Color color;
+        private Color size;
+        private List<String> tags;
+        private int[] codes;
+        private double[] weights;
+        private float[] vector;
+        private boolean[] flags;
+        @Enumerated(EnumType.STRING)
+        private List<Color> colors;
+        private Nested nested;
+        private List<Nested> nestedList;
+        @Transient
+        private String secret;
+    }
+
+    @Data
+    public static class Nested {
+        private int id;
+        private String value;
+    }
+
+    @Data
+    public static class UuidItem {
+        @Reindex(name = "id", isUuid = true)
+        private String id;
+        private List<UUID> ids;
+    }
+
+}
@@ -0,0 +1,124 @@
+/*
+ * Copyright 2020-present Restream
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ru.rt.restream.reindexer.column;
+
+import lombok.Data;
+import org.junit.jupiter.api.Test;
+import ru.rt.restream.reindexer.EnumType;
+import ru.rt.restream.reindexer.annotations.Enumerated;
+import ru.rt.restream.reindexer.annotations.Json;
+
+import java.util.List;
+import java.util.UUID;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.instanceOf;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.nullValue;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+/**
+ * Tests for {@link ColumnSet}.
+ */
+class ColumnSetTest {
+
+    @Test
+    void ofWhenScalarFieldsThenColumnsByFieldType() {
+        ColumnSet columns = ColumnSet.of(TestItem.class, "id", "active", "price", "item_name", "uuid", "status",
+                "color");
+
+        assertThat(columns.getColumn("id"), instanceOf(LongColumn.class));
+        assertThat(columns.getColumn("active"), instanceOf(LongColumn.class));
+        assertThat(columns.getColumn("price"), instanceOf(DoubleColumn.class));
+        assertThat(columns.getColumn("item_name"), instanceOf(StringColumn.class));
+        assertThat(columns.getColumn("uuid"), instanceOf(StringColumn.class));
+        assertThat(columns.getColumn("status"), instanceOf(StringColumn.class));
+        assertThat(columns.getColumn("color"), instanceOf(LongColumn.class));
+        assertThat(columns.getColumnCount(), is(7));
+    }
+
+    @Test
+    void ofWhenCollectionOrUnknownFieldThenException() {
+        assertThrows(IllegalArgumentException.class, () -> ColumnSet.of(TestItem.class, "tags"));
+        assertThrows(IllegalArgumentException.class, () -> ColumnSet.of(TestItem.class, "unknown"));
+        assertThrows(IllegalArgumentException.class, () -> ColumnSet.of(TestItem.class, "name"));
+    }
+
+    @Test
+    void appendWhenValuesAndNullsThenReadBack() {
+        ColumnSet columns = ColumnSet.of(TestItem.class, "id", "price", "item_name");
+        LongColumn ids = columns.getLongColumn("id");
+        DoubleColumn prices = columns.getDoubleColumn("price");
+        StringColumn names = columns.getStringColumn("item_name");
+        for (int i = 0; i < 100; i++) {
+            ids.append(i);
+            if (i % 2 == 0) {
+                prices.appendNull();
+            } else {
+                prices.append(i * 0.5D);
+            }
+            names.append(i % 3 == 0 ? null : "name-" + i % 3);
+        }
+
+        assertThat(columns.size(), is(100));
+        assertThat(ids.toArray().length, is(100));
+        assertThat(ids.get(99), is(99L));
+        assertThat(prices.isNull(98), is(true));
+        assertThat(prices.get(99), is(49.5D));
+        assertThat(names.get(0), nullValue());
+        assertThat(names.getCode(0), is(-1));
+        assertThat(names.get(1), is("name-1"));
+        assertThat(names.getCode(4), is(names.getCode(1)));
+        assertThat(names.getDictionarySize(), is(2));
+        assertThrows(IndexOutOfBoundsException.class, () -> ids.get(100));
+        assertThrows(IllegalArgumentException.class, () -> columns.getDoubleColumn("id"));
+    }
+
+    @Test
+    void clearWhenFilledThenRowsAndDictionaryRemoved() {
+        ColumnSet columns = ColumnSet.of(TestItem.class, "item_name");
+        StringColumn names = columns.getStringColumn("item_name");
+        names.append("first");
+        names.append("second");
+
+        columns.clear();
+        names.append("second");
+
+        assertThat(columns.size(), is(1));
+        assertThat(names.getCode(0), is(0));
+        assertThat(names.get(0), is("second"));
+        assertThat(names.getDictionarySize(), is(1));
+    }
+
+    public enum Color {
+        RED, GREEN
+    }
+
+    @Data
+    public static class TestItem {
+        private long id;
+        private Boolean active;
+        private Double price;
+        @Json("item_name")
+        private String name;
+        private UUID uuid;
+        @Enumerated(EnumType.STRING)
+        private Color status;
+        private Color color;
+        private List<String> tags;
+    }
+
+}
@@ -0,0 +1,35 @@
+/*
+ * Copyright 2020-present Restream
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ru.rt.restream.reindexer.connector;
+
+import org.junit.jupiter.api.BeforeAll;
+import ru.rt.restream.category.CprotoTest;
+import ru.rt.restream.reindexer.db.DbLocator;
+import ru.rt.restream.reindexer.db.DbLocator.Type;
+
+/**
+ * Tests for Cproto protocol implementation with the NIO transport.
+ */
+@CprotoTest
+public class CprotoNioReindexerTest extends ReindexerTest {
+
+    @BeforeAll
+    @Override
+    protected void initDb() {
+        db = DbLocator.getDb(Type.CPROTO_NIO);
+    }
+
+}
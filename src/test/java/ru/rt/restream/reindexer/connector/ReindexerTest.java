@@ -31,6 +31,7 @@ import ru.rt.restream.reindexer.NamespaceOptions;
 import ru.rt.restream.reindexer.Query;
 import ru.rt.restream.reindexer.QueryResultJsonIterator;
 import ru.rt.restream.reindexer.ResultIterator;
+import ru.rt.restream.reindexer.Scroll;
 import ru.rt.restream.reindexer.TimeUnit;
 import ru.rt.restream.reindexer.Transaction;
 import ru.rt.restream.reindexer.annotations.Convert;
@@ -857,6 +858,54 @@ public abstract class ReindexerTest extends DbBaseTest {
         assertThat(expectedItems.size(), is(0));
     }
 
+    @Test
+    public void testSelectItemListWithReadAhead() {
+        String namespaceName = "items";
+        db.openNamespace(namespaceName, NamespaceOptions.defaultOptions(), TestItem.class);
+
+        List<TestItem> expectedItems = new ArrayList<>();
+        for (int i = 0; i < 100; i++) {
+            TestItem testItem = new TestItem();
+            testItem.setId(i);
+            testItem.setName("TestName" + i);
+            testItem.setValue(i + "Value");
+            db.upsert(namespaceName, testItem);
+            expectedItems.add(testItem);
+        }
+
+        List<TestItem> resultItems = db.query("items", TestItem.class)
+                .sort("id", false)
+                .fetchCount(7)
+                .readAhead(3)
+                .toList();
+
+        assertThat(resultItems, is(expectedItems));
+    }
+
+    @Test
+    public void testSelectItemWithReadAheadWhenClosedEarlyThenNextQueryWorks() {
+        String namespaceName = "items";
+        db.openNamespace(namespaceName, NamespaceOptions.defaultOptions(), TestItem.class);
+        for (int i = 0; i < 100; i++) {
+            TestItem testItem = new TestItem();
+            testItem.setId(i);
+            testItem.setName("TestName" + i);
+            testItem.setValue(i + "Value");
+            db.upsert(namespaceName, testItem);
+        }
+
+        try (ResultIterator<TestItem> iterator = db.query("items", TestItem.class)
+                .fetchCount(10)
+                .readAhead(2, 0f)
+                .execute()) {
+            for (int i = 0; i < 15; i++) {
+                iterator.next();
+            }
+        }
+
+        assertThat(db.query("items", TestItem.class).fetchCount(10).readAhead(2).toList().size(), is(100));
+    }
+
     @Test
     public void testUpdateOneItem() {
         String namespaceName = "items";
@@ -2431,6 +2480,85 @@ public abstract class ReindexerTest extends DbBaseTest {
         assertThat(exists, is(true));
     }
 
+    @Test
+    public void testQueryCountWithOffsetAndLimit() {
+        String namespaceName = "items";
+        db.openNamespace(namespaceName, NamespaceOptions.defaultOptions(), TestItem.class);
+
+        for (int i = 0; i < 10; i++) {
+            TestItem testItem = new TestItem();
+            testItem.setId(i);
+            testItem.setName("TestName" + i);
+            db.insert(namespaceName, testItem);
+        }
+
+        assertThat(db.query(namespaceName, TestItem.class).where("id", LT, 8).count(), is(8L));
+        assertThat(db.query(namespaceName, TestItem.class).where("id", LT, 8).offset(3).limit(4).count(), is(4L));
+        assertThat(db.query(namespaceName, TestItem.class).where("id", LT, 8).offset(6).limit(4).count(), is(2L));
+        assertThat(db.query(namespaceName, TestItem.class).where("id", LT, 8).offset(10).count(), is(0L));
+        assertThat(db.query(namespaceName, TestItem.class).where("id", LT, 8).limit(0).count(), is(0L));
+    }
+
+    @Test
+    public void testQueryCountWithMergeAndDistinct() {
+        String namespaceName = "items";
+        Namespace<TestItem> namespace = db.openNamespace(namespaceName, NamespaceOptions.defaultOptions(),
+                TestItem.class);
+        for (int i = 0; i < 10; i++) {
+            TestItem testItem = new TestItem();
+            testItem.setId(i);
+            testItem.setName("TestName" + i % 3);
+            db.insert(namespaceName, testItem);
+        }
+
+        Query<TestItem> merged = namespace.query().where("id", LT, 3).merge(namespace.query().where("id", EQ, 9));
+        assertThat(merged.count(), is(4L));
+        Query<TestItem> distinct = namespace.query().aggregateDistinct("name");
+        assertThat(distinct.count(), is((long) distinct.toList().size()));
+    }
+
+    @Test
+    public void testQueryExistsWithOffsetAndLimit() {
+        String namespaceName = "items";
+        db.openNamespace(namespaceName, NamespaceOptions.defaultOptions(), TestItem.class);
+
+        for (int i = 0; i < 10; i++) {
+            TestItem testItem = new TestItem();
+            testItem.setId(i);
+            testItem.setName("TestName" + i);
+            db.insert(namespaceName, testItem);
+        }
+
+        assertThat(db.query(namespaceName, TestItem.class).where("id", LT, 8).offset(7).exists(), is(true));
+        assertThat(db.query(namespaceName, TestItem.class).where("id", LT, 8).offset(8).exists(), is(false));
+        assertThat(db.query(namespaceName, TestItem.class).where("id", LT, 8).limit(0).exists(), is(false));
+    }
+
+    @Test
+    public void testQueryScrollByPages() {
+        String namespaceName = "items";
+        db.openNamespace(namespaceName, NamespaceOptions.defaultOptions(), TestItem.class);
+
+        for (int i = 9; i >= 0; i--) {
+            TestItem testItem = new TestItem();
+            testItem.setId(i);
+            testItem.setName("TestName" + i);
+            db.insert(namespaceName, testItem);
+        }
+
+        Scroll<TestItem> scroll = db.query(namespaceName, TestItem.class).where("id", LT, 9).scroll("id", 4);
+        assertThat(scroll.next().stream().map(TestItem::getId).collect(Collectors.toList()), contains(0, 1, 2, 3));
+        String cursor = scroll.getCursor();
+
+        Scroll<TestItem> resumed = db.query(namespaceName, TestItem.class).where("id", LT, 9)
+                .scroll("id", 4, cursor);
+        assertThat(resumed.next().stream().map(TestItem::getId).collect(Collectors.toList()), contains(4, 5, 6, 7));
+        assertThat(resumed.next().stream().map(TestItem::getId).collect(Collectors.toList()), contains(8));
+        assertThat(resumed.hasNext(), is(false));
+        assertThat(scroll.stream().map(TestItem::getId).collect(Collectors.toList()),
+                contains(4, 5, 6, 7, 8));
+    }
+
     @Test
     public void testPutAndGetMeta() {
         String namespaceName = "items";
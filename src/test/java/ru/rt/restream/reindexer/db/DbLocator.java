@@ -21,6 +21,7 @@ import org.apache.commons.io.FileUtils;
 import ru.rt.restream.category.CprotoTest;
 import ru.rt.restream.reindexer.Reindexer;
 import ru.rt.restream.reindexer.ReindexerConfiguration;
+import ru.rt.restream.reindexer.binding.cproto.Transport;
 
 import java.io.File;
 import java.io.IOException;
@@ -115,8 +116,10 @@ public class DbLocator {
             case OBSERVATION:
             case CPROTOS:
             case CPROTO:
+            case CPROTO_NIO:
                 ReindexerConfiguration cprotoConfig = ReindexerConfiguration.builder()
                         .connectionPoolSize(4)
+                        .transport(type == Type.CPROTO_NIO ? Transport.NIO : Transport.BLOCKING)
                         .sslSocketFactory(getSslSocketFactory(type))
                         .observationRegistry(observationRegistry)
                         .requestTimeout(Duration.ofSeconds(30L));
@@ -213,7 +216,8 @@ public class DbLocator {
         BUILTIN,
         OBSERVATION,
         CPROTOS,
-        CPROTO
+        CPROTO,
+        CPROTO_NIO
     }
 
 }
@@ -0,0 +1,225 @@
+/*
+ * Copyright 2020-present Restream
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ru.rt.restream.reindexer.processor;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import ru.rt.restream.reindexer.binding.cproto.ByteBuffer;
+import ru.rt.restream.reindexer.binding.cproto.ItemCodec;
+import ru.rt.restream.reindexer.binding.cproto.cjson.CjsonItemCodec;
+import ru.rt.restream.reindexer.binding.cproto.cjson.PayloadType;
+import ru.rt.restream.reindexer.binding.cproto.cjson.CjsonObject;
+import ru.rt.restream.reindexer.binding.cproto.cjson.CtagMatcher;
+import ru.rt.restream.reindexer.binding.cproto.cjson.encdec.CjsonDecoder;
+
+import java.io.File;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.UUID;
+import java.util.stream.Collectors;
+
+import javax.tools.Diagnostic;
+import javax.tools.DiagnosticCollector;
+import javax.tools.JavaCompiler;
+import javax.tools.JavaFileObject;
+import javax.tools.StandardJavaFileManager;
+import javax.tools.ToolProvider;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.containsString;
+import static org.hamcrest.Matchers.hasItem;
+import static org.hamcrest.Matchers.instanceOf;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.not;
+import static org.hamcrest.Matchers.nullValue;
+import static org.hamcrest.Matchers.sameInstance;
+
+/**
+ * Tests for {@link ItemCodecProcessor}.
+ */
+class ItemCodecProcessorTest {
+
+    private static final String ITEM_SOURCE = String.join("\n",
+            "package items;",
+            "import ru.rt.restream.reindexer.annotations.*;",
+            "import java.util.*;",
+            "public class TestItem {",
+            "    @Reindex(name = \"id\", isPrimaryKey = true)",
+            "    private Integer id;",
+            "    private String name;",
+            "    private int count;",
+            "    private boolean isActive;",
+            "    private Double price;",
+            "    private float score;",
+            "    private List<Long> values;",
+            "    private UUID uuid;",
+            "    @Json(\"title\")",
+            "    private String caption;",
+            "    @Transient",
+            "    private Map<String, Object> joined;",
+            "    public Integer getId() { return id; }",
+            "    public void setId(Integer id) { this.id = id; }",
+            "    public String getName() { return name; }",
+            "    public void setName(String name) { this.name = name; }",
+            "    public int getCount() { return count; }",
+            "    public void setCount(int count) { this.count = count; }",
+            "    public boolean isActive() { return isActive; }",
+            "    public void setActive(boolean active) { this.isActive = active; }",
+            "    public Double getPrice() { return price; }",
+            "    public void setPrice(Double price) { this.price = price; }",
+            "    public float getScore() { return score; }",
+            "    public void setScore(float score) { this.score = score; }",
+            "    public List<Long> getValues() { return values; }",
+            "    public void setValues(List<Long> values) { this.values = values; }",
+            "    public UUID getUuid() { return uuid; }",
+            "    public void setUuid(UUID uuid) { this.uuid = uuid; }",
+            "    public String getCaption() { return caption; }",
+            "    public void setCaption(String caption) { this.caption = caption; }",
+            "}");
+
+    private static final String MAP_ITEM_SOURCE = String.join("\n",
+            "package items;",
+            "import ru.rt.restream.reindexer.annotations.*;",
+            "import java.util.*;",
+            "public class MapItem {",
+            "    @Reindex(name = \"id\", isPrimaryKey = true)",
+            "    private Integer id;",
+            "    private Map<String, String> attributes;",
+            "    public Integer getId() { return id; }",
+            "    public void setId(Integer id) { this.id = id; }",
+            "    public Map<String, String> getAttributes() { return attributes; }",
+            "    public void setAttributes(Map<String, String> attributes) { this.attributes = attributes; }",
+            "}");
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    void processWhenSupportedItemThenCodecGenerated() throws Exception {
+        List<Diagnostic<? extends JavaFileObject>> diagnostics = compile("TestItem", ITEM_SOURCE);
+        assertThat(diagnostics.toString(), diagnostics.stream().noneMatch(d -> d.getKind() == Diagnostic.Kind.ERROR),
+                is(true));
+        assertThat(Files.readAllLines(tempDir.resolve("classes/META-INF/services/"
+                + "ru.rt.restream.reindexer.binding.cproto.ItemCodecProvider")),
+                contains("items.TestItem" + ItemCodecProcessor.PROVIDER_SUFFIX));
+
+        try (URLClassLoader classLoader = newClassLoader()) {
+            Class<Object> itemClass = loadClass(classLoader, "items.TestItem");
+            List<String> tags = Arrays.asList("id", "name", "count", "isActive", "price", "score", "values", "uuid",
+                    "title");
+            PayloadType payloadType = new PayloadType(1L, "items", 1L, 1, 0L, tags, Collections.emptyList());
+            ItemCodec<Object> codec = ItemCodec.getInstance(itemClass, payloadType);
+            assertThat(codec, not(instanceOf(CjsonItemCodec.class)));
+
+            Object item = itemClass.getConstructor().newInstance();
+            set(item, "setId", Integer.class, 42);
+            set(item, "setName", String.class, "name");
+            set(item, "setCount", int.class, 7);
+            set(item, "setActive", boolean.class, true);
+            set(item, "setScore", float.class, 1.5f);
+            set(item, "setValues", List.class, Arrays.asList(1L, 2L, 3L));
+            set(item, "setUuid", UUID.class, UUID.fromString("3f2504e0-4f89-11d3-9a0c-0305e82c3301"));
+            set(item, "setCaption", String.class, "caption");
+            ByteBuffer buffer = new ByteBuffer();
+            codec.writeItem(buffer, item);
+
+            CjsonObject object = new CjsonDecoder(new CtagMatcher(payloadType),
+                    new ByteBuffer(buffer.bytes()).rewind()).decode().getAsCjsonObject();
+            assertThat(object.getProperty("id").getAsInteger(), is(42));
+            assertThat(object.getProperty("name").getAsString(), is("name"));
+            assertThat(object.getProperty("count").getAsInteger(), is(7));
+            assertThat(object.getProperty("isActive").getAsBoolean(), is(true));
+            assertThat(object.getProperty("price").isNull(), is(true));
+            assertThat(object.getProperty("score").getAsFloat(), is(1.5f));
+            assertThat(object.getProperty("values").getAsCjsonArray().list().size(), is(3));
+            assertThat(object.getProperty("uuid").getAsUuid(), is(get(item, "getUuid")));
+            assertThat(object.getProperty("title").getAsString(), is("caption"));
+            Object readItem = codec.readItem(new ByteBuffer(buffer.bytes()).rewind());
+            ByteBuffer rewritten = new ByteBuffer();
+            codec.writeItem(rewritten, readItem);
+            assertThat(rewritten.bytes(), is(buffer.bytes()));
+            assertThat(get(readItem, "getPrice"), nullValue());
+            assertThat(get(readItem, "getCaption"), is("caption"));
+
+            set(readItem, "setPrice", Double.class, 2.5D);
+            ByteBuffer page = new ByteBuffer(buffer.bytes()).rewind();
+            assertThat(codec.readItem(page, buffer.bytes().length, readItem), sameInstance(readItem));
+            assertThat(get(readItem, "getPrice"), nullValue());
+            assertThat(get(readItem, "getId"), is(42));
+            assertThat(page.getPosition(), is(buffer.bytes().length));
+        }
+    }
+
+    @Test
+    void processWhenUnsupportedFieldThenCodecNotGenerated() throws Exception {
+        List<Diagnostic<? extends JavaFileObject>> diagnostics = compile("MapItem", MAP_ITEM_SOURCE);
+
+        List<String> notes = diagnostics.stream()
+                .filter(d -> d.getKind() == Diagnostic.Kind.NOTE)
+                .map(d -> d.getMessage(null))
+                .collect(Collectors.toList());
+        assertThat(notes, hasItem(containsString("unsupported type of the field attributes")));
+        try (URLClassLoader classLoader = newClassLoader()) {
+            Class<Object> itemClass = loadClass(classLoader, "items.MapItem");
+            assertThat(ItemCodec.getInstance(itemClass, null), instanceOf(CjsonItemCodec.class));
+        }
+    }
+
+    private List<Diagnostic<? extends JavaFileObject>> compile(String name, String source) throws Exception {
+        Path sourceFile = tempDir.resolve("src/items/" + name + ".java");
+        Files.createDirectories(sourceFile.getParent());
+        Files.write(sourceFile, source.getBytes());
+        Path classes = Files.createDirectories(tempDir.resolve("classes"));
+        String classPath = new File(ItemCodecProcessor.class.getProtectionDomain().getCodeSource().getLocation()
+                .toURI()).getPath();
+        JavaCompiler compiler = ToolProvider.getSystemJavaCompiler();
+        DiagnosticCollector<JavaFileObject> diagnostics = new DiagnosticCollector<>();
+        try (StandardJavaFileManager fileManager = compiler.getStandardFileManager(diagnostics, null, null)) {
+            JavaCompiler.CompilationTask task = compiler.getTask(null, fileManager, diagnostics,
+                    Arrays.asList("-classpath", classPath, "-d", classes.toString(),
+                            "-s", Files.createDirectories(tempDir.resolve("generated")).toString()),
+                    null, fileManager.getJavaFileObjects(sourceFile.toFile()));
+            task.setProcessors(Collections.singletonList(new ItemCodecProcessor()));
+            task.call();
+        }
+        return diagnostics.getDiagnostics();
+    }
+
+    private URLClassLoader newClassLoader() throws Exception {
+        return new URLClassLoader(new URL[]{tempDir.resolve("classes").toUri().toURL()},
+                getClass().getClassLoader());
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Class<Object> loadClass(ClassLoader classLoader, String name) throws ClassNotFoundException {
+        return (Class<Object>) classLoader.loadClass(name);
+    }
+
+    private static Object get(Object item, String getter) throws Exception {
+        return item.getClass().getMethod(getter).invoke(item);
+    }
+
+    private static void set(Object item, String setter, Class<?> type, Object value) throws Exception {
+        item.getClass().getMethod(setter, type).invoke(item, value);
+    }
+
+}